@@ -13,6 +13,9 @@
  */
 package org.codice.acdebugger;
 
+import java.util.Collection;
+import java.util.Map;
+
 /** Service used for dynamically granting permissions. */
 public interface PermissionService {
   /**
@@ -25,4 +28,44 @@ public interface PermissionService {
    */
   @SuppressWarnings("squid:S00112" /* Interface used during debugging and meant to be generic */)
   public void grantPermission(String domain, String permission) throws Exception;
+
+  /**
+   * Grants the specified permissions to the specified domain.
+   *
+   * <p>Implementations should override this method whenever granting permissions has a fixed cost
+   * (e.g. clearing permission caches) such that the permissions can be granted all at once. By
+   * default, each permission is granted individually via {@link #grantPermission(String, String)}.
+   *
+   * @param domain the bundle name or domain location to whom the permissions should be granted
+   * @param permissions the permissions to be granted in a standard policy format string
+   *     representation
+   * @throws Exception if a failure occurs while granting the given permissions
+   */
+  @SuppressWarnings("squid:S00112" /* Interface used during debugging and meant to be generic */)
+  public default void grantPermissions(String domain, Collection<String> permissions)
+      throws Exception {
+    for (final String permission : permissions) {
+      grantPermission(domain, permission);
+    }
+  }
+
+  /**
+   * Grants the specified permissions to multiple domains.
+   *
+   * <p>Implementations should override this method whenever granting permissions has a fixed cost
+   * (e.g. clearing permission caches) such that the permissions can be granted all at once. By
+   * default, permissions are granted one domain at a time via {@link #grantPermissions(String,
+   * Collection)}.
+   *
+   * @param permissions the permissions to be granted in a standard policy format string
+   *     representation keyed by the bundle names or domain locations to whom they should be granted
+   * @throws Exception if a failure occurs while granting the given permissions
+   */
+  @SuppressWarnings("squid:S00112" /* Interface used during debugging and meant to be generic */)
+  public default void grantPermissions(Map<String, ? extends Collection<String>> permissions)
+      throws Exception {
+    for (final Map.Entry<String, ? extends Collection<String>> e : permissions.entrySet()) {
+      grantPermissions(e.getKey(), e.getValue());
+    }
+  }
 }
@@ -14,6 +14,7 @@
 package org.codice.acdebugger.backdoor;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.reflect.TypeToken;
 import java.io.FilePermission;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -29,11 +30,17 @@ import java.security.PrivilegedExceptionAction;
 import java.security.ProtectionDomain;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
@@ -51,6 +58,9 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServicePermission;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.hooks.service.EventListenerHook;
+import org.osgi.framework.wiring.BundleRevision;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.util.tracker.ServiceTracker;
 
@@ -60,6 +70,19 @@ public class Backdoor implements BundleActivator {
 
   private static final String NOT_A_DOMAIN = "not a domain: ";
 
+  /** Amount of time in nanoseconds the helper thread waits in between each call to the debugger. */
+  @VisibleForTesting static final long HELPER_PERIOD = TimeUnit.MILLISECONDS.toNanos(250L);
+
+  @VisibleForTesting static final String HELPER_NAME = "AC Debugger Backdoor Helper";
+
+  /**
+   * Name of the framework or system property which when set to <code>true</code> registers a
+   * permission service granting permissions through the framework's conditional permission admin
+   * service (see {@link ConditionalPermissionService}).
+   */
+  public static final String CONDITIONAL_PERMISSIONS_PROPERTY =
+      "org.codice.acdebugger.backdoor.conditionalPermissions";
+
   // getProtectionDomain0() is private in class Class and avoids the security manager check which
   // would create a recursion which we don't want to handle here. In addition, it returns a fake
   // domain if none is associated with the class instead of null as we prefer
@@ -83,6 +106,25 @@ public class Backdoor implements BundleActivator {
 
   private volatile ServiceTracker<PermissionService, PermissionService> permServiceTracker = null;
 
+  private volatile BundleContext bundleContext = null;
+
+  @Nullable private volatile ConditionalPermissionService conditionalPermService = null;
+
+  @Nullable
+  private volatile ServiceRegistration<PermissionService> conditionalPermRegistration = null;
+
+  @Nullable private volatile ServicePermissionRecorder recorder = null;
+
+  @Nullable private volatile ServiceRegistration<EventListenerHook> recorderRegistration = null;
+
+  @Nullable private volatile Thread helper = null;
+
+  @SuppressWarnings({
+    "squid:S1068" /* DO NOT CHANGE THIS NAME, the AC debugger is accessing it directly */
+  })
+  @Nullable
+  private volatile BundleRegistry bundleRegistry = null;
+
   @VisibleForTesting
   Backdoor(PropertiesUtil properties) {
     this.properties = properties;
@@ -97,6 +139,11 @@ public class Backdoor implements BundleActivator {
   })
   @Override
   public void start(BundleContext bundleContext) {
+    this.bundleContext = bundleContext;
+    if (Boolean.parseBoolean(
+        bundleContext.getProperty(Backdoor.CONDITIONAL_PERMISSIONS_PROPERTY))) {
+      registerConditionalPermissionService(bundleContext);
+    }
     this.permServiceTracker = newServiceTracker(bundleContext);
     this.permServiceTracker.open();
     Backdoor.instance = this;
@@ -108,6 +155,25 @@ public class Backdoor implements BundleActivator {
   @Override
   public void stop(BundleContext bundleContext) {
     Backdoor.instance = null;
+    final ServiceRegistration<EventListenerHook> registration = recorderRegistration;
+
+    if (registration != null) {
+      this.recorderRegistration = null;
+      registration.unregister();
+    }
+    final BundleRegistry registry = bundleRegistry;
+
+    if (registry != null) {
+      this.bundleRegistry = null;
+      bundleContext.removeBundleListener(registry);
+    }
+    final Thread thread = helper;
+
+    if (thread != null) {
+      this.helper = null;
+      thread.interrupt();
+    }
+    unregisterConditionalPermissionService();
     permServiceTracker.close();
   }
 
@@ -342,7 +408,7 @@ public class Backdoor implements BundleActivator {
           (PrivilegedExceptionAction<Void>)
               () -> {
                 synchronized (this) { // making sure only one thread at a time is granting
-                  final PermissionService permissionService = permServiceTracker.getService();
+                  final PermissionService permissionService = getPermissionService();
 
                   if (permissionService != null) {
                     permissionService.grantPermission(domain, permission);
@@ -361,6 +427,46 @@ public class Backdoor implements BundleActivator {
     }
   }
 
+  /**
+   * Temporarily grants bundles permissions.
+   *
+   * <p>This method is called from the AC debugger to grant permissions in batches.
+   *
+   * @param permissions a Json string for a map of all permissions to be granted keyed by the bundle
+   *     names or domain locations to grant them to
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public void grantPermissions(String permissions) throws Exception {
+    try {
+      final Map<String, List<String>> map =
+          JsonUtils.fromJson(permissions, new TypeToken<Map<String, List<String>>>() {}.getType());
+
+      AccessController.doPrivileged(
+          (PrivilegedExceptionAction<Void>)
+              () -> {
+                synchronized (this) { // making sure only one thread at a time is granting
+                  final PermissionService permissionService = getPermissionService();
+
+                  if (permissionService != null) {
+                    permissionService.grantPermissions(map);
+                  }
+                  return null;
+                }
+              });
+    } catch (PrivilegedActionException e) {
+      e.getException().printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw e.getException();
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
   /**
    * Checks if a domain has a given permission.
    *
@@ -396,12 +502,257 @@ public class Backdoor implements BundleActivator {
     }
   }
 
+  /**
+   * Enables the recording of service permission misses inside the VM. Once enabled, bundles are
+   * checked for service permissions before service events are delivered to them and only the checks
+   * that fail are recorded to be later drained via {@link #drainServicePermissionMisses()}.
+   *
+   * <p>This method is called from the AC debugger in place of monitoring each service permission
+   * check with a breakpoint. The AC debugger is notified of newly recorded misses via a breakpoint
+   * in {@link #servicePermissionMissesRecorded()}.
+   *
+   * @param grant <code>true</code> to automatically grant the missing permissions; <code>false
+   *     </code> not to
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public synchronized void enableServicePermissionRecorder(boolean grant) {
+    try {
+      if (recorderRegistration == null) {
+        final ServicePermissionRecorder r =
+            new ServicePermissionRecorder(this, grant, ServicePermissionRecorder.DEFAULT_CAPACITY);
+
+        this.recorder = r;
+        this.recorderRegistration =
+            AccessController.doPrivileged(
+                (PrivilegedAction<ServiceRegistration<EventListenerHook>>)
+                    () -> bundleContext.registerService(EventListenerHook.class, r, null));
+      }
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
+  /**
+   * Drains all service permission misses recorded since the last time this method was called.
+   *
+   * <p>This method is called from the AC debugger.
+   *
+   * @return a Json string for a map of all corresponding {@link ServicePermissionInfo} keyed by the
+   *     names of the bundles that were missing service permissions
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public String drainServicePermissionMisses() {
+    try {
+      final ServicePermissionRecorder r = recorder;
+
+      return JsonUtils.toJson((r != null) ? r.drain() : Collections.emptyMap());
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
+  /**
+   * Called whenever new service permission misses were recorded. This method does nothing; the AC
+   * debugger sets a breakpoint on it in order to drain the recorded misses.
+   */
+  @SuppressWarnings({
+    "squid:S1186" /* DO NOT CHANGE THIS NAME, the AC debugger is setting a breakpoint on it */
+  })
+  public void servicePermissionMissesRecorded() {}
+
+  /**
+   * Gets a snapshot of all installed bundles. Once called, the backdoor starts tracking bundle
+   * changes such that only the ones that changed can be retrieved later via {@link
+   * #getBundleRegistryChanges()}.
+   *
+   * <p>This method is called from the AC debugger when the backdoor is discovered.
+   *
+   * @return an array where the first element is a Json string for a list of {@link
+   *     org.codice.acdebugger.common.BundleInfo} followed by the bundle, its protection domain, and
+   *     its classloader (any of which can be <code>null</code>) for each bundle in the same order
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public synchronized Object[] getBundleRegistry() {
+    try {
+      return AccessController.doPrivileged(
+          (PrivilegedAction<Object[]>)
+              () -> {
+                BundleRegistry registry = bundleRegistry;
+
+                if (registry == null) {
+                  // start listening before taking the snapshot to make sure we don't miss anything
+                  registry = new BundleRegistry(this, bundleContext);
+                  bundleContext.addBundleListener(registry);
+                  this.bundleRegistry = registry;
+                }
+                return registry.snapshot();
+              });
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
+  /**
+   * Gets a snapshot of all bundles that changed since the last snapshot was retrieved.
+   *
+   * <p>This method is called from the AC debugger whenever it notices bundle changes were tracked.
+   *
+   * @return an array in the same format as {@link #getBundleRegistry()} which will only report
+   *     bundles that changed (nothing is reported if {@link #getBundleRegistry()} was never called)
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public synchronized Object[] getBundleRegistryChanges() {
+    try {
+      final BundleRegistry registry = bundleRegistry;
+
+      if (registry == null) {
+        return new Object[] {JsonUtils.toJson(Collections.emptyList())};
+      }
+      return AccessController.doPrivileged((PrivilegedAction<Object[]>) registry::changes);
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
+  /**
+   * Gets the values for a set of system properties all at once.
+   *
+   * <p>This method is called from the AC debugger when it initializes its system properties such
+   * that they can be retrieved with a single call regardless of how many are configured.
+   *
+   * @param names a Json string for a list of system property names to retrieve
+   * @return a Json string for a map of the values keyed by the requested property names in the same
+   *     order (properties that are not defined are not reported)
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public String getSystemProperties(String names) {
+    try {
+      final List<String> list =
+          JsonUtils.fromJson(names, new TypeToken<List<String>>() {}.getType());
+
+      return AccessController.doPrivileged(
+          (PrivilegedAction<String>)
+              () -> {
+                final Map<String, String> values = new LinkedHashMap<>();
+
+                for (final String name : list) {
+                  final String value = System.getProperty(name);
+
+                  if (value != null) {
+                    values.put(name, value);
+                  }
+                }
+                return JsonUtils.toJson(values);
+              });
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
+  /**
+   * Enables the helper thread. Once enabled, a daemon thread periodically calls {@link
+   * #helperReady()} which gives the AC debugger a thread it can suspend whenever it needs to invoke
+   * methods in the VM without having to hold on to the threads that were being monitored.
+   *
+   * <p>This method is called from the AC debugger.
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  public synchronized void enableHelper() {
+    try {
+      if (helper == null) {
+        AccessController.doPrivileged(
+            (PrivilegedAction<Void>)
+                () -> {
+                  final Thread thread = new Thread(this::runHelper, Backdoor.HELPER_NAME);
+
+                  thread.setDaemon(true);
+                  // set it before starting it since it only runs for as long as it is the helper
+                  this.helper = thread;
+                  thread.start();
+                  return null;
+                });
+      }
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      throw t;
+    }
+  }
+
+  /**
+   * Called periodically from the helper thread once enabled. This method does nothing; the AC
+   * debugger sets a breakpoint on it whenever it needs to get hold of a thread.
+   */
+  @SuppressWarnings({
+    "squid:S1186" /* DO NOT CHANGE THIS NAME, the AC debugger is setting a breakpoint on it */
+  })
+  public void helperReady() {}
+
   @VisibleForTesting
   ServiceTracker<PermissionService, PermissionService> newServiceTracker(
       BundleContext bundleContext) {
     return new ServiceTracker<>(bundleContext, PermissionService.class.getName(), null);
   }
 
+  @VisibleForTesting
+  ConditionalPermissionService newConditionalPermissionService(
+      BundleContext bundleContext, PropertiesUtil properties) {
+    return new ConditionalPermissionService(bundleContext, properties);
+  }
+
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  private void runHelper() {
+    final Thread thread = Thread.currentThread();
+
+    while ((helper == thread) && !thread.isInterrupted()) {
+      LockSupport.parkNanos(this, Backdoor.HELPER_PERIOD);
+      try {
+        helperReady();
+      } catch (VirtualMachineError e) {
+        throw e;
+      } catch (Throwable t) { // keep on helping
+        t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      }
+    }
+  }
+
   /**
    * Gets information from the bundle associated with the given object. The object can be a bundle,
    * a protection domain, a bundle context, or even a classloader. This methods makes all attempts
@@ -500,12 +851,30 @@ public class Backdoor implements BundleActivator {
   private String getServicePermissionInfoAndGrant0(
       String bundle, ProtectionDomain domain, ServiceEvent serviceEvent, boolean grant)
       throws Exception {
+    return JsonUtils.toJson(
+        getServicePermissionInfoAndGrant1(
+            bundle, domain, serviceEvent.getServiceReference(), grant));
+  }
+
+  /**
+   * Gets service permission information for a given bundle/domain and service reference.
+   *
+   * @param bundle the name of the bundle associated with the given domain
+   * @param domain the domain to check service permissions against
+   * @param sr the service reference which we need to check permissions for
+   * @param grant <code>true</code> to automatically grant the missing permissions; <code>false
+   *     </code> not to
+   * @return the corresponding service permission information
+   * @throws Exception if unable to grant a missing permission
+   */
+  ServicePermissionInfo getServicePermissionInfoAndGrant1(
+      String bundle, ProtectionDomain domain, ServiceReference sr, boolean grant) throws Exception {
     synchronized (this) {
-      final ServiceReference sr = serviceEvent.getServiceReference();
       final ServicePermission p = new ServicePermission(sr, ServicePermission.GET);
       final String[] objectClass = (String[]) sr.getProperty(Constants.OBJECTCLASS);
       final boolean implies = domain.implies(p);
       final Set<String> implied = new LinkedHashSet<>(12);
+      final Set<String> missing = new LinkedHashSet<>(12);
       final ServicePermission permission = new ServicePermission("*", ServicePermission.GET);
 
       if (domain.implies(permission)) {
@@ -518,15 +887,96 @@ public class Backdoor implements BundleActivator {
         if (domain.implies(spermission)) {
           implied.add(permissionString);
         } else if (grant) {
-          final PermissionService permissionService = permServiceTracker.getService();
+          missing.add(permissionString);
+        }
+      }
+      if (!missing.isEmpty()) { // grant them all at once
+        final PermissionService permissionService = getPermissionService();
 
-          if (permissionService != null) {
-            permissionService.grantPermission(bundle, permissionString);
-          }
+        if (permissionService != null) {
+          permissionService.grantPermissions(bundle, missing);
         }
       }
-      return JsonUtils.toJson(
-          new ServicePermissionInfo(getPermissionStrings0(p), implies, implied));
+      return new ServicePermissionInfo(getPermissionStrings0(p), implies, implied);
+    }
+  }
+
+  /**
+   * Gets the protection domain Equinox associates with the current revision of a given bundle.
+   *
+   * @param bundle the bundle for which to get the protection domain
+   * @return the corresponding domain or <code>null</code> if none associated with the bundle
+   */
+  @Nullable
+  ProtectionDomain getDomain0(Bundle bundle) {
+    // org.eclipse.osgi.storage.BundleInfo$Generation is not exported by Eclipse
+    final BundleRevision revision = bundle.adapt(BundleRevision.class);
+    final Object info = (revision != null) ? invoke(revision, "getRevisionInfo", null) : null;
+
+    return (info != null) ? invoke(info, "getDomain", ProtectionDomain.class) : null;
+  }
+
+  /**
+   * Gets the permission service to use for granting permissions.
+   *
+   * @return the permission service to use or <code>null</code> if none available
+   */
+  @Nullable
+  private PermissionService getPermissionService() {
+    return permServiceTracker.getService();
+  }
+
+  /**
+   * Registers the reference permission service based on the conditional permission admin service
+   * with the lowest ranking such that any other permission service registered by the VM is used
+   * first. Entries left in the framework's table by a previous run are revoked first.
+   *
+   * @param bundleContext the bundle context to register the service with
+   */
+  @SuppressWarnings({
+    "squid:S1166", /* nothing to revoke if the admin service is not available */
+    "squid:S1148", /* don't have access to logger at this stage */
+    "squid:S1149" /* the OSGi API requires a dictionary */
+  })
+  private void registerConditionalPermissionService(BundleContext bundleContext) {
+    final ConditionalPermissionService service =
+        newConditionalPermissionService(bundleContext, properties);
+    final Dictionary<String, Object> props = new Hashtable<>();
+
+    try {
+      service.revokeAll();
+    } catch (IllegalStateException e) {
+      e.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+    }
+    props.put(Constants.SERVICE_RANKING, Integer.MIN_VALUE);
+    this.conditionalPermService = service;
+    this.conditionalPermRegistration =
+        bundleContext.registerService(PermissionService.class, service, props);
+  }
+
+  /**
+   * Unregisters the reference permission service if it was registered and revokes all permissions
+   * it granted.
+   */
+  @SuppressWarnings({
+    "squid:S1166", /* nothing to revoke if the admin service is not available */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  private void unregisterConditionalPermissionService() {
+    final ServiceRegistration<PermissionService> registration = conditionalPermRegistration;
+    final ConditionalPermissionService service = conditionalPermService;
+
+    if (registration != null) {
+      this.conditionalPermRegistration = null;
+      registration.unregister();
+    }
+    if (service != null) {
+      this.conditionalPermService = null;
+      try {
+        service.revokeAll();
+      } catch (IllegalStateException e) {
+        e.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      }
     }
   }
 
@@ -559,7 +1009,7 @@ public class Backdoor implements BundleActivator {
   }
 
   @Nullable
-  private <T> T get(Object obj, String name, Class<T> fieldClass) {
+  <T> T get(Object obj, String name, Class<T> fieldClass) {
     Class<?> c = obj.getClass();
 
     while (c != null) {
@@ -671,7 +1121,7 @@ public class Backdoor implements BundleActivator {
   }
 
   @Nullable
-  private String getDomainLocation(ProtectionDomain domain) {
+  String getDomainLocation(ProtectionDomain domain) {
     final CodeSource src = domain.getCodeSource();
     final URL url = (src != null) ? src.getLocation() : null;
     String location = (url != null) ? url.toString() : null;
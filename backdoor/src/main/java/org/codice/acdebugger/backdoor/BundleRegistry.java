@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.backdoor;
+
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.codice.acdebugger.common.BundleInfo;
+import org.codice.acdebugger.common.JsonUtils;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.namespace.HostNamespace;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Tracks installed bundles such that the AC debugger can learn everything it needs about all of
+ * them in one call when the backdoor is discovered and then only about the ones that changed since.
+ *
+ * <p>Snapshots are returned as an array where the first element is a Json string for a list of
+ * {@link BundleInfo} followed by the bundle, its protection domain, and its classloader (any of
+ * which can be <code>null</code>) for each bundle in the same order. Bundles that were uninstalled
+ * are reported with only their identifier and no mirrors such that the AC debugger can forget them.
+ *
+ * <p>Equinox only creates a bundle's classloader the first time a class is loaded from it which
+ * doesn't trigger any bundle events. Bundles reported without a classloader are therefore tracked
+ * and reported again as changed as soon as their classloader has been created.
+ *
+ * <p>Bundle events are also counted such that the AC debugger can detect when it should invalidate
+ * its caches or when bundles were started by simply reading fields.
+ */
+class BundleRegistry implements BundleListener {
+  /** Number of objects returned in a snapshot for each bundle. */
+  static final int MIRRORS_PER_BUNDLE = 3;
+
+  /** Bundle event types after which information the AC debugger cached about mirrors is stale. */
+  private static final int INVALIDATING_EVENTS =
+      BundleEvent.STOPPED | BundleEvent.UPDATED | BundleEvent.UNINSTALLED | BundleEvent.UNRESOLVED;
+
+  private final Backdoor backdoor;
+
+  private final BundleContext context;
+
+  private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+  /** Identifiers of resolved bundles last reported without a classloader. */
+  private final Set<Long> loaderless = ConcurrentHashMap.newKeySet();
+
+  @SuppressWarnings({
+    "squid:S1068", /* DO NOT CHANGE THIS NAME, the AC debugger is accessing it directly */
+    "squid:S3078" /* only ever updated from the framework's bundle event dispatching thread */
+  })
+  private volatile int changeCount = 0;
+
+  @SuppressWarnings({
+    "squid:S1068", /* DO NOT CHANGE THIS NAME, the AC debugger is accessing it directly */
+    "squid:S3078" /* only ever updated from the framework's bundle event dispatching thread */
+  })
+  private volatile int invalidationCount = 0;
+
+  @SuppressWarnings({
+    "squid:S1068", /* DO NOT CHANGE THIS NAME, the AC debugger is accessing it directly */
+    "squid:S3078" /* only ever updated from the framework's bundle event dispatching thread */
+  })
+  private volatile int startCount = 0;
+
+  BundleRegistry(Backdoor backdoor, BundleContext context) {
+    this.backdoor = backdoor;
+    this.context = context;
+  }
+
+  @Override
+  public void bundleChanged(BundleEvent event) {
+    final int type = event.getType();
+
+    changed.add(event.getBundle().getBundleId());
+    if ((type & BundleRegistry.INVALIDATING_EVENTS) != 0) {
+      invalidationCount++;
+    } else if (type == BundleEvent.STARTED) {
+      startCount++;
+    }
+    changeCount++;
+  }
+
+  /**
+   * Takes a snapshot of all installed bundles.
+   *
+   * @return a snapshot of all installed bundles
+   */
+  Object[] snapshot() {
+    changed.clear();
+    loaderless.clear();
+    return snapshot(Arrays.asList(context.getBundles()), Collections.emptyList());
+  }
+
+  /**
+   * Takes a snapshot of all bundles that changed since the last snapshot or for which a classloader
+   * was created since they were last reported. Bundles that were uninstalled in between are
+   * reported without any information other than their identifiers and without mirrors.
+   *
+   * @return a snapshot of all bundles that changed since the last snapshot
+   */
+  Object[] changes() {
+    final Map<Long, Bundle> bundles = new LinkedHashMap<>();
+    final List<Long> uninstalled = new ArrayList<>();
+
+    for (final Iterator<Long> i = changed.iterator(); i.hasNext(); ) {
+      final Long id = i.next();
+      final Bundle bundle = context.getBundle(id);
+
+      i.remove();
+      if (BundleRegistry.isInstalled(bundle)) {
+        bundles.put(id, bundle);
+      } else {
+        loaderless.remove(id);
+        uninstalled.add(id);
+      }
+    }
+    for (final Iterator<Long> i = loaderless.iterator(); i.hasNext(); ) {
+      final Long id = i.next();
+      final Bundle bundle = context.getBundle(id);
+
+      if (!BundleRegistry.isInstalled(bundle)) {
+        // will be reported as uninstalled with the corresponding bundle event
+        i.remove();
+      } else if (!bundles.containsKey(id) && (getClassLoader(bundle) != null)) {
+        bundles.put(id, bundle);
+      }
+    }
+    return snapshot(bundles.values(), uninstalled);
+  }
+
+  private Object[] snapshot(Collection<Bundle> bundles, Collection<Long> uninstalled) {
+    final List<BundleInfo> infos = new ArrayList<>(bundles.size() + uninstalled.size());
+    final Object[] snapshot =
+        new Object[1 + (bundles.size() + uninstalled.size()) * BundleRegistry.MIRRORS_PER_BUNDLE];
+    int i = 1;
+
+    for (final Bundle bundle : bundles) {
+      final ProtectionDomain domain = backdoor.getDomain0(bundle);
+      final ClassLoader classloader = getClassLoader(bundle);
+
+      infos.add(
+          new BundleInfo(
+              bundle.getBundleId(),
+              bundle.getSymbolicName(),
+              bundle.getVersion().toString(),
+              bundle.getLocation(),
+              (domain != null) ? backdoor.getDomainLocation(domain) : null));
+      if ((classloader == null) && BundleRegistry.canHaveClassLoader(bundle)) {
+        loaderless.add(bundle.getBundleId());
+      } else {
+        loaderless.remove(bundle.getBundleId());
+      }
+      snapshot[i++] = bundle;
+      snapshot[i++] = domain;
+      snapshot[i++] = classloader;
+    }
+    for (final Long id : uninstalled) {
+      infos.add(new BundleInfo(id, null, null, null, null));
+      i += BundleRegistry.MIRRORS_PER_BUNDLE; // no mirrors
+    }
+    snapshot[0] = JsonUtils.toJson(infos);
+    return snapshot;
+  }
+
+  private static boolean isInstalled(@Nullable Bundle bundle) {
+    return (bundle != null) && (bundle.getState() != Bundle.UNINSTALLED);
+  }
+
+  private static boolean canHaveClassLoader(Bundle bundle) {
+    final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+
+    // unresolved bundles will be reported again through a resolved bundle event
+    return (wiring != null) && wiring.getProvidedWires(HostNamespace.HOST_NAMESPACE).isEmpty();
+  }
+
+  @Nullable
+  private ClassLoader getClassLoader(Bundle bundle) {
+    // classes from attached fragments are loaded by the host's classloader but associated with
+    // the fragment's protection domain so we cannot identify the bundle from the classloader
+    if (!BundleRegistry.canHaveClassLoader(bundle)) {
+      return null;
+    }
+    // don't call getClassLoader() as it would create one for bundles that never loaded classes
+    // org.eclipse.osgi.internal.loader.BundleLoader is not exported by Eclipse
+    final Object loader = backdoor.get(bundle.adapt(BundleWiring.class), "loader", Object.class);
+
+    return (loader != null) ? backdoor.get(loader, "classloader", ClassLoader.class) : null;
+  }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.backdoor;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+import org.codice.acdebugger.PermissionService;
+import org.codice.acdebugger.common.PermissionUtil;
+import org.codice.acdebugger.common.PropertiesUtil;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.condpermadmin.BundleLocationCondition;
+import org.osgi.service.condpermadmin.ConditionInfo;
+import org.osgi.service.condpermadmin.ConditionalPermissionAdmin;
+import org.osgi.service.condpermadmin.ConditionalPermissionInfo;
+import org.osgi.service.condpermadmin.ConditionalPermissionUpdate;
+import org.osgi.service.permissionadmin.PermissionInfo;
+
+/**
+ * Reference implementation of the permission service which grants permissions by adding allow
+ * entries to the framework's {@link ConditionalPermissionAdmin}.
+ *
+ * <p>Since the framework clears all its permission caches whenever the conditional permission table
+ * is updated, all permissions granted together are committed in a single update. Entries are
+ * appended to the table such that deny entries already defined keep precedence over them.
+ *
+ * <p>The backdoor only registers this implementation when explicitly requested (see {@link
+ * Backdoor#CONDITIONAL_PERMISSIONS_PROPERTY}) as it modifies the framework's permission table.
+ * Since the framework persists this table, all entries added are named with a common prefix and
+ * revoked when the backdoor is stopped as well as when it is started again (e.g. after the VM was
+ * killed).
+ */
+public class ConditionalPermissionService implements PermissionService {
+  /** Maximum number of attempts to commit an update modified concurrently by someone else. */
+  private static final int MAX_ATTEMPTS = 5;
+
+  /** Prefix for the names of all entries added to the conditional permission table. */
+  @VisibleForTesting static final String NAME_PREFIX = "acdebugger.";
+
+  private final BundleContext context;
+
+  private final PropertiesUtil properties;
+
+  /**
+   * Creates a new permission service.
+   *
+   * @param context the bundle context to use for retrieving the conditional permission admin
+   *     service and the installed bundles
+   * @param properties the system properties to use for expanding domain locations and permissions
+   */
+  public ConditionalPermissionService(BundleContext context, PropertiesUtil properties) {
+    this.context = context;
+    this.properties = properties;
+  }
+
+  /**
+   * Checks if the conditional permission admin service is available.
+   *
+   * @return <code>true</code> if the conditional permission admin service is available; <code>
+   *     false</code> if not
+   */
+  public boolean isAvailable() {
+    return context.getServiceReference(ConditionalPermissionAdmin.class) != null;
+  }
+
+  @Override
+  public void grantPermission(String domain, String permission) throws Exception {
+    grantPermissions(Collections.singletonMap(domain, Collections.singleton(permission)));
+  }
+
+  @Override
+  public void grantPermissions(String domain, Collection<String> permissions) throws Exception {
+    grantPermissions(Collections.singletonMap(domain, permissions));
+  }
+
+  @Override
+  public synchronized void grantPermissions(Map<String, ? extends Collection<String>> permissions)
+      throws Exception {
+    update(
+        (admin, infos) -> {
+          boolean added = false;
+
+          for (final Map.Entry<String, ? extends Collection<String>> e : permissions.entrySet()) {
+            final PermissionInfo[] permissionInfos = toPermissionInfos(e.getValue());
+
+            if (permissionInfos.length == 0) {
+              continue;
+            }
+            for (final String location : getLocations(e.getKey())) {
+              // append after existing entries so we do not override existing deny ones
+              infos.add(
+                  admin.newConditionalPermissionInfo(
+                      ConditionalPermissionService.NAME_PREFIX + UUID.randomUUID(),
+                      new ConditionInfo[] {
+                        new ConditionInfo(
+                            BundleLocationCondition.class.getName(), new String[] {location})
+                      },
+                      permissionInfos,
+                      ConditionalPermissionInfo.ALLOW));
+              added = true;
+            }
+          }
+          return added;
+        });
+  }
+
+  /**
+   * Revokes all permissions previously granted through this service (or a previous instance of it)
+   * by removing the corresponding entries from the conditional permission table.
+   *
+   * @throws IllegalStateException if the conditional permission admin service is not available or
+   *     if the table is being modified concurrently by someone else
+   */
+  public synchronized void revokeAll() {
+    update(
+        (admin, infos) ->
+            infos.removeIf(
+                i ->
+                    (i.getName() != null)
+                        && i.getName().startsWith(ConditionalPermissionService.NAME_PREFIX)));
+  }
+
+  /**
+   * Modifies the conditional permission table and commits the changes, retrying if the table was
+   * modified concurrently by someone else.
+   *
+   * @param modifier the modifier to apply to the table which returns <code>true</code> if it was
+   *     modified; <code>false</code> if not
+   * @throws IllegalStateException if the conditional permission admin service is not available or
+   *     if the table is being modified concurrently by someone else
+   */
+  private void update(
+      BiPredicate<ConditionalPermissionAdmin, List<ConditionalPermissionInfo>> modifier) {
+    final ServiceReference<ConditionalPermissionAdmin> ref =
+        context.getServiceReference(ConditionalPermissionAdmin.class);
+    final ConditionalPermissionAdmin admin = (ref != null) ? context.getService(ref) : null;
+
+    if (admin == null) {
+      throw new IllegalStateException("conditional permission admin service is not available");
+    }
+    try {
+      for (int i = 0; i < ConditionalPermissionService.MAX_ATTEMPTS; i++) {
+        final ConditionalPermissionUpdate update = admin.newConditionalPermissionUpdate();
+
+        if (!modifier.test(admin, update.getConditionalPermissionInfos()) || update.commit()) {
+          return;
+        } // else - the table was modified since we got the update so try again
+      }
+      throw new IllegalStateException("conditional permission table is being modified");
+    } finally {
+      context.ungetService(ref);
+    }
+  }
+
+  /**
+   * Gets the bundle locations corresponding to a given domain.
+   *
+   * @param domain the bundle name or domain location
+   * @return the locations of all bundles installed with the given name or the expanded domain
+   *     location if none are
+   */
+  private Set<String> getLocations(String domain) {
+    final Set<String> locations = new LinkedHashSet<>();
+
+    for (final Bundle bundle : context.getBundles()) {
+      if (domain.equals(bundle.getSymbolicName())) {
+        locations.add(bundle.getLocation());
+      }
+    }
+    if (locations.isEmpty()) {
+      locations.add(properties.expand(domain));
+    }
+    return locations;
+  }
+
+  private PermissionInfo[] toPermissionInfos(Collection<String> permissions) {
+    final List<PermissionInfo> infos = new ArrayList<>(permissions.size());
+
+    for (final String permission : permissions) {
+      final String[] parsed = PermissionUtil.parsePermissionString(permission);
+
+      if (parsed == null) {
+        throw new IllegalArgumentException("invalid permission: " + permission);
+      }
+      infos.add(
+          new PermissionInfo(
+              parsed[0], (parsed[1] != null) ? properties.expand(parsed[1]) : null, parsed[2]));
+    }
+    return infos.toArray(new PermissionInfo[infos.size()]);
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.backdoor;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.codice.acdebugger.common.ServicePermissionInfo;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.hooks.service.EventListenerHook;
+import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
+
+/**
+ * Service event listener hook which checks inside the VM if bundles listening for a service event
+ * have permission to receive it, in place of having the AC debugger stop on each of these checks.
+ *
+ * <p>The hook is called by the service registry before the event is delivered to listeners. Only
+ * the checks that fail (the misses) are recorded into a bounded buffer which the AC debugger drains
+ * when notified via a breakpoint on {@link Backdoor#servicePermissionMissesRecorded()}. Each bundle
+ * is only checked once for a given set of service object classes since it either had the
+ * permissions or we reported and possibly granted them.
+ */
+class ServicePermissionRecorder implements EventListenerHook {
+  /** Default maximum number of misses kept in the buffer until drained. */
+  static final int DEFAULT_CAPACITY = 1024;
+
+  private final Backdoor backdoor;
+
+  private final boolean grant;
+
+  private final int capacity;
+
+  private final Queue<Miss> misses = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final Set<List<Object>> checked = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates a new recorder.
+   *
+   * @param backdoor the backdoor used to check and grant service permissions
+   * @param grant <code>true</code> to automatically grant the missing permissions; <code>false
+   *     </code> not to
+   * @param capacity the maximum number of misses to keep in the buffer until drained
+   */
+  ServicePermissionRecorder(Backdoor backdoor, boolean grant, int capacity) {
+    this.backdoor = backdoor;
+    this.grant = grant;
+    this.capacity = capacity;
+  }
+
+  @Override
+  public void event(ServiceEvent event, Map<BundleContext, Collection<ListenerInfo>> listeners) {
+    final ServiceReference<?> sr = event.getServiceReference();
+    final String[] objectClass = (String[]) sr.getProperty(Constants.OBJECTCLASS);
+    final boolean recorded =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Boolean>)
+                () -> {
+                  boolean r = false;
+
+                  for (final BundleContext context : listeners.keySet()) {
+                    r |= check(context.getBundle(), objectClass, sr);
+                  }
+                  return r;
+                });
+
+    if (recorded) {
+      backdoor.servicePermissionMissesRecorded();
+    }
+  }
+
+  /**
+   * Drains all misses recorded so far.
+   *
+   * @return a map of all missing service permission information keyed by bundle names (in the order
+   *     they were recorded)
+   */
+  Map<String, List<ServicePermissionInfo>> drain() {
+    final Map<String, List<ServicePermissionInfo>> drained = new LinkedHashMap<>();
+    Miss miss;
+
+    while ((miss = misses.poll()) != null) {
+      size.decrementAndGet();
+      drained.computeIfAbsent(miss.bundle, b -> new ArrayList<>()).add(miss.info);
+    }
+    return drained;
+  }
+
+  /**
+   * Gets the number of misses that could not be recorded because the buffer was full. These will be
+   * checked again the next time the corresponding bundle receives a similar service event.
+   *
+   * @return the number of misses that were dropped
+   */
+  long droppedCount() {
+    return dropped.sum();
+  }
+
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* don't have access to logger at this stage */
+  })
+  private boolean check(
+      @Nullable Bundle bundle, @Nullable String[] objectClass, ServiceReference<?> sr) {
+    if ((bundle == null) || (objectClass == null)) {
+      return false;
+    }
+    final String name = bundle.getSymbolicName();
+    final List<Object> key = Arrays.asList(name, Arrays.asList(objectClass));
+
+    if (!checked.add(key)) {
+      return false;
+    }
+    final ProtectionDomain domain = backdoor.getDomain0(bundle);
+
+    if (domain == null) { // no domain means all permissions as far as Equinox is concerned
+      return false;
+    }
+    final ServicePermissionInfo info;
+
+    try {
+      info = backdoor.getServicePermissionInfoAndGrant1(name, domain, sr, grant);
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      t.printStackTrace(); // suppress checkstyle:RegexpSingleline|RegexpMultiline
+      checked.remove(key); // make sure we check it again later
+      return false;
+    }
+    if (info.implies()) {
+      return false;
+    } else if (size.incrementAndGet() > capacity) {
+      size.decrementAndGet();
+      dropped.increment();
+      checked.remove(key); // make sure we check it again later
+      return false;
+    }
+    misses.offer(new Miss(name, info));
+    return true;
+  }
+
+  /** Holds a recorded miss. */
+  private static class Miss {
+    private final String bundle;
+    private final ServicePermissionInfo info;
+
+    Miss(String bundle, ServicePermissionInfo info) {
+      this.bundle = bundle;
+      this.info = info;
+    }
+  }
+}
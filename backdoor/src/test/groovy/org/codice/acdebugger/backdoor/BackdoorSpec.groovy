@@ -28,8 +28,11 @@ import org.osgi.framework.BundleReference
 import org.osgi.framework.ServiceEvent
 import org.osgi.framework.ServicePermission
 import org.osgi.framework.ServiceReference
+import org.osgi.framework.ServiceRegistration
 import org.osgi.framework.Version
+import org.osgi.framework.hooks.service.EventListenerHook
 import org.osgi.framework.wiring.BundleWiring
+import org.osgi.service.condpermadmin.ConditionalPermissionAdmin
 import org.osgi.util.tracker.ServiceTracker
 import spock.lang.Shared
 import spock.lang.Specification
@@ -41,6 +44,8 @@ import java.security.Permission
 import java.security.PermissionCollection
 import java.security.ProtectionDomain
 import java.security.cert.Certificate
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 @RestoreSystemProperties
 @Supplemental
@@ -146,6 +151,54 @@ class BackdoorSpec extends Specification {
       1 * tracker.open()
   }
 
+  def "test start() will not register the conditional permission service unless requested"() {
+    when:
+      backdoor.start(context)
+
+    then:
+      1 * context.getProperty(Backdoor.CONDITIONAL_PERMISSIONS_PROPERTY) >> null
+      0 * backdoor.newConditionalPermissionService(*_)
+      0 * context.registerService(*_)
+  }
+
+  def "test start() will revoke leftovers and register the conditional permission service with the lowest ranking when requested"() {
+    given:
+      def service = Mock(ConditionalPermissionService)
+
+    when:
+      backdoor.start(context)
+
+    then:
+      1 * context.getProperty(Backdoor.CONDITIONAL_PERMISSIONS_PROPERTY) >> 'true'
+      1 * backdoor.newConditionalPermissionService(context, _) >> service
+
+    then:
+      1 * service.revokeAll()
+
+    then:
+      1 * context.registerService(PermissionService, service, { it.get('service.ranking') == Integer.MIN_VALUE })
+  }
+
+  def "test stop() will unregister the conditional permission service and revoke what it granted"() {
+    given:
+      def service = Mock(ConditionalPermissionService)
+      def registration = Mock(ServiceRegistration)
+
+      context.getProperty(Backdoor.CONDITIONAL_PERMISSIONS_PROPERTY) >> 'true'
+      backdoor.newConditionalPermissionService(*_) >> service
+      context.registerService(PermissionService, service, _) >> registration
+      backdoor.start(context)
+
+    when:
+      backdoor.stop(context)
+
+    then:
+      1 * registration.unregister()
+
+    then:
+      1 * service.revokeAll()
+  }
+
   def "test stop() will close the tracker and clear the singleton"() {
     given:
       backdoor.start(context)
@@ -160,6 +213,102 @@ class BackdoorSpec extends Specification {
       1 * tracker.close()
   }
 
+  def "test enableServicePermissionRecorder() will register an event listener hook only once"() {
+    given:
+      backdoor.start(context)
+
+    when:
+      backdoor.enableServicePermissionRecorder(true)
+      backdoor.enableServicePermissionRecorder(false)
+
+    then:
+      1 * context.registerService(EventListenerHook, { it instanceof ServicePermissionRecorder }, null) >> Mock(ServiceRegistration)
+  }
+
+  def "test stop() will unregister the service permission recorder"() {
+    given:
+      def registration = Mock(ServiceRegistration)
+
+      context.registerService(*_) >> registration
+      backdoor.start(context)
+      backdoor.enableServicePermissionRecorder(true)
+
+    when:
+      backdoor.stop(context)
+
+    then:
+      1 * registration.unregister()
+      1 * tracker.close()
+  }
+
+  def "test enableHelper() will start a single daemon thread calling helperReady() until stopped"() {
+    given:
+      def ready = new CountDownLatch(2)
+
+      backdoor.helperReady() >> { ready.countDown() }
+      backdoor.start(context)
+
+    when:
+      backdoor.enableHelper()
+      backdoor.enableHelper()
+
+    then:
+      ready.await(5L, TimeUnit.SECONDS)
+
+    and:
+      def helpers = helperThreads()
+
+      helpers.size() == 1
+      helpers[0].daemon
+
+    when:
+      backdoor.stop(context)
+      helpers[0].join(TimeUnit.SECONDS.toMillis(5L))
+
+    then:
+      !helpers[0].alive
+  }
+
+  def "test drainServicePermissionMisses() when the recorder is not enabled"() {
+    expect:
+      backdoor.drainServicePermissionMisses() == '{}'
+  }
+
+  def "test getBundleRegistry() will register a bundle listener only once"() {
+    given:
+      context.getBundles() >> ([] as Bundle[])
+      backdoor.start(context)
+
+    when:
+      def snapshot = backdoor.getBundleRegistry()
+      def snapshot2 = backdoor.getBundleRegistry()
+
+    then:
+      snapshot as List == ['[]']
+      snapshot2 as List == ['[]']
+
+    and:
+      1 * context.addBundleListener({ it instanceof BundleRegistry })
+  }
+
+  def "test getBundleRegistryChanges() when the registry was never retrieved"() {
+    expect:
+      backdoor.getBundleRegistryChanges() as List == ['[]']
+  }
+
+  def "test stop() will remove the bundle listener"() {
+    given:
+      context.getBundles() >> ([] as Bundle[])
+      backdoor.start(context)
+      backdoor.getBundleRegistry()
+
+    when:
+      backdoor.stop(context)
+
+    then:
+      1 * context.removeBundleListener({ it instanceof BundleRegistry })
+  }
+
   @Unroll
   def "test getBundle() with #with_what"() {
     given:
@@ -555,6 +704,9 @@ class BackdoorSpec extends Specification {
       def domain = Mock(ProtectionDomain)
       def permissionService = Mock(PermissionService)
       def servicesArray = names as String[]
+      def granted = namesGranted.collect {
+        "org.osgi.framework.ServicePermission \"$it\", \"get\"".toString()
+      } as Set
       def event = new ServiceEvent(ServiceEvent.REGISTERED, Mock(ServiceReference) {
         getProperty('service.id') >> SERVICE_ID
         getProperty('objectClass') >> servicesArray
@@ -580,12 +732,11 @@ class BackdoorSpec extends Specification {
     and:
       if (namesGranted.isEmpty()) {
         0 * tracker.getService()
-      } else {
-        namesGranted.each {
-          1 * tracker.getService() >> permissionService
-          1 * permissionService.grantPermission('bundle', "org.osgi.framework.ServicePermission \"$it\", \"get\"")
-        }
+      } else { // all granted at once
+        1 * tracker.getService() >> permissionService
+        1 * permissionService.grantPermissions('bundle', granted)
       }
+      0 * permissionService.grantPermission(*_)
 
     where:
       when_what                                                       || grant | names      | serviceImplied | allImplied | namesImplied || namesGranted | json
@@ -620,7 +771,7 @@ class BackdoorSpec extends Specification {
 
     and:
       1 * tracker.getService() >> permissionService
-      1 * permissionService.grantPermission('bundle', "org.osgi.framework.ServicePermission \"$SERVICE_NAME_1\", \"get\"") >> {
+      1 * permissionService.grantPermissions('bundle', { "org.osgi.framework.ServicePermission \"$SERVICE_NAME_1\", \"get\"".toString() in it }) >> {
         throw exception
       }
 
@@ -642,6 +793,75 @@ class BackdoorSpec extends Specification {
       1 * permissionService.grantPermission('bundle', 'permission')
   }
 
+  def "test grantPermission() does nothing when no permission services are available"() {
+    given:
+      backdoor.start(context)
+
+    when:
+      backdoor.grantPermission('bundle', 'permission')
+
+    then:
+      1 * tracker.getService() >> null
+      0 * context.getServiceReference(ConditionalPermissionAdmin)
+      0 * context.getService(_)
+  }
+
+  def "test grantPermissions() grants all permissions at once"() {
+    given:
+      def permissionService = Mock(PermissionService)
+
+      backdoor.start(context)
+
+    when:
+      backdoor.grantPermissions('{"bundle.a":["permission.1","permission.2"],"bundle.b":["permission.3"]}')
+
+    then:
+      1 * tracker.getService() >> permissionService
+      1 * permissionService.grantPermissions(['bundle.a': ['permission.1', 'permission.2'], 'bundle.b': ['permission.3']])
+      0 * permissionService.grantPermission(*_)
+  }
+
+  @Unroll
+  def "test grantPermissions() failing with #exception.class.simpleName"() {
+    given:
+      def permissionService = Mock(PermissionService)
+
+      backdoor.start(context)
+
+    when:
+      backdoor.grantPermissions('{"bundle":["permission"]}')
+
+    then:
+      def e = thrown(Throwable)
+
+      e.is(exception)
+
+    and:
+      1 * tracker.getService() >> permissionService
+      1 * permissionService.grantPermissions(['bundle': ['permission']]) >> {
+        throw exception
+      }
+
+    where:
+      exception << [EXCEPTION, RUNTIME_EXCEPTION, VIRTUAL_MACHINE_ERROR]
+  }
+
+  def "test getSystemProperties() reports the values of all defined properties in order"() {
+    given:
+      System.setProperty('acdebugger.test.b', '/projects/b')
+      System.setProperty('acdebugger.test.a', '/projects/a')
+
+    when:
+      def result = backdoor.getSystemProperties('["acdebugger.test.b","acdebugger.test.undefined","acdebugger.test.a"]')
+
+    then:
+      result == '{"acdebugger.test.b":"/projects/b","acdebugger.test.a":"/projects/a"}'
+
+    cleanup:
+      System.clearProperty('acdebugger.test.b')
+      System.clearProperty('acdebugger.test.a')
+  }
+
   @Unroll
   def "test grantPermission() failing with #exception.class.simpleName"() {
     given:
@@ -732,6 +952,12 @@ class BackdoorSpec extends Specification {
       'has the permission'           || true
       'doesn\'t have the permission' || false
   }
+
+  private static def helperThreads() {
+    Thread.allStackTraces.keySet().findAll {
+      (it.name == Backdoor.HELPER_NAME) && it.alive
+    }
+  }
 }
 
 class GetBundle {
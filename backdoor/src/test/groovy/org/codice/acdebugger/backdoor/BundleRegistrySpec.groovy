@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.backdoor
+
+import org.codice.acdebugger.common.BundleInfo
+import org.codice.acdebugger.common.JsonUtils
+import org.osgi.framework.Bundle
+import org.osgi.framework.BundleContext
+import org.osgi.framework.BundleEvent
+import org.osgi.framework.Version
+import org.osgi.framework.namespace.HostNamespace
+import org.osgi.framework.wiring.BundleWire
+import org.osgi.framework.wiring.BundleWiring
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.security.ProtectionDomain
+
+class BundleRegistrySpec extends Specification {
+  static def INFO = new BundleInfo(1L, 'bundle.a', '1.0.0', 'mvn:a/a/1.0.0', 'file:/a')
+  static def INFO2 = new BundleInfo(2L, 'bundle.b', '2.0.0', 'mvn:b/b/2.0.0', null)
+
+  @Shared
+  def DOMAIN = new ProtectionDomain(null, null)
+  @Shared
+  def CLASSLOADER = new URLClassLoader(new URL[0])
+
+  def loader = new Object()
+  def wiring = Mock(BundleWiring) {
+    getProvidedWires(HostNamespace.HOST_NAMESPACE) >> []
+  }
+  def host = Mock(BundleWiring) {
+    getProvidedWires(HostNamespace.HOST_NAMESPACE) >> [Mock(BundleWire)]
+  }
+  def bundle = Mock(Bundle) {
+    getBundleId() >> 1L
+    getSymbolicName() >> 'bundle.a'
+    getVersion() >> new Version('1.0.0')
+    getLocation() >> 'mvn:a/a/1.0.0'
+    adapt(BundleWiring) >> wiring
+  }
+  def bundle2 = Mock(Bundle) {
+    getBundleId() >> 2L
+    getSymbolicName() >> 'bundle.b'
+    getVersion() >> new Version('2.0.0')
+    getLocation() >> 'mvn:b/b/2.0.0'
+    adapt(BundleWiring) >> host
+  }
+  def context = Mock(BundleContext) {
+    getBundles() >> ([bundle, bundle2] as Bundle[])
+  }
+  def backdoor = Mock(Backdoor) {
+    // bundles are comparable so Spock would consider our mocks equal
+    getDomain0(_) >> { Bundle b -> b.is(bundle) ? DOMAIN : null }
+    getDomainLocation(DOMAIN) >> 'file:/a'
+    get(wiring, 'loader', Object) >> loader
+    get(loader, 'classloader', ClassLoader) >> CLASSLOADER
+  }
+
+  def "test snapshot() reports all installed bundles"() {
+    given:
+      def registry = new BundleRegistry(backdoor, context)
+
+    when:
+      def snapshot = registry.snapshot()
+
+    then:
+      snapshot.length == 1 + 2 * BundleRegistry.MIRRORS_PER_BUNDLE
+      JsonUtils.fromJson(snapshot[0], BundleInfo[]) as List == [INFO, INFO2]
+      snapshot[1].is(bundle)
+      snapshot[2].is(DOMAIN)
+      snapshot[3].is(CLASSLOADER)
+      snapshot[4].is(bundle2)
+      snapshot[5] == null
+      snapshot[6] == null // fragments attached so cannot use its classloader
+  }
+
+  def "test changes() reports bundles that changed and uninstalled ones without mirrors"() {
+    given:
+      def registry = new BundleRegistry(backdoor, context)
+      def uninstalled = Mock(Bundle) {
+        getBundleId() >> 3L
+      }
+
+      registry.snapshot()
+      context.getBundle(2L) >> bundle2
+      context.getBundle(3L) >> null
+
+    when:
+      registry.bundleChanged(new BundleEvent(BundleEvent.UPDATED, bundle2))
+      registry.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, uninstalled))
+      def changes = registry.changes()
+
+    then:
+      registry.changeCount == 2
+      changes.length == 1 + 2 * BundleRegistry.MIRRORS_PER_BUNDLE
+      JsonUtils.fromJson(changes[0], BundleInfo[]) as List == [INFO2, new BundleInfo(3L, null, null, null, null)]
+      changes[1].is(bundle2)
+      changes[4] == null
+      changes[5] == null
+      changes[6] == null
+
+    when:
+      def noChanges = registry.changes()
+
+    then:
+      noChanges as List == ['[]']
+  }
+
+  def "test changes() reports bundles whose classloader was created since they were reported"() {
+    given:
+      def created = null
+      def door = Mock(Backdoor) {
+        getDomain0(_) >> { Bundle b -> b.is(bundle) ? DOMAIN : null }
+        getDomainLocation(DOMAIN) >> 'file:/a'
+        get(wiring, 'loader', Object) >> { created }
+        get(loader, 'classloader', ClassLoader) >> CLASSLOADER
+      }
+      def registry = new BundleRegistry(door, context)
+
+      context.getBundle(1L) >> bundle
+      context.getBundle(2L) >> bundle2
+
+    when:
+      def snapshot = registry.snapshot()
+
+    then:
+      snapshot[3] == null
+
+    when:
+      def noChanges = registry.changes()
+
+    then:
+      noChanges as List == ['[]']
+
+    when:
+      created = loader
+      def changes = registry.changes()
+
+    then:
+      changes.length == 1 + BundleRegistry.MIRRORS_PER_BUNDLE
+      JsonUtils.fromJson(changes[0], BundleInfo[]) as List == [INFO]
+      changes[1].is(bundle)
+      changes[2].is(DOMAIN)
+      changes[3].is(CLASSLOADER)
+
+    when:
+      def noMoreChanges = registry.changes()
+
+    then:
+      noMoreChanges as List == ['[]']
+  }
+
+  def "test changes() stops tracking bundles without classloaders once uninstalled"() {
+    given:
+      def door = Mock(Backdoor) {
+        get(wiring, 'loader', Object) >> null
+      }
+      def registry = new BundleRegistry(door, context)
+
+      registry.snapshot()
+
+    when:
+      def changes = registry.changes()
+
+    then:
+      1 * context.getBundle(1L) >> null
+      changes as List == ['[]']
+
+    when:
+      changes = registry.changes()
+
+    then:
+      0 * context.getBundle(_)
+      changes as List == ['[]']
+  }
+
+  def "test snapshot() clears changes"() {
+    given:
+      def registry = new BundleRegistry(backdoor, context)
+
+      registry.bundleChanged(new BundleEvent(BundleEvent.UPDATED, bundle2))
+
+    when:
+      registry.snapshot()
+
+    then:
+      registry.changes() as List == ['[]']
+  }
+
+  @Unroll
+  def "test bundleChanged() with #type_what event"() {
+    given:
+      def registry = new BundleRegistry(backdoor, context)
+
+    when:
+      registry.bundleChanged(new BundleEvent(type, bundle))
+
+    then:
+      registry.changeCount == 1
+      registry.invalidationCount == invalidations
+      registry.startCount == starts
+
+    where:
+      type_what        || type                    || invalidations | starts
+      'an installed'   || BundleEvent.INSTALLED   || 0             | 0
+      'a resolved'     || BundleEvent.RESOLVED    || 0             | 0
+      'a starting'     || BundleEvent.STARTING    || 0             | 0
+      'a started'      || BundleEvent.STARTED     || 0             | 1
+      'a stopped'      || BundleEvent.STOPPED     || 1             | 0
+      'an updated'     || BundleEvent.UPDATED     || 1             | 0
+      'an unresolved'  || BundleEvent.UNRESOLVED  || 1             | 0
+      'an uninstalled' || BundleEvent.UNINSTALLED || 1             | 0
+  }
+}
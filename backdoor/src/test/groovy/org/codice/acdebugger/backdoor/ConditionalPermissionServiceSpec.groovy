@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.backdoor
+
+import org.codice.acdebugger.common.PropertiesUtil
+import org.osgi.framework.Bundle
+import org.osgi.framework.BundleContext
+import org.osgi.framework.ServiceReference
+import org.osgi.service.condpermadmin.ConditionInfo
+import org.osgi.service.condpermadmin.ConditionalPermissionAdmin
+import org.osgi.service.condpermadmin.ConditionalPermissionInfo
+import org.osgi.service.condpermadmin.ConditionalPermissionUpdate
+import org.osgi.service.permissionadmin.PermissionInfo
+import spock.lang.Shared
+import spock.lang.Specification
+
+class ConditionalPermissionServiceSpec extends Specification {
+  static def BUNDLE_NAME = 'bundle.name'
+  static def LOCATION = 'mvn:group/bundle/1.0'
+  static def LOCATION2 = 'mvn:group/bundle/2.0'
+  static def DOMAIN_LOCATION = 'file:/root/location/here'
+  static def COMPRESSED_DOMAIN_LOCATION = 'file:${ddf.home.perm}location/here'
+  @Shared
+  def EXISTING = Stub(ConditionalPermissionInfo)
+
+  def properties = new PropertiesUtil(['ddf.home.perm': '/root/'] as Properties)
+  def ref = Mock(ServiceReference)
+  def infos = [EXISTING]
+  def update = Mock(ConditionalPermissionUpdate) {
+    getConditionalPermissionInfos() >> infos
+  }
+  def created = [] // arguments used to create new conditional permission infos
+  def admin = Mock(ConditionalPermissionAdmin) {
+    newConditionalPermissionInfo(*_) >> { args ->
+      created << args
+      Stub(ConditionalPermissionInfo)
+    }
+  }
+  def context = Mock(BundleContext) {
+    getServiceReference(ConditionalPermissionAdmin) >> ref
+    getService(ref) >> admin
+    getBundles() >> [
+        Mock(Bundle) {
+          getSymbolicName() >> BUNDLE_NAME
+          getLocation() >> LOCATION
+        },
+        Mock(Bundle) {
+          getSymbolicName() >> 'other.bundle'
+          getLocation() >> 'mvn:group/other/1.0'
+        },
+        Mock(Bundle) {
+          getSymbolicName() >> BUNDLE_NAME
+          getLocation() >> LOCATION2
+        }
+    ]
+  }
+  def service = new ConditionalPermissionService(context, properties)
+
+  def "test isAvailable()"() {
+    expect:
+      service.isAvailable()
+  }
+
+  def "test isAvailable() when the conditional permission admin service is not registered"() {
+    given:
+      def context = Mock(BundleContext)
+
+    expect:
+      !new ConditionalPermissionService(context, properties).isAvailable()
+  }
+
+  def "test grantPermissions() commits all permissions in one update for all bundles with the given name"() {
+    when:
+      service.grantPermissions(BUNDLE_NAME, ['java.io.FilePermission "${ddf.home.perm}etc", "read"', 'java.lang.RuntimePermission "exitVM"'])
+
+    then:
+      1 * admin.newConditionalPermissionUpdate() >> update
+      1 * update.commit() >> true
+      1 * context.ungetService(ref)
+
+    and:
+      infos.size() == 3
+      infos[0].is(EXISTING)
+      created.every { it[0].startsWith(ConditionalPermissionService.NAME_PREFIX) }
+      created.collect { it[0] }.unique().size() == 2
+      created.every { it[3] == ConditionalPermissionInfo.ALLOW }
+      created.collect { it[1] as List } == [
+          [new ConditionInfo('org.osgi.service.condpermadmin.BundleLocationCondition', [LOCATION] as String[])],
+          [new ConditionInfo('org.osgi.service.condpermadmin.BundleLocationCondition', [LOCATION2] as String[])]
+      ]
+      created.every {
+        (it[2] as List) == [new PermissionInfo('java.io.FilePermission', '/root/etc', 'read'), new PermissionInfo('java.lang.RuntimePermission', 'exitVM', null)]
+      }
+  }
+
+  def "test grantPermissions() for multiple domains commits all permissions in one update"() {
+    when:
+      service.grantPermissions([(BUNDLE_NAME): ['java.lang.RuntimePermission "exitVM"'], (COMPRESSED_DOMAIN_LOCATION): ['java.security.AllPermission'], 'some.domain': []])
+
+    then:
+      1 * admin.newConditionalPermissionUpdate() >> update
+      1 * update.commit() >> true
+
+    and:
+      infos.size() == 4
+      created.collect { it[1][0].args[0] } == [LOCATION, LOCATION2, DOMAIN_LOCATION]
+      created[2][2] as List == [new PermissionInfo('java.security.AllPermission', null, null)]
+  }
+
+  def "test grantPermissions() does not commit when there is nothing to grant"() {
+    when:
+      service.grantPermissions(['some.domain': []])
+
+    then:
+      1 * admin.newConditionalPermissionUpdate() >> update
+      0 * update.commit()
+      1 * context.ungetService(ref)
+
+    and:
+      infos == [EXISTING]
+  }
+
+  def "test revokeAll() removes only the entries it added"() {
+    given:
+      def granted = Stub(ConditionalPermissionInfo) {
+        getName() >> ConditionalPermissionService.NAME_PREFIX + '1'
+      }
+      def other = Stub(ConditionalPermissionInfo) {
+        getName() >> 'other'
+      }
+
+      infos.addAll([granted, other])
+
+    when:
+      service.revokeAll()
+
+    then:
+      1 * admin.newConditionalPermissionUpdate() >> update
+      1 * update.commit() >> true
+      1 * context.ungetService(ref)
+
+    and:
+      infos.size() == 2
+      infos[0].is(EXISTING)
+      infos[1].is(other)
+  }
+
+  def "test revokeAll() does not commit when nothing was granted"() {
+    when:
+      service.revokeAll()
+
+    then:
+      1 * admin.newConditionalPermissionUpdate() >> update
+      0 * update.commit()
+
+    and:
+      infos == [EXISTING]
+  }
+
+  def "test grantPermission() retries when the table is modified concurrently"() {
+    when:
+      service.grantPermission(BUNDLE_NAME, 'java.lang.RuntimePermission "exitVM"')
+
+    then:
+      2 * admin.newConditionalPermissionUpdate() >> update
+      2 * update.commit() >>> [false, true]
+  }
+
+  def "test grantPermission() fails after too many concurrent modifications"() {
+    when:
+      service.grantPermission(BUNDLE_NAME, 'java.lang.RuntimePermission "exitVM"')
+
+    then:
+      5 * admin.newConditionalPermissionUpdate() >> update
+      5 * update.commit() >> false
+      1 * context.ungetService(ref)
+
+    and:
+      thrown(IllegalStateException)
+  }
+
+  def "test grantPermission() fails with an invalid permission"() {
+    when:
+      service.grantPermission(BUNDLE_NAME, 'java.lang.RuntimePermission "exitVM')
+
+    then:
+      1 * admin.newConditionalPermissionUpdate() >> update
+      0 * update.commit()
+      1 * context.ungetService(ref)
+
+    and:
+      thrown(IllegalArgumentException)
+  }
+
+  def "test grantPermission() fails when the conditional permission admin service is not available"() {
+    given:
+      def context = Mock(BundleContext)
+
+    when:
+      new ConditionalPermissionService(context, properties).grantPermission(BUNDLE_NAME, 'java.lang.RuntimePermission "exitVM"')
+
+    then:
+      thrown(IllegalStateException)
+  }
+}
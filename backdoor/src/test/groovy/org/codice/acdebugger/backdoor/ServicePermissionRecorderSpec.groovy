@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.backdoor
+
+import org.codice.acdebugger.common.ServicePermissionInfo
+import org.osgi.framework.Bundle
+import org.osgi.framework.BundleContext
+import org.osgi.framework.ServiceEvent
+import org.osgi.framework.ServiceReference
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.security.ProtectionDomain
+
+class ServicePermissionRecorderSpec extends Specification {
+  static def BUNDLE_NAME = 'bundle.name'
+  static def BUNDLE_NAME2 = 'bundle.name2'
+  static def SERVICE_NAMES = ['name1', 'name2'] as String[]
+  static def MISS = new ServicePermissionInfo(['permission.1'] as Set<String>, false, [] as Set<String>)
+  static def HIT = new ServicePermissionInfo(['permission.1'] as Set<String>, true, ['permission.1'] as Set<String>)
+
+  @Shared
+  def DOMAIN = new ProtectionDomain(null, null)
+  @Shared
+  def DOMAIN2 = new ProtectionDomain(null, null)
+
+  def bundle = Mock(Bundle) {
+    getSymbolicName() >> BUNDLE_NAME
+  }
+  def bundle2 = Mock(Bundle) {
+    getSymbolicName() >> BUNDLE_NAME2
+  }
+  def context = Mock(BundleContext) {
+    getBundle() >> bundle
+  }
+  def context2 = Mock(BundleContext) {
+    getBundle() >> bundle2
+  }
+  def reference = Mock(ServiceReference) {
+    getProperty('objectClass') >> SERVICE_NAMES
+  }
+  def event = new ServiceEvent(ServiceEvent.REGISTERED, reference)
+  def backdoor = Mock(Backdoor) {
+    // bundles are comparable so Spock would consider our mocks equal
+    getDomain0(_) >> { Bundle b -> b.is(bundle) ? DOMAIN : DOMAIN2 }
+  }
+
+  @Unroll
+  def "test event() records only misses and notifies when granting is #grant"() {
+    given:
+      def recorder = new ServicePermissionRecorder(backdoor, grant, 10)
+
+    when:
+      recorder.event(event, [(context): [], (context2): []])
+
+    then:
+      1 * backdoor.getServicePermissionInfoAndGrant1(BUNDLE_NAME, DOMAIN, reference, grant) >> MISS
+      1 * backdoor.getServicePermissionInfoAndGrant1(BUNDLE_NAME2, DOMAIN2, reference, grant) >> HIT
+      1 * backdoor.servicePermissionMissesRecorded()
+
+    when:
+      def misses = recorder.drain()
+
+    then:
+      misses == [(BUNDLE_NAME): [MISS]]
+
+    where:
+      grant << [true, false]
+  }
+
+  def "test event() does not notify when nothing was missing"() {
+    given:
+      def recorder = new ServicePermissionRecorder(backdoor, true, 10)
+
+    when:
+      recorder.event(event, [(context): []])
+
+    then:
+      1 * backdoor.getServicePermissionInfoAndGrant1(BUNDLE_NAME, DOMAIN, reference, true) >> HIT
+      0 * backdoor.servicePermissionMissesRecorded()
+
+    expect:
+      recorder.drain().isEmpty()
+  }
+
+  def "test event() only checks a bundle once for given service object classes"() {
+    given:
+      def recorder = new ServicePermissionRecorder(backdoor, true, 10)
+
+    when:
+      recorder.event(event, [(context): []])
+      recorder.event(event, [(context): []])
+
+    then:
+      1 * backdoor.getServicePermissionInfoAndGrant1(BUNDLE_NAME, DOMAIN, reference, true) >> MISS
+      1 * backdoor.servicePermissionMissesRecorded()
+  }
+
+  @Unroll
+  def "test event() does not check bundles with #with_what"() {
+    given:
+      def recorder = new ServicePermissionRecorder(backdoor, true, 10)
+      def ref = Mock(ServiceReference) {
+        getProperty('objectClass') >> object_class
+      }
+      def ctx = Mock(BundleContext) {
+        getBundle() >> ((with_what == 'no bundle') ? null : bundle)
+      }
+
+    when:
+      recorder.event(new ServiceEvent(ServiceEvent.REGISTERED, ref), [(ctx): []])
+
+    then:
+      backdoor.getDomain0(bundle) >> null
+      0 * backdoor.getServicePermissionInfoAndGrant1(*_)
+      0 * backdoor.servicePermissionMissesRecorded()
+
+    where:
+      with_what           || object_class
+      'no bundle'         || SERVICE_NAMES
+      'no domain'         || SERVICE_NAMES
+      'no object classes' || null
+  }
+
+  def "test event() drops misses once the buffer is full and checks them again later"() {
+    given:
+      def recorder = new ServicePermissionRecorder(backdoor, true, 1)
+
+    when:
+      recorder.event(event, [(context): [], (context2): []])
+
+    then:
+      2 * backdoor.getServicePermissionInfoAndGrant1(_, _, reference, true) >> MISS
+      recorder.droppedCount() == 1L
+
+    when:
+      def misses = recorder.drain()
+      recorder.event(event, [(context): [], (context2): []])
+
+    then:
+      misses.size() == 1
+      1 * backdoor.getServicePermissionInfoAndGrant1(_, _, reference, true) >> MISS
+      recorder.drain().size() == 1
+  }
+
+  def "test event() checks again later when failing to check"() {
+    given:
+      def recorder = new ServicePermissionRecorder(backdoor, true, 10)
+
+    when:
+      recorder.event(event, [(context): []])
+
+    then:
+      1 * backdoor.getServicePermissionInfoAndGrant1(BUNDLE_NAME, DOMAIN, reference, true) >> { throw new Exception('testing') }
+      0 * backdoor.servicePermissionMissesRecorded()
+
+    when:
+      recorder.event(event, [(context): []])
+
+    then:
+      1 * backdoor.getServicePermissionInfoAndGrant1(BUNDLE_NAME, DOMAIN, reference, true) >> MISS
+      1 * backdoor.servicePermissionMissesRecorded()
+  }
+}
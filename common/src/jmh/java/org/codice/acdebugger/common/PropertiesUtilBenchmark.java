@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.common;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares compressing locations and file permission names one property at a time with retrieving
+ * memoized results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertiesUtilBenchmark {
+  @Param({
+    "file:/opt/ddf/system/org/codice/ddf/platform/util/1.0.0/util-1.0.0.jar",
+    "/opt/ddf/etc/ws-security/server/encryption.properties",
+    "/opt/solr/server/solr/collection1/core.properties",
+    "mvn:org.codice.ddf/catalog-core-api/2.13.0"
+  })
+  private String string;
+
+  private PropertiesUtil util;
+
+  @Setup
+  public void setup() {
+    final Properties properties = new Properties();
+
+    properties.put("solr.ssl.keystore", "/opt/ddf/etc/keystores/serverKeystore.jks");
+    properties.put("solr.ssl.truststore", "/opt/ddf/etc/keystores/serverTruststore.jks");
+    properties.put("java.io.tmpdir", "/tmp");
+    properties.put("java.home", "/usr/lib/jvm/java-8-openjdk/jre");
+    properties.put("ddf.home.perm", "/opt/ddf/");
+    properties.put("ddf.home", "/opt/ddf");
+    properties.put("solr.home", "/opt/solr/server/solr");
+    properties.put("solr.solr.home", "/opt/solr/server/solr");
+    properties.put("/", "/");
+    this.util = new PropertiesUtil(properties);
+  }
+
+  @Benchmark
+  public String inOrder() {
+    return util.compressInOrder(string);
+  }
+
+  @Benchmark
+  public String memoized() {
+    return util.compress(string);
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.common;
+
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/** Defines a Json object to represent information about an installed bundle. */
+public class BundleInfo {
+  /** The bundle's unique identifier. */
+  private final long id;
+
+  /** The bundle's symbolic name. */
+  @Nullable private final String symbolicName;
+
+  /** The bundle's version as a string. */
+  @Nullable private final String version;
+
+  /** The location identifier used when the bundle was installed. */
+  @Nullable private final String location;
+
+  /** The location from the codebase of the bundle's protection domain as a string. */
+  @Nullable private final String domainLocation;
+
+  public BundleInfo() {
+    this.id = -1L;
+    this.symbolicName = null;
+    this.version = null;
+    this.location = null;
+    this.domainLocation = null;
+  }
+
+  public BundleInfo(
+      long id,
+      @Nullable String symbolicName,
+      @Nullable String version,
+      @Nullable String location,
+      @Nullable String domainLocation) {
+    this.id = id;
+    this.symbolicName = symbolicName;
+    this.version = version;
+    this.location = location;
+    this.domainLocation = domainLocation;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  @Nullable
+  public String getSymbolicName() {
+    return symbolicName;
+  }
+
+  @Nullable
+  public String getVersion() {
+    return version;
+  }
+
+  @Nullable
+  public String getLocation() {
+    return location;
+  }
+
+  @Nullable
+  public String getDomainLocation() {
+    return domainLocation;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, symbolicName, version, location, domainLocation);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj instanceof BundleInfo) {
+      final BundleInfo i = (BundleInfo) obj;
+
+      return (id == i.id)
+          && Objects.equals(symbolicName, i.symbolicName)
+          && Objects.equals(version, i.version)
+          && Objects.equals(location, i.location)
+          && Objects.equals(domainLocation, i.domainLocation);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "BundleInfo[id="
+        + id
+        + ", symbolicName="
+        + symbolicName
+        + ", version="
+        + version
+        + ", location="
+        + location
+        + ", domainLocation="
+        + domainLocation
+        + ']';
+  }
+}
@@ -13,6 +13,7 @@
  */
 package org.codice.acdebugger.common;
 
+import java.lang.reflect.InvocationTargetException;
 import java.security.Permission;
 import javax.annotation.Nullable;
 
@@ -58,6 +59,173 @@ public class PermissionUtil {
     return sb.toString();
   }
 
+  /**
+   * Gets a permission object from a permission string compatible with the policy file format (see
+   * {@link #getPermissionString(String, String, String)}).
+   *
+   * <p><i>Note:</i> The permission class must be accessible from the classloader that loaded this
+   * class.
+   *
+   * @param permission the permission string to convert
+   * @return the corresponding permission or <code>null</code> if the string cannot be parsed or if
+   *     the permission class cannot be found or instantiated
+   */
+  @Nullable
+  public static Permission getPermission(String permission) {
+    final String[] parsed = PermissionUtil.parsePermissionString(permission);
+
+    if (parsed == null) {
+      return null;
+    }
+    try {
+      return PermissionUtil.newPermission(
+          Class.forName(parsed[0], false, PermissionUtil.class.getClassLoader())
+              .asSubclass(Permission.class),
+          parsed[1],
+          parsed[2]);
+    } catch (ClassNotFoundException | ClassCastException | LinkageError e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Permission newPermission(
+      Class<? extends Permission> clazz, @Nullable String name, @Nullable String actions) {
+    // same logic as the JDK's policy file implementation: try with no args, then with only the
+    // name, and finally with both the name and the actions
+    try {
+      if ((name == null) && (actions == null)) {
+        try {
+          return clazz.getConstructor().newInstance();
+        } catch (NoSuchMethodException e) { // continue with the other constructors
+        }
+      }
+      if (actions == null) {
+        try {
+          return clazz.getConstructor(String.class).newInstance(name);
+        } catch (NoSuchMethodException e) { // continue with the other constructor
+        }
+      }
+      return clazz.getConstructor(String.class, String.class).newInstance(name, actions);
+    } catch (NoSuchMethodException
+        | InstantiationException
+        | IllegalAccessException
+        | InvocationTargetException
+        | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses a permission string compatible with the policy file format into its class, name, and
+   * actions.
+   *
+   * @param permission the permission string to parse
+   * @return an array with the permission class, name, and actions (name and actions might be <code>
+   *     null</code>) or <code>null</code> if unable to parse it
+   */
+  @Nullable
+  public static String[] parsePermissionString(String permission) {
+    final String s = permission.trim();
+    final int len = s.length();
+    int i = 0;
+
+    while ((i < len) && !Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    if (i == 0) {
+      return null;
+    }
+    final String[] parsed = new String[] {s.substring(0, i), null, null};
+
+    for (int j = 1; j < parsed.length; j++) {
+      while ((i < len) && Character.isWhitespace(s.charAt(i))) {
+        i++;
+      }
+      if (i == len) {
+        return parsed;
+      } else if ((j == 2) && (s.charAt(i++) != ',')) {
+        return null;
+      }
+      while ((i < len) && Character.isWhitespace(s.charAt(i))) {
+        i++;
+      }
+      if ((i == len) || (s.charAt(i) != '"')) {
+        return null;
+      }
+      final StringBuilder sb = new StringBuilder(len - i);
+
+      i = PermissionUtil.unescape(s, i + 1, sb);
+      if (i == -1) {
+        return null;
+      }
+      parsed[j] = sb.toString();
+    }
+    return (i == len) ? parsed : null;
+  }
+
+  /**
+   * Unescapes a quoted string compatible with the policy file format.
+   *
+   * @param s the string containing the quoted string to unescape
+   * @param start the index right after the opening quote
+   * @param sb the string builder where to append the unescaped characters
+   * @return the index right after the closing quote or <code>-1</code> if there is no closing quote
+   */
+  @SuppressWarnings("squid:S3776" /* simple switch statement */)
+  private static int unescape(String s, int start, StringBuilder sb) {
+    final int len = s.length();
+    int i = start;
+
+    while (i < len) {
+      final char c = s.charAt(i++);
+
+      if (c == '"') {
+        return i;
+      } else if ((c != '\\') || (i == len)) {
+        sb.append(c);
+        continue;
+      }
+      final char e = s.charAt(i++);
+
+      switch (e) {
+        case 'a':
+          sb.append((char) 0x7);
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append((char) 0xc);
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'v':
+          sb.append((char) 0xB);
+          break;
+        default:
+          if ((e >= '0') && (e <= '7')) {
+            int octal = e - '0';
+
+            while ((i < len) && (s.charAt(i) >= '0') && (s.charAt(i) <= '7') && (octal < 0x1000)) {
+              octal = (octal * 8) + (s.charAt(i++) - '0');
+            }
+            sb.append((char) octal);
+          } else {
+            sb.append(e);
+          }
+      }
+    }
+    return -1;
+  }
+
   /**
    * Escape quoted strings for permissions such that it would be compatible would the policy file
    * format.
@@ -13,19 +13,40 @@
  */
 package org.codice.acdebugger.common;
 
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
  * Utility classes for compressing strings based on system property values with special <code>
  * ${property.name}</code> strings.
+ *
+ * <p>Property values are captured when created such that instances are immutable and can be used
+ * concurrently without locking. Compressed strings are memoized.
  */
 public class PropertiesUtil {
   private static final List<String> PROPERTIES =
       Resources.readLines(PropertiesUtil.class, "properties.txt");
 
-  private final Properties systemProperties;
+  /** Maximum number of compressed strings memoized before starting over. */
+  @VisibleForTesting static final int MAX_MEMOIZED = 4096;
+
+  /** Configured properties that have values in the order they are configured. */
+  private final List<String> properties;
+
+  /** Values for the properties in the same order. */
+  private final List<String> values;
+
+  /** Replacement strings for the properties in the same order. */
+  private final List<String> references;
+
+  /** Compressed strings keyed by the strings they were compressed from. */
+  private final Map<String, String> compressed = new ConcurrentHashMap<>();
 
   /**
    * Builds a property utility with the given set of system property mappings.
@@ -33,7 +54,22 @@ public class PropertiesUtil {
    * @param properties the set of property names/values to use when contracting
    */
   public PropertiesUtil(Properties properties) {
-    this.systemProperties = properties;
+    final List<String> names = new ArrayList<>(PropertiesUtil.PROPERTIES.size());
+    final List<String> vals = new ArrayList<>(PropertiesUtil.PROPERTIES.size());
+    final List<String> refs = new ArrayList<>(PropertiesUtil.PROPERTIES.size());
+
+    for (final String property : PropertiesUtil.PROPERTIES) {
+      final String value = properties.getProperty(property);
+
+      if ((value != null) && !value.isEmpty()) {
+        names.add(property);
+        vals.add(value);
+        refs.add("${" + property + "}");
+      }
+    }
+    this.properties = Collections.unmodifiableList(names);
+    this.values = Collections.unmodifiableList(vals);
+    this.references = Collections.unmodifiableList(refs);
   }
 
   /**
@@ -43,17 +79,40 @@ public class PropertiesUtil {
    * @return the corresponding compressed string
    */
   public String compress(String s) {
-    for (final String property : PropertiesUtil.PROPERTIES) {
-      s = replaceWithProperty(s, property);
+    String c = compressed.get(s);
+
+    if (c == null) {
+      c = compressInOrder(s);
+      if (compressed.size() >= PropertiesUtil.MAX_MEMOIZED) {
+        compressed.clear();
+      }
+      compressed.put(s, c);
     }
-    return s;
+    return c;
   }
 
-  private String replaceWithProperty(String s, String property) {
-    final String value = systemProperties.getProperty(property);
+  /**
+   * Expands the specified strings by replacing occurrences of <code>${property.name}</code> for all
+   * configured system properties with their corresponding values. This is the reverse operation of
+   * {@link #compress(String)}.
+   *
+   * @param s the string to expand
+   * @return the corresponding expanded string
+   */
+  public String expand(String s) {
+    if (s.indexOf("${") == -1) {
+      return s;
+    }
+    for (int i = 0; i < properties.size(); i++) {
+      s = s.replace(references.get(i), values.get(i));
+    }
+    return s;
+  }
 
-    if ((value != null) && !value.isEmpty()) {
-      return s.replace(value, "${" + property + "}");
+  @VisibleForTesting
+  String compressInOrder(String s) {
+    for (int i = 0; i < properties.size(); i++) {
+      s = s.replace(values.get(i), references.get(i));
     }
     return s;
   }
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.common
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BundleInfoSpec extends Specification {
+  static def ID = 12L
+  static def NAME = 'some.bundle'
+  static def VERSION = '1.2.3'
+  static def LOCATION = 'mvn:some/bundle/1.2.3'
+  static def DOMAIN_LOCATION = 'file:${karaf.home}/system/some/bundle.jar'
+  static def INFO = new BundleInfo(ID, NAME, VERSION, LOCATION, DOMAIN_LOCATION)
+
+  def "test default constructor"() {
+    when:
+      def info = new BundleInfo()
+
+      info.toString()
+
+    then:
+      info.id == -1L
+      info.symbolicName == null
+      info.version == null
+      info.location == null
+      info.domainLocation == null
+  }
+
+  def "test constructor and getters"() {
+    expect:
+      INFO.id == ID
+      INFO.symbolicName == NAME
+      INFO.version == VERSION
+      INFO.location == LOCATION
+      INFO.domainLocation == DOMAIN_LOCATION
+  }
+
+  def "test json serialization and deserialization"() {
+    when:
+      def json = JsonUtils.toJson([INFO, new BundleInfo(0L, 'system.bundle', VERSION, 'System Bundle', null)])
+
+    then:
+      json == '[{"id":12,"symbolicName":"some.bundle","version":"1.2.3","location":"mvn:some/bundle/1.2.3","domainLocation":"file:${karaf.home}/system/some/bundle.jar"},{"id":0,"symbolicName":"system.bundle","version":"1.2.3","location":"System Bundle","domainLocation":null}]'
+
+    when:
+      def infos = JsonUtils.fromJson(json, BundleInfo[])
+
+    then:
+      infos == [INFO, new BundleInfo(0L, 'system.bundle', VERSION, 'System Bundle', null)] as BundleInfo[]
+  }
+
+  @Unroll
+  def "test equals() and hashCode() when #when_what"() {
+    expect:
+      info1.equals(info2) == result
+      (info1.hashCode() == info2?.hashCode()) == result
+
+    where:
+      when_what                        || info1 | info2                                                           || result
+      'equals'                         || INFO  | new BundleInfo(ID, NAME, VERSION, LOCATION, DOMAIN_LOCATION)    || true
+      'identical'                      || INFO  | INFO                                                            || true
+      'ids are different'              || INFO  | new BundleInfo(1L, NAME, VERSION, LOCATION, DOMAIN_LOCATION)    || false
+      'names are different'            || INFO  | new BundleInfo(ID, 'abc', VERSION, LOCATION, DOMAIN_LOCATION)   || false
+      'versions are different'         || INFO  | new BundleInfo(ID, NAME, '1.0.0', LOCATION, DOMAIN_LOCATION)    || false
+      'locations are different'        || INFO  | new BundleInfo(ID, NAME, VERSION, 'file:/abc', DOMAIN_LOCATION) || false
+      'domain locations are different' || INFO  | new BundleInfo(ID, NAME, VERSION, LOCATION, null)               || false
+      'the other is null'              || INFO  | null                                                            || false
+      'the other is not a BundleInfo'  || INFO  | 'abc'                                                           || false
+  }
+}
@@ -17,6 +17,8 @@ import net.sourceforge.prograde.policyparser.Parser
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.security.AllPermission
+
 class PermissionUtilSpec extends Specification {
   @Unroll
   def "test getPermissionString() when called with #with_what"() {
@@ -54,4 +56,58 @@ class PermissionUtilSpec extends Specification {
       "character \\ in the name and actions"                    || FilePermission     | "path\\"                  | "read\\"                  || "java.io.FilePermission \"path\\\\\", \"read\\\\\""
       "character outside and on the limit of the regular range" || FilePermission     | "path \u0082\u0002\u007f" | "read \u0082\u0002\u007F" || "java.io.FilePermission \"path \\202\\2\\177\", \"read \\202\\2\\177\""
   }
+
+  @Unroll
+  def "test getPermission() when called with #with_what"() {
+    when:
+      def permission = PermissionUtil.getPermission(PermissionUtil.getPermissionString(clazz, name, actions))
+
+    then:
+      permission == result
+
+    where:
+      with_what                          || clazz                     | name                        | actions      || result
+      'a file permission'                || FilePermission.name       | '/path/-'                   | 'read,write' || new FilePermission('/path/-', 'read,write')
+      'a property permission'            || PropertyPermission.name   | 'property'                  | 'read'       || new PropertyPermission('property', 'read')
+      'a runtime permission'             || RuntimePermission.name    | 'exitVM'                    | null         || new RuntimePermission('exitVM')
+      'a socket permission'              || SocketPermission.name     | 'localhost:1234'            | 'connect'    || new SocketPermission('localhost:1234', 'connect')
+      'all permission'                   || AllPermission.name        | '<all permissions>'         | null         || new AllPermission()
+      'escaped characters in the name'   || RuntimePermission.name    | 'C:\\path\t \u0082\n\u0007' | null         || new RuntimePermission('C:\\path\t \u0082\n\u0007')
+      'an unknown class'                 || 'some.unknown.Permission' | 'name'                      | 'read'       || null
+      'a class that is not a permission' || String.name               | 'name'                      | null         || null
+      'invalid actions'                  || FilePermission.name       | '/path'                     | 'bogus'      || null
+  }
+
+  @Unroll
+  def "test getPermission() when parsing #with_what"() {
+    expect:
+      PermissionUtil.getPermission(permission) == result
+
+    where:
+      with_what                 || permission                                       || result
+      'only a class'            || 'java.security.AllPermission'                    || new AllPermission()
+      'extra whitespaces'       || '  java.io.FilePermission   "/path" ,  "read"  ' || new FilePermission('/path', 'read')
+      'an empty string'         || ''                                               || null
+      'a missing opening quote' || 'java.io.FilePermission /path"'                  || null
+      'a missing closing quote' || 'java.io.FilePermission "/path'                  || null
+      'a missing comma'         || 'java.io.FilePermission "/path" "read"'          || null
+      'a missing actions quote' || 'java.io.FilePermission "/path", read'           || null
+      'trailing garbage'        || 'java.io.FilePermission "/path", "read" abc'     || null
+      'an octal escape'         || 'java.lang.RuntimePermission "a\\101b"'          || new RuntimePermission('aAb')
+  }
+
+  @Unroll
+  def "test parsePermissionString() when parsing #with_what"() {
+    expect:
+      PermissionUtil.parsePermissionString(permission) == result as String[]
+
+    where:
+      with_what                 || permission                               || result
+      'only a class'            || 'java.security.AllPermission'            || ['java.security.AllPermission', null, null]
+      'a name'                  || 'java.lang.RuntimePermission "exitVM"'   || ['java.lang.RuntimePermission', 'exitVM', null]
+      'a name and actions'      || 'java.io.FilePermission "/path", "read"' || ['java.io.FilePermission', '/path', 'read']
+      'an escaped name'         || 'java.lang.RuntimePermission "a\\101b"'  || ['java.lang.RuntimePermission', 'aAb', null]
+      'an empty string'         || ''                                       || null
+      'a missing closing quote' || 'java.io.FilePermission "/path'          || null
+  }
 }
@@ -89,4 +89,114 @@ class PropertiesUtilSpec extends Specification {
     then:
       result == '${ddf.home.perm}etc${/}config.cfg'
   }
+
+  def "test compress() honors the configured order when values overlap"() {
+    given:
+      def properties = new Properties()
+
+      properties.put('solr.ssl.keystore', 'bcd')
+      properties.put('solr.ssl.truststore', 'ab')
+      def util = new PropertiesUtil(properties)
+
+    when:
+      def result = util.compress('abcd ab')
+
+    then:
+      result == 'a${solr.ssl.keystore} ${solr.ssl.truststore}'
+  }
+
+  def "test compress() memoizes results"() {
+    given:
+      def properties = new Properties()
+
+      properties.put('ddf.home', '/projects/ddf')
+      def util = new PropertiesUtil(properties)
+
+    when:
+      def result = util.compress('/projects/ddf/etc')
+      def result2 = util.compress('/projects/ddf/etc')
+
+    then:
+      result == '${ddf.home}/etc'
+      result2.is(result)
+  }
+
+  def "test compress() starts over once too many results are memoized"() {
+    given:
+      def properties = new Properties()
+
+      properties.put('ddf.home', '/projects/ddf')
+      def util = new PropertiesUtil(properties)
+
+      (0..<PropertiesUtil.MAX_MEMOIZED).each { util.compress("/projects/ddf/$it") }
+
+    when:
+      def result = util.compress('/projects/ddf/etc')
+
+    then:
+      result == '${ddf.home}/etc'
+      util.compressed.size() == 1
+  }
+
+  def "test compress() is not affected by changes to the properties after creation"() {
+    given:
+      def properties = new Properties()
+
+      properties.put('ddf.home', '/projects/ddf')
+      def util = new PropertiesUtil(properties)
+
+    when:
+      properties.put('ddf.home', '/other/ddf')
+
+    then:
+      util.compress('/projects/ddf/etc') == '${ddf.home}/etc'
+      util.expand('${ddf.home}/etc') == '/projects/ddf/etc'
+  }
+
+  @Unroll
+  def "test expand() with property #property when defined"() {
+    given:
+      def properties = new Properties()
+
+      properties.put(property, 'value')
+      def util = new PropertiesUtil(properties)
+
+    when:
+      def result = util.expand("a \${$property}/\${$property}/\${unknown}")
+
+    then:
+      result == 'a value/value/${unknown}'
+
+    where:
+      property << getClass().getResource('/properties.txt').readLines().findAll {
+        !(it.isEmpty() || it =~ /#.*/)
+      }
+  }
+
+  def "test expand() with properties not defined"() {
+    given:
+      def util = new PropertiesUtil(new Properties())
+
+    when:
+      def result = util.expand('a ${ddf.home}/value')
+
+    then:
+      result == 'a ${ddf.home}/value'
+  }
+
+  def "test expand() reverses compress()"() {
+    given:
+      def properties = new Properties()
+
+      properties.put('ddf.home', '/projects/ddf')
+      properties.put('ddf.home.perm', '/projects/ddf/')
+      properties.put('/', '/')
+      def util = new PropertiesUtil(properties)
+
+    when:
+      def result = util.expand(util.compress('/projects/ddf/etc/config.cfg'))
+
+    then:
+      result == '/projects/ddf/etc/config.cfg'
+  }
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+// NOSONAR - squid:S1191 - Using the Java debugger API
+package com.sun.jdi; // NOSONAR
+
+import com.sun.tools.jdi.CommandBatchImpl; // NOSONAR
+import java.util.List;
+
+/**
+ * Batches independent read-only requests to the attached VM. Each request is sent as soon as it is
+ * added to the batch without waiting for the reply to the previous one such that the network
+ * latency of all requests in the batch overlaps instead of being paid once per request. Replies are
+ * then retrieved all at once via {@link #collect()} or individually via {@link Reply#get()}.
+ *
+ * <p>Requests that cannot be pipelined (e.g. when not using the default JDI implementation) are
+ * performed immediately when added to the batch.
+ */
+public interface CommandBatch {
+  /**
+   * Creates a new command batch for a given virtual machine.
+   *
+   * @param vm the virtual machine to send requests to
+   * @return a new command batch for the given virtual machine
+   */
+  public static CommandBatch of(VirtualMachine vm) {
+    return new CommandBatchImpl(vm);
+  }
+
+  /**
+   * Requests the value of <code>this</code> for a given stack frame.
+   *
+   * @param frame the stack frame for which to get the <code>this</code> object
+   * @return the reply which will provide the corresponding object or <code>null</code> if the
+   *     frame's method is static or native
+   * @throws InvalidStackFrameException if the stack frame has become invalid. Once the frame's
+   *     thread is resumed, the stack frame is no longer valid
+   * @see StackFrame#thisObject()
+   */
+  public Reply<ObjectReference> thisObject(StackFrame frame);
+
+  /**
+   * Requests the class object for a given reference type.
+   *
+   * @param type the reference type for which to get the class object
+   * @return the reply which will provide the corresponding class object
+   * @see ReferenceType#classObject()
+   */
+  public Reply<ClassObjectReference> classObject(ReferenceType type);
+
+  /**
+   * Requests the superclass of a given class.
+   *
+   * @param type the class for which to get the superclass
+   * @return the reply which will provide the corresponding superclass or <code>null</code> if the
+   *     given class is <code>java.lang.Object</code>
+   * @see ClassType#superclass()
+   */
+  public Reply<ClassType> superclass(ClassType type);
+
+  /**
+   * Requests the values of multiple fields of a given object.
+   *
+   * @param obj the object for which to get field values
+   * @param fields the fields to get the values of
+   * @return the reply which will provide the values of the specified fields in the same order
+   * @see ObjectReference#getValues(List)
+   */
+  public Reply<List<Value>> getValues(ObjectReference obj, List<Field> fields);
+
+  /**
+   * Requests the value of a given component of an array.
+   *
+   * @param array the array for which to get a component value
+   * @param index the index of the component to get
+   * @return the reply which will provide the value of the specified component
+   * @see ArrayReference#getValue(int)
+   */
+  public Reply<Value> getValue(ArrayReference array, int index);
+
+  /**
+   * Waits for replies to all requests sent so far to be received. Errors reported by the attached
+   * VM for a given request are thrown back when retrieving the corresponding reply.
+   */
+  public void collect();
+
+  /**
+   * Provides access to the reply of a request added to a batch.
+   *
+   * @param <T> the type of result provided by the reply
+   */
+  public interface Reply<T> {
+    /**
+     * Gets the result from this reply, waiting for it to be received if it hasn't been already.
+     *
+     * @return the corresponding result
+     * @throws ObjectCollectedException if the mirror the request was about has been garbage
+     *     collected
+     * @throws VMDisconnectedException if the attached VM was disconnected
+     */
+    public T get();
+  }
+}
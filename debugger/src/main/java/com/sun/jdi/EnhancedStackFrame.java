@@ -51,4 +51,47 @@ public interface EnhancedStackFrame extends StackFrame {
    * @throws InvalidSlotException if the specified slot is invalid
    */
   public Value getValue(int slot, String signature);
+
+  /**
+   * Gets the {@link Value}s of multiple local variables in this frame in a single request to the
+   * attached VM. The variables must be valid for this frame's method.
+   *
+   * @param slots the slot numbers of the local variables to be accessed
+   * @param signatures the signatures of the variables to be accessed
+   * @return the {@link Value}s of the specified variables in the same order
+   * @throws IllegalArgumentException if <code>slots</code> and <code>signatures</code> are not of
+   *     the same length
+   * @throws InvalidStackFrameException if this stack frame has become invalid. Once the frame's
+   *     thread is resumed, the stack frame is no longer valid
+   * @throws InvalidSlotException if one of the specified slots is invalid
+   */
+  public Value[] getValues(int[] slots, String[] signatures);
+
+  /**
+   * Gets the <code>this</code> object, the argument values and the {@link Value}s of multiple local
+   * variables in this frame by pipelining the corresponding requests to the attached VM. The
+   * variables must be valid for this frame's method.
+   *
+   * @param slots the slot numbers of the local variables to be accessed
+   * @param signatures the signatures of the variables to be accessed
+   * @return the corresponding frame values
+   * @throws IllegalArgumentException if <code>slots</code> and <code>signatures</code> are not of
+   *     the same length
+   * @throws InvalidStackFrameException if this stack frame has become invalid. Once the frame's
+   *     thread is resumed, the stack frame is no longer valid
+   * @throws InvalidSlotException if one of the specified slots is invalid
+   */
+  public FrameValues getFrameValues(int[] slots, String[] signatures);
+
+  /**
+   * Gets the <code>this</code> object, the argument values and the {@link Value}s of visible local
+   * variables in this frame by pipelining the corresponding requests to the attached VM.
+   *
+   * @param variables the local variables to be accessed
+   * @return the corresponding frame values
+   * @throws IllegalArgumentException if one of the variables is not valid for this frame's method
+   * @throws InvalidStackFrameException if this stack frame has become invalid. Once the frame's
+   *     thread is resumed, the stack frame is no longer valid
+   */
+  public FrameValues getFrameValues(LocalVariable... variables);
 }
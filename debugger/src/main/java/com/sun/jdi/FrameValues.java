@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+// NOSONAR - squid:S1191 - Using the Java debugger API
+package com.sun.jdi; // NOSONAR
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the <code>this</code> object, the argument values, and the values of selected local
+ * variables retrieved together from a given stack frame.
+ */
+public class FrameValues {
+  private final ObjectReference thisObject;
+  private final List<Value> arguments;
+  private final List<Value> values;
+
+  /**
+   * Creates new frame values.
+   *
+   * @param thisObject the <code>this</code> object for the frame or <code>null</code> if the
+   *     frame's method is static or native
+   * @param arguments the values of all arguments in the frame
+   * @param values the values of the requested local variables in the order they were requested
+   */
+  public FrameValues(ObjectReference thisObject, List<Value> arguments, List<Value> values) {
+    this.thisObject = thisObject;
+    this.arguments = Collections.unmodifiableList(arguments);
+    this.values = Collections.unmodifiableList(values);
+  }
+
+  /**
+   * Gets the value of <code>this</code> for the frame.
+   *
+   * @return the corresponding object or <code>null</code> if the frame's method is static or native
+   * @see StackFrame#thisObject()
+   */
+  public ObjectReference thisObject() {
+    return thisObject;
+  }
+
+  /**
+   * Gets the values of all arguments in the frame.
+   *
+   * @return the values of all arguments in the frame
+   * @see StackFrame#getArgumentValues()
+   */
+  public List<Value> getArgumentValues() {
+    return arguments;
+  }
+
+  /**
+   * Gets the value of one of the requested local variables.
+   *
+   * @param index the index of the local variable in the order they were requested
+   * @return the value of the corresponding local variable
+   * @throws IndexOutOfBoundsException if <code>index</code> does not correspond to a requested
+   *     local variable
+   */
+  public Value getValue(int index) {
+    return values.get(index);
+  }
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+// NOSONAR - squid:S1191 - Using the Java debugger API
+package com.sun.tools.jdi; // NOSONAR
+
+import com.sun.jdi.ArrayReference; // NOSONAR
+import com.sun.jdi.ClassObjectReference; // NOSONAR
+import com.sun.jdi.ClassType; // NOSONAR
+import com.sun.jdi.CommandBatch; // NOSONAR
+import com.sun.jdi.Field; // NOSONAR
+import com.sun.jdi.InternalException; // NOSONAR
+import com.sun.jdi.ObjectReference; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
+import com.sun.jdi.StackFrame; // NOSONAR
+import com.sun.jdi.Value; // NOSONAR
+import com.sun.jdi.VirtualMachine; // NOSONAR
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the {@link CommandBatch} interface which splits each request into its {@code
+ * enqueueCommand()} and {@code waitForReply()} parts.
+ */
+public class CommandBatchImpl implements CommandBatch {
+  private static final java.lang.reflect.Field CLASS_OBJECT_FIELD =
+      CommandBatchImpl.getDeclaredField(ReferenceTypeImpl.class, "classObject");
+
+  private static final java.lang.reflect.Field SUPERCLASS_FIELD =
+      CommandBatchImpl.getDeclaredField(ClassTypeImpl.class, "superclass");
+
+  private static final java.lang.reflect.Field CACHED_SUPERCLASS_FIELD =
+      CommandBatchImpl.getDeclaredField(ClassTypeImpl.class, "cachedSuperclass");
+
+  private final VirtualMachineImpl vm;
+
+  private final List<ReplyImpl<?>> pending = new ArrayList<>();
+
+  /**
+   * Creates a new command batch.
+   *
+   * @param vm the virtual machine to send requests to
+   */
+  public CommandBatchImpl(VirtualMachine vm) {
+    // requests to any other implementation are performed right away
+    this.vm = (vm instanceof VirtualMachineImpl) ? (VirtualMachineImpl) vm : null;
+  }
+
+  // the logic here is modeled after StackFrameImpl.thisObject()
+  @Override
+  public Reply<ObjectReference> thisObject(StackFrame frame) {
+    if ((vm == null) || !(frame instanceof StackFrameImpl)) {
+      return ReplyImpl.of(frame::thisObject);
+    }
+    final StackFrameImpl impl = (StackFrameImpl) frame;
+    final MethodImpl method = (MethodImpl) impl.location().method();
+
+    if (method.isStatic() || method.isNative()) {
+      return ReplyImpl.of(() -> null);
+    }
+    final ThreadReferenceImpl thread = (ThreadReferenceImpl) impl.thread();
+    final long id = EnhancedStackFrameImpl.getId(impl);
+
+    /* protect against defunct frame id */
+    synchronized (vm.state()) {
+      impl.validateStackFrame();
+      return enqueue(
+          JDWP.StackFrame.ThisObject.enqueueCommand(vm, thread, id),
+          ps -> JDWP.StackFrame.ThisObject.waitForReply(vm, ps).objectThis,
+          EnhancedStackFrameImpl::toJDIException);
+    }
+  }
+
+  // the logic here is modeled after ReferenceTypeImpl.classObject()
+  @Override
+  public Reply<ClassObjectReference> classObject(ReferenceType type) {
+    if ((vm == null) || !(type instanceof ReferenceTypeImpl)) {
+      return ReplyImpl.of(type::classObject);
+    }
+    final ReferenceTypeImpl impl = (ReferenceTypeImpl) type;
+    final ClassObjectReference cached =
+        (ClassObjectReference) CommandBatchImpl.get(CommandBatchImpl.CLASS_OBJECT_FIELD, impl);
+
+    if (cached != null) {
+      return ReplyImpl.of(() -> cached);
+    }
+    return enqueue(
+        JDWP.ReferenceType.ClassObject.enqueueCommand(vm, impl),
+        ps -> {
+          final ClassObjectReference classObject =
+              JDWP.ReferenceType.ClassObject.waitForReply(vm, ps).classObject;
+
+          synchronized (impl) { // cache it back the same way classObject() would
+            if (CommandBatchImpl.get(CommandBatchImpl.CLASS_OBJECT_FIELD, impl) == null) {
+              CommandBatchImpl.set(CommandBatchImpl.CLASS_OBJECT_FIELD, impl, classObject);
+            }
+          }
+          return classObject;
+        },
+        JDWPException::toJDIException);
+  }
+
+  // the logic here is modeled after ClassTypeImpl.superclass()
+  @Override
+  public Reply<ClassType> superclass(ClassType type) {
+    if ((vm == null) || !(type instanceof ClassTypeImpl)) {
+      return ReplyImpl.of(type::superclass);
+    }
+    final ClassTypeImpl impl = (ClassTypeImpl) type;
+
+    if ((Boolean) CommandBatchImpl.get(CommandBatchImpl.CACHED_SUPERCLASS_FIELD, impl)) {
+      return ReplyImpl.of(impl::superclass);
+    }
+    return enqueue(
+        JDWP.ClassType.Superclass.enqueueCommand(vm, impl),
+        ps -> {
+          final ClassType superclass = JDWP.ClassType.Superclass.waitForReply(vm, ps).superclass;
+
+          // cache it back the same way superclass() would
+          CommandBatchImpl.set(CommandBatchImpl.SUPERCLASS_FIELD, impl, superclass);
+          CommandBatchImpl.set(CommandBatchImpl.CACHED_SUPERCLASS_FIELD, impl, true);
+          return superclass;
+        },
+        JDWPException::toJDIException);
+  }
+
+  // the logic here is modeled after ObjectReferenceImpl.getValues()
+  @Override
+  public Reply<List<Value>> getValues(ObjectReference obj, List<Field> fields) {
+    if ((vm == null)
+        || !(obj instanceof ObjectReferenceImpl)
+        || fields.stream().anyMatch(f -> !(f instanceof FieldImpl) || f.isStatic())) {
+      return ReplyImpl.of(
+          () -> {
+            final Map<Field, Value> values = obj.getValues(fields);
+
+            return fields.stream().map(values::get).collect(Collectors.toList());
+          });
+    }
+    final JDWP.ObjectReference.GetValues.Field[] queryFields =
+        new JDWP.ObjectReference.GetValues.Field[fields.size()];
+
+    for (int i = 0; i < queryFields.length; i++) {
+      queryFields[i] = new JDWP.ObjectReference.GetValues.Field(((FieldImpl) fields.get(i)).ref());
+    }
+    return enqueue(
+        JDWP.ObjectReference.GetValues.enqueueCommand(vm, (ObjectReferenceImpl) obj, queryFields),
+        ps -> {
+          final ValueImpl[] values = JDWP.ObjectReference.GetValues.waitForReply(vm, ps).values;
+
+          if (values.length != queryFields.length) {
+            throw new InternalException("Wrong number of values returned from target VM");
+          }
+          return Arrays.asList(values);
+        },
+        JDWPException::toJDIException);
+  }
+
+  // the logic here is modeled after ArrayReferenceImpl.getValue()
+  @Override
+  public Reply<Value> getValue(ArrayReference array, int index) {
+    if ((vm == null) || !(array instanceof ArrayReferenceImpl)) {
+      return ReplyImpl.of(() -> array.getValue(index));
+    }
+    if (index < 0) {
+      throw new IndexOutOfBoundsException("Invalid array index: " + index);
+    }
+    return enqueue(
+        JDWP.ArrayReference.GetValues.enqueueCommand(vm, (ArrayReferenceImpl) array, index, 1),
+        ps -> {
+          final List<?> values = JDWP.ArrayReference.GetValues.waitForReply(vm, ps).values;
+
+          if (values.size() != 1) {
+            throw new InternalException("Wrong number of values returned from target VM");
+          }
+          return (Value) values.get(0);
+        },
+        e -> {
+          if (e.errorCode() == JDWP.Error.INVALID_INDEX) {
+            return new IndexOutOfBoundsException("Invalid array index: " + index);
+          }
+          return e.toJDIException();
+        });
+  }
+
+  @Override
+  public void collect() {
+    final List<ReplyImpl<?>> replies;
+
+    synchronized (pending) {
+      replies = new ArrayList<>(pending);
+      pending.clear();
+    }
+    replies.forEach(ReplyImpl::receive);
+  }
+
+  private <T> Reply<T> enqueue(
+      PacketStream ps, Receiver<T> receiver, Function<JDWPException, RuntimeException> mapper) {
+    final ReplyImpl<T> reply = new ReplyImpl<>(ps, receiver, mapper);
+
+    synchronized (pending) {
+      pending.add(reply);
+    }
+    return reply;
+  }
+
+  @SuppressWarnings("squid:S00112" /* Not meant to be catchable so keeping it generic */)
+  private static java.lang.reflect.Field getDeclaredField(Class<?> clazz, String name) {
+    try {
+      final java.lang.reflect.Field field = clazz.getDeclaredField(name);
+
+      field.setAccessible(true);
+      return field;
+    } catch (Exception e) {
+      throw new Error(e); // NOSONAR - Not meant to be catchable so keeping it generic
+    }
+  }
+
+  @SuppressWarnings("squid:S00112" /* Not meant to be catchable so keeping it generic */)
+  private static Object get(java.lang.reflect.Field field, Object obj) {
+    try {
+      return field.get(obj);
+    } catch (Exception e) {
+      throw new Error(e);
+    }
+  }
+
+  @SuppressWarnings("squid:S00112" /* Not meant to be catchable so keeping it generic */)
+  private static void set(java.lang.reflect.Field field, Object obj, Object value) {
+    try {
+      field.set(obj, value);
+    } catch (Exception e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Functional interface for waiting on and decoding the reply to a request.
+   *
+   * @param <T> the type of result decoded from the reply
+   */
+  @FunctionalInterface
+  private interface Receiver<T> {
+    T receive(PacketStream ps) throws JDWPException;
+  }
+
+  /**
+   * Reply implementation which waits for and decodes the reply the first time it is accessed.
+   *
+   * @param <T> the type of result provided by the reply
+   */
+  private static class ReplyImpl<T> implements Reply<T> {
+    private final PacketStream ps;
+
+    private final Receiver<T> receiver;
+
+    private final Function<JDWPException, RuntimeException> mapper;
+
+    private boolean received = false;
+
+    private T result = null;
+
+    private RuntimeException error = null;
+
+    ReplyImpl(
+        PacketStream ps, Receiver<T> receiver, Function<JDWPException, RuntimeException> mapper) {
+      this.ps = ps;
+      this.receiver = receiver;
+      this.mapper = mapper;
+    }
+
+    static <T> ReplyImpl<T> of(Supplier<T> supplier) {
+      final ReplyImpl<T> reply = new ReplyImpl<>(null, ps -> supplier.get(), null);
+
+      reply.receive();
+      return reply;
+    }
+
+    synchronized void receive() {
+      if (!received) {
+        try {
+          this.result = receiver.receive(ps);
+        } catch (JDWPException e) {
+          this.error = mapper.apply(e);
+        } catch (RuntimeException e) {
+          this.error = e;
+        }
+        this.received = true;
+      }
+    }
+
+    @Override
+    public synchronized T get() {
+      receive();
+      if (error != null) {
+        throw error;
+      }
+      return result;
+    }
+  }
+}
@@ -15,13 +15,18 @@
 package com.sun.tools.jdi; // NOSONAR
 
 import com.sun.jdi.EnhancedStackFrame; // NOSONAR
+import com.sun.jdi.FrameValues; // NOSONAR
 import com.sun.jdi.InternalException;
 import com.sun.jdi.InvalidSlotException;
 import com.sun.jdi.InvalidStackFrameException; // NOSONAR
+import com.sun.jdi.LocalVariable; // NOSONAR
 import com.sun.jdi.Location; // NOSONAR
+import com.sun.jdi.ObjectReference; // NOSONAR
 import com.sun.jdi.Value; // NOSONAR
 import com.sun.jdi.VirtualMachine; // NOSONAR
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
 
 /** Implementation of the {@Link EnhancedStackFrame} interface. */
 @SuppressWarnings("squid:S2160" /* only designed to add methods; super.equals() is still valid */)
@@ -62,46 +67,150 @@ public class EnhancedStackFrameImpl extends StackFrameImpl implements EnhancedSt
     this.id = id;
   }
 
-  // the logic here is modeled after StackFrameImpl.getValues()
   @Override
   public Value getValue(int slot, String signature) {
+    return getValues(new int[] {slot}, new String[] {signature})[0];
+  }
+
+  // the logic here is modeled after StackFrameImpl.getValues()
+  @Override
+  public Value[] getValues(int[] slots, String[] signatures) {
     validateStackFrame();
-    final JDWP.StackFrame.GetValues.SlotInfo[] slots =
-        new JDWP.StackFrame.GetValues.SlotInfo[] {
-          new JDWP.StackFrame.GetValues.SlotInfo(slot, (byte) signature.charAt(0))
-        };
+    final JDWP.StackFrame.GetValues.SlotInfo[] infos =
+        EnhancedStackFrameImpl.slotInfos(
+            new JDWP.StackFrame.GetValues.SlotInfo[0], slots, signatures);
     final PacketStream ps;
 
     /* protect against defunct frame id */
     synchronized (vm.state()) {
       validateStackFrame();
-      ps = JDWP.StackFrame.GetValues.enqueueCommand(vm, thread, id, slots);
+      ps = JDWP.StackFrame.GetValues.enqueueCommand(vm, thread, id, infos);
     }
     /* actually get it, now that order is guaranteed */
-    final ValueImpl[] values;
+    try {
+      return EnhancedStackFrameImpl.checkCount(
+          JDWP.StackFrame.GetValues.waitForReply(vm, ps).values, infos.length);
+    } catch (JDWPException exc) {
+      throw EnhancedStackFrameImpl.toJDIException(exc);
+    }
+  }
+
+  // the logic here is modeled after StackFrameImpl.thisObject() and
+  // StackFrameImpl.getArgumentValues()
+  @Override
+  public FrameValues getFrameValues(int[] slots, String[] signatures) {
+    validateStackFrame();
+    final MethodImpl method = (MethodImpl) location().method();
+    final List<String> argSigs = method.argumentSignatures();
+    final int count = argSigs.size();
+    final JDWP.StackFrame.GetValues.SlotInfo[] args = new JDWP.StackFrame.GetValues.SlotInfo[count];
+    int slot = method.isStatic() ? 0 : 1;
+
+    for (int i = 0; i < count; i++) {
+      final char sigChar = argSigs.get(i).charAt(0);
+
+      args[i] = new JDWP.StackFrame.GetValues.SlotInfo(slot++, (byte) sigChar);
+      if ((sigChar == 'J') || (sigChar == 'D')) {
+        slot++;
+      }
+    }
+    final JDWP.StackFrame.GetValues.SlotInfo[] infos =
+        EnhancedStackFrameImpl.slotInfos(args, slots, signatures);
+    final boolean hasThis = !method.isStatic() && !method.isNative();
+    PacketStream thisPs = null;
+    final PacketStream valuesPs;
 
+    /* protect against defunct frame id and send both commands before waiting for any replies */
+    synchronized (vm.state()) {
+      validateStackFrame();
+      if (hasThis) {
+        thisPs = JDWP.StackFrame.ThisObject.enqueueCommand(vm, thread, id);
+      }
+      valuesPs = JDWP.StackFrame.GetValues.enqueueCommand(vm, thread, id, infos);
+    }
+    /* actually get them, now that order is guaranteed; making sure to consume both replies */
+    JDWPException error = null;
+    ObjectReference thisObject = null;
+    ValueImpl[] values = null;
+
+    if (thisPs != null) {
+      try {
+        thisObject = JDWP.StackFrame.ThisObject.waitForReply(vm, thisPs).objectThis;
+      } catch (JDWPException exc) {
+        error = exc;
+      }
+    }
     try {
-      values = JDWP.StackFrame.GetValues.waitForReply(vm, ps).values;
+      values = JDWP.StackFrame.GetValues.waitForReply(vm, valuesPs).values;
     } catch (JDWPException exc) {
-      switch (exc.errorCode()) {
-        case JDWP.Error.INVALID_FRAMEID:
-        case JDWP.Error.THREAD_NOT_SUSPENDED:
-        case JDWP.Error.INVALID_THREAD:
-          throw new InvalidStackFrameException();
-        case JDWP.Error.INVALID_SLOT:
-          throw new InvalidSlotException();
-        default:
-          throw exc.toJDIException();
+      if (error == null) {
+        error = exc;
+      }
+    }
+    if (error != null) {
+      throw EnhancedStackFrameImpl.toJDIException(error);
+    }
+    final List<Value> list = Arrays.asList(EnhancedStackFrameImpl.checkCount(values, infos.length));
+
+    return new FrameValues(thisObject, list.subList(0, count), list.subList(count, infos.length));
+  }
+
+  @Override
+  public FrameValues getFrameValues(LocalVariable... variables) {
+    validateStackFrame();
+    final int[] slots = new int[variables.length];
+    final String[] signatures = new String[variables.length];
+
+    for (int i = 0; i < variables.length; i++) {
+      final LocalVariableImpl variable = (LocalVariableImpl) variables[i];
+
+      if (!variable.isVisible(this)) {
+        throw new IllegalArgumentException(
+            variable.name() + " is not valid at this frame location");
       }
+      slots[i] = variable.slot();
+      signatures[i] = variable.signature();
     }
-    if (values.length != 1) {
+    return getFrameValues(slots, signatures);
+  }
+
+  private static JDWP.StackFrame.GetValues.SlotInfo[] slotInfos(
+      JDWP.StackFrame.GetValues.SlotInfo[] prefix, int[] slots, String[] signatures) {
+    if (slots.length != signatures.length) {
+      throw new IllegalArgumentException("mismatched slots and signatures");
+    }
+    final JDWP.StackFrame.GetValues.SlotInfo[] infos =
+        Arrays.copyOf(prefix, prefix.length + slots.length);
+
+    for (int i = 0; i < slots.length; i++) {
+      infos[prefix.length + i] =
+          new JDWP.StackFrame.GetValues.SlotInfo(slots[i], (byte) signatures[i].charAt(0));
+    }
+    return infos;
+  }
+
+  private static Value[] checkCount(ValueImpl[] values, int count) {
+    if (values.length != count) {
       throw new InternalException("Wrong number of values returned from target VM");
     }
-    return values[0];
+    return values;
+  }
+
+  static RuntimeException toJDIException(JDWPException exc) {
+    switch (exc.errorCode()) {
+      case JDWP.Error.INVALID_FRAMEID:
+      case JDWP.Error.THREAD_NOT_SUSPENDED:
+      case JDWP.Error.INVALID_THREAD:
+        return new InvalidStackFrameException();
+      case JDWP.Error.INVALID_SLOT:
+        return new InvalidSlotException();
+      default:
+        return exc.toJDIException();
+    }
   }
 
   @SuppressWarnings("squid:S00112" /* Not meant to be catchable so keeping it generic */)
-  private static long getId(StackFrameImpl frame) {
+  static long getId(StackFrameImpl frame) {
     try {
       return EnhancedStackFrameImpl.ID_FIELD.getLong(frame);
     } catch (Exception e) {
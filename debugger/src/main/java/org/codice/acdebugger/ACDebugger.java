@@ -14,14 +14,20 @@
 package org.codice.acdebugger;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import org.codice.acdebugger.breakpoints.AccessControlContextCheckProcessor;
 import org.codice.acdebugger.breakpoints.BackdoorProcessor;
 import org.codice.acdebugger.cli.PropertiesVersionProvider;
 import org.codice.acdebugger.impl.Debugger;
+import org.codice.acdebugger.impl.KnowledgeBase;
+import org.codice.acdebugger.impl.PolicyFile;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
@@ -92,6 +98,35 @@ public class ACDebugger implements Callable<Void> {
   )
   private boolean service = false;
 
+  @Option(
+    names = {"--adaptive-service"},
+    description =
+        "Only applies when the '--service' option is used. Indicates to stop monitoring service events "
+            + "once no new failures have been detected in a while and to resume monitoring them "
+            + "periodically or as soon as a bundle is started."
+  )
+  private boolean adaptiveService = false;
+
+  @Option(
+    names = {"--preresolve"},
+    description =
+        "Indicates to resolve the bundles and domains of classes in the background as they are loaded "
+            + "in the VM such that security failures can be analyzed without having to query the VM "
+            + "for most of them. Only applies when the backdoor bundle is installed."
+  )
+  private boolean preResolve = false;
+
+  @Option(
+    names = {"--max-overhead"},
+    paramLabel = "<percent>",
+    description =
+        "Specifies the maximum percentage of a thread's time the debugger can keep it suspended. When "
+            + "exceeded, the debugger first stops monitoring service events (see --service) and then only "
+            + "analyzes security failures it has not already seen until it is back within budget, "
+            + "reporting every such change. (default: ${DEFAULT-VALUE} for no limit)"
+  )
+  private double maxOverhead = 0.0D;
+
   @Option(
     names = {"-t", "--transport"},
     description =
@@ -142,6 +177,32 @@ public class ACDebugger implements Callable<Void> {
   )
   private boolean osgi = true;
 
+  @Option(
+    names = {"--policy"},
+    paramLabel = "<file>",
+    description =
+        "Specifies a policy file (in the standard Java or pro-grade format) from which to load the "
+            + "permissions already granted to bundles or code bases such that security failures they "
+            + "cover are recognized without having to check with the VM. This option can be repeated."
+  )
+  private List<File> policies = new ArrayList<>();
+
+  @Option(
+    names = {"--store"},
+    paramLabel = "<file>",
+    description =
+        "Specifies a file where to persist the permissions granted and the security failures reported "
+            + "such that they survive reconnections and restarts. Permissions already stored are "
+            + "preloaded when attaching and failures already reported are not reported again."
+  )
+  private File store = null;
+
+  /** Knowledge base loaded at startup from the file specified with the '--store' option. */
+  private KnowledgeBase knowledge = null;
+
+  /** Policy files loaded at startup from the files specified with the '--policy' option. */
+  private List<PolicyFile> policyFiles = new ArrayList<>();
+
   @Override
   @SuppressWarnings("squid:S106" /* this is a console application */)
   public Void call() throws Exception {
@@ -161,6 +222,11 @@ public class ACDebugger implements Callable<Void> {
       debugger.setFailing(failing);
       debugger.setMonitoringService(service);
       debugger.setDoPrivilegedBlocks(!admin);
+      debugger.setAdaptiveServiceMonitoring(adaptiveService);
+      debugger.setPreResolvingDomains(preResolve);
+      debugger.setMaximumOverhead(maxOverhead);
+      policyFiles.forEach(debugger::addPolicy);
+      debugger.setKnowledgeBase(knowledge);
 
       // registering breakpoints
       debugger.add(new BackdoorProcessor());
@@ -246,6 +312,16 @@ public class ACDebugger implements Callable<Void> {
     return new Debugger(transport, host, port);
   }
 
+  @VisibleForTesting
+  KnowledgeBase newKnowledgeBase(File file) throws IOException {
+    return new KnowledgeBase(file);
+  }
+
+  @VisibleForTesting
+  PolicyFile newPolicyFile(File file) throws IOException {
+    return new PolicyFile(file);
+  }
+
   @SuppressWarnings("squid:S106" /* this is a console application */)
   private void init() {
     if (reconnect && !continuous) {
@@ -254,10 +330,39 @@ public class ACDebugger implements Callable<Void> {
               + "--reconnect can only be specified if --continuous is also specified");
       System.exit(2);
     }
+    if ((maxOverhead < 0.0D) || (maxOverhead > 100.0D)) {
+      System.err.println(ACDebugger.PREFIX + "--max-overhead must be between 0 and 100");
+      System.exit(2);
+    }
     if (osgi) {
       System.out.println(ACDebugger.PREFIX + "OSGi Debugging");
     } else {
       System.out.println(ACDebugger.PREFIX + "Non-OSGi Debugging");
     }
+    for (final File file : policies) {
+      try {
+        final PolicyFile policy = newPolicyFile(file);
+
+        policyFiles.add(policy);
+        System.out.println(
+            ACDebugger.PREFIX
+                + "Loaded "
+                + policy.getPermissions(osgi).size()
+                + " granted domain(s) from: "
+                + file);
+      } catch (IOException e) {
+        System.err.println(ACDebugger.PREFIX + "Unable to load policy file " + file + ": " + e);
+        System.exit(2);
+      }
+    }
+    if (store != null) {
+      try {
+        this.knowledge = newKnowledgeBase(store);
+        System.out.println(ACDebugger.PREFIX + "Using knowledge base: " + store);
+      } catch (IOException e) {
+        System.err.println(ACDebugger.PREFIX + "Unable to load knowledge base " + store + ": " + e);
+        System.exit(2);
+      }
+    }
   }
 }
@@ -21,9 +21,9 @@ import com.sun.jdi.ObjectReference; // NOSONAR
 import com.sun.jdi.ReferenceType; // NOSONAR
 import com.sun.jdi.StackFrame; // NOSONAR
 import com.sun.jdi.Value; // NOSONAR
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
+import org.codice.acdebugger.common.BundleInfo;
+import org.codice.acdebugger.impl.BundleIndex;
 
 /** Provides bundle utility functionality. */
 public class BundleUtil implements LocationUtil {
@@ -35,6 +35,8 @@ public class BundleUtil implements LocationUtil {
 
   private final Debug debug;
 
+  private final EquinoxUtil equinox;
+
   /**
    * Creates a new bundle utility instance.
    *
@@ -42,6 +44,7 @@ public class BundleUtil implements LocationUtil {
    */
   BundleUtil(Debug debug) {
     this.debug = debug;
+    this.equinox = new EquinoxUtil(debug);
   }
 
   @Nullable
@@ -70,19 +73,36 @@ public class BundleUtil implements LocationUtil {
     if (obj == null) {
       return null;
     }
-    final Map<Object, String> cache =
-        debug.computeIfAbsent(BundleUtil.BUNDLE_INFO_CACHE, ConcurrentHashMap::new);
+    final MirrorCache<Object, String> cache =
+        debug.computeIfAbsent(
+            BundleUtil.BUNDLE_INFO_CACHE, () -> new MirrorCache<>(BundleUtil.BUNDLE_INFO_CACHE));
     final String bundle = get0(debug.reflection(), obj, cache);
 
     return (bundle != BundleUtil.NULL_BUNDLE) ? bundle : null; // identity check here
   }
 
+  @Nullable
+  private String getFromIndex(ObjectReference obj, MirrorCache<Object, String> cache) {
+    final BundleIndex index = debug.get(BundleIndex.KEY);
+
+    if (index == null) { // not preloaded
+      return null;
+    }
+    final BundleInfo info = index.get(debug, obj);
+    final String bundle = (info != null) ? info.getSymbolicName() : null;
+
+    if (bundle != null) {
+      cache.put(obj, bundle);
+    }
+    return bundle;
+  }
+
   @Nullable
   @SuppressWarnings({
     "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
     "squid:S1148" /* this is a console application */
   })
-  private String getFromBackdoor(Object obj, Map<Object, String> cache) {
+  private String getFromBackdoor(Object obj, MirrorCache<Object, String> cache) {
     try {
       String bundle = debug.backdoor().getBundle(debug, obj);
 
@@ -118,7 +138,8 @@ public class BundleUtil implements LocationUtil {
   @SuppressWarnings({
     "squid:S3776", /* Recursive logic and simple enough to not warrant decomposing more */
   })
-  private String get0(ReflectionUtil reflection, @Nullable Object obj, Map<Object, String> cache) {
+  private String get0(
+      ReflectionUtil reflection, @Nullable Object obj, MirrorCache<Object, String> cache) {
     // NOTE: The logic here should be kept in sync with the logic in
     // org.codice.acdebugger.backdoor.Backdoor
     if (obj == null) {
@@ -137,13 +158,23 @@ public class BundleUtil implements LocationUtil {
     } else if (!(obj instanceof ObjectReference)) {
       return null;
     }
-    bundle = getFromBackdoor(obj, cache); // first try via the backdoor
+    bundle = getFromIndex((ObjectReference) obj, cache); // first try the preloaded bundles
+    if (bundle != null) {
+      return bundle;
+    }
+    bundle = getFromBackdoor(obj, cache); // then try via the backdoor
     if (bundle != null) {
       return bundle;
     } else if (obj instanceof ClassObjectReference) {
       return getFromAssociatedProtectionDomain(reflection, (ClassObjectReference) obj, cache);
     }
     final ObjectReference ref = (ObjectReference) obj;
+
+    bundle = equinox.get(reflection, ref); // then try walking Equinox's internal fields directly
+    if (bundle != null) {
+      cache.put(obj, bundle);
+      return bundle;
+    }
     final ReferenceType type = ref.referenceType();
 
     if (reflection.isAssignableFrom("Lorg/osgi/framework/Bundle;", type)) {
@@ -264,7 +295,7 @@ public class BundleUtil implements LocationUtil {
   }
 
   private String getFromAssociatedProtectionDomain(
-      ReflectionUtil reflection, ClassObjectReference clazz, Map<Object, String> cache) {
+      ReflectionUtil reflection, ClassObjectReference clazz, MirrorCache<Object, String> cache) {
     // getProtectionDomain0() is private in class Class and avoids the security manager check which
     // would create a recursion which we don't want to handle here. In addition, it returns a fake
     // domain if none is associated with the class instead of null as we prefer
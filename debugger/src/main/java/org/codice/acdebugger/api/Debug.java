@@ -15,9 +15,15 @@ package org.codice.acdebugger.api;
 
 // NOSONAR - squid:S1191 - Using the Java debugger API
 
+import com.sun.jdi.ClassObjectReference; // NOSONAR
+import com.sun.jdi.CommandBatch; // NOSONAR
+import com.sun.jdi.EnhancedStackFrame; // NOSONAR
+import com.sun.jdi.FrameValues; // NOSONAR
 import com.sun.jdi.IncompatibleThreadStateException; // NOSONAR
+import com.sun.jdi.LocalVariable; // NOSONAR
 import com.sun.jdi.Location; // NOSONAR
 import com.sun.jdi.ObjectReference; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
 import com.sun.jdi.StackFrame; // NOSONAR
 import com.sun.jdi.ThreadReference; // NOSONAR
 import com.sun.jdi.VirtualMachine; // NOSONAR
@@ -25,11 +31,16 @@ import com.sun.jdi.event.Event; // NOSONAR
 import com.sun.jdi.event.LocatableEvent; // NOSONAR
 import com.sun.jdi.request.EventRequestManager; // NOSONAR
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.codice.acdebugger.impl.Backdoor;
 import org.codice.acdebugger.impl.DebugContext;
+import org.codice.acdebugger.impl.GrantCoalescer;
+import org.codice.acdebugger.impl.ServiceCheckSampler;
 import org.codice.acdebugger.impl.SystemProperties;
 
 /** This class keeps information about the current debugging session/callback. */
@@ -177,6 +188,37 @@ public abstract class Debug {
     return event;
   }
 
+  /**
+   * Gets the <code>this</code> object, the argument values, and the values of selected local
+   * variables from the top frame of the current thread associated with this debug instance in a
+   * single pipelined exchange with the attached VM.
+   *
+   * @param slots the slot numbers of the local variables to be accessed
+   * @param signatures the signatures of the local variables to be accessed
+   * @return the corresponding frame values
+   * @throws IllegalStateException if currently not associated with a thread
+   * @throws IncompatibleThreadStateException if the thread is not suspended in the target VM
+   */
+  public FrameValues frameValues(int[] slots, String[] signatures)
+      throws IncompatibleThreadStateException {
+    return EnhancedStackFrame.of(thread().frame(0)).getFrameValues(slots, signatures);
+  }
+
+  /**
+   * Gets the <code>this</code> object, the argument values, and the values of visible local
+   * variables from the top frame of the current thread associated with this debug instance in a
+   * single pipelined exchange with the attached VM.
+   *
+   * @param variables the local variables to be accessed
+   * @return the corresponding frame values
+   * @throws IllegalStateException if currently not associated with a thread
+   * @throws IncompatibleThreadStateException if the thread is not suspended in the target VM
+   */
+  public FrameValues frameValues(LocalVariable... variables)
+      throws IncompatibleThreadStateException {
+    return EnhancedStackFrame.of(thread().frame(0)).getFrameValues(variables);
+  }
+
   /**
    * Gets stack information about the current thread associated with this debug session,
    *
@@ -188,17 +230,31 @@ public abstract class Debug {
   public List<StackFrameInformation> threadStack() throws IncompatibleThreadStateException {
     final ThreadReference thread = thread();
     final LocationUtil locations = locations();
-    final List<StackFrameInformation> stack = new ArrayList<>(thread.frameCount());
-
-    // don't cache the set of stack as it will change every time we invoke()
-    // something using the thread
-    for (int i = 0; i < thread.frameCount(); i++) {
-      final StackFrame frame = thread.frame(i);
-      final Location location = frame.location(); // cache before we invoke anything on the thread
-      final ObjectReference thisObject = frame.thisObject(); // cache before getting the location
-      final String domain = locations.get(frame);
+    // don't cache the set of stack as it will change every time we invoke() something using the
+    // thread; so start by pipelining requests for everything we need from all frames before we
+    // resolve any domains
+    final List<StackFrame> frames = thread.frames();
+    final CommandBatch batch = CommandBatch.of(virtualMachine());
+    final List<Location> locs = new ArrayList<>(frames.size());
+    final List<CommandBatch.Reply<ObjectReference>> thisObjects = new ArrayList<>(frames.size());
+    final Map<ReferenceType, CommandBatch.Reply<ClassObjectReference>> classObjects =
+        new HashMap<>();
+
+    for (final StackFrame frame : frames) {
+      final Location location = frame.location();
+
+      locs.add(location);
+      thisObjects.add(batch.thisObject(frame));
+      classObjects.computeIfAbsent(location.declaringType(), batch::classObject);
+    }
+    batch.collect();
+    final List<StackFrameInformation> stack = new ArrayList<>(frames.size());
+
+    for (int i = 0; i < locs.size(); i++) {
+      final Location location = locs.get(i);
+      final String domain = locations.get(classObjects.get(location.declaringType()).get());
       final StackFrameInformation currentFrame =
-          new StackFrameInformation(domain, location, thisObject);
+          new StackFrameInformation(domain, location, thisObjects.get(i).get());
 
       stack.add(currentFrame);
     }
@@ -244,6 +300,14 @@ public abstract class Debug {
     context.put(key, obj);
   }
 
+  /**
+   * Invalidates all information cached about mirrors from the attached VM (e.g. following a bundle
+   * being uninstalled, updated or stopped).
+   */
+  public void invalidateMirrorCaches() {
+    context.invalidateMirrorCaches();
+  }
+
   /**
    * Checks if we are debugging an OSGi system.
    *
@@ -336,6 +400,50 @@ public abstract class Debug {
     context.record(failure);
   }
 
+  /**
+   * Analyzes a security failure unless an identical one is already being analyzed concurrently in
+   * which case the verdict reached by that analysis is shared.
+   *
+   * @param fingerprint a key identifying identical security failures
+   * @param analyzer the analyzer to call if no identical failure is being analyzed
+   * @return the verdict reached by the analysis
+   * @throws Exception if the analysis failed
+   */
+  @SuppressWarnings("squid:S00112" /* Forced to by the Java debugger API */)
+  public boolean coalesceFailure(Object fingerprint, Callable<Boolean> analyzer) throws Exception {
+    return context.inflightFailures().execute(fingerprint, analyzer);
+  }
+
+  /**
+   * Checks if the debugger is currently only analyzing security failures that were not already seen
+   * for a given permission and domain in order to reduce its overhead on the attached VM.
+   *
+   * @return <code>true</code> if only novel security failures should be analyzed; <code>false
+   *     </code> if all should be
+   */
+  public boolean isAnalyzingNovelFailuresOnly() {
+    return context.governor().isAnalyzingNovelFailuresOnly();
+  }
+
+  /**
+   * Accesses the sampler used to pause service event permission checks when they no longer detect
+   * new failures.
+   *
+   * @return the service event permission check sampler
+   */
+  public ServiceCheckSampler serviceCheckSampler() {
+    return context.serviceCheckSampler();
+  }
+
+  /**
+   * Accesses the coalescer used to grant permissions in the attached VM in batches.
+   *
+   * @return the coalescer for permissions to be granted in the attached VM
+   */
+  public GrantCoalescer grantCoalescer() {
+    return context.grantCoalescer();
+  }
+
   DebugContext context() {
     return context;
   }
@@ -24,11 +24,11 @@ import com.sun.jdi.StackFrame; // NOSONAR
 import com.sun.jdi.Value; // NOSONAR
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
+import org.codice.acdebugger.common.BundleInfo;
 import org.codice.acdebugger.common.DomainInfo;
+import org.codice.acdebugger.impl.BundleIndex;
 
 /** Provides domain utility functionality. */
 public class DomainUtil implements LocationUtil {
@@ -74,8 +74,10 @@ public class DomainUtil implements LocationUtil {
     if (obj == null) {
       return null;
     }
-    final Map<Object, String> cache =
-        debug.computeIfAbsent(DomainUtil.DOMAIN_LOCATION_CACHE, ConcurrentHashMap::new);
+    final MirrorCache<Object, String> cache =
+        debug.computeIfAbsent(
+            DomainUtil.DOMAIN_LOCATION_CACHE,
+            () -> new MirrorCache<>(DomainUtil.DOMAIN_LOCATION_CACHE));
     final String location = get0(debug.reflection(), obj, cache);
 
     return (location != DomainUtil.NULL_DOMAIN) ? location : null; // identity check here
@@ -99,8 +101,10 @@ public class DomainUtil implements LocationUtil {
       ObjectReference permission,
       Set<String> permissionInfos,
       int firstDomainWithoutPermission) {
-    final Map<Object, String> cache =
-        debug.computeIfAbsent(DomainUtil.DOMAIN_LOCATION_CACHE, ConcurrentHashMap::new);
+    final MirrorCache<Object, String> cache =
+        debug.computeIfAbsent(
+            DomainUtil.DOMAIN_LOCATION_CACHE,
+            () -> new MirrorCache<>(DomainUtil.DOMAIN_LOCATION_CACHE));
     List<DomainInfo> info = getFromBackdoor(domainsRef, domains, permission, cache);
 
     if (info != null) {
@@ -133,12 +137,28 @@ public class DomainUtil implements LocationUtil {
     return info;
   }
 
+  @Nullable
+  private String getFromIndex(ObjectReference obj, MirrorCache<Object, String> cache) {
+    final BundleIndex index = debug.get(BundleIndex.KEY);
+
+    if (index == null) { // not preloaded
+      return null;
+    }
+    final BundleInfo info = index.get(debug, obj);
+    final String location = (info != null) ? info.getDomainLocation() : null;
+
+    if (location != null) {
+      cache.put(obj, location);
+    }
+    return location;
+  }
+
   @SuppressWarnings({
     "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
     "squid:S1148" /* this is a console application */
   })
   @Nullable
-  private String getFromBackdoor(ObjectReference obj, Map<Object, String> cache) {
+  private String getFromBackdoor(ObjectReference obj, MirrorCache<Object, String> cache) {
     try {
       String location = debug.backdoor().getDomain(debug, obj);
 
@@ -166,7 +186,7 @@ public class DomainUtil implements LocationUtil {
       ArrayReference domainsRef,
       List<Value> domains,
       ObjectReference permission,
-      Map<Object, String> cache) {
+      MirrorCache<Object, String> cache) {
     try {
       final List<DomainInfo> info = debug.backdoor().getDomainInfo(debug, domainsRef, permission);
 
@@ -187,7 +207,8 @@ public class DomainUtil implements LocationUtil {
   }
 
   @Nullable
-  private String get0(ReflectionUtil reflection, @Nullable Object obj, Map<Object, String> cache) {
+  private String get0(
+      ReflectionUtil reflection, @Nullable Object obj, MirrorCache<Object, String> cache) {
     if (obj == null) {
       return null;
     }
@@ -203,6 +224,10 @@ public class DomainUtil implements LocationUtil {
     } else if (!(obj instanceof ObjectReference)) {
       return null;
     }
+    location = getFromIndex((ObjectReference) obj, cache); // first try the preloaded bundles
+    if (location != null) {
+      return location;
+    }
     location = getFromBackdoor((ObjectReference) obj, cache);
     if (location != null) {
       return location;
@@ -230,7 +255,7 @@ public class DomainUtil implements LocationUtil {
 
   @Nullable
   private String getFromAssociatedProtectionDomain(
-      ReflectionUtil reflection, ClassObjectReference clazz, Map<Object, String> cache) {
+      ReflectionUtil reflection, ClassObjectReference clazz, MirrorCache<Object, String> cache) {
     // getProtectionDomain0() is private in class Class and avoids the security manager check which
     // would create a recursion which we don't want to handle here. In addition, it returns a fake
     // domain if none is associated with the class instead of null as we prefer
@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.api;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.sun.jdi.ArrayReference; // NOSONAR
+import com.sun.jdi.BooleanValue; // NOSONAR
+import com.sun.jdi.Field; // NOSONAR
+import com.sun.jdi.IntegerValue; // NOSONAR
+import com.sun.jdi.ObjectReference; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
+import com.sun.jdi.StringReference; // NOSONAR
+import com.sun.jdi.Value; // NOSONAR
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Provides Equinox specific bundle utility functionality.
+ *
+ * <p>This class resolves bundle names by walking Equinox's internal fields directly instead of
+ * invoking methods in the attached VM. All fields required from a given object are retrieved in a
+ * single request. The expected layout is verified the first time a given Equinox class is
+ * encountered (i.e. once per framework version) and remembered. Whenever the layout does not match
+ * what is expected, <code>null</code> is returned such that callers can fall back to the generic
+ * logic.
+ */
+class EquinoxUtil {
+  /** Internal key where verified layouts for specific reference types are cached. */
+  private static final String LAYOUT_CACHE = "debug.equinox.layout.cache";
+
+  @VisibleForTesting
+  static final String EQUINOX_CLASSLOADER_SIGNATURE =
+      "Lorg/eclipse/osgi/internal/loader/EquinoxClassLoader;";
+
+  @VisibleForTesting
+  static final String GENERATION_PROTECTION_DOMAIN_SIGNATURE =
+      "Lorg/eclipse/osgi/internal/loader/ModuleClassLoader$GenerationProtectionDomain;";
+
+  @VisibleForTesting
+  static final String BUNDLE_PERMISSIONS_SIGNATURE =
+      "Lorg/eclipse/osgi/internal/permadmin/BundlePermissions;";
+
+  @VisibleForTesting
+  static final String EQUINOX_BUNDLE_SIGNATURE =
+      "Lorg/eclipse/osgi/internal/framework/EquinoxBundle;";
+
+  @VisibleForTesting
+  static final String MODULE_WIRING_SIGNATURE = "Lorg/eclipse/osgi/container/ModuleWiring;";
+
+  @VisibleForTesting
+  static final String MODULE_REVISION_SIGNATURE = "Lorg/eclipse/osgi/container/ModuleRevision;";
+
+  @VisibleForTesting static final String ARRAY_LIST_SIGNATURE = "Ljava/util/ArrayList;";
+
+  private static final String GENERATION_SIGNATURE =
+      "Lorg/eclipse/osgi/storage/BundleInfo$Generation;";
+
+  private static final String GENERATION = "generation";
+  private static final String PERMISSIONS = "permissions";
+  private static final String REVISION = "revision";
+  private static final String REVISIONS = "revisions";
+  private static final String BUNDLE = "bundle";
+  private static final String MODULE = "module";
+  private static final String SYMBOLIC_NAME = "symbolicName";
+  private static final String UNINSTALLED = "uninstalled";
+  private static final String UNINSTALLED_CURRENT = "uninstalledCurrent";
+  private static final String ELEMENT_DATA = "elementData";
+  private static final String SIZE = "size";
+
+  /** Fields (and their signatures) expected from an Equinox classloader. */
+  private static final Map<String, String> CLASSLOADER_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.GENERATION, EquinoxUtil.GENERATION_SIGNATURE);
+
+  /** Fields (and their signatures) expected from an Equinox generation protection domain. */
+  private static final Map<String, String> PROTECTION_DOMAIN_LAYOUT =
+      ImmutableMap.of(
+          EquinoxUtil.PERMISSIONS,
+          "Ljava/security/PermissionCollection;",
+          EquinoxUtil.GENERATION,
+          EquinoxUtil.GENERATION_SIGNATURE);
+
+  /** Fields (and their signatures) expected from an Equinox generation. */
+  private static final Map<String, String> GENERATION_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.REVISION, EquinoxUtil.MODULE_REVISION_SIGNATURE);
+
+  /** Fields (and their signatures) expected from an Equinox module wiring. */
+  private static final Map<String, String> MODULE_WIRING_LAYOUT = EquinoxUtil.GENERATION_LAYOUT;
+
+  /** Fields (and their signatures) expected from Equinox bundle permissions. */
+  private static final Map<String, String> BUNDLE_PERMISSIONS_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.BUNDLE, "Lorg/osgi/framework/Bundle;");
+
+  /** Fields (and their signatures) expected from an Equinox bundle. */
+  private static final Map<String, String> BUNDLE_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.MODULE, "Lorg/eclipse/osgi/container/Module;");
+
+  /** Fields (and their signatures) expected from an Equinox module. */
+  private static final Map<String, String> MODULE_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.REVISIONS, "Lorg/eclipse/osgi/container/ModuleRevisions;");
+
+  /** Fields (and their signatures) expected from Equinox module revisions. */
+  private static final Map<String, String> MODULE_REVISIONS_LAYOUT =
+      ImmutableMap.of(
+          EquinoxUtil.REVISIONS,
+          "Ljava/util/List;",
+          EquinoxUtil.UNINSTALLED,
+          "Z",
+          EquinoxUtil.UNINSTALLED_CURRENT,
+          EquinoxUtil.MODULE_REVISION_SIGNATURE);
+
+  /** Fields (and their signatures) expected from an Equinox module revision. */
+  private static final Map<String, String> MODULE_REVISION_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.SYMBOLIC_NAME, "Ljava/lang/String;");
+
+  /** Fields (and their signatures) expected from an array list. */
+  private static final Map<String, String> ARRAY_LIST_LAYOUT =
+      ImmutableMap.of(EquinoxUtil.ELEMENT_DATA, "[Ljava/lang/Object;", EquinoxUtil.SIZE, "I");
+
+  /** Constant used in the layout cache when a given type doesn't match the expected layout. */
+  @VisibleForTesting static final Map<String, Field> UNSUPPORTED_LAYOUT = Collections.emptyMap();
+
+  private final Debug debug;
+
+  /**
+   * Creates a new Equinox utility instance.
+   *
+   * @param debug the current debug session
+   */
+  EquinoxUtil(Debug debug) {
+    this.debug = debug;
+  }
+
+  /**
+   * Gets the bundle symbolic name for the given object by walking Equinox's internal fields. The
+   * object can be a bundle, bundle permissions, a generation protection domain, a module wiring, a
+   * module revision, or an Equinox classloader.
+   *
+   * @param reflection the reflection utility
+   * @param obj the object for which to find the corresponding bundle
+   * @return the corresponding bundle symbolic name or <code>null</code> if the object is not an
+   *     Equinox object or if its layout doesn't match what is expected in which case the generic
+   *     logic should be used
+   */
+  @Nullable
+  @SuppressWarnings("squid:S3776" /* simple enough to not warrant decomposing more */)
+  String get(ReflectionUtil reflection, @Nullable ObjectReference obj) {
+    if (obj == null) {
+      return null;
+    }
+    final ReferenceType type = obj.referenceType();
+
+    if (reflection.isAssignableFrom(EquinoxUtil.EQUINOX_CLASSLOADER_SIGNATURE, type)) {
+      final Map<String, Value> values = getValues(obj, EquinoxUtil.CLASSLOADER_LAYOUT);
+
+      return (values != null)
+          ? getFromGeneration((ObjectReference) values.get(EquinoxUtil.GENERATION))
+          : null;
+    } else if (reflection.isAssignableFrom(
+        EquinoxUtil.GENERATION_PROTECTION_DOMAIN_SIGNATURE, type)) {
+      final Map<String, Value> values = getValues(obj, EquinoxUtil.PROTECTION_DOMAIN_LAYOUT);
+
+      if (values == null) {
+        return null;
+      }
+      // the bundle permissions must be checked first because otherwise in the case of a fragment,
+      // we would end up referencing the bundle host and not the bundle fragment
+      final Value permissions = values.get(EquinoxUtil.PERMISSIONS);
+
+      if (reflection.isInstance(EquinoxUtil.BUNDLE_PERMISSIONS_SIGNATURE, permissions)) {
+        return getFromBundlePermissions((ObjectReference) permissions);
+      }
+      return getFromGeneration((ObjectReference) values.get(EquinoxUtil.GENERATION));
+    } else if (reflection.isAssignableFrom(EquinoxUtil.BUNDLE_PERMISSIONS_SIGNATURE, type)) {
+      return getFromBundlePermissions(obj);
+    } else if (reflection.isAssignableFrom(EquinoxUtil.EQUINOX_BUNDLE_SIGNATURE, type)) {
+      return getFromBundle(obj);
+    } else if (reflection.isAssignableFrom(EquinoxUtil.MODULE_WIRING_SIGNATURE, type)) {
+      final Map<String, Value> values = getValues(obj, EquinoxUtil.MODULE_WIRING_LAYOUT);
+
+      return (values != null)
+          ? getFromRevision((ObjectReference) values.get(EquinoxUtil.REVISION))
+          : null;
+    } else if (reflection.isAssignableFrom(EquinoxUtil.MODULE_REVISION_SIGNATURE, type)) {
+      return getFromRevision(obj);
+    }
+    return null;
+  }
+
+  @Nullable
+  private String getFromGeneration(@Nullable ObjectReference generation) {
+    final Map<String, Value> values = getValues(generation, EquinoxUtil.GENERATION_LAYOUT);
+
+    return (values != null)
+        ? getFromRevision((ObjectReference) values.get(EquinoxUtil.REVISION))
+        : null;
+  }
+
+  @Nullable
+  private String getFromBundlePermissions(@Nullable ObjectReference permissions) {
+    final Map<String, Value> values = getValues(permissions, EquinoxUtil.BUNDLE_PERMISSIONS_LAYOUT);
+
+    return (values != null)
+        ? getFromBundle((ObjectReference) values.get(EquinoxUtil.BUNDLE))
+        : null;
+  }
+
+  @Nullable
+  private String getFromBundle(@Nullable ObjectReference bundle) {
+    final Map<String, Value> values = getValues(bundle, EquinoxUtil.BUNDLE_LAYOUT);
+
+    if (values == null) {
+      return null;
+    }
+    final Map<String, Value> moduleValues =
+        getValues((ObjectReference) values.get(EquinoxUtil.MODULE), EquinoxUtil.MODULE_LAYOUT);
+
+    return (moduleValues != null)
+        ? getFromRevisions((ObjectReference) moduleValues.get(EquinoxUtil.REVISIONS))
+        : null;
+  }
+
+  @Nullable
+  private String getFromRevisions(@Nullable ObjectReference revisions) {
+    // mimics ModuleRevisions.getCurrentRevision()
+    final Map<String, Value> values = getValues(revisions, EquinoxUtil.MODULE_REVISIONS_LAYOUT);
+
+    if (values == null) {
+      return null;
+    }
+    final Value uninstalled = values.get(EquinoxUtil.UNINSTALLED);
+
+    if ((uninstalled instanceof BooleanValue) && ((BooleanValue) uninstalled).value()) {
+      return getFromRevision((ObjectReference) values.get(EquinoxUtil.UNINSTALLED_CURRENT));
+    }
+    final ObjectReference list = (ObjectReference) values.get(EquinoxUtil.REVISIONS);
+
+    if ((list == null)
+        || !EquinoxUtil.ARRAY_LIST_SIGNATURE.equals(list.referenceType().signature())) {
+      return null; // unexpected list implementation so let the generic logic handle it
+    }
+    final Map<String, Value> listValues = getValues(list, EquinoxUtil.ARRAY_LIST_LAYOUT);
+
+    if (listValues == null) {
+      return null;
+    }
+    final Value size = listValues.get(EquinoxUtil.SIZE);
+    final Value elements = listValues.get(EquinoxUtil.ELEMENT_DATA);
+
+    if (!(size instanceof IntegerValue)
+        || (((IntegerValue) size).value() <= 0)
+        || !(elements instanceof ArrayReference)) {
+      return null;
+    }
+    final Value current = ((ArrayReference) elements).getValue(0);
+
+    return (current instanceof ObjectReference) ? getFromRevision((ObjectReference) current) : null;
+  }
+
+  @Nullable
+  private String getFromRevision(@Nullable ObjectReference revision) {
+    final Map<String, Value> values = getValues(revision, EquinoxUtil.MODULE_REVISION_LAYOUT);
+
+    if (values == null) {
+      return null;
+    }
+    final Value name = values.get(EquinoxUtil.SYMBOLIC_NAME);
+
+    return (name instanceof StringReference) ? ((StringReference) name).value() : null;
+  }
+
+  /**
+   * Retrieves all the values for the fields defined in the given layout from the specified object
+   * in a single request.
+   *
+   * @param obj the object from which to retrieve field values
+   * @param layout the expected layout (field names and corresponding signatures)
+   * @return a map of field names to their corresponding values or <code>null</code> if <code>obj
+   *     </code> is <code>null</code> or if its layout doesn't match the expected one
+   */
+  @Nullable
+  private Map<String, Value> getValues(@Nullable ObjectReference obj, Map<String, String> layout) {
+    if (obj == null) {
+      return null;
+    }
+    final Map<String, Field> fields = getLayout(obj.referenceType(), layout);
+
+    if (fields.isEmpty()) {
+      return null;
+    }
+    final Map<Field, Value> values = obj.getValues(new ArrayList<>(fields.values()));
+    final Map<String, Value> result = new LinkedHashMap<>(fields.size() * 2);
+
+    fields.forEach((name, field) -> result.put(name, values.get(field)));
+    return result;
+  }
+
+  /**
+   * Gets the verified layout for a given reference type. The verification is only performed the
+   * first time a given type is encountered with a given expected layout; a type verified against
+   * one layout is verified again when requested with another.
+   *
+   * @param type the reference type for which to get its layout
+   * @param layout the expected layout (field names and corresponding signatures)
+   * @return a map of field names to their corresponding fields or an empty map if the type doesn't
+   *     match the expected layout
+   */
+  @VisibleForTesting
+  Map<String, Field> getLayout(ReferenceType type, Map<String, String> layout) {
+    final MirrorCache<ReferenceType, Map<Map<String, String>, Map<String, Field>>> cache =
+        debug.computeIfAbsent(
+            EquinoxUtil.LAYOUT_CACHE, () -> new MirrorCache<>(EquinoxUtil.LAYOUT_CACHE));
+
+    Map<Map<String, String>, Map<String, Field>> layouts = cache.get(type);
+
+    if (layouts == null) {
+      layouts = new ConcurrentHashMap<>(4);
+      cache.put(type, layouts);
+    }
+    return layouts.computeIfAbsent(layout, l -> EquinoxUtil.verifyLayout(type, l));
+  }
+
+  /**
+   * Verifies a given reference type against an expected layout.
+   *
+   * @param type the reference type to verify
+   * @param layout the expected layout (field names and corresponding signatures)
+   * @return a map of field names to their corresponding fields or an empty map if the type doesn't
+   *     match the expected layout
+   */
+  private static Map<String, Field> verifyLayout(ReferenceType type, Map<String, String> layout) {
+    final Map<String, Field> fields = new LinkedHashMap<>(layout.size() * 2);
+
+    for (final Map.Entry<String, String> e : layout.entrySet()) {
+      final Field field = type.fieldByName(e.getKey());
+
+      if ((field == null) || !e.getValue().equals(field.signature())) {
+        return EquinoxUtil.UNSUPPORTED_LAYOUT;
+      }
+      fields.put(e.getKey(), field);
+    }
+    return fields;
+  }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.api;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.sun.jdi.ClassObjectReference; // NOSONAR
+import com.sun.jdi.ObjectCollectedException; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
+import com.sun.jdi.VMDisconnectedException; // NOSONAR
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Provides a size-bounded cache for information computed from mirrors of objects and classes in the
+ * attached VM.
+ *
+ * <p>Least recently used entries are evicted once the cache reaches its maximum size. Entries can
+ * also be invalidated when the classes they relate to are unloaded from the attached VM or when
+ * bundles are uninstalled, updated or stopped. Hit, miss, eviction and invalidation counts are
+ * recorded for reporting purposes.
+ *
+ * @param <K> the type of keys (typically JDI mirrors)
+ * @param <V> the type of cached values
+ */
+public class MirrorCache<K, V> {
+  /** Default maximum number of entries kept in a cache. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 8192L;
+
+  private final String name;
+
+  private final Cache<K, V> cache;
+
+  private final LongAdder invalidations = new LongAdder();
+
+  /**
+   * Creates a new cache bounded to the default maximum size.
+   *
+   * @param name the name of the cache (for reporting purposes)
+   */
+  public MirrorCache(String name) {
+    this(name, MirrorCache.DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param name the name of the cache (for reporting purposes)
+   * @param maximumSize the maximum number of entries to keep in the cache
+   */
+  public MirrorCache(String name, long maximumSize) {
+    this.name = name;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * Gets the name of this cache.
+   *
+   * @return the name of this cache
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Retrieves the value cached for a given key.
+   *
+   * @param key the key for the value to retrieve
+   * @return the corresponding cached value or <code>null</code> if none cached
+   */
+  @Nullable
+  public V get(K key) {
+    return cache.getIfPresent(key);
+  }
+
+  /**
+   * Caches a value for a given key.
+   *
+   * @param key the key for the value to cache
+   * @param value the value to cache
+   */
+  public void put(K key, V value) {
+    cache.put(key, value);
+  }
+
+  /**
+   * Retrieves the value cached for a given key or computes and caches a new one if none is cached.
+   *
+   * @param key the key for the value to retrieve
+   * @param function the function used to compute a value if none is cached
+   * @return the value cached for the given key
+   */
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+    final V value = cache.getIfPresent(key);
+
+    if (value != null) {
+      return value;
+    }
+    final V computed = function.apply(key);
+    final V previous = cache.asMap().putIfAbsent(key, computed);
+
+    return (previous != null) ? previous : computed;
+  }
+
+  /**
+   * Invalidates all entries whose keys reference a given class. Keys that reference classes which
+   * can no longer be resolved from the attached VM are invalidated as well.
+   *
+   * @param signature the signature of the class to invalidate entries for
+   */
+  public void invalidateType(String signature) {
+    cache
+        .asMap()
+        .keySet()
+        .removeIf(
+            k -> {
+              if (MirrorCache.references(k, signature)) {
+                invalidations.increment();
+                return true;
+              }
+              return false;
+            });
+  }
+
+  /** Invalidates all entries in this cache. */
+  public void invalidateAll() {
+    invalidations.add(cache.size());
+    cache.invalidateAll();
+  }
+
+  /**
+   * Gets the current number of entries in this cache.
+   *
+   * @return the current number of entries in this cache
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Gets the number of times a lookup found a cached value.
+   *
+   * @return the number of cache hits
+   */
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Gets the number of times a lookup did not find a cached value.
+   *
+   * @return the number of cache misses
+   */
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Gets the number of entries evicted because the cache reached its maximum size.
+   *
+   * @return the number of evicted entries
+   */
+  public long evictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  /**
+   * Gets the number of entries invalidated following class unloading or bundle lifecycle events.
+   *
+   * @return the number of invalidated entries
+   */
+  public long invalidationCount() {
+    return invalidations.sum();
+  }
+
+  @Override
+  public String toString() {
+    final CacheStats stats = cache.stats();
+
+    return String.format(
+        "%s: size=%d, hits=%d, misses=%d, evictions=%d, invalidations=%d",
+        name,
+        cache.size(),
+        stats.hitCount(),
+        stats.missCount(),
+        stats.evictionCount(),
+        invalidations.sum());
+  }
+
+  @SuppressWarnings("squid:S1166" /* collected or disconnected mirrors are no longer useful */)
+  private static boolean references(Object key, String signature) {
+    if (key instanceof Key) {
+      return MirrorCache.references(((Key) key).mirror, signature);
+    }
+    try {
+      if (key instanceof ReferenceType) {
+        return signature.equals(((ReferenceType) key).signature());
+      } else if (key instanceof ClassObjectReference) {
+        return signature.equals(((ClassObjectReference) key).reflectedType().signature());
+      }
+      return false;
+    } catch (ObjectCollectedException | VMDisconnectedException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Defines a composite key for information cached about a specific aspect of a mirror (e.g. a
+   * method of a given class). Such keys are invalidated along with their mirror.
+   */
+  public static final class Key {
+    private final Object mirror;
+
+    private final String qualifier;
+
+    /**
+     * Creates a new composite key.
+     *
+     * @param mirror the mirror the information relates to
+     * @param qualifier the aspect of the mirror the information relates to
+     */
+    public Key(Object mirror, String qualifier) {
+      this.mirror = mirror;
+      this.qualifier = qualifier;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mirror, qualifier);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      } else if (obj instanceof Key) {
+        final Key key = (Key) obj;
+
+        return mirror.equals(key.mirror) && qualifier.equals(key.qualifier);
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return mirror + "#" + qualifier;
+    }
+  }
+}
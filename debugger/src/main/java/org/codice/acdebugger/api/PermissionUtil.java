@@ -26,6 +26,8 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.codice.acdebugger.common.ServicePermissionInfo;
+import org.codice.acdebugger.impl.DebugContext;
+import org.codice.acdebugger.impl.GrantCoalescer;
 
 /** Provides permission-specific functionality. */
 public class PermissionUtil {
@@ -158,7 +160,9 @@ public class PermissionUtil {
    *
    * <p><i>Note:</i> This method will automatically grant the permission in the attached VM if the
    * debugger is running in continuous mode and granting was enabled and if attached to VM running
-   * the backdoor.
+   * the backdoor. When supported by the backdoor, the permission is queued up to be granted shortly
+   * after along with others by the backdoor's helper thread and is only recorded as granted once it
+   * is.
    *
    * @param domain the bundle name or domain location to grant the permission to
    * @param permission the permission to be granted
@@ -170,9 +174,22 @@ public class PermissionUtil {
     "squid:S1148" /* this is a console application */
   })
   public boolean grant(String domain, String permission) {
+    final boolean granting = debug.isGranting() && debug.isContinuous();
+
+    if (granting) {
+      final GrantCoalescer coalescer = debug.grantCoalescer();
+
+      if (coalescer.isEnabled()) {
+        // let the backdoor's helper thread grant it along with others so we can resume right away
+        // the coalescer will record it as granted once it actually is
+        return (domain != null)
+            && !debug.context().hasPermission(domain, permission)
+            && coalescer.add(domain, permission);
+      }
+    }
     final boolean granted = debug.context().grantPermission(domain, permission);
 
-    if (granted && debug.isGranting() && debug.isContinuous()) {
+    if (granted && granting) {
       // try to grant the permission in the VM via the backdoor
       try {
         debug.backdoor().grantPermission(debug, domain, permission);
@@ -186,6 +203,41 @@ public class PermissionUtil {
     return granted;
   }
 
+  /**
+   * Grants in the attached VM all permissions stored in the knowledge base in previous sessions.
+   * This is meant to be called once the backdoor is discovered since the attached VM might have
+   * been restarted since they were granted.
+   *
+   * <p><i>Note:</i> The permissions are granted with a single call to the backdoor when supported
+   * and are otherwise granted one at a time. They are only considered granted once they were.
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* this is a console application */
+  })
+  public void grantStoredPermissions() {
+    if (!debug.isGranting() || !debug.isContinuous()) {
+      return;
+    }
+    final DebugContext context = debug.context();
+    final Map<String, Set<String>> stored = context.getStoredPermissions();
+
+    if (stored.isEmpty()) {
+      return;
+    }
+    try {
+      debug.backdoor().grantPermissions(debug, stored);
+      stored.forEach(context::preloadPermissions);
+      return;
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (IllegalStateException e) { // ignore and continue one at a time
+    } catch (Throwable t) { // ignore and continue one at a time
+      t.printStackTrace();
+    }
+    stored.forEach(this::grant);
+  }
+
   /**
    * Gets a set of service permissions strings for the specified services.
    *
@@ -315,22 +367,8 @@ public class PermissionUtil {
               .backdoor() // only grant in continuous mode and if granting
               .getServicePermissionInfoAndGrant(
                   debug, bundle, domain, serviceEvent, debug.isGranting());
-      final Set<String> permissionStrings = info.getPermissionStrings();
 
-      if (debug.isContinuous() && debug.isGranting()) {
-        // first make sure we cache all permissions since we granted them if they were missing
-        permissionStrings.forEach(p -> debug.context().grantPermission(bundle, p));
-      }
-      // next cache all info we have about pre-existed implied permissions which can include the "*"
-      // and remove them from the complete list of permissions since they were not missing
-      info.getImpliedPermissionStrings()
-          .stream()
-          .peek(permissionStrings::remove)
-          .forEach(p -> debug.context().grantPermission(bundle, p));
-      if (!info.implies()) { // we didn't have all permissions
-        return permissionStrings;
-      }
-      return Collections.emptySet();
+      return findMissingServicePermissionStrings(bundle, info);
     } catch (VirtualMachineError e) {
       throw e;
     } catch (IllegalStateException e) { // ignore and continue the long way
@@ -341,11 +379,41 @@ public class PermissionUtil {
     return findMissingServicePermissionStrings0(bundle, domain, serviceEvent);
   }
 
+  /**
+   * Finds missing service permissions for the given bundle from service permission information
+   * computed by the backdoor in the attached VM.
+   *
+   * @param bundle the name of the bundle the information was computed for
+   * @param info the service permission information computed by the backdoor
+   * @return a set of permission strings for all missing service permissions
+   */
+  public Set<String> findMissingServicePermissionStrings(
+      String bundle, ServicePermissionInfo info) {
+    final Set<String> permissionStrings = info.getPermissionStrings();
+
+    if (debug.isContinuous() && debug.isGranting()) {
+      // first make sure we cache all permissions since we granted them if they were missing
+      permissionStrings.forEach(p -> debug.context().grantPermission(bundle, p));
+    }
+    // next cache all info we have about pre-existed implied permissions which can include the "*"
+    // and remove them from the complete list of permissions since they were not missing
+    info.getImpliedPermissionStrings()
+        .stream()
+        .peek(permissionStrings::remove)
+        .forEach(p -> debug.context().grantPermission(bundle, p));
+    if (!info.implies()) { // we didn't have all permissions
+      return permissionStrings;
+    }
+    return Collections.emptySet();
+  }
+
   @Nullable
   private <T> T getServiceProperty0(
       ReflectionUtil reflection, ObjectReference serviceReference, String key) {
-    final Map<ObjectReference, Map<String, Object>> cache =
-        debug.computeIfAbsent(PermissionUtil.SERVICE_PROPERTY_CACHE, ConcurrentHashMap::new);
+    final MirrorCache<ObjectReference, Map<String, Object>> cache =
+        debug.computeIfAbsent(
+            PermissionUtil.SERVICE_PROPERTY_CACHE,
+            () -> new MirrorCache<>(PermissionUtil.SERVICE_PROPERTY_CACHE));
     final Map<String, Object> props =
         cache.computeIfAbsent(serviceReference, s -> new ConcurrentHashMap<>());
 
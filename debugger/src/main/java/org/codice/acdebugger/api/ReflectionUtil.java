@@ -15,6 +15,7 @@ package org.codice.acdebugger.api;
 
 // NOSONAR - squid:S1191 - Using the Java debugger API
 
+import com.sun.jdi.AbsentInformationException; // NOSONAR
 import com.sun.jdi.ArrayReference; // NOSONAR
 import com.sun.jdi.ArrayType; // NOSONAR
 import com.sun.jdi.BooleanValue; // NOSONAR
@@ -26,6 +27,8 @@ import com.sun.jdi.Field; // NOSONAR
 import com.sun.jdi.FloatValue; // NOSONAR
 import com.sun.jdi.IntegerValue; // NOSONAR
 import com.sun.jdi.InterfaceType; // NOSONAR
+import com.sun.jdi.LocalVariable; // NOSONAR
+import com.sun.jdi.Location; // NOSONAR
 import com.sun.jdi.LongValue; // NOSONAR
 import com.sun.jdi.Method; // NOSONAR
 import com.sun.jdi.Mirror; // NOSONAR
@@ -33,6 +36,7 @@ import com.sun.jdi.ObjectCollectedException; // NOSONAR
 import com.sun.jdi.ObjectReference; // NOSONAR
 import com.sun.jdi.ReferenceType; // NOSONAR
 import com.sun.jdi.ShortValue; // NOSONAR
+import com.sun.jdi.StackFrame; // NOSONAR
 import com.sun.jdi.StringReference; // NOSONAR
 import com.sun.jdi.ThreadReference; // NOSONAR
 import com.sun.jdi.Type; // NOSONAR
@@ -41,22 +45,37 @@ import com.sun.jdi.VirtualMachine; // NOSONAR
 import com.sun.jdi.VoidValue; // NOSONAR
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
+import org.codice.acdebugger.impl.ClassIndex;
 import org.codice.acdebugger.impl.DebugContext;
 
 /** Provides reflection-style functionality via the debugger's interface. */
 public class ReflectionUtil {
   static final String METHOD_SIGNATURE_NO_ARGS_STRING_RESULT = "()Ljava/lang/String;";
 
-  /** Internal key where information about whether a class is an instance of another is cached. */
+  /** Internal key where the closures of all supertypes for specific classes are cached. */
   private static final String ASSIGNABLE_FROM_CACHE = "debug.assignable.from.cache";
 
+  /** Internal key where ids for interned class signatures are stored. */
+  private static final String SIGNATURE_IDS = "debug.signature.ids";
+
+  /**
+   * Key where methods, fields, and local variables looked up from specific classes are cached. Hits
+   * in this cache correspond to metadata requests that did not have to be sent to the attached VM.
+   */
+  public static final String MEMBERS_CACHE = "debug.reflection.members.cache";
+
+  /** Constant used in the members cache when a given member cannot be found. */
+  private static final Object NULL_MEMBER = new Object();
+
   private static final int SANE_TRY_LIMIT = 15;
 
   /** The debug context. */
@@ -138,39 +157,67 @@ public class ReflectionUtil {
       return false;
     } else if (signature.equals(type.signature())) {
       return true;
-    } else {
-      // start by checking our cache
-      final Map<String, Map<Type, Boolean>> signatureCache =
-          context.computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, ConcurrentHashMap::new);
-      final Map<Type, Boolean> cache =
-          signatureCache.computeIfAbsent(signature, s -> new ConcurrentHashMap());
-      final Boolean is = cache.get(type);
-
-      if (is != null) {
-        return is;
-      }
-      final boolean result;
+    } else if (!(type instanceof ClassType) && !(type instanceof InterfaceType)) {
+      return false;
+    }
+    final BitSet supertypes = supertypes((ReferenceType) type);
+    final Integer id = signatureIds().get(signature);
+
+    // a signature that was never interned cannot be part of any supertype closures
+    return (id != null) && supertypes.get(id);
+  }
+
+  /**
+   * Gets the closure of all supertypes for a given class or interface (including itself) as a set
+   * of interned signature ids. The closure is computed the first time a given type is encountered
+   * and reuses the closures already computed for its superclass and superinterfaces.
+   *
+   * @param type the class or interface for which to get the closure of all its supertypes
+   * @return the corresponding set of interned signature ids (must not be modified)
+   */
+  private BitSet supertypes(ReferenceType type) {
+    final MirrorCache<ReferenceType, BitSet> cache =
+        context.computeIfAbsent(
+            ReflectionUtil.ASSIGNABLE_FROM_CACHE,
+            () -> new MirrorCache<>(ReflectionUtil.ASSIGNABLE_FROM_CACHE));
+    BitSet supertypes = cache.get(type);
 
+    if (supertypes == null) {
+      supertypes = new BitSet();
+      supertypes.set(intern(type.signature()));
       if (type instanceof ClassType) {
         final ClassType ctype = (ClassType) type;
+        final ClassType superclass = ctype.superclass();
 
-        result =
-            ctype.allInterfaces().stream().map(ReferenceType::signature).anyMatch(signature::equals)
-                || isAssignableFrom(signature, ctype.superclass());
+        for (final InterfaceType itype : ctype.allInterfaces()) {
+          supertypes.set(intern(itype.signature()));
+        }
+        if (superclass != null) {
+          supertypes.or(supertypes(superclass));
+        }
       } else if (type instanceof InterfaceType) {
-        final InterfaceType itype = (InterfaceType) type;
-
-        result =
-            itype
-                .superinterfaces()
-                .stream()
-                .map(ReferenceType::signature)
-                .anyMatch(signature::equals);
-      } else {
-        result = false;
+        for (final InterfaceType itype : ((InterfaceType) type).superinterfaces()) {
+          supertypes.or(supertypes(itype));
+        }
       }
-      cache.put(type, result);
-      return result;
+      cache.put(type, supertypes);
+    }
+    return supertypes;
+  }
+
+  private Map<String, Integer> signatureIds() {
+    return context.computeIfAbsent(ReflectionUtil.SIGNATURE_IDS, ConcurrentHashMap::new);
+  }
+
+  private int intern(String signature) {
+    final Map<String, Integer> ids = signatureIds();
+    final Integer id = ids.get(signature);
+
+    if (id != null) {
+      return id;
+    }
+    synchronized (ids) { // ids must be unique and sequential
+      return ids.computeIfAbsent(signature, s -> ids.size());
     }
   }
 
@@ -211,10 +258,19 @@ public class ReflectionUtil {
    * @return a stream of all corresponding classes (may be empty if none loaded)
    */
   public Stream<ClassType> classes(String signature) {
-    return vm.classesByName(signature.substring(1, signature.length() - 1).replace('/', '.'))
-        .stream()
-        .filter(ClassType.class::isInstance)
-        .map(ClassType.class::cast);
+    final ClassIndex index = context.classIndex();
+    List<ClassType> classes = index.get(signature);
+
+    if (classes == null) { // not indexed or stale so ask the VM
+      classes =
+          vm.classesByName(signature.substring(1, signature.length() - 1).replace('/', '.'))
+              .stream()
+              .filter(ClassType.class::isInstance)
+              .map(ClassType.class::cast)
+              .collect(Collectors.toList());
+      index.refresh(signature, classes);
+    }
+    return classes.stream();
   }
 
   /**
@@ -230,15 +286,24 @@ public class ReflectionUtil {
     if (obj == null) {
       return null;
     }
-    // reverse order to get this$2 before this$1 and this$0
-    final Map<String, Field> fields = new TreeMap<>(Comparator.reverseOrder());
+    final ReferenceType type = obj.referenceType();
+    final Field field =
+        lookup(
+            type,
+            "this$",
+            t -> {
+              // reverse order to get this$2 before this$1 and this$0
+              final Map<String, Field> fields = new TreeMap<>(Comparator.reverseOrder());
 
-    for (final Field f : obj.referenceType().fields()) {
-      if (f.name().startsWith("this$")) {
-        fields.put(f.name(), f);
-      }
-    }
-    return !fields.isEmpty() ? get(obj, fields.values().iterator().next(), null) : null;
+              for (final Field f : t.fields()) {
+                if (f.name().startsWith("this$")) {
+                  fields.put(f.name(), f);
+                }
+              }
+              return !fields.isEmpty() ? fields.values().iterator().next() : null;
+            });
+
+    return (field != null) ? get(obj, field, null) : null;
   }
 
   /**
@@ -265,15 +330,81 @@ public class ReflectionUtil {
    */
   @Nullable
   public Method findMethod(ReferenceType type, String name, String signature) {
-    if (type instanceof ClassType) {
-      return ((ClassType) type).concreteMethodByName(name, signature);
-    }
-    for (final Method m : type.methodsByName(name, signature)) {
-      if (!m.isAbstract()) {
-        return m;
-      }
+    return lookup(
+        type,
+        name + signature,
+        t -> {
+          if (t instanceof ClassType) {
+            return ((ClassType) t).concreteMethodByName(name, signature);
+          }
+          for (final Method m : t.methodsByName(name, signature)) {
+            if (!m.isAbstract()) {
+              return m;
+            }
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Finds a visible field for a given class given its name.
+   *
+   * @param type the class for which to find the field
+   * @param name the name of the field to find
+   * @return the corresponding field or <code>null</code> if none found
+   */
+  @Nullable
+  public Field findField(ReferenceType type, String name) {
+    return lookup(type, name, t -> t.fieldByName(name));
+  }
+
+  /**
+   * Finds a local variable that is visible at the current location of a given stack frame given its
+   * name.
+   *
+   * @param frame the stack frame for which to find the local variable
+   * @param name the name of the local variable to find
+   * @return the corresponding local variable or <code>null</code> if none found
+   * @throws AbsentInformationException if there is no local variable information for the method
+   */
+  @Nullable
+  public LocalVariable findVisibleVariable(StackFrame frame, String name)
+      throws AbsentInformationException {
+    final Location location = frame.location();
+    final Method method = location.method();
+
+    return lookup(
+        location.declaringType(),
+        method.name() + method.signature() + '@' + location.codeIndex() + '#' + name,
+        t -> frame.visibleVariableByName(name));
+  }
+
+  /**
+   * Looks up a member of a given class from the cache or from the attached VM if not already
+   * cached.
+   *
+   * @param <T> the type of member to look up
+   * @param <E> the type of exception that can be thrown while looking up the member
+   * @param type the class for which to look up a member
+   * @param qualifier a qualifier uniquely identifying the member in the given class
+   * @param lookup the lookup function to call if the member is not already cached
+   * @return the corresponding member or <code>null</code> if none found
+   * @throws E if a failure occurs while looking up the member
+   */
+  @Nullable
+  private <T, E extends Exception> T lookup(
+      ReferenceType type, String qualifier, ThrowingFunction<ReferenceType, T, E> lookup) throws E {
+    final MirrorCache<MirrorCache.Key, Object> cache =
+        context.computeIfAbsent(
+            ReflectionUtil.MEMBERS_CACHE, () -> new MirrorCache<>(ReflectionUtil.MEMBERS_CACHE));
+    final MirrorCache.Key key = new MirrorCache.Key(type, qualifier);
+    Object member = cache.get(key);
+
+    if (member == null) {
+      member = lookup.apply(type);
+      cache.put(key, (member != null) ? member : ReflectionUtil.NULL_MEMBER);
     }
-    return null;
+    return (member != ReflectionUtil.NULL_MEMBER) ? (T) member : null; // identity check here
   }
 
   /**
@@ -294,7 +425,7 @@ public class ReflectionUtil {
     if (obj == null) {
       return null;
     }
-    return get(obj, obj.referenceType().fieldByName(name), signature);
+    return get(obj, findField(obj.referenceType(), name), signature);
   }
 
   /**
@@ -341,7 +472,7 @@ public class ReflectionUtil {
     if (clazz == null) {
       return null;
     }
-    return getStatic(clazz, clazz.fieldByName(name), signature);
+    return getStatic(clazz, findField(clazz, name), signature);
   }
 
   /**
@@ -794,9 +925,14 @@ public class ReflectionUtil {
 
       for (final Object arg : args) {
         if (arg instanceof String) {
-          final StringReference pref = protect(() -> toMirror(arg));
+          // reuse strings repeatedly used as arguments from the pool as they are already protected
+          StringReference pref =
+              context.stringPool().get((String) arg, s -> protect(() -> toMirror(s)));
 
-          prefs.add(pref);
+          if (pref == null) {
+            pref = protect(() -> toMirror(arg));
+            prefs.add(pref);
+          }
           values.add(pref);
         } else {
           values.add(toMirror(arg));
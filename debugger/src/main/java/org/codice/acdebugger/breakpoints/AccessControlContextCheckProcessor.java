@@ -17,17 +17,25 @@ package org.codice.acdebugger.breakpoints;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.sun.jdi.ArrayReference; // NOSONAR
-import com.sun.jdi.EnhancedStackFrame; // NOSONAR
+import com.sun.jdi.CommandBatch; // NOSONAR
+import com.sun.jdi.Field; // NOSONAR
+import com.sun.jdi.FrameValues; // NOSONAR
+import com.sun.jdi.IncompatibleThreadStateException; // NOSONAR
 import com.sun.jdi.ObjectReference; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
 import com.sun.jdi.StackFrame; // NOSONAR
 import com.sun.jdi.ThreadReference; // NOSONAR
+import com.sun.jdi.Value; // NOSONAR
 import com.sun.jdi.request.EventRequest; // NOSONAR
 import java.security.Permission;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.codice.acdebugger.api.BreakpointProcessor;
 import org.codice.acdebugger.api.Debug;
+import org.codice.acdebugger.api.MirrorCache;
 import org.codice.acdebugger.api.ReflectionUtil;
 import org.codice.acdebugger.api.SecuritySolution;
 import org.codice.acdebugger.impl.BreakpointInfo;
@@ -46,6 +54,12 @@ public class AccessControlContextCheckProcessor implements BreakpointProcessor {
    */
   @VisibleForTesting static final int LOCAL_I_SLOT_INDEX = 3;
 
+  /**
+   * Name of the cache in the debug context for verdicts previously reached for failures keyed by
+   * their fingerprints.
+   */
+  @VisibleForTesting static final String VERDICT_CACHE = "debug.acc.verdict.cache";
+
   @Override
   public Stream<BreakpointLocation> locations() {
     return Stream.of(
@@ -61,14 +75,60 @@ public class AccessControlContextCheckProcessor implements BreakpointProcessor {
   public void process(BreakpointInfo info, Debug debug) throws Exception {
     final ThreadReference thread = debug.thread();
     final ReflectionUtil reflection = debug.reflection();
+    final FrameValues values =
+        debug.frameValues(
+            new int[] {AccessControlContextCheckProcessor.LOCAL_I_SLOT_INDEX}, new String[] {"I"});
     final ArrayReference context =
-        reflection.get(
-            thread.frame(0).thisObject(), "context", "[Ljava/security/ProtectionDomain;");
-    final EnhancedStackFrame frame = enhance(thread.frame(0));
-    final int local_i =
-        reflection.fromMirror(
-            frame.getValue(AccessControlContextCheckProcessor.LOCAL_I_SLOT_INDEX, "I"));
-    final ObjectReference permission = (ObjectReference) frame.getArgumentValues().get(0);
+        reflection.get(values.thisObject(), "context", "[Ljava/security/ProtectionDomain;");
+    final int local_i = reflection.fromMirror(values.getValue(0));
+    final ObjectReference permission = (ObjectReference) values.getArgumentValues().get(0);
+    // the same failures tend to happen over and over again so start by checking if we already
+    // know what to do about it in which case we don't need to capture the stack and analyze it
+    final MirrorCache<Object, Boolean> verdicts =
+        debug.computeIfAbsent(
+            AccessControlContextCheckProcessor.VERDICT_CACHE,
+            () -> new MirrorCache<>(AccessControlContextCheckProcessor.VERDICT_CACHE));
+    final List<Object> failure = failureKey(debug, context, local_i, permission);
+    Boolean forceEarlyReturn = null;
+
+    if (debug.isAnalyzingNovelFailuresOnly()) {
+      // we are costing the VM too much so don't bother with where it failed from if the domain
+      // already failed the same way before
+      forceEarlyReturn = verdicts.get(failure);
+    }
+    if (forceEarlyReturn == null) {
+      final Object key = verdictKey(thread, failure);
+
+      forceEarlyReturn = verdicts.get(key);
+      if (forceEarlyReturn == null) {
+        // many threads often fail the same check at the same time so only analyze it once and
+        // have the others share the outcome
+        forceEarlyReturn =
+            debug.coalesceFailure(
+                AccessControlContextCheckProcessor.fingerprint(
+                    thread, context, local_i, permission),
+                () -> analyze(debug, context, local_i, permission));
+        if (forceEarlyReturn) { // only remember failures we are to keep on going with
+          verdicts.put(key, true);
+          verdicts.put(failure, true);
+        }
+      }
+    }
+    if (forceEarlyReturn) {
+      // force early return as if no exception is thrown, that way we simulate no security
+      // exceptions; allowing us to record what is missing while continuing to run
+      thread.forceEarlyReturn(reflection.getVoid());
+    } // else - let it fail as intended since we failing or we aren't continuing or again it is
+    //          an acceptable failure
+  }
+
+  @SuppressWarnings({
+    "squid:S00117", /* name is clearer that way */
+    "squid:S00112" /* Forced to by the Java debugger API */
+  })
+  private boolean analyze(
+      Debug debug, ArrayReference context, int local_i, ObjectReference permission)
+      throws Exception {
     final SecurityCheckInformation security = process(debug, context, local_i, permission);
 
     if (security.getFailedDomain() != null) {
@@ -90,17 +150,60 @@ public class AccessControlContextCheckProcessor implements BreakpointProcessor {
     //          domain the missing permissions we use in the ctor to determine if domains have
     //          permissions so even if the VM tells us there was an exception, we skip over it right
     //          away
-    if (!debug.isFailing() && debug.isContinuous() && !security.isAcceptable()) {
-      // force early return as if no exception is thrown, that way we simulate no security
-      // exceptions; allowing us to record what is missing while continuing to run
-      thread.forceEarlyReturn(reflection.getVoid());
-    } // else - let it fail as intended since we failing or we aren't continuing or again it is
-    //          an acceptable failure
+    return !debug.isFailing() && debug.isContinuous() && !security.isAcceptable();
+  }
+
+  /**
+   * Computes a key identifying a permission failing for a given domain. The key is made up of the
+   * permission's class and the values of all its primitive and string fields (e.g. name and
+   * actions), and the failing domain.
+   */
+  @VisibleForTesting
+  @SuppressWarnings("squid:S00117" /* name is clearer that way */)
+  List<Object> failureKey(
+      Debug debug, ArrayReference context, int local_i, ObjectReference permission) {
+    final ReflectionUtil reflection = debug.reflection();
+    final ReferenceType type = permission.referenceType();
+    final List<Field> fields =
+        type.allFields()
+            .stream()
+            .filter(f -> !f.isStatic())
+            .filter(
+                f -> (f.signature().length() == 1) || f.signature().equals("Ljava/lang/String;"))
+            .collect(Collectors.toList());
+    // read all fields and the failing domain at once
+    final CommandBatch batch = CommandBatch.of(debug.virtualMachine());
+    final CommandBatch.Reply<List<Value>> fieldValues = batch.getValues(permission, fields);
+    final CommandBatch.Reply<Value> domainValue = batch.getValue(context, local_i);
+    final List<Object> values =
+        fieldValues.get().stream().map(reflection::fromMirror).collect(Collectors.toList());
+    final ObjectReference domain = (ObjectReference) domainValue.get();
+
+    return Arrays.asList(type.name(), values, (domain != null) ? domain.uniqueID() : 0L);
+  }
+
+  /**
+   * Computes a key identifying a failure for which the same verdict would be reached. The key is
+   * made up of the failure key and the locations of all frames in the stack since the domains
+   * further down (e.g. the caller of a privileged block) can change the verdict.
+   */
+  @VisibleForTesting
+  Object verdictKey(ThreadReference thread, List<Object> failure)
+      throws IncompatibleThreadStateException {
+    return Arrays.asList(
+        failure, thread.frames().stream().map(StackFrame::location).collect(Collectors.toList()));
   }
 
   @VisibleForTesting
-  EnhancedStackFrame enhance(StackFrame frame) {
-    return EnhancedStackFrame.of(frame);
+  @SuppressWarnings("squid:S00117" /* name is clearer that way */)
+  static List<Object> fingerprint(
+      ThreadReference thread, ArrayReference context, int local_i, ObjectReference permission)
+      throws IncompatibleThreadStateException {
+    return Arrays.asList(
+        permission.uniqueID(),
+        context.uniqueID(),
+        local_i,
+        thread.frames().stream().map(StackFrame::location).collect(Collectors.toList()));
   }
 
   @VisibleForTesting
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.breakpoints;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.sun.jdi.Method; // NOSONAR
+import com.sun.jdi.request.EventRequest; // NOSONAR
+import java.util.List;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.codice.acdebugger.api.BreakpointProcessor;
+import org.codice.acdebugger.api.Debug;
+import org.codice.acdebugger.impl.Backdoor;
+import org.codice.acdebugger.impl.BreakpointInfo;
+import org.codice.acdebugger.impl.BreakpointLocation;
+
+/**
+ * Breakpoint processor used to grant permissions in the attached VM in batches. The backdoor's
+ * helper thread periodically calls a method where we place a breakpoint which is only enabled while
+ * permissions are waiting to be granted such that we can grant them all at once using that thread
+ * instead of the threads that required them.
+ */
+public class GrantFlushProcessor implements BreakpointProcessor {
+  @Override
+  public final Stream<BreakpointLocation> locations() {
+    return Stream.of(
+        BreakpointProcessor.createLocationFor(Backdoor.CLASS_SIGNATURE, "helperReady"));
+  }
+
+  @Override
+  @Nullable
+  public EventRequest createRequest(Debug debug, BreakpointLocation l) throws Exception {
+    final List<Method> methods = l.getMethodReferences();
+
+    if ((methods == null) || methods.isEmpty()) { // not supported with this version of the backdoor
+      return null;
+    }
+    return debug.eventRequestManager().createBreakpointRequest(methods.get(0).location());
+  }
+
+  @Override
+  public void process(BreakpointInfo info, Debug debug) throws Exception {
+    debug.grantCoalescer().flush(debug);
+  }
+}
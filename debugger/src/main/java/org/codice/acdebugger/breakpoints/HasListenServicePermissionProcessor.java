@@ -15,13 +15,20 @@ package org.codice.acdebugger.breakpoints;
 
 // NOSONAR - squid:S1191 - Using the Java debugger API
 
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.jdi.FrameValues; // NOSONAR
+import com.sun.jdi.LocalVariable; // NOSONAR
 import com.sun.jdi.ObjectReference; // NOSONAR
 import com.sun.jdi.ThreadReference; // NOSONAR
 import com.sun.jdi.request.EventRequest; // NOSONAR
+import java.util.Arrays;
 import java.util.Set;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.codice.acdebugger.api.BreakpointProcessor;
 import org.codice.acdebugger.api.Debug;
+import org.codice.acdebugger.api.MirrorCache;
+import org.codice.acdebugger.api.ReflectionUtil;
 import org.codice.acdebugger.impl.BreakpointInfo;
 import org.codice.acdebugger.impl.BreakpointLocation;
 
@@ -32,6 +39,9 @@ import org.codice.acdebugger.impl.BreakpointLocation;
  * <p><i>Note:</i> Verified with org.eclipse.osgi 3.12.50.
  */
 public class HasListenServicePermissionProcessor implements BreakpointProcessor {
+  /** Name of the cache in the debug context for bundles and services that were already checked. */
+  @VisibleForTesting static final String VERDICT_CACHE = "debug.service.verdict.cache";
+
   @Override
   public final Stream<BreakpointLocation> locations() {
     return Stream.of(
@@ -47,19 +57,36 @@ public class HasListenServicePermissionProcessor implements BreakpointProcessor
   @Override
   public void process(BreakpointInfo info, Debug debug) throws Exception {
     final ThreadReference thread = debug.thread();
-    final ObjectReference context = (ObjectReference) thread.frame(0).getArgumentValues().get(1);
-    final ObjectReference serviceEvent =
-        (ObjectReference) thread.frame(0).getArgumentValues().get(0);
-    final ObjectReference domain =
-        (ObjectReference) thread.frame(0).getValue(thread.frame(0).visibleVariableByName("domain"));
+    final LocalVariable domainVariable =
+        debug.reflection().findVisibleVariable(thread.frame(0), "domain");
+    final FrameValues values = debug.frameValues(domainVariable);
+    final ObjectReference context = (ObjectReference) values.getArgumentValues().get(1);
+    final ObjectReference serviceEvent = (ObjectReference) values.getArgumentValues().get(0);
+    final ObjectReference domain = (ObjectReference) values.getValue(0);
     final String bundle = debug.bundles().get(context);
-    final Set<String> permissionStrings =
-        debug.permissions().findMissingServicePermissionStrings(bundle, domain, serviceEvent);
+    // once a bundle was checked for a given service, it either had the permissions or we
+    // detected and possibly granted them so there is nothing new to learn from further checks
+    final MirrorCache<Object, Boolean> verdicts =
+        debug.computeIfAbsent(
+            HasListenServicePermissionProcessor.VERDICT_CACHE,
+            () -> new MirrorCache<>(HasListenServicePermissionProcessor.VERDICT_CACHE));
+    final Object key = verdictKey(debug, bundle, serviceEvent);
+    boolean failure = false;
+
+    if ((key == null) || (verdicts.get(key) == null)) {
+      final Set<String> permissionStrings =
+          debug.permissions().findMissingServicePermissionStrings(bundle, domain, serviceEvent);
 
-    if (!permissionStrings.isEmpty()) {
-      // only record if the domain didn't have the permission to start with
-      debug.record(new SecurityServicePermissionImpliedInformation(bundle, permissionStrings));
-    } // else - the bundle has or we already granted the permissions
+      if (!permissionStrings.isEmpty()) {
+        // only record if the domain didn't have the permission to start with
+        debug.record(new SecurityServicePermissionImpliedInformation(bundle, permissionStrings));
+        failure = true;
+      } // else - the bundle has or we already granted the permissions
+      if (key != null) {
+        verdicts.put(key, true);
+      }
+    }
+    debug.serviceCheckSampler().checked(failure);
     // force early return as if the domain had the permission since we either tested it above
     // and it was true or it is false and we are recording an error while still continuing as
     // if the domain had the permission
@@ -68,4 +95,22 @@ public class HasListenServicePermissionProcessor implements BreakpointProcessor
       thread.forceEarlyReturn(debug.reflection().toMirror(true));
     } // else - let it go through the normal process and fail if need be
   }
+
+  /**
+   * Computes a key identifying a bundle being checked for a given service. The service's object
+   * classes are read directly from Equinox's service registration to avoid invoking methods in the
+   * attached VM.
+   *
+   * @return the corresponding key or <code>null</code> if the object classes could not be read
+   */
+  @VisibleForTesting
+  @Nullable
+  Object verdictKey(Debug debug, @Nullable String bundle, ObjectReference serviceEvent) {
+    final ReflectionUtil reflection = debug.reflection();
+    final ObjectReference reference = reflection.get(serviceEvent, "reference", null);
+    final ObjectReference registration = reflection.get(reference, "registration", null);
+    final String[] clazzes = reflection.get(registration, "clazzes", "[Ljava/lang/String;");
+
+    return (clazzes != null) ? Arrays.asList(bundle, Arrays.asList(clazzes)) : null;
+  }
 }
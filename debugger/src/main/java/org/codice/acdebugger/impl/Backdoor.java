@@ -18,18 +18,31 @@ package org.codice.acdebugger.impl;
 import com.google.gson.reflect.TypeToken;
 import com.sun.jdi.ArrayReference; // NOSONAR
 import com.sun.jdi.ClassType; // NOSONAR
+import com.sun.jdi.Field; // NOSONAR
+import com.sun.jdi.IntegerValue; // NOSONAR
 import com.sun.jdi.Method; // NOSONAR
 import com.sun.jdi.ObjectReference; // NOSONAR
 import com.sun.jdi.ReferenceType;
+import com.sun.jdi.StringReference; // NOSONAR
+import com.sun.jdi.Value; // NOSONAR
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.codice.acdebugger.ACDebugger;
 import org.codice.acdebugger.api.Debug;
 import org.codice.acdebugger.api.ReflectionUtil;
+import org.codice.acdebugger.breakpoints.GrantFlushProcessor;
 import org.codice.acdebugger.breakpoints.HasListenServicePermissionProcessor;
+import org.codice.acdebugger.breakpoints.ServicePermissionMissProcessor;
+import org.codice.acdebugger.common.BundleInfo;
 import org.codice.acdebugger.common.DomainInfo;
 import org.codice.acdebugger.common.JsonUtils;
 import org.codice.acdebugger.common.ServicePermissionInfo;
@@ -41,6 +54,11 @@ public class Backdoor {
   private static final String METHOD_SIGNATURE_OBJ_ARG_STRING_RESULT =
       "(Ljava/lang/Object;)Ljava/lang/String;";
 
+  private static final String METHOD_SIGNATURE_OBJECT_ARRAY_RESULT = "()[Ljava/lang/Object;";
+
+  /** Number of mirrors returned by the backdoor for each bundle in a bundle registry snapshot. */
+  private static final int MIRRORS_PER_BUNDLE = 3;
+
   private ObjectReference backdoorReference;
 
   private Method getBundle;
@@ -55,10 +73,40 @@ public class Backdoor {
 
   private Method grantPermission;
 
+  private Method grantPermissions;
+
+  private Method enableHelper;
+
   private Method hasPermission;
 
   private Method getServicePermissionInfoAndGrant;
 
+  private Method enableServicePermissionRecorder;
+
+  private Method drainServicePermissionMisses;
+
+  private Method getBundleRegistry;
+
+  private Method getBundleRegistryChanges;
+
+  private Method getSystemProperties;
+
+  /** Names of the fields counting bundle events in the backdoor's bundle registry. */
+  private static final List<String> BUNDLE_REGISTRY_COUNTS =
+      Arrays.asList("changeCount", "invalidationCount", "startCount");
+
+  /** Bundle registry from the backdoor or <code>null</code> if not yet created. */
+  @Nullable private ObjectReference bundleRegistryReference = null;
+
+  /** Number of bundle changes tracked by the backdoor the last time we retrieved them. */
+  private int bundleRegistryChangeCount = 0;
+
+  /** Number of bundle events invalidating caches the last time we checked. */
+  private int bundleInvalidationCount = 0;
+
+  /** Number of bundles started the last time we checked. */
+  private int bundleStartCount = 0;
+
   private boolean initializing = false;
 
   /**
@@ -104,6 +152,9 @@ public class Backdoor {
       this.grantPermission =
           reflection.findMethod(
               backdoorType, "grantPermission", "(Ljava/lang/String;Ljava/lang/String;)V");
+      this.grantPermissions =
+          reflection.findMethod(backdoorType, "grantPermissions", "(Ljava/lang/String;)V");
+      this.enableHelper = reflection.findMethod(backdoorType, "enableHelper", "()V");
       this.hasPermission =
           reflection.findMethod(
               backdoorType, "hasPermission", "(Ljava/lang/Object;Ljava/lang/Object;)Z");
@@ -112,16 +163,68 @@ public class Backdoor {
               backdoorType,
               "getServicePermissionInfoAndGrant",
               "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;Z)Ljava/lang/String;");
+      this.enableServicePermissionRecorder =
+          reflection.findMethod(backdoorType, "enableServicePermissionRecorder", "(Z)V");
+      this.drainServicePermissionMisses =
+          reflection.findMethod(
+              backdoorType, "drainServicePermissionMisses", "()Ljava/lang/String;");
+      this.getBundleRegistry =
+          reflection.findMethod(
+              backdoorType, "getBundleRegistry", Backdoor.METHOD_SIGNATURE_OBJECT_ARRAY_RESULT);
+      this.getBundleRegistryChanges =
+          reflection.findMethod(
+              backdoorType,
+              "getBundleRegistryChanges",
+              Backdoor.METHOD_SIGNATURE_OBJECT_ARRAY_RESULT);
+      this.getSystemProperties =
+          reflection.findMethod(
+              backdoorType, "getSystemProperties", "(Ljava/lang/String;)Ljava/lang/String;");
       System.out.println(ACDebugger.PREFIX);
       System.out.println(ACDebugger.PREFIX + "Backdoor discovered");
     } finally {
       this.initializing = false;
     }
+    if (getBundleRegistry != null) {
+      try {
+        // preload all bundles such that most bundle and domain lookups can be answered locally
+        final BundleIndex index = new BundleIndex();
+
+        index.index(getBundleRegistry(debug));
+        debug.put(BundleIndex.KEY, index);
+      } catch (Exception e) { // continue without it
+        e.printStackTrace();
+      }
+    }
+    if (debug.isGranting()
+        && debug.isContinuous()
+        && (grantPermissions != null)
+        && (enableHelper != null)) {
+      try {
+        // let the backdoor's helper thread grant permissions in batches so failing threads can be
+        // resumed right away
+        debug.reflection().invoke(backdoorReference, enableHelper);
+        debug.add(new GrantFlushProcessor());
+      } catch (Exception e) { // cannot register breakpoint so continue granting synchronously
+        e.printStackTrace();
+      }
+    }
+    if (debug.isGranting() && debug.isContinuous()) {
+      // permissions granted in previous sessions are lost if the VM was restarted since
+      debug.permissions().grantStoredPermissions();
+    }
     // now register the Eclipse service permission breakpoint, now that we know the policy has been
     // loaded since the backdoor is initialized
     if (debug.isMonitoringService()) {
       try {
-        debug.add(new HasListenServicePermissionProcessor());
+        if (canRecordServicePermissionMisses(debug)) {
+          // record misses inside the VM instead of stopping on every service event delivered
+          debug
+              .reflection()
+              .invoke(backdoorReference, enableServicePermissionRecorder, debug.isGranting());
+          debug.add(new ServicePermissionMissProcessor());
+        } else {
+          debug.add(new HasListenServicePermissionProcessor());
+        }
       } catch (Exception e) { // cannot register breakpoint so continue without it
         e.printStackTrace();
       }
@@ -246,6 +349,24 @@ public class Backdoor {
     debug.reflection().invoke(backdoorReference, grantPermission, domain, permission);
   }
 
+  /**
+   * Temporarily grants domains given permissions if not already granted.
+   *
+   * @param debug the current debug information
+   * @param permissions the permissions to be granted keyed by the bundle names or domain locations
+   *     to grant them to
+   * @throws IllegalStateException if the backdoor is initializing or doesn't support this method
+   * @throws Error if an error occurred while invoking the backdoor's method
+   */
+  public synchronized void grantPermissions(
+      Debug debug, Map<String, ? extends Collection<String>> permissions) {
+    findBackdoor(debug); // make sure the backdoor is enabled
+    if (grantPermissions == null) {
+      throw new IllegalStateException("grantPermissions() is not supported by the backdoor");
+    }
+    debug.reflection().invoke(backdoorReference, grantPermissions, JsonUtils.toJson(permissions));
+  }
+
   /**
    * Gets a set of permissions strings corresponding to a given permission.
    *
@@ -309,6 +430,138 @@ public class Backdoor {
         ServicePermissionInfo.class);
   }
 
+  /**
+   * Drains all service permission misses recorded inside the VM since the last time they were
+   * drained.
+   *
+   * @param debug the current debug information
+   * @return the corresponding service permission info keyed by the names of the bundles that were
+   *     missing service permissions
+   * @throws IllegalStateException if the backdoor is initializing or doesn't support this method
+   * @throws Error if an error occurred while invoking the backdoor's method
+   */
+  public synchronized Map<String, List<ServicePermissionInfo>> drainServicePermissionMisses(
+      Debug debug) {
+    findBackdoor(debug); // make sure the backdoor is enabled
+    if (drainServicePermissionMisses == null) {
+      throw new IllegalStateException(
+          "drainServicePermissionMisses() is not supported by the backdoor");
+    }
+    return JsonUtils.fromJson(
+        debug.reflection().invoke(backdoorReference, drainServicePermissionMisses),
+        new TypeToken<Map<String, List<ServicePermissionInfo>>>() {}.getType());
+  }
+
+  /**
+   * Gets information about all bundles installed in the attached VM.
+   *
+   * @param debug the current debug information
+   * @return the corresponding bundles, protection domains, and classloaders keyed by their bundle
+   *     information
+   * @throws IllegalStateException if the backdoor is initializing or doesn't support this method
+   * @throws Error if an error occurred while invoking the backdoor's method
+   */
+  public synchronized Map<BundleInfo, List<ObjectReference>> getBundleRegistry(Debug debug) {
+    findBackdoor(debug); // make sure the backdoor is enabled
+    if (getBundleRegistry == null) {
+      throw new IllegalStateException("getBundleRegistry() is not supported by the backdoor");
+    }
+    return toBundleInfos(debug.reflection().invoke(backdoorReference, getBundleRegistry));
+  }
+
+  /**
+   * Gets information about all bundles that changed in the attached VM since the last time bundle
+   * information was retrieved. The backdoor is only called if it tracked bundle changes since then.
+   *
+   * @param debug the current debug information
+   * @return the corresponding bundles, protection domains, and classloaders keyed by their bundle
+   *     information (uninstalled bundles are reported with only their identifiers and no mirrors)
+   * @throws IllegalStateException if the backdoor is initializing or doesn't support this method
+   * @throws Error if an error occurred while invoking the backdoor's method
+   */
+  public Map<BundleInfo, List<ObjectReference>> getBundleRegistryChanges(Debug debug) {
+    return getBundleRegistryChanges(debug, false);
+  }
+
+  /**
+   * Gets information about all bundles that changed in the attached VM since the last time bundle
+   * information was retrieved.
+   *
+   * <p>Creating a bundle's classloader doesn't generate any bundle events such that the backdoor
+   * only reports it when called. Forcing the call allows one to pick up such classloaders at the
+   * cost of an extra method invocation in the attached VM.
+   *
+   * @param debug the current debug information
+   * @param force <code>true</code> to call the backdoor even if it didn't track any bundle changes
+   *     since the last time; <code>false</code> to only call it if it did
+   * @return the corresponding bundles, protection domains, and classloaders keyed by their bundle
+   *     information (uninstalled bundles are reported with only their identifiers and no mirrors)
+   * @throws IllegalStateException if the backdoor is initializing or doesn't support this method
+   * @throws Error if an error occurred while invoking the backdoor's method
+   */
+  public synchronized Map<BundleInfo, List<ObjectReference>> getBundleRegistryChanges(
+      Debug debug, boolean force) {
+    findBackdoor(debug); // make sure the backdoor is enabled
+    if (getBundleRegistryChanges == null) {
+      throw new IllegalStateException(
+          "getBundleRegistryChanges() is not supported by the backdoor");
+    }
+    final ReflectionUtil reflection = debug.reflection();
+    final int[] counts = getBundleRegistryCounts(reflection);
+
+    if (counts == null) {
+      return Collections.emptyMap();
+    }
+    bundleRegistryCountsRead(debug, counts);
+    if (!force && (counts[0] == bundleRegistryChangeCount)) {
+      return Collections.emptyMap();
+    }
+    this.bundleRegistryChangeCount = counts[0];
+    return toBundleInfos(reflection.invoke(backdoorReference, getBundleRegistryChanges));
+  }
+
+  /**
+   * Checks the bundle events tracked by the backdoor since the last check. All mirror caches are
+   * invalidated if bundles were stopped, updated, unresolved, or uninstalled and paused service
+   * event permission checks are resumed if bundles were started.
+   *
+   * <p><i>Note:</i> This only reads fields from the attached VM and does nothing until the backdoor
+   * is discovered.
+   *
+   * @param debug the current debug information
+   */
+  public synchronized void checkBundleChanges(Debug debug) {
+    if (backdoorReference == null) {
+      return;
+    }
+    final int[] counts = getBundleRegistryCounts(debug.reflection());
+
+    if (counts != null) {
+      bundleRegistryCountsRead(debug, counts);
+    }
+  }
+
+  /**
+   * Gets the values for a set of system properties from the attached VM with a single call.
+   *
+   * @param debug the current debug information
+   * @param names the names of the system properties to retrieve
+   * @return the corresponding values keyed by the property names in the same order (properties that
+   *     are not defined are not reported)
+   * @throws IllegalStateException if the backdoor is initializing or doesn't support this method
+   * @throws Error if an error occurred while invoking the backdoor's method
+   */
+  public synchronized Map<String, String> getSystemProperties(
+      Debug debug, Collection<String> names) {
+    findBackdoor(debug); // make sure the backdoor is enabled
+    if (getSystemProperties == null) {
+      throw new IllegalStateException("getSystemProperties() is not supported by the backdoor");
+    }
+    return JsonUtils.fromJson(
+        debug.reflection().invoke(backdoorReference, getSystemProperties, JsonUtils.toJson(names)),
+        new TypeToken<Map<String, String>>() {}.getType());
+  }
+
   /**
    * Checks if a domain has a given permission.
    *
@@ -326,6 +579,103 @@ public class Backdoor {
     return debug.reflection().invoke(backdoorReference, hasPermission, domain, permission);
   }
 
+  /**
+   * Checks if service permission misses can be recorded inside the VM. This requires support from
+   * the backdoor and since it cannot force a service event to be delivered to a bundle missing
+   * permissions, it is only used when we would not have forced it through anyway or when we are
+   * granting the missing permissions before they are checked.
+   *
+   * @param debug the current debug information
+   * @return <code>true</code> if misses can be recorded inside the VM; <code>false</code> if each
+   *     service permission check must be monitored via a breakpoint
+   */
+  private boolean canRecordServicePermissionMisses(Debug debug) {
+    return (enableServicePermissionRecorder != null)
+        && (drainServicePermissionMisses != null)
+        && (debug.isGranting() || debug.isFailing() || !debug.isContinuous());
+  }
+
+  private Map<BundleInfo, List<ObjectReference>> toBundleInfos(@Nullable ArrayReference snapshot) {
+    if (snapshot == null) {
+      return Collections.emptyMap();
+    }
+    final List<Value> values = snapshot.getValues();
+    final List<BundleInfo> infos =
+        JsonUtils.fromJson(
+            ((StringReference) values.get(0)).value(),
+            new TypeToken<List<BundleInfo>>() {}.getType());
+    final Map<BundleInfo, List<ObjectReference>> map = new LinkedHashMap<>(infos.size() * 2);
+
+    for (int i = 0; i < infos.size(); i++) {
+      final List<ObjectReference> mirrors = new ArrayList<>(Backdoor.MIRRORS_PER_BUNDLE);
+
+      for (int j = 1; j <= Backdoor.MIRRORS_PER_BUNDLE; j++) {
+        final Value value = values.get(i * Backdoor.MIRRORS_PER_BUNDLE + j);
+
+        if (value instanceof ObjectReference) {
+          mirrors.add((ObjectReference) value);
+        }
+      }
+      map.put(infos.get(i), mirrors);
+    }
+    return map;
+  }
+
+  /**
+   * Reads all counters from the backdoor's bundle registry in one exchange with the attached VM.
+   *
+   * @param reflection the reflection utility to use
+   * @return the number of bundle changes, invalidating events, and started bundles in that order or
+   *     <code>null</code> if the backdoor is not tracking bundles
+   */
+  @Nullable
+  private int[] getBundleRegistryCounts(ReflectionUtil reflection) {
+    if (bundleRegistryReference == null) { // it never changes once created
+      this.bundleRegistryReference = reflection.get(backdoorReference, "bundleRegistry", null);
+      if (bundleRegistryReference == null) {
+        return null;
+      }
+    }
+    final ReferenceType type = bundleRegistryReference.referenceType();
+    final List<Field> fields = new ArrayList<>(Backdoor.BUNDLE_REGISTRY_COUNTS.size());
+
+    for (final String name : Backdoor.BUNDLE_REGISTRY_COUNTS) {
+      final Field field = reflection.findField(type, name);
+
+      if (field == null) {
+        return null;
+      }
+      fields.add(field);
+    }
+    final Map<Field, Value> values = bundleRegistryReference.getValues(fields);
+    final int[] counts = new int[fields.size()];
+
+    for (int i = 0; i < counts.length; i++) {
+      final Value value = values.get(fields.get(i));
+
+      counts[i] = (value instanceof IntegerValue) ? ((IntegerValue) value).value() : 0;
+    }
+    return counts;
+  }
+
+  /**
+   * Reacts to bundle events counted by the backdoor since the last time counters were read.
+   *
+   * @param debug the current debug information
+   * @param counts the counters as returned by {@link #getBundleRegistryCounts(ReflectionUtil)}
+   */
+  private void bundleRegistryCountsRead(Debug debug, int[] counts) {
+    if (counts[1] != bundleInvalidationCount) {
+      this.bundleInvalidationCount = counts[1];
+      debug.invalidateMirrorCaches();
+    }
+    if (counts[2] != bundleStartCount) {
+      this.bundleStartCount = counts[2];
+      // a new bundle might register or listen to services we haven't checked yet
+      debug.serviceCheckSampler().resume("since a bundle was started");
+    }
+  }
+
   private synchronized void findBackdoor(Debug debug) {
     if (initializing) {
       throw new IllegalStateException("backdoor is initializing");
@@ -18,6 +18,8 @@ package org.codice.acdebugger.impl;
 import com.sun.jdi.AbsentInformationException; // NOSONAR
 import com.sun.jdi.ClassType; // NOSONAR
 import com.sun.jdi.Location; // NOSONAR
+import com.sun.jdi.Method; // NOSONAR
+import java.util.List;
 import javax.annotation.Nullable;
 
 /** This class keeps track of a location in the code where we want to debug. */
@@ -26,6 +28,7 @@ public class BreakpointLocation {
   private final String method;
   private final int linenum;
   private volatile ClassType clazz = null;
+  private volatile List<Method> methods = null;
 
   /**
    * Creates a location in a given class.
@@ -82,6 +85,18 @@ public class BreakpointLocation {
     return method;
   }
 
+  /**
+   * Gets the methods resolved from the class associated with this location for the method
+   * associated with this location. All overloaded versions of the method are included.
+   *
+   * @return the corresponding methods or <code>null</code> if the class reference has not been
+   *     detected yet or if this location is not associated with a method
+   */
+  @Nullable
+  public List<Method> getMethodReferences() {
+    return methods;
+  }
+
   /**
    * Gets the line number in the class associated with this location.
    *
@@ -124,5 +139,6 @@ public class BreakpointLocation {
    */
   void setClassReference(ClassType clazz) {
     this.clazz = clazz;
+    this.methods = (method != null) ? clazz.methodsByName(method) : null;
   }
 }
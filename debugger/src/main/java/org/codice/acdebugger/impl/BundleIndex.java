@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.jdi.ClassLoaderReference; // NOSONAR
+import com.sun.jdi.ClassObjectReference; // NOSONAR
+import com.sun.jdi.ObjectReference; // NOSONAR
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.codice.acdebugger.api.Debug;
+import org.codice.acdebugger.common.BundleInfo;
+
+/**
+ * Maintains an index of bundle information keyed by the bundles, protection domains, and
+ * classloaders of all bundles installed in the attached VM.
+ *
+ * <p>The index is preloaded from a snapshot retrieved from the backdoor when it is discovered and
+ * then refreshed with the bundles that changed whenever a lookup misses. Bundles are re-indexed as
+ * a whole when they change such that mirrors from previous revisions and from uninstalled bundles
+ * are dropped.
+ *
+ * <p>Since bundle classloaders are created lazily and without notifications, a miss for a
+ * classloader forces the backdoor to report bundles whose classloader was created since they were
+ * last reported. Classloaders that still cannot be found afterwards are remembered as not belonging
+ * to any bundles to avoid calling the backdoor again for each one of their classes.
+ */
+public class BundleIndex {
+  /** Key where the index is stored in the debug session once preloaded. */
+  public static final String KEY = "debug.bundles.index";
+
+  /** Maximum number of classloaders remembered as not belonging to any bundles. */
+  @VisibleForTesting static final int MAX_FOREIGN_LOADERS = 4096;
+
+  private final Map<ObjectReference, BundleInfo> infos = new ConcurrentHashMap<>();
+
+  private final Map<Long, List<ObjectReference>> mirrors = new ConcurrentHashMap<>();
+
+  private final Set<ObjectReference> foreignLoaders = ConcurrentHashMap.newKeySet();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder refreshes = new LongAdder();
+
+  /**
+   * Adds bundle information to this index, replacing all mirrors previously indexed for the same
+   * bundles. Bundles reported without any mirrors are removed from this index.
+   *
+   * @param infos the bundles, protection domains, and classloaders to index keyed by their bundle
+   *     information
+   */
+  public synchronized void index(Map<BundleInfo, List<ObjectReference>> infos) {
+    infos.forEach(
+        (info, objs) -> {
+          final List<ObjectReference> old =
+              objs.isEmpty() ? mirrors.remove(info.getId()) : mirrors.put(info.getId(), objs);
+
+          objs.forEach(
+              o -> {
+                this.infos.put(o, info);
+                foreignLoaders.remove(o);
+              });
+          if (old != null) {
+            old.stream().filter(o -> !objs.contains(o)).forEach(this.infos::remove);
+          }
+        });
+  }
+
+  /**
+   * Gets bundle information for a given object. The object can be a bundle, a protection domain, a
+   * classloader or a class loaded by a bundle's classloader.
+   *
+   * <p>The index is refreshed from the backdoor with the bundles that changed whenever the object
+   * is not found. For classloaders and classes, the backdoor is also asked to report bundles whose
+   * classloader was created since they were last reported.
+   *
+   * @param debug the current debug session
+   * @param obj the object for which to get bundle information
+   * @return the corresponding bundle information or <code>null</code> if not indexed
+   */
+  @Nullable
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* this is a console application */
+  })
+  public BundleInfo get(Debug debug, ObjectReference obj) {
+    final ObjectReference key =
+        (obj instanceof ClassObjectReference)
+            ? ((ClassObjectReference) obj).reflectedType().classLoader()
+            : obj;
+
+    if (key == null) { // loaded by the boot classloader
+      return null;
+    }
+    BundleInfo info = infos.get(key);
+
+    if (info == null) {
+      final boolean loader = (key instanceof ClassLoaderReference);
+
+      if (loader && foreignLoaders.contains(key)) {
+        return null;
+      }
+      try {
+        final Map<BundleInfo, List<ObjectReference>> changes =
+            debug.backdoor().getBundleRegistryChanges(debug, loader);
+
+        if (!changes.isEmpty()) {
+          refreshes.increment();
+          index(changes);
+          info = infos.get(key);
+        }
+        if ((info == null) && loader) {
+          addForeignLoader(key);
+        }
+      } catch (VirtualMachineError e) {
+        throw e;
+      } catch (IllegalStateException e) { // ignore and continue without it
+        return null;
+      } catch (Throwable t) {
+        // ignore and continue the long way
+        t.printStackTrace();
+        return null;
+      }
+    }
+    if (info != null) {
+      hits.increment();
+    }
+    return info;
+  }
+
+  /**
+   * Gets bundle information for a given bundle, protection domain, or classloader without
+   * refreshing this index or otherwise querying the attached VM.
+   *
+   * @param obj the object for which to get bundle information
+   * @return the corresponding bundle information or <code>null</code> if not indexed
+   */
+  @Nullable
+  public BundleInfo peek(ObjectReference obj) {
+    return infos.get(obj);
+  }
+
+  /**
+   * Checks if a given classloader was found not to belong to any bundles the last time this index
+   * was refreshed.
+   *
+   * @param loader the classloader to check
+   * @return <code>true</code> if the classloader is known not to belong to any bundles; <code>false
+   *     </code> if it is indexed or not known yet
+   */
+  public boolean isForeign(ObjectReference loader) {
+    return foreignLoaders.contains(loader);
+  }
+
+  /**
+   * Gets the number of bundles, protection domains, and classloaders currently indexed.
+   *
+   * @return the number of objects currently indexed
+   */
+  public int size() {
+    return infos.size();
+  }
+
+  /**
+   * Gets the number of lookups that were answered from this index.
+   *
+   * @return the number of lookups that were answered from this index
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Gets the number of times this index was refreshed with bundles that changed.
+   *
+   * @return the number of times this index was refreshed
+   */
+  public long refreshCount() {
+    return refreshes.sum();
+  }
+
+  private void addForeignLoader(ObjectReference loader) {
+    if (foreignLoaders.size() >= BundleIndex.MAX_FOREIGN_LOADERS) {
+      // classloaders come and go, start over rather than keeping stale ones forever
+      foreignLoaders.clear();
+    }
+    foreignLoaders.add(loader);
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.jdi.ClassLoaderReference; // NOSONAR
+import com.sun.jdi.ObjectCollectedException; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
+import com.sun.jdi.VMDisconnectedException; // NOSONAR
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import org.codice.acdebugger.api.Debug;
+
+/**
+ * Resolves the bundles and domains of classes in the background as they are loaded in the attached
+ * VM such that they can be answered locally by the time a thread fails a security check and its
+ * stack is analyzed.
+ *
+ * <p>Bundles and domains of classes are answered by the {@link BundleIndex} from their classloaders
+ * so nothing is cached per class. Instead, the class object, its reflected type, and its
+ * classloader are retrieved ahead of time since the Java debugger caches them locally once
+ * retrieved. This leaves nothing to query in the attached VM at failure time for classes whose
+ * classloader is indexed. Since method invocations in the attached VM require a suspended thread,
+ * the index is not refreshed from here. Classloaders created after the index was preloaded are
+ * picked up by the first on-demand lookup for one of their classes at which point all their classes
+ * resolved here are answered locally. Classes that were already loaded when attaching are left to
+ * be resolved on demand.
+ */
+public class ClassDomainResolver {
+  /**
+   * Maximum amount of time in milliseconds to wait for classes before checking if still running.
+   */
+  @VisibleForTesting static final long POLL_TIMEOUT = 250L;
+
+  private final BlockingQueue<ReferenceType> prepared = new LinkedBlockingQueue<>();
+
+  private final LongAdder resolved = new LongAdder();
+
+  private volatile boolean enabled = false;
+
+  /**
+   * Enables or disables this resolver.
+   *
+   * @param enabled <code>true</code> to resolve the bundles and domains of classes in the
+   *     background as they are loaded; <code>false</code> to only resolve them on demand
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      prepared.clear();
+    }
+  }
+
+  /**
+   * Checks if this resolver is enabled.
+   *
+   * @return <code>true</code> if this resolver is enabled; <code>false</code> if not
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues up a class that was just prepared in the attached VM to be resolved in the background.
+   *
+   * @param type the reference type that was prepared
+   */
+  public void classPrepared(ReferenceType type) {
+    if (enabled) {
+      prepared.offer(type);
+    }
+  }
+
+  /**
+   * Resolves queued up classes until the debug session is no longer running.
+   *
+   * @param debug the current debug session
+   * @param running a supplier to check whether the debug session is still running
+   */
+  @SuppressWarnings("squid:S1166" /* nothing left to resolve if disconnected */)
+  public void run(Debug debug, BooleanSupplier running) {
+    try {
+      while (running.getAsBoolean()) {
+        final ReferenceType type =
+            prepared.poll(ClassDomainResolver.POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        if (type != null) {
+          resolve(debug, type);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (VMDisconnectedException e) { // ignore
+    }
+    prepared.clear();
+  }
+
+  /**
+   * Gets the number of classes resolved in the background whose classloader was already indexed.
+   *
+   * @return the number of classes resolved in the background
+   */
+  public long resolvedCount() {
+    return resolved.sum();
+  }
+
+  @VisibleForTesting
+  @SuppressWarnings("squid:S1166" /* nothing to resolve if the class was already unloaded */)
+  boolean resolve(Debug debug, ReferenceType type) {
+    final BundleIndex index = debug.get(BundleIndex.KEY);
+
+    if (index == null) { // not preloaded (yet)
+      return false;
+    }
+    try {
+      final ClassLoaderReference loader = type.classLoader();
+
+      if (loader == null) { // loaded by the boot classloader
+        return false;
+      }
+      // retrieve what a lookup by class needs to get to its classloader in the index
+      type.classObject().reflectedType();
+      if (index.peek(loader) == null) { // left for the first on-demand lookup to index it
+        return false;
+      }
+      resolved.increment();
+      return true;
+    } catch (ObjectCollectedException e) { // class was already unloaded
+      return false;
+    }
+  }
+}
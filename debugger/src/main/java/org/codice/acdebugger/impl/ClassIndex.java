@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.sun.jdi.ClassType; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
+
+/**
+ * Maintains an index of all classes loaded in the attached VM keyed by their signatures.
+ *
+ * <p>The index is populated once when attaching to the VM and then kept current as classes are
+ * prepared and unloaded. Since an unload event only reports the signature of the class that was
+ * unloaded and not which of the possibly many classes loaded with that signature it was, such
+ * signatures are marked stale until they are refreshed from the attached VM.
+ */
+public class ClassIndex {
+  private final Map<String, CopyOnWriteArrayList<ClassType>> classes = new ConcurrentHashMap<>();
+
+  private final Set<String> stale = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean indexed = false;
+
+  /**
+   * Populates this index with the given classes loaded in the attached VM.
+   *
+   * @param types all reference types currently loaded in the attached VM
+   */
+  public void index(Collection<ReferenceType> types) {
+    types.forEach(this::classPrepared);
+    this.indexed = true;
+  }
+
+  /**
+   * Checks if this index was populated.
+   *
+   * @return <code>true</code> if this index was populated; <code>false</code> if not
+   */
+  public boolean isIndexed() {
+    return indexed;
+  }
+
+  /**
+   * Adds a class that was just prepared in the attached VM to this index.
+   *
+   * @param type the reference type that was prepared
+   */
+  public void classPrepared(ReferenceType type) {
+    if (type instanceof ClassType) {
+      classes
+          .computeIfAbsent(type.signature(), s -> new CopyOnWriteArrayList<>())
+          .addIfAbsent((ClassType) type);
+    }
+  }
+
+  /**
+   * Marks the classes indexed for a given signature as stale following one of them being unloaded
+   * from the attached VM.
+   *
+   * @param signature the signature of the class that was unloaded
+   */
+  public void classUnloaded(String signature) {
+    if (classes.containsKey(signature)) {
+      // mark it stale first so it is never reported as not loaded while being removed
+      stale.add(signature);
+      classes.remove(signature);
+    }
+  }
+
+  /**
+   * Refreshes the classes indexed for a given signature. Classes prepared and indexed since the
+   * signature was marked stale are preserved.
+   *
+   * @param signature the signature of the classes to refresh
+   * @param types all classes currently loaded in the attached VM for the given signature
+   */
+  public void refresh(String signature, List<ClassType> types) {
+    if (indexed) {
+      classes.compute(
+          signature,
+          (s, prepared) -> {
+            final CopyOnWriteArrayList<ClassType> list = new CopyOnWriteArrayList<>(types);
+
+            if (prepared != null) {
+              list.addAllAbsent(prepared);
+            }
+            return list.isEmpty() ? null : list;
+          });
+      stale.remove(signature);
+    }
+  }
+
+  /**
+   * Gets all indexed classes for a given signature.
+   *
+   * @param signature the signature of the classes to get
+   * @return all corresponding classes (may be empty if none loaded) or <code>null</code> if this
+   *     index was not populated yet or if it needs to be refreshed for the given signature
+   */
+  @Nullable
+  public List<ClassType> get(String signature) {
+    if (!indexed || stale.contains(signature)) {
+      return null;
+    }
+    final List<ClassType> types = classes.get(signature);
+
+    return (types != null) ? types : Collections.emptyList();
+  }
+
+  /**
+   * Gets the number of signatures currently indexed.
+   *
+   * @return the number of signatures currently indexed
+   */
+  public int size() {
+    return classes.size();
+  }
+}
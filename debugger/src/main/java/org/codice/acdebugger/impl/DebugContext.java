@@ -14,26 +14,58 @@
 package org.codice.acdebugger.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.security.Permission;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.codice.acdebugger.ACDebugger;
+import org.codice.acdebugger.api.MirrorCache;
 import org.codice.acdebugger.api.SecurityFailure;
 import org.codice.acdebugger.api.SecuritySolution;
+import org.codice.acdebugger.api.StackFrameInformation;
+import org.codice.acdebugger.common.PermissionUtil;
 
 /** This class is used to maintain context information for a given debug session. */
 public class DebugContext {
+  /**
+   * Constant used in the resolved permissions cache when a given permission string cannot be
+   * instantiated locally.
+   */
+  private static final Permission UNRESOLVED_PERMISSION = new RuntimePermission("<unresolved>");
+
   private final Backdoor backdoor = new Backdoor();
 
   private final SystemProperties systemProperties = new SystemProperties();
 
-  private final Map<String, Set<String>> permissions = new ConcurrentHashMap<>();
+  private final ClassIndex classIndex = new ClassIndex();
+
+  private final StringMirrorPool stringPool = new StringMirrorPool();
+
+  private final SingleFlight<Object, Boolean> inflightFailures = new SingleFlight<>();
+
+  private final OverheadGovernor governor = new OverheadGovernor(DebugContext::report);
+
+  private final ServiceCheckSampler serviceCheckSampler =
+      new ServiceCheckSampler(governor, DebugContext::report);
+
+  private final GrantCoalescer grantCoalescer = new GrantCoalescer(this);
+
+  private final ClassDomainResolver classDomainResolver = new ClassDomainResolver();
+
+  private final Map<String, DomainPermissions> permissions = new ConcurrentHashMap<>();
+
+  private final Map<String, Permission> resolvedPermissions = new ConcurrentHashMap<>();
 
   private final Map<String, Object> map = new ConcurrentHashMap<>();
 
@@ -41,6 +73,8 @@ public class DebugContext {
 
   private int count = 0;
 
+  @Nullable private volatile KnowledgeBase knowledge = null;
+
   private volatile boolean osgi = true;
 
   private volatile boolean continuous = false;
@@ -76,7 +110,75 @@ public class DebugContext {
   }
 
   /**
-   * Checks if a domain has or was temporarily granted a given permission.
+   * Accesses the index of classes loaded in the attached VM.
+   *
+   * @return the index of classes loaded in the attached VM
+   */
+  public ClassIndex classIndex() {
+    return classIndex;
+  }
+
+  /**
+   * Accesses the pool of strings pinned in the attached VM.
+   *
+   * @return the pool of strings pinned in the attached VM
+   */
+  public StringMirrorPool stringPool() {
+    return stringPool;
+  }
+
+  /**
+   * Accesses the coalescer used to analyze identical security failures detected concurrently only
+   * once.
+   *
+   * @return the coalescer for security failures being analyzed
+   */
+  public SingleFlight<Object, Boolean> inflightFailures() {
+    return inflightFailures;
+  }
+
+  /**
+   * Accesses the governor keeping the overhead of debugging on the attached VM within budget.
+   *
+   * @return the overhead governor
+   */
+  public OverheadGovernor governor() {
+    return governor;
+  }
+
+  /**
+   * Accesses the sampler used to pause service event permission checks when they no longer detect
+   * new failures.
+   *
+   * @return the service event permission check sampler
+   */
+  public ServiceCheckSampler serviceCheckSampler() {
+    return serviceCheckSampler;
+  }
+
+  /**
+   * Accesses the coalescer used to grant permissions in the attached VM in batches.
+   *
+   * @return the coalescer for permissions to be granted in the attached VM
+   */
+  public GrantCoalescer grantCoalescer() {
+    return grantCoalescer;
+  }
+
+  /**
+   * Accesses the resolver used to resolve the bundles and domains of classes in the background as
+   * they are loaded in the attached VM.
+   *
+   * @return the class domain resolver
+   */
+  public ClassDomainResolver classDomainResolver() {
+    return classDomainResolver;
+  }
+
+  /**
+   * Checks if a domain has or was temporarily granted a given permission either directly or
+   * implicitly via another permission that was granted (e.g. a granted file permission for a
+   * directory and all its sub-directories implies access to a file under it).
    *
    * @param domain the bundle name or domain location to check for
    * @param permission the permission to check for
@@ -87,13 +189,12 @@ public class DebugContext {
     if (domain == null) { // boot domain/bundle-0 always has all permissions
       return true;
     }
-    return permissions
-        .computeIfAbsent(domain, d -> new ConcurrentSkipListSet<>())
-        .contains(permission);
+    return permissionsFor(domain).implies(permission);
   }
 
   /**
-   * Checks if a domain is or was temporarily granted the given permissions.
+   * Checks if a domain is or was temporarily granted the given permissions either directly or
+   * implicitly via other permissions that were granted.
    *
    * @param domain the bundle name or domain location to check for
    * @param permissions the permission strings to check for
@@ -104,9 +205,7 @@ public class DebugContext {
     if (domain == null) { // boot domain/bundle-0 always has all permissions
       return true;
     }
-    return this.permissions
-        .computeIfAbsent(domain, d -> new ConcurrentSkipListSet<>())
-        .containsAll(permissions);
+    return permissionsFor(domain).implies(permissions);
   }
 
   /**
@@ -121,7 +220,12 @@ public class DebugContext {
     if (domain == null) { // boot domain/bundle-0 always has all permissions
       return false;
     }
-    return permissions.computeIfAbsent(domain, b -> new ConcurrentSkipListSet<>()).add(permission);
+    final boolean granted = permissionsFor(domain).grant(permission);
+
+    if (granted) {
+      remember(domain, Collections.singleton(permission));
+    }
+    return granted;
   }
 
   /**
@@ -136,10 +240,113 @@ public class DebugContext {
     if (domain == null) { // boot domain/bundle-0 always has all permissions
       return false;
     }
-    final Set<String> cache =
-        this.permissions.computeIfAbsent(domain, d -> new ConcurrentSkipListSet<>());
+    final boolean granted = preloadPermissions(domain, permissions);
 
-    return permissions.stream().map(cache::add).reduce(true, Boolean::logicalAnd);
+    remember(domain, permissions);
+    return granted;
+  }
+
+  /**
+   * Makes this context aware of permissions a domain is known to already have from another source
+   * (e.g. a policy file or the knowledge base).
+   *
+   * @param domain the bundle name or domain location that has the permissions
+   * @param permissions the permissions the domain has
+   * @return <code>true</code> if the domain was not known to have the permissions; <code>false
+   *     </code> if it was known to have at least one of them
+   */
+  public boolean preloadPermissions(String domain, Set<String> permissions) {
+    if (domain == null) { // boot domain/bundle-0 always has all permissions
+      return false;
+    }
+    final DomainPermissions cache = permissionsFor(domain);
+
+    return permissions.stream().map(cache::grant).reduce(true, Boolean::logicalAnd);
+  }
+
+  /**
+   * Sets the knowledge base where to persist granted permissions and reported security failures.
+   * Security failures already reported will not be reported again.
+   *
+   * <p><i>Note:</i> Permissions stored in the knowledge base are not preloaded in this context as
+   * the attached VM might have been restarted since they were granted. They are granted again in
+   * the attached VM once the backdoor is discovered (see {@link #getStoredPermissions()}).
+   *
+   * @param knowledge the knowledge base to use or <code>null</code> if none
+   */
+  public void setKnowledgeBase(@Nullable KnowledgeBase knowledge) {
+    this.knowledge = knowledge;
+  }
+
+  /**
+   * Gets all permissions granted in previous sessions as stored in the knowledge base.
+   *
+   * @return an unmodifiable map of all stored permissions keyed by the corresponding bundle names
+   *     or domain locations (empty if no knowledge base is used)
+   */
+  public Map<String, Set<String>> getStoredPermissions() {
+    final KnowledgeBase kb = knowledge;
+
+    return (kb != null) ? kb.getPermissions() : Collections.emptyMap();
+  }
+
+  private void remember(String domain, Set<String> permissions) {
+    final KnowledgeBase kb = knowledge;
+
+    if (kb != null) {
+      kb.recordPermissions(domain, permissions);
+    }
+  }
+
+  /**
+   * Checks if a given security failure was already reported in a previous session and records it as
+   * reported otherwise.
+   *
+   * @param failure the security failure to check
+   * @return <code>true</code> if the failure was already reported in a previous session; <code>
+   *     false</code> otherwise
+   */
+  private boolean wasReported(SecurityFailure failure) {
+    final KnowledgeBase kb = knowledge;
+
+    return (kb != null) && !kb.recordFailure(DebugContext.fingerprint(failure));
+  }
+
+  private DomainPermissions permissionsFor(String domain) {
+    return permissions.computeIfAbsent(domain, d -> new DomainPermissions(this::resolvePermission));
+  }
+
+  /**
+   * Converts a permission string into a corresponding permission object that can be used locally to
+   * check for implication.
+   *
+   * @param permission the permission string to convert
+   * @return the corresponding permission or <code>null</code> if it cannot be instantiated locally
+   * @throws IllegalStateException if the permission references system properties and those are not
+   *     yet initialized
+   */
+  @Nullable
+  @VisibleForTesting
+  Permission resolvePermission(String permission) {
+    Permission p = resolvedPermissions.get(permission);
+
+    if (p == null) {
+      final String expanded = systemProperties.expand(permission);
+
+      if (expanded == null) {
+        if (permission.contains("${")) {
+          throw new IllegalStateException("system properties are not initialized yet");
+        }
+        p = PermissionUtil.getPermission(permission);
+      } else {
+        p = PermissionUtil.getPermission(expanded);
+      }
+      if (p == null) {
+        p = DebugContext.UNRESOLVED_PERMISSION;
+      }
+      resolvedPermissions.put(permission, p);
+    }
+    return (p != DebugContext.UNRESOLVED_PERMISSION) ? p : null; // identity check here
   }
 
   /**
@@ -181,6 +388,37 @@ public class DebugContext {
     map.put(key, obj);
   }
 
+  /**
+   * Gets all caches of information about mirrors from the attached VM currently stored in this
+   * context.
+   *
+   * @return a list of all mirror caches
+   */
+  public List<MirrorCache<?, ?>> getMirrorCaches() {
+    return map.values()
+        .stream()
+        .filter(MirrorCache.class::isInstance)
+        .map(c -> (MirrorCache<?, ?>) c)
+        .sorted(Comparator.comparing(c -> c.getName()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Invalidates all information cached or indexed about a class that was unloaded from the attached
+   * VM.
+   *
+   * @param signature the signature of the class that was unloaded
+   */
+  public void classUnloaded(String signature) {
+    classIndex.classUnloaded(signature);
+    getMirrorCaches().forEach(c -> c.invalidateType(signature));
+  }
+
+  /** Invalidates all information cached about mirrors from the attached VM. */
+  public void invalidateMirrorCaches() {
+    getMirrorCaches().forEach(MirrorCache::invalidateAll);
+  }
+
   /**
    * Checks if we are debugging an OSGi system.
    *
@@ -361,23 +599,76 @@ public class DebugContext {
     }
   }
 
+  /**
+   * Gets the number of security failures recorded so far.
+   *
+   * @return the number of security failures recorded
+   */
+  public int getFailureCount() {
+    synchronized (failures) {
+      return failures.size();
+    }
+  }
+
   @VisibleForTesting
   List<SecurityFailure> getFailures() {
     return failures;
   }
 
+  /**
+   * Computes a fingerprint for a given security failure that is stable across sessions and
+   * consistent with how duplicate failures are detected within a session. Acceptable failures are
+   * identified by their acceptable permissions and stack whereas other failures are identified by
+   * their solutions.
+   *
+   * @param failure the security failure to compute a fingerprint for
+   * @return the corresponding fingerprint
+   */
+  @VisibleForTesting
+  static String fingerprint(SecurityFailure failure) {
+    final String s;
+
+    if (failure.isAcceptable()) {
+      s =
+          "acceptable "
+              + failure.getAcceptablePermissions()
+              + DebugContext.toString(failure.getStack());
+    } else {
+      s =
+          failure
+              .analyze()
+              .stream()
+              .map(
+                  solution ->
+                      new TreeSet<>(solution.getPermissions())
+                          + " "
+                          + solution.getGrantedDomains()
+                          + DebugContext.toString(solution.getDoPrivilegedLocations()))
+              .collect(Collectors.joining("|"));
+    }
+    return Hashing.sha256().hashString(s, StandardCharsets.UTF_8).toString();
+  }
+
+  private static String toString(List<StackFrameInformation> stack) {
+    return stack
+        .stream()
+        .map(f -> f.getDomain() + "(" + f.getLocation() + ")")
+        .collect(Collectors.joining(",", "[", "]"));
+  }
+
   @SuppressWarnings("squid:S106" /* this is a console application */)
   private void recordAcceptableFailure(SecurityFailure failure) {
     // check to see if we have another recorded failure with the exact same reason for being
     // acceptable in which case we do not want to trace it again
     if (failures
-        .stream()
-        .filter(i -> i != failure)
-        .filter(SecurityFailure::isAcceptable)
-        .anyMatch(
-            f ->
-                f.getAcceptablePermissions().equals(failure.getAcceptablePermissions())
-                    && f.getStack().equals(failure.getStack()))) {
+            .stream()
+            .filter(i -> i != failure)
+            .filter(SecurityFailure::isAcceptable)
+            .anyMatch(
+                f ->
+                    f.getAcceptablePermissions().equals(failure.getAcceptablePermissions())
+                        && f.getStack().equals(failure.getStack()))
+        || wasReported(failure)) {
       return;
     }
     if (debug) {
@@ -408,13 +699,17 @@ public class DebugContext {
         .anyMatch(solutions::equals)) {
       return;
     }
-    if (!continuous) { // stop processing
-      this.run = false;
-    }
     // check if we have only one solution and that solution is to only grant permission(s)
     // (no privileged blocks) in which case we shall cache them to avoid going through all
     // of this again (if not in continuous mode, then we don't really care about that)
+    // this must be done even if reported in a previous session as the VM might have restarted
     grantMissingPermissionsIfPossible(solutions);
+    if (wasReported(failure)) {
+      return;
+    }
+    if (!continuous) { // stop processing
+      this.run = false;
+    }
     if (debug) {
       failure.dump(osgi, continuous ? String.format("%04d - ", (++count)) : "");
     } else {
@@ -453,4 +748,10 @@ public class DebugContext {
       }
     }
   }
+
+  @SuppressWarnings("squid:S106" /* this is a console application */)
+  private static void report(String line) {
+    System.out.println(ACDebugger.PREFIX);
+    System.out.println(ACDebugger.PREFIX + line);
+  }
 }
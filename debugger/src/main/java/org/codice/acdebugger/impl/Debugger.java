@@ -18,12 +18,17 @@ package org.codice.acdebugger.impl;
 import com.google.common.annotations.VisibleForTesting;
 import com.sun.jdi.Bootstrap; // NOSONAR
 import com.sun.jdi.ClassType; // NOSONAR
+import com.sun.jdi.Location; // NOSONAR
 import com.sun.jdi.Method; // NOSONAR
+import com.sun.jdi.ReferenceType; // NOSONAR
+import com.sun.jdi.VMDisconnectedException; // NOSONAR
 import com.sun.jdi.VirtualMachine; // NOSONAR
 import com.sun.jdi.VirtualMachineManager; // NOSONAR
 import com.sun.jdi.connect.AttachingConnector; // NOSONAR
 import com.sun.jdi.connect.Connector.Argument; // NOSONAR
 import com.sun.jdi.connect.IllegalConnectorArgumentsException; // NOSONAR
+import com.sun.jdi.event.ClassPrepareEvent; // NOSONAR
+import com.sun.jdi.event.ClassUnloadEvent; // NOSONAR
 import com.sun.jdi.event.Event; // NOSONAR
 import com.sun.jdi.event.EventIterator; // NOSONAR
 import com.sun.jdi.event.EventQueue; // NOSONAR
@@ -32,21 +37,31 @@ import com.sun.jdi.event.LocatableEvent; // NOSONAR
 import com.sun.jdi.event.VMDisconnectEvent; // NOSONAR
 import com.sun.jdi.request.BreakpointRequest; // NOSONAR
 import com.sun.jdi.request.ClassPrepareRequest; // NOSONAR
+import com.sun.jdi.request.ClassUnloadRequest; // NOSONAR
 import com.sun.jdi.request.EventRequest; // NOSONAR
+import com.sun.jdi.request.EventRequestManager; // NOSONAR
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.codice.acdebugger.ACDebugger;
 import org.codice.acdebugger.api.BreakpointProcessor;
 import org.codice.acdebugger.api.Debug;
+import org.codice.acdebugger.api.MirrorCache;
+import org.codice.acdebugger.api.ReflectionUtil;
+import org.codice.acdebugger.breakpoints.GrantFlushProcessor;
+import org.codice.acdebugger.breakpoints.HasListenServicePermissionProcessor;
 
 /** This class provides the main implementation for processing breakpoint requests/callbacks. */
 public class Debugger {
@@ -56,6 +71,18 @@ public class Debugger {
 
   @VisibleForTesting static final String HOST_KEY = "hostname";
 
+  /** Maximum amount of time in milliseconds to wait for events before checking if still running. */
+  @VisibleForTesting static final long POLL_TIMEOUT = 250L;
+
+  /** Maximum number of event sets drained from the queue in one batch. */
+  @VisibleForTesting static final int MAX_BATCH_SIZE = 64;
+
+  /**
+   * Amount of time in nanoseconds in between checks for bundles started while service event
+   * permission checks are paused.
+   */
+  @VisibleForTesting static final long BUNDLE_CHECK_PERIOD = TimeUnit.SECONDS.toNanos(1L);
+
   private final ExecutorService executor;
 
   private final String transport;
@@ -68,6 +95,21 @@ public class Debugger {
 
   private final AtomicLong sequence = new AtomicLong();
 
+  /** Pending breakpoints keyed by the name of the class they are waiting for to be loaded. */
+  private final Map<String, PendingBreakpointInfo> pending = new HashMap<>();
+
+  private final LongAdder deferredCount = new LongAdder();
+
+  private final LongAdder deferredNanos = new LongAdder();
+
+  private final LongAdder loopBusyNanos = new LongAdder();
+
+  private final LongAdder batchCount = new LongAdder();
+
+  private final LongAdder eventSetCount = new LongAdder();
+
+  private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0L);
+
   private Debug debug = null;
 
   /**
@@ -167,6 +209,62 @@ public class Debugger {
     context.setDoPrivilegedBlocks(doPrivileged);
   }
 
+  /**
+   * Sets whether or not to pause monitoring service event permission checks when they no longer
+   * detect new failures and resume periodically or when bundles are started.
+   *
+   * @param adaptive <code>true</code> to adaptively monitor service event permission checks; <code>
+   *     false</code> to always monitor them
+   */
+  public void setAdaptiveServiceMonitoring(boolean adaptive) {
+    context.serviceCheckSampler().setEnabled(adaptive);
+  }
+
+  /**
+   * Sets whether or not to resolve the bundles and domains of classes in the background as they are
+   * loaded in the attached VM.
+   *
+   * @param preResolve <code>true</code> to resolve them in the background; <code>false</code> to
+   *     only resolve them when analyzing security failures
+   */
+  public void setPreResolvingDomains(boolean preResolve) {
+    context.classDomainResolver().setEnabled(preResolve);
+  }
+
+  /**
+   * Sets the maximum overhead the debugger can impose on the attached VM after which it will
+   * progressively reduce what it monitors and analyzes until it is back within budget.
+   *
+   * @param percent the maximum percentage of a thread's time the debugger can keep it suspended or
+   *     <code>0</code> for no limit
+   */
+  public void setMaximumOverhead(double percent) {
+    context.governor().setBudget(percent);
+  }
+
+  /**
+   * Adds all permissions granted by the given policy file to the permissions the debugger already
+   * knows about such that failures covered by them are recognized without having to check with the
+   * attached VM.
+   *
+   * <p><i>Note:</i> This method should be called after {@link #setOSGi(boolean)}.
+   *
+   * @param policy the policy file to add permissions from
+   */
+  public void addPolicy(PolicyFile policy) {
+    policy.getPermissions(context.isOSGi()).forEach(context::preloadPermissions);
+  }
+
+  /**
+   * Sets the knowledge base where to persist granted permissions and reported security failures
+   * such that they survive reconnections and restarts.
+   *
+   * @param knowledge the knowledge base to use or <code>null</code> if none
+   */
+  public void setKnowledgeBase(@Nullable KnowledgeBase knowledge) {
+    context.setKnowledgeBase(knowledge);
+  }
+
   /** Attaches this debugger to the VM. */
   @SuppressWarnings("squid:S106" /* this is a console application */)
   public Debugger attach() throws IOException, IllegalConnectorArgumentsException {
@@ -191,6 +289,17 @@ public class Debugger {
     final VirtualMachine vm = debug.virtualMachine();
 
     vm.setDebugTraceMode(VirtualMachine.TRACE_NONE);
+    // keep track of prepared and unloaded classes to maintain our class index current and to
+    // invalidate information cached about them; starting before indexing to not miss any
+    final EventRequestManager erm = debug.eventRequestManager();
+    final ClassPrepareRequest cpr = erm.createClassPrepareRequest();
+    final ClassUnloadRequest cur = erm.createClassUnloadRequest();
+
+    cpr.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+    cpr.enable();
+    cur.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+    cur.enable();
+    context.classIndex().index(vm.allClasses());
     System.out.println(ACDebugger.PREFIX);
     System.out.println(ACDebugger.PREFIX + "Attached to:");
     Stream.of(vm.description().split("[\r\n]"))
@@ -247,23 +356,127 @@ public class Debugger {
     }
     System.out.println(ACDebugger.PREFIX);
     System.out.println(line);
-    while (context.isRunning()) {
-      final EventSet eventSet = evtQueue.remove();
-      final EventIterator i = eventSet.eventIterator();
-      final AtomicBoolean resume = new AtomicBoolean(true); // unless otherwise specified
+    final long start = System.nanoTime();
+    final ClassDomainResolver resolver = context.classDomainResolver();
+    long lastBundleCheck = start;
 
-      try {
-        while (i.hasNext()) {
-          handleEventSet(eventSet, i, resume);
-        }
-      } finally {
-        if (resume.get()) {
-          eventSet.resume();
-        }
+    if (resolver.isEnabled()) {
+      executor.execute(() -> resolver.run(debug, context::isRunning));
+    }
+    while (context.isRunning()) {
+      // wake up regularly to check if we are still running and then drain whatever else is
+      // already queued up as one batch
+      EventSet eventSet = evtQueue.remove(Debugger.POLL_TIMEOUT);
+      int count = 0;
+
+      while (eventSet != null) {
+        final long busy = System.nanoTime();
+
+        dispatch(eventSet, busy);
+        loopBusyNanos.add(System.nanoTime() - busy);
+        eventSet =
+            ((++count < Debugger.MAX_BATCH_SIZE) && context.isRunning())
+                ? evtQueue.remove(1L)
+                : null;
+      }
+      if (count > 0) {
+        batchCount.increment();
+        eventSetCount.add(count);
+        maxBatchSize.accumulate(count);
+      }
+      // make sure the overhead gets re-evaluated and paused checks resumed even if nothing is
+      // being suspended anymore
+      final long now = System.nanoTime();
+
+      context.governor().tick(now);
+      context.serviceCheckSampler().tick(now);
+      if (context.serviceCheckSampler().isPaused()
+          && (now - lastBundleCheck >= Debugger.BUNDLE_CHECK_PERIOD)) {
+        lastBundleCheck = now;
+        // paused checks would otherwise only be resumed when a security failure happens to look
+        // up an unknown bundle
+        executor.execute(this::checkBundleChanges);
       }
     }
+    final long elapsed = System.nanoTime() - start;
+
     executor.shutdown();
     executor.awaitTermination(1L, TimeUnit.MINUTES);
+    reportPendingGrants();
+    if (context.isDebug()) {
+      context
+          .getMirrorCaches()
+          .forEach(c -> System.out.println(ACDebugger.PREFIX + "Cache statistics for " + c));
+      final MirrorCache<?, ?> members = context.get(ReflectionUtil.MEMBERS_CACHE);
+
+      if (members != null) {
+        final int failures = context.getFailureCount();
+
+        System.out.printf(
+            "%sAvoided %d metadata requests to the attached VM (%.1f per security failure)%n",
+            ACDebugger.PREFIX,
+            members.hitCount(),
+            (failures > 0) ? ((double) members.hitCount() / failures) : 0.0D);
+      }
+      final StringMirrorPool pool = context.stringPool();
+
+      System.out.printf(
+          "%sReused %d pinned string mirrors %d times%n",
+          ACDebugger.PREFIX, pool.size(), pool.hitCount());
+      System.out.printf(
+          "%sRegistered %d deferred breakpoints while suspending class loading threads for %d ms%n",
+          ACDebugger.PREFIX,
+          deferredCount.sum(),
+          TimeUnit.NANOSECONDS.toMillis(deferredNanos.sum()));
+      System.out.printf(
+          "%sCoalesced %d identical security failures detected concurrently%n",
+          ACDebugger.PREFIX, context.inflightFailures().coalescedCount());
+      System.out.printf(
+          "%sEvent loop was busy %.1f%% of the time dispatching %d event sets in %d batches (at most %d per batch)%n",
+          ACDebugger.PREFIX,
+          (elapsed > 0L) ? (100.0D * loopBusyNanos.sum() / elapsed) : 0.0D,
+          eventSetCount.sum(),
+          batchCount.sum(),
+          maxBatchSize.get());
+      final OverheadGovernor governor = context.governor();
+
+      System.out.printf(
+          "%sKept threads in the attached VM suspended for %d ms",
+          ACDebugger.PREFIX, TimeUnit.NANOSECONDS.toMillis(governor.totalNanos()));
+      if (governor.isEnabled()) {
+        System.out.printf(
+            " (at most %.1f%% of a thread's time) while degrading %d times to stay within the %.1f%% budget",
+            governor.worstOverhead(), governor.degradationCount(), governor.getBudget());
+      }
+      System.out.println();
+      final ServiceCheckSampler sampler = context.serviceCheckSampler();
+
+      if (sampler.isEnabled()) {
+        System.out.printf(
+            "%sPaused service event permission checks %d times for not detecting new failures%n",
+            ACDebugger.PREFIX, sampler.pauseCount());
+      }
+      final GrantCoalescer coalescer = context.grantCoalescer();
+
+      if (coalescer.isEnabled()) {
+        System.out.printf(
+            "%sGranted %d permissions in the attached VM in %d batches%n",
+            ACDebugger.PREFIX, coalescer.grantedCount(), coalescer.flushCount());
+      }
+      if (resolver.isEnabled()) {
+        System.out.printf(
+            "%sResolved the bundles and domains of %d classes in the background%n",
+            ACDebugger.PREFIX, resolver.resolvedCount());
+      }
+      final BundleIndex index = context.get(BundleIndex.KEY);
+
+      if (index != null) {
+        System.out.printf(
+            "%sPreloaded %d bundle mirrors which answered %d lookups (refreshed %d times)%n",
+            ACDebugger.PREFIX, index.size(), index.hitCount(), index.refreshCount());
+      }
+    }
+    context.stringPool().release();
   }
 
   @VisibleForTesting
@@ -287,12 +500,28 @@ public class Debugger {
 
     if (clazz == null) {
       // class is either invalid or has not been loaded yet so let's wait for it before
-      // adding a corresponding breakpoint
-      final ClassPrepareRequest cpr = debug.eventRequestManager().createClassPrepareRequest();
-
-      cpr.putProperty(Debugger.INFO_KEY, new PendingBreakpointInfo(cpr, processor, l));
-      cpr.addClassFilter(l.getClassName());
-      cpr.enable();
+      // adding a corresponding breakpoint; all breakpoints waiting for the same class share
+      // a single request (class filters on a given request are combined and not alternatives)
+      synchronized (pending) {
+        final String name = l.getClassName();
+        final PendingBreakpointInfo info = pending.get(name);
+
+        if (info != null) {
+          info.add(processor, l);
+          return;
+        }
+        final ClassPrepareRequest cpr = debug.eventRequestManager().createClassPrepareRequest();
+        final PendingBreakpointInfo newInfo = new PendingBreakpointInfo(cpr, name);
+
+        newInfo.add(processor, l);
+        pending.put(name, newInfo);
+        cpr.putProperty(Debugger.INFO_KEY, newInfo);
+        cpr.addClassFilter(name);
+        // only suspend the thread loading the class while we register the breakpoints instead of
+        // the whole VM as the thread preparing the class is the one about to initialize and use it
+        cpr.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+        cpr.enable();
+      }
     } else {
       l.setClassReference(clazz);
       final EventRequest request = processor.createRequest(debug, l);
@@ -301,16 +530,122 @@ public class Debugger {
         request.putProperty(Debugger.INFO_KEY, new BreakpointInfo(request, processor, l));
         request.setSuspendPolicy(BreakpointRequest.SUSPEND_EVENT_THREAD);
         request.enable();
+        if (processor instanceof HasListenServicePermissionProcessor) {
+          // service event checks are the first thing to go when the overhead gets too high or
+          // when they no longer detect anything new
+          context.governor().addSheddable(request);
+        } else if (processor instanceof GrantFlushProcessor) {
+          // only get hold of the backdoor's helper thread when there are permissions to grant
+          context.grantCoalescer().setFlushRequest(request);
+        }
       }
     }
   }
 
+  private void dispatch(EventSet eventSet, long arrival) {
+    final EventIterator i = eventSet.eventIterator();
+    final AtomicBoolean resume = new AtomicBoolean(true); // unless otherwise specified
+
+    try {
+      // stop as soon as the set was handed off to a worker thread as it then owns it
+      while (resume.get() && i.hasNext()) {
+        handleEventSet(eventSet, i, resume, arrival);
+      }
+    } finally {
+      if (resume.get()) {
+        eventSet.resume();
+        resumed(eventSet, arrival);
+      }
+    }
+  }
+
+  /**
+   * Reports to the governor the time a thread was kept suspended from the moment an event set was
+   * received until it was resumed.
+   *
+   * @param eventSet the event set that was just resumed
+   * @param arrival the value of the system's high-resolution time source when the set was received
+   */
+  @SuppressWarnings("squid:S1166" /* nothing to account for if disconnected */)
+  private void resumed(EventSet eventSet, long arrival) {
+    if (eventSet.suspendPolicy() == EventRequest.SUSPEND_NONE) {
+      return;
+    }
+    final long nanos = System.nanoTime() - arrival;
+    long thread = 0L; // the whole VM unless we find the thread the event occurred in
+
+    try {
+      for (final Event event : eventSet) {
+        if (event instanceof LocatableEvent) {
+          thread = ((LocatableEvent) event).thread().uniqueID();
+          break;
+        } else if (event instanceof ClassPrepareEvent) {
+          thread = ((ClassPrepareEvent) event).thread().uniqueID();
+          break;
+        }
+      }
+    } catch (VMDisconnectedException e) { // ignore
+      return;
+    }
+    context.governor().suspended(thread, nanos);
+  }
+
+  /**
+   * Reports permissions still waiting to be granted in the attached VM when the loop ends since
+   * there is no longer a thread we can use to grant them.
+   */
+  @SuppressWarnings("squid:S106" /* this is a console application */)
+  private void reportPendingGrants() {
+    final Map<String, Set<String>> pending = context.grantCoalescer().getPending();
+
+    if (!pending.isEmpty()) {
+      System.out.println(ACDebugger.PREFIX);
+      System.out.println(
+          ACDebugger.PREFIX + "Permissions left without being granted in the attached VM:");
+      pending.forEach(
+          (d, ps) ->
+              ps.forEach(p -> System.out.println(ACDebugger.PREFIX + "    " + d + ": " + p)));
+    }
+  }
+
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148", /* this is a console application */
+    "squid:S1166" /* nothing left to check if disconnected */
+  })
+  private void checkBundleChanges() {
+    try {
+      debug.backdoor().checkBundleChanges(debug);
+    } catch (VMDisconnectedException e) { // ignore
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) { // ignore and check again later
+      t.printStackTrace();
+    }
+  }
+
+  private void addPending(EventRequest request, PendingBreakpointInfo info) throws Exception {
+    final long start = System.nanoTime();
+
+    request.disable();
+    debug.eventRequestManager().deleteEventRequest(request);
+    synchronized (pending) {
+      pending.remove(info.getClassName(), info);
+    }
+    for (final Map.Entry<BreakpointProcessor, BreakpointLocation> e : info.getBreakpoints()) {
+      add(e.getKey(), e.getValue());
+      deferredCount.increment();
+    }
+    deferredNanos.add(System.nanoTime() - start);
+  }
+
   @SuppressWarnings({
     "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
     "squid:S1148", /* this is a console application */
     "squid:S106" /* this is a console application */
   })
-  private void handleEventSet(EventSet eventSet, EventIterator i, AtomicBoolean resume) {
+  private void handleEventSet(
+      EventSet eventSet, EventIterator i, AtomicBoolean resume, long arrival) {
     try {
       final Event event = i.next();
 
@@ -319,6 +654,18 @@ public class Debugger {
         System.out.println(ACDebugger.PREFIX + "Attached VM has disconnected");
         context.stop();
         return;
+      } else if (event instanceof ClassPrepareEvent) {
+        // index it before possibly registering pending breakpoints for it below
+        final ReferenceType type = ((ClassPrepareEvent) event).referenceType();
+
+        context.classIndex().classPrepared(type);
+        context.classDomainResolver().classPrepared(type);
+      } else if (event instanceof ClassUnloadEvent) {
+        final String signature = ((ClassUnloadEvent) event).classSignature();
+
+        // invalidating caches might require querying the attached VM so don't do it on this thread
+        executor.execute(() -> context.classUnloaded(signature));
+        return;
       }
       final EventRequest request = event.request();
 
@@ -328,26 +675,22 @@ public class Debugger {
       final Object oinfo = request.getProperty(Debugger.INFO_KEY);
 
       if (oinfo instanceof PendingBreakpointInfo) {
-        final PendingBreakpointInfo info = (PendingBreakpointInfo) oinfo;
-
-        request.disable();
-        debug.eventRequestManager().deleteEventRequest(request);
-        add(info.getProcessor(), info.getLocation());
+        addPending(request, (PendingBreakpointInfo) oinfo);
       } else if (oinfo instanceof BreakpointInfo) {
-        final String method = ((BreakpointInfo) oinfo).getLocation().getMethod();
-
-        if ((method != null) && (event instanceof LocatableEvent)) {
-          final Method currentMethod =
-              ((LocatableEvent) event).thread().frame(0).location().method();
-
-          if ((currentMethod == null) || !method.equals(currentMethod.name())) {
-            // skip this event as its location doesn't match the expected method
-            return;
-          }
+        final BreakpointLocation location = ((BreakpointInfo) oinfo).getLocation();
+        final String method = location.getMethod();
+
+        // the event already carries its location and the expected methods were resolved when the
+        // breakpoint was registered so we don't need to query the attached VM to filter it
+        if ((method != null)
+            && (event instanceof LocatableEvent)
+            && !Debugger.isIn(((LocatableEvent) event).location(), method, location)) {
+          // skip this event as its location doesn't match the expected method
+          return;
         }
         // process the set on a separate thread an let the thread resume it when all done
         resume.set(false);
-        executor.execute(new EventSetThread(eventSet, i, event));
+        executor.execute(new EventSetThread(eventSet, i, event, arrival));
       }
     } catch (VirtualMachineError e) {
       resume.set(true);
@@ -358,17 +701,32 @@ public class Debugger {
     }
   }
 
+  private static boolean isIn(Location location, String method, BreakpointLocation l) {
+    final Method currentMethod = location.method();
+
+    if (currentMethod == null) {
+      return false;
+    }
+    final List<Method> methods = l.getMethodReferences();
+
+    return (methods != null)
+        ? methods.contains(currentMethod)
+        : method.equals(currentMethod.name());
+  }
+
   /** Used to process a single event set. */
   class EventSetThread implements Runnable {
     private final long sequence = Debugger.this.sequence.incrementAndGet();
     private final EventSet eventSet;
     private final EventIterator i;
     private final Event initialEvent;
+    private final long arrival;
 
-    private EventSetThread(EventSet eventSet, EventIterator i, Event initialEvent) {
+    private EventSetThread(EventSet eventSet, EventIterator i, Event initialEvent, long arrival) {
       this.eventSet = eventSet;
       this.i = i;
       this.initialEvent = initialEvent;
+      this.arrival = arrival;
     }
 
     @SuppressWarnings({
@@ -407,6 +765,7 @@ public class Debugger {
       } finally {
         thread.setName(name);
         eventSet.resume();
+        resumed(eventSet, arrival);
       }
     }
   }
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+import java.net.SocketPermission;
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Permissions;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of all permissions a given domain is known to have or was temporarily granted.
+ *
+ * <p>In addition to the permission strings themselves, all permissions that can be instantiated
+ * locally are maintained in a {@link PermissionCollection} such that implication can be checked
+ * without communicating with the attached VM. For example, a domain granted <code>
+ * java.io.FilePermission "${ddf.home}${/}-", "read"</code> is known to also have read access to any
+ * files under that directory.
+ *
+ * <p>{@link SocketPermission}s are only ever matched as is since checking them for implication can
+ * resolve host names on the debugger's host while the thread that failed is suspended in the
+ * attached VM.
+ */
+class DomainPermissions {
+  private final Set<String> strings = new ConcurrentSkipListSet<>();
+
+  /** Permission strings granted but not yet added to the permission collection. */
+  private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+  private final PermissionCollection permissions = new Permissions();
+
+  private final Function<String, Permission> resolver;
+
+  /**
+   * Creates a new domain permissions object.
+   *
+   * @param resolver a function used to convert permission strings into permission objects which
+   *     returns <code>null</code> if a permission cannot be instantiated locally or throws {@link
+   *     IllegalStateException} if it cannot be instantiated yet
+   */
+  DomainPermissions(Function<String, Permission> resolver) {
+    this.resolver = resolver;
+  }
+
+  /**
+   * Checks if this domain has or was temporarily granted a given permission either directly or
+   * implicitly via another permission.
+   *
+   * @param permission the permission to check for
+   * @return <code>true</code> if the domain has or was granted the specified permission; <code>
+   *     false</code> if not
+   */
+  boolean implies(String permission) {
+    if (strings.contains(permission)) {
+      return true;
+    }
+    try {
+      final Permission p = resolver.apply(permission);
+
+      if (!DomainPermissions.canBeImpliedLocally(p)) { // only implied by itself
+        return false;
+      }
+      resolvePending();
+      return permissions.implies(p);
+    } catch (IllegalStateException e) { // cannot tell for now so assume the worst
+      return false;
+    }
+  }
+
+  /**
+   * Checks if this domain has or was temporarily granted all the given permissions either directly
+   * or implicitly via other permissions.
+   *
+   * @param permissions the permissions to check for
+   * @return <code>true</code> if the domain has or was granted all the specified permissions;
+   *     <code>false</code> if not
+   */
+  boolean implies(Set<String> permissions) {
+    return strings.containsAll(permissions) || permissions.stream().allMatch(this::implies);
+  }
+
+  /**
+   * Temporarily grants this domain a given permission if not already granted.
+   *
+   * @param permission the permission to be granted
+   * @return <code>true</code> if the permission was granted to the domain; <code>false</code> if it
+   *     was already granted
+   */
+  boolean grant(String permission) {
+    if (strings.add(permission)) {
+      pending.add(permission);
+      return true;
+    }
+    return false;
+  }
+
+  private void resolvePending() {
+    // only go through what is currently pending as we might be re-queuing some
+    for (int i = pending.size(); i > 0; i--) {
+      final String permission = pending.poll();
+
+      if (permission == null) {
+        return;
+      }
+      try {
+        final Permission p = resolver.apply(permission);
+
+        if (DomainPermissions.canBeImpliedLocally(p)) {
+          permissions.add(p);
+        }
+      } catch (IllegalStateException e) { // cannot be resolved yet so keep it for later
+        pending.add(permission);
+      }
+    }
+  }
+
+  private static boolean canBeImpliedLocally(@Nullable Permission permission) {
+    // SocketPermission.implies() might do reverse DNS lookups
+    return (permission != null) && !(permission instanceof SocketPermission);
+  }
+}
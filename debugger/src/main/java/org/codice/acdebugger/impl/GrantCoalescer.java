@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.sun.jdi.request.EventRequest; // NOSONAR
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.codice.acdebugger.api.Debug;
+
+/**
+ * Coalesces permissions to be granted in the attached VM per domain such that threads that failed a
+ * security check can resume right away instead of waiting for each permission to be granted through
+ * the backdoor.
+ *
+ * <p>Once a flush request is registered with this coalescer, the request is only enabled while
+ * permissions are pending. The request is expected to target the backdoor's helper thread which
+ * periodically wakes up in the attached VM such that all permissions accumulated in between are
+ * granted at once, through a single call to the backdoor, without ever suspending the threads that
+ * required them. Permissions are only recorded as granted in the debug context once they were
+ * successfully granted in the attached VM; if that fails, they are put back to be retried with the
+ * next flush.
+ */
+public class GrantCoalescer {
+  private final DebugContext context;
+
+  private Map<String, Set<String>> pending = new LinkedHashMap<>();
+
+  @Nullable private EventRequest flushRequest = null;
+
+  private final LongAdder granted = new LongAdder();
+
+  private final LongAdder flushes = new LongAdder();
+
+  /**
+   * Creates a new coalescer.
+   *
+   * @param context the debug context where to record permissions once granted
+   */
+  public GrantCoalescer(DebugContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Checks if this coalescer is enabled. Permissions should only be added to this coalescer when
+   * enabled, otherwise they might never be granted.
+   *
+   * @return <code>true</code> if a flush request was registered; <code>false</code> otherwise
+   */
+  public synchronized boolean isEnabled() {
+    return flushRequest != null;
+  }
+
+  /**
+   * Registers the request used to get hold of a suspended thread when permissions are pending. The
+   * request is only enabled while permissions are pending.
+   *
+   * @param request the flush request
+   */
+  public synchronized void setFlushRequest(EventRequest request) {
+    this.flushRequest = request;
+    request.setEnabled(!pending.isEmpty());
+  }
+
+  /**
+   * Adds a permission to be granted to a domain in the attached VM.
+   *
+   * @param domain the bundle name or domain location to grant the permission to
+   * @param permission the permission to be granted
+   * @return <code>true</code> if the permission was added; <code>false</code> if it was already
+   *     pending
+   */
+  public synchronized boolean add(String domain, String permission) {
+    if (pending.isEmpty() && (flushRequest != null)) {
+      flushRequest.enable();
+    }
+    return pending.computeIfAbsent(domain, d -> new LinkedHashSet<>()).add(permission);
+  }
+
+  /**
+   * Gets the number of permissions currently pending.
+   *
+   * @return the number of permissions waiting to be granted
+   */
+  public synchronized int size() {
+    return pending.values().stream().mapToInt(Set::size).sum();
+  }
+
+  /**
+   * Gets a copy of all permissions currently pending.
+   *
+   * @return the permissions waiting to be granted keyed by domain
+   */
+  public synchronized Map<String, Set<String>> getPending() {
+    final Map<String, Set<String>> copy = new LinkedHashMap<>();
+
+    pending.forEach((d, p) -> copy.put(d, new LinkedHashSet<>(p)));
+    return copy;
+  }
+
+  /**
+   * Grants all pending permissions in the attached VM using the thread associated with the given
+   * debug session and records them as granted in the debug context. Permissions that could not be
+   * granted are kept pending.
+   *
+   * @param debug the current debug session which must be associated with a suspended thread
+   */
+  @SuppressWarnings({
+    "squid:S1181", /* letting VirtualMachineErrors bubble out directly, so ok to catch Throwable */
+    "squid:S1148" /* this is a console application */
+  })
+  public void flush(Debug debug) {
+    final Map<String, Set<String>> permissions = drain();
+
+    if (permissions.isEmpty()) {
+      return;
+    }
+    try {
+      debug.backdoor().grantPermissions(debug, permissions);
+    } catch (VirtualMachineError e) {
+      restore(permissions);
+      throw e;
+    } catch (IllegalStateException e) { // keep them for the next flush and continue
+      restore(permissions);
+      return;
+    } catch (Throwable t) { // keep them for the next flush and continue
+      restore(permissions);
+      t.printStackTrace();
+      return;
+    }
+    flushes.increment();
+    permissions.forEach(
+        (d, p) -> {
+          context.grantPermissions(d, p);
+          granted.add(p.size());
+        });
+  }
+
+  /**
+   * Gets the number of permissions that were granted in the attached VM.
+   *
+   * @return the number of permissions granted in the attached VM
+   */
+  public long grantedCount() {
+    return granted.sum();
+  }
+
+  /**
+   * Gets the number of times pending permissions were granted in the attached VM.
+   *
+   * @return the number of times pending permissions were granted
+   */
+  public long flushCount() {
+    return flushes.sum();
+  }
+
+  private synchronized Map<String, Set<String>> drain() {
+    final Map<String, Set<String>> permissions = pending;
+
+    if (!permissions.isEmpty()) {
+      this.pending = new LinkedHashMap<>();
+      if (flushRequest != null) {
+        flushRequest.disable();
+      }
+    }
+    return permissions;
+  }
+
+  private synchronized void restore(Map<String, Set<String>> permissions) {
+    final Map<String, Set<String>> newer = pending;
+
+    this.pending = permissions;
+    newer.forEach((d, p) -> pending.computeIfAbsent(d, k -> new LinkedHashSet<>()).addAll(p));
+    if (newer.isEmpty() && (flushRequest != null)) { // otherwise it was re-enabled when added
+      flushRequest.enable();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.codice.acdebugger.common.JsonUtils;
+
+/**
+ * Provides a file-backed store for the knowledge accumulated while debugging such that it survives
+ * reconnections and restarts of both the debugger and the attached VM.
+ *
+ * <p>The store keeps track of permissions granted to domains (keyed by bundle names or compressed
+ * domain locations which are stable across restarts) and of fingerprints for all security failures
+ * already reported. It is persisted as a journal of Json entries, one per line, which is appended
+ * to as soon as new knowledge is recorded. Corrupted entries (e.g. a last line truncated when the
+ * debugger was killed) are ignored when loading the store.
+ */
+public class KnowledgeBase {
+  private final File file;
+
+  private final Map<String, Set<String>> permissions = new ConcurrentHashMap<>();
+
+  private final Set<String> failures = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates a knowledge base backed by the specified file and loads all knowledge already stored in
+   * it if it exists.
+   *
+   * @param file the file backing the knowledge base
+   * @throws IOException if an error occurs while loading the knowledge base
+   */
+  public KnowledgeBase(File file) throws IOException {
+    this.file = file;
+    if (file.exists()) {
+      Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).forEach(this::load);
+    }
+  }
+
+  /**
+   * Gets the file backing this knowledge base.
+   *
+   * @return the file backing this knowledge base
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Gets all permissions known to have been granted keyed by the domains they were granted to.
+   *
+   * @return an unmodifiable map of all granted permissions keyed by the corresponding bundle names
+   *     or domain locations
+   */
+  public Map<String, Set<String>> getPermissions() {
+    return Collections.unmodifiableMap(permissions);
+  }
+
+  /**
+   * Records permissions granted to a given domain.
+   *
+   * @param domain the bundle name or domain location the permissions were granted to
+   * @param permissions the permissions that were granted
+   * @return <code>true</code> if at least one of the permissions was not already known to have been
+   *     granted to the specified domain; <code>false</code> otherwise
+   */
+  public boolean recordPermissions(String domain, Set<String> permissions) {
+    final Set<String> granted = grantedTo(domain);
+    final List<String> added =
+        permissions.stream().filter(granted::add).collect(Collectors.toList());
+
+    if (added.isEmpty()) {
+      return false;
+    }
+    append(new Entry(domain, added, null));
+    return true;
+  }
+
+  /**
+   * Records a security failure that was reported.
+   *
+   * @param fingerprint the fingerprint for the security failure that was reported
+   * @return <code>true</code> if the failure was not already reported; <code>false</code> if it was
+   */
+  public boolean recordFailure(String fingerprint) {
+    if (!failures.add(fingerprint)) {
+      return false;
+    }
+    append(new Entry(null, null, fingerprint));
+    return true;
+  }
+
+  private Set<String> grantedTo(String domain) {
+    return permissions.computeIfAbsent(domain, d -> new ConcurrentSkipListSet<>());
+  }
+
+  @VisibleForTesting
+  void load(String line) {
+    if (line.isEmpty()) {
+      return;
+    }
+    try {
+      final Entry entry = JsonUtils.fromJson(line, Entry.class);
+
+      if (entry == null) {
+        return;
+      }
+      if ((entry.domain != null) && (entry.permissions != null)) {
+        grantedTo(entry.domain).addAll(entry.permissions);
+      }
+      if (entry.failure != null) {
+        failures.add(entry.failure);
+      }
+    } catch (JsonParseException e) { // ignore corrupted entries
+    }
+  }
+
+  @SuppressWarnings({
+    "squid:S106", /* this is a console application */
+    "squid:S1148" /* this is a console application */
+  })
+  private synchronized void append(Entry entry) {
+    try {
+      Files.write(
+          file.toPath(),
+          Collections.singletonList(JsonUtils.toJson(entry)),
+          StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) { // keep going with what we have in memory
+      e.printStackTrace();
+    }
+  }
+
+  /** Defines a Json object to represent a single entry in the knowledge base. */
+  @VisibleForTesting
+  static class Entry {
+    @Nullable private final String domain;
+
+    @Nullable private final List<String> permissions;
+
+    @Nullable private final String failure;
+
+    Entry() {
+      this(null, null, null);
+    }
+
+    Entry(@Nullable String domain, @Nullable List<String> permissions, @Nullable String failure) {
+      this.domain = domain;
+      this.permissions = (permissions != null) ? new ArrayList<>(permissions) : null;
+      this.failure = failure;
+    }
+  }
+}
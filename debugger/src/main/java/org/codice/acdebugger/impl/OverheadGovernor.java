@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.jdi.VMDisconnectedException; // NOSONAR
+import com.sun.jdi.request.EventRequest; // NOSONAR
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the cost of debugging within a budget expressed as a percentage of the time threads in the
+ * attached VM can be kept suspended by the debugger.
+ *
+ * <p>The time each event set keeps a thread suspended, from the moment the event is received until
+ * the set is resumed, is accumulated per thread and globally over fixed windows. At the end of a
+ * window, if the thread that was suspended the most exceeded the budget, the governor degrades one
+ * level: it first disables breakpoints registered as sheddable (e.g. service event permission
+ * checks) and then only analyzes security failures not already seen for a given permission and
+ * domain. Levels are restored one at a time once a whole window stays under half the budget. Every
+ * change of level is reported.
+ */
+public class OverheadGovernor {
+  /** Default length of the windows over which suspension time is measured. */
+  public static final long DEFAULT_WINDOW = TimeUnit.SECONDS.toNanos(5L);
+
+  /** Level at which everything is monitored and analyzed normally. */
+  public static final int NORMAL = 0;
+
+  /** Level at which sheddable breakpoints are disabled. */
+  public static final int SHEDDING = 1;
+
+  /** Level at which only novel security failures are analyzed. */
+  public static final int NOVEL_ONLY = 2;
+
+  private final long window;
+
+  private final Consumer<String> reporter;
+
+  private final List<EventRequest> sheddable = new CopyOnWriteArrayList<>();
+
+  /** Suspension time accumulated for each thread during the current window keyed by thread id. */
+  private final Map<Long, LongAdder> threads = new ConcurrentHashMap<>();
+
+  private final LongAdder windowNanos = new LongAdder();
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  private final LongAdder degradations = new LongAdder();
+
+  /** Maximum percentage of a thread's time the debugger can keep it suspended (0 to disable). */
+  private volatile double budget = 0.0D;
+
+  private volatile long windowStart;
+
+  private volatile int level = OverheadGovernor.NORMAL;
+
+  /** Whether sheddable requests were paused regardless of the overhead. */
+  private volatile boolean paused = false;
+
+  private volatile double worst = 0.0D;
+
+  /**
+   * Creates a new governor reporting level changes using the given reporter.
+   *
+   * @param reporter the consumer to report level changes to
+   */
+  public OverheadGovernor(Consumer<String> reporter) {
+    this(OverheadGovernor.DEFAULT_WINDOW, reporter);
+  }
+
+  @VisibleForTesting
+  OverheadGovernor(long window, Consumer<String> reporter) {
+    this.window = window;
+    this.reporter = reporter;
+    this.windowStart = System.nanoTime();
+  }
+
+  /**
+   * Sets the budget for the governor.
+   *
+   * @param budget the maximum percentage of a thread's time the debugger can keep it suspended or
+   *     <code>0</code> to disable governing
+   */
+  public void setBudget(double budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Gets the budget for the governor.
+   *
+   * @return the maximum percentage of a thread's time the debugger can keep it suspended or <code>
+   *     0</code> if governing is disabled
+   */
+  public double getBudget() {
+    return budget;
+  }
+
+  /**
+   * Checks if the governor is enabled.
+   *
+   * @return <code>true</code> if a budget was set; <code>false</code> otherwise
+   */
+  public boolean isEnabled() {
+    return budget > 0.0D;
+  }
+
+  /**
+   * Registers a breakpoint request that can be disabled when the budget is exceeded.
+   *
+   * @param request the request to register
+   */
+  public synchronized void addSheddable(EventRequest request) {
+    sheddable.add(request);
+    if (!isSheddableEnabled()) {
+      request.disable();
+    }
+  }
+
+  /**
+   * Pauses or resumes all sheddable requests regardless of the overhead (e.g. when they no longer
+   * detect anything new). Paused requests stay disabled even if the governor is back within budget
+   * and resumed requests stay disabled until it is.
+   *
+   * @param paused <code>true</code> to pause sheddable requests; <code>false</code> to resume them
+   */
+  public synchronized void setPaused(boolean paused) {
+    this.paused = paused;
+    setEnabled(isSheddableEnabled());
+  }
+
+  @VisibleForTesting
+  List<EventRequest> getSheddable() {
+    return sheddable;
+  }
+
+  /**
+   * Gets the current degradation level.
+   *
+   * @return the current degradation level
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Checks if only security failures not already seen should be analyzed.
+   *
+   * @return <code>true</code> if only novel security failures should be analyzed; <code>false
+   *     </code> if all should be
+   */
+  public boolean isAnalyzingNovelFailuresOnly() {
+    return level >= OverheadGovernor.NOVEL_ONLY;
+  }
+
+  /**
+   * Records the time a thread in the attached VM was kept suspended while processing an event.
+   *
+   * @param thread the unique id of the thread that was suspended
+   * @param nanos the number of nanoseconds the thread was suspended
+   */
+  public void suspended(long thread, long nanos) {
+    totalNanos.add(nanos);
+    if (isEnabled()) {
+      windowNanos.add(nanos);
+      threads.computeIfAbsent(thread, t -> new LongAdder()).add(nanos);
+      tick(System.nanoTime());
+    }
+  }
+
+  /**
+   * Checks if the current window is over in which case the overhead is evaluated and the
+   * degradation level adjusted.
+   *
+   * @param now the current value of the system's high-resolution time source in nanoseconds
+   */
+  public void tick(long now) {
+    if (isEnabled() && (now - windowStart >= window)) {
+      evaluate(now);
+    }
+  }
+
+  /**
+   * Gets the total time threads in the attached VM were kept suspended while processing events.
+   *
+   * @return the total suspension time in nanoseconds
+   */
+  public long totalNanos() {
+    return totalNanos.sum();
+  }
+
+  /**
+   * Gets the highest overhead measured for a single thread in any window.
+   *
+   * @return the highest percentage of a thread's time it was kept suspended in a window
+   */
+  public double worstOverhead() {
+    return worst;
+  }
+
+  /**
+   * Gets the number of times the governor had to degrade.
+   *
+   * @return the number of degradations
+   */
+  public long degradationCount() {
+    return degradations.sum();
+  }
+
+  private synchronized void evaluate(long now) {
+    final long elapsed = now - windowStart;
+
+    if (elapsed < window) { // someone else already evaluated it
+      return;
+    }
+    final long max = threads.values().stream().mapToLong(LongAdder::sum).max().orElse(0L);
+    // a suspension is only recorded once resumed so it can have started in a previous window, in
+    // which case it still cannot account for more than the whole window
+    final double overhead = Math.min(100.0D, 100.0D * max / elapsed);
+    final double global = 100.0D * windowNanos.sum() / elapsed;
+
+    threads.clear();
+    windowNanos.reset();
+    this.windowStart = now;
+    this.worst = Math.max(worst, overhead);
+    if ((overhead > budget) && (level < OverheadGovernor.NOVEL_ONLY)) {
+      degrade(overhead, global);
+    } else if ((overhead < budget / 2.0D) && (level > OverheadGovernor.NORMAL)) {
+      restore(overhead, global);
+    }
+  }
+
+  private void degrade(double overhead, double global) {
+    final String why =
+        String.format(
+            "Overhead on the attached VM reached %.1f%% of a thread's time (%.1f%% overall) which exceeds the %.1f%% budget; ",
+            overhead, global, budget);
+
+    degradations.increment();
+    if ((level == OverheadGovernor.NORMAL) && !sheddable.isEmpty()) {
+      this.level = OverheadGovernor.SHEDDING;
+      setEnabled(isSheddableEnabled());
+      reporter.accept(why + "disabling service event permission checks");
+    } else {
+      this.level = OverheadGovernor.NOVEL_ONLY;
+      reporter.accept(why + "only analyzing security failures not already seen");
+    }
+  }
+
+  private void restore(double overhead, double global) {
+    final String why =
+        String.format(
+            "Overhead on the attached VM is down to %.1f%% of a thread's time (%.1f%% overall) which is within the %.1f%% budget; ",
+            overhead, global, budget);
+
+    if ((level == OverheadGovernor.NOVEL_ONLY) && !sheddable.isEmpty()) {
+      this.level = OverheadGovernor.SHEDDING;
+      reporter.accept(why + "analyzing all security failures again");
+    } else {
+      final boolean shedding = (level == OverheadGovernor.SHEDDING);
+
+      this.level = OverheadGovernor.NORMAL;
+      if (shedding) {
+        final boolean enabled = isSheddableEnabled();
+
+        setEnabled(enabled);
+        reporter.accept(
+            why
+                + (enabled
+                    ? "re-enabling service event permission checks"
+                    : "no longer disabling service event permission checks"));
+      } else {
+        reporter.accept(why + "analyzing all security failures again");
+      }
+    }
+  }
+
+  private boolean isSheddableEnabled() {
+    return !paused && (level < OverheadGovernor.SHEDDING);
+  }
+
+  @SuppressWarnings("squid:S1166" /* nothing left to enable or disable in the attached VM */)
+  private void setEnabled(boolean enabled) {
+    for (final EventRequest request : sheddable) {
+      try {
+        request.setEnabled(enabled);
+      } catch (VMDisconnectedException e) { // ignore
+      }
+    }
+  }
+}
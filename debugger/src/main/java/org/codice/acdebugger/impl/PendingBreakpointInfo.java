@@ -16,33 +16,47 @@ package org.codice.acdebugger.impl;
 // NOSONAR - squid:S1191 - Using the Java debugger API
 
 import com.sun.jdi.request.ClassPrepareRequest; // NOSONAR
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.codice.acdebugger.api.BreakpointProcessor;
 
 /**
- * Information about a pending breakpoint to register which is awaiting its corresponding class to
- * be loaded.
+ * Information about pending breakpoints to register which are all awaiting the same class to be
+ * loaded.
  */
 public class PendingBreakpointInfo {
   private final ClassPrepareRequest request;
-  private final BreakpointProcessor processor;
-  private final BreakpointLocation location;
+  private final String className;
+  private final List<Map.Entry<BreakpointProcessor, BreakpointLocation>> breakpoints =
+      new ArrayList<>(4);
 
-  PendingBreakpointInfo(
-      ClassPrepareRequest request, BreakpointProcessor processor, BreakpointLocation location) {
+  PendingBreakpointInfo(ClassPrepareRequest request, String className) {
     this.request = request;
-    this.processor = processor;
-    this.location = location;
+    this.className = className;
   }
 
   public ClassPrepareRequest getRequest() {
     return request;
   }
 
-  public BreakpointLocation getLocation() {
-    return location;
+  public String getClassName() {
+    return className;
   }
 
-  public BreakpointProcessor getProcessor() {
-    return processor;
+  /**
+   * Gets all pending breakpoints awaiting the class to be loaded.
+   *
+   * @return a list of breakpoint processors and their corresponding locations in the order they
+   *     were added
+   */
+  public synchronized List<Map.Entry<BreakpointProcessor, BreakpointLocation>> getBreakpoints() {
+    return Collections.unmodifiableList(new ArrayList<>(breakpoints));
+  }
+
+  synchronized void add(BreakpointProcessor processor, BreakpointLocation location) {
+    breakpoints.add(new AbstractMap.SimpleImmutableEntry<>(processor, location));
   }
 }
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import net.sourceforge.prograde.policyparser.ParsedPermission;
+import net.sourceforge.prograde.policyparser.ParsedPolicy;
+import net.sourceforge.prograde.policyparser.ParsedPolicyEntry;
+import net.sourceforge.prograde.policyparser.Parser;
+import org.codice.acdebugger.common.PermissionUtil;
+
+/**
+ * Provides access to the permissions granted by a policy file written in either the standard Java
+ * (i.e. <code>default.policy</code>) or the pro-grade format.
+ *
+ * <p>Permissions are reported exactly as written in the policy file which means that <code>
+ * ${property}</code> references are kept as is. This is consistent with how permissions and
+ * locations are compressed when reported by the debugger and they will be expanded as needed when
+ * checking for implication.
+ *
+ * <p>Only grant entries that apply unconditionally to a given code base are considered. Entries
+ * that depend on signers or principals are ignored as well as any code bases affected by a deny
+ * entry since we cannot tell for sure which permissions they end up with.
+ */
+public class PolicyFile {
+  private static final String FILE_PREFIX = "file:/";
+
+  private final File file;
+
+  /** Permissions keyed by the code bases they were granted to. */
+  private final Map<String, Set<String>> permissions = new LinkedHashMap<>();
+
+  private final Set<String> deniedCodebases = new HashSet<>();
+
+  private boolean denyingAll = false;
+
+  /**
+   * Loads the specified policy file.
+   *
+   * @param file the policy file to load
+   * @throws IOException if an error occurs while reading or parsing the policy file
+   */
+  @SuppressWarnings("squid:S2221" /* the policy parser is declared as throwing Exception */)
+  public PolicyFile(File file) throws IOException {
+    this.file = file;
+    final ParsedPolicy policy;
+
+    try (final Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      policy = new Parser(false).parse(reader);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("failed to parse policy file '" + file + "': " + e.getMessage(), e);
+    }
+    policy.getGrantEntries().forEach(this::grant);
+    policy.getDenyEntries().forEach(this::deny);
+  }
+
+  /**
+   * Gets the policy file.
+   *
+   * @return the policy file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Gets all permissions granted by this policy file keyed by the domains they were granted to.
+   *
+   * <p>For OSGi containers, code bases of the form <code>file:/bundle1/bundle2</code> are reported
+   * as granting each listed bundle the associated permissions. Otherwise, code bases are reported
+   * as is.
+   *
+   * @param osgi <code>true</code> if debugging an OSGi container; <code>false</code> otherwise
+   * @return a map of all permissions granted keyed by the corresponding domains
+   */
+  public Map<String, Set<String>> getPermissions(boolean osgi) {
+    final Map<String, Set<String>> domains = new LinkedHashMap<>();
+
+    if (!denyingAll) {
+      permissions
+          .entrySet()
+          .stream()
+          .filter(e -> !deniedCodebases.contains(e.getKey()))
+          .forEach(
+              e ->
+                  PolicyFile.domains(e.getKey(), osgi)
+                      .forEach(
+                          d ->
+                              domains
+                                  .computeIfAbsent(d, k -> new LinkedHashSet<>())
+                                  .addAll(e.getValue())));
+    }
+    return domains;
+  }
+
+  private void grant(ParsedPolicyEntry entry) {
+    final String codebase = entry.getCodebase();
+
+    if ((codebase == null) || (entry.getSignedBy() != null) || !entry.getPrincipals().isEmpty()) {
+      return;
+    }
+    final Set<String> set = permissions.computeIfAbsent(codebase, k -> new LinkedHashSet<>());
+
+    entry
+        .getPermissions()
+        .stream()
+        .filter(p -> p.getSignedBy() == null)
+        .map(PolicyFile::getPermissionString)
+        .forEach(set::add);
+  }
+
+  private void deny(ParsedPolicyEntry entry) {
+    final String codebase = entry.getCodebase();
+
+    if (codebase == null) {
+      this.denyingAll = true;
+    } else {
+      deniedCodebases.add(codebase);
+    }
+  }
+
+  private static String getPermissionString(ParsedPermission permission) {
+    final String name = permission.getPermissionName();
+
+    if (name == null) {
+      return permission.getPermissionType();
+    }
+    return PermissionUtil.getPermissionString(
+        permission.getPermissionType(), name, permission.getActions());
+  }
+
+  private static Stream<String> domains(String codebase, boolean osgi) {
+    if (osgi && codebase.startsWith(PolicyFile.FILE_PREFIX) && !codebase.contains("${")) {
+      return Stream.of(codebase.substring(PolicyFile.FILE_PREFIX.length()).split("/"))
+          .filter(s -> !s.isEmpty());
+    }
+    return Stream.of(codebase);
+  }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Adaptively samples the breakpoints used to monitor service event permission checks.
+ *
+ * <p>Once all bundles have been checked for the services they listen to, further checks only
+ * confirm what is already known. When enabled, the sampler pauses the corresponding requests
+ * registered as sheddable with the overhead governor after a given number of checks or a given
+ * amount of time without detecting any new failures and resumes them periodically or as soon as a
+ * bundle is started. Every change is reported.
+ */
+public class ServiceCheckSampler {
+  /** Default number of checks without new failures after which requests are disabled. */
+  public static final long DEFAULT_QUIET_CHECKS = 1000L;
+
+  /** Default amount of time without new failures after which requests are disabled. */
+  public static final long DEFAULT_QUIET_TIME = TimeUnit.SECONDS.toNanos(30L);
+
+  /** Default amount of time after which disabled requests are re-enabled. */
+  public static final long DEFAULT_REARM_PERIOD = TimeUnit.MINUTES.toNanos(5L);
+
+  private final long quietChecks;
+
+  private final long quietTime;
+
+  private final long rearmPeriod;
+
+  private final OverheadGovernor governor;
+
+  private final Consumer<String> reporter;
+
+  private final AtomicLong checks = new AtomicLong();
+
+  /** Whether the first check was processed which is when the quiet time starts being measured. */
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  private final LongAdder pauses = new LongAdder();
+
+  private volatile boolean enabled = false;
+
+  private volatile long lastFailure;
+
+  /** Time at which requests were paused or <code>-1</code> if they are not. */
+  private volatile long pausedAt = -1L;
+
+  /**
+   * Creates a new sampler.
+   *
+   * @param governor the governor with which the requests to pause are registered as sheddable
+   * @param reporter the consumer to report changes to
+   */
+  public ServiceCheckSampler(OverheadGovernor governor, Consumer<String> reporter) {
+    this(
+        ServiceCheckSampler.DEFAULT_QUIET_CHECKS,
+        ServiceCheckSampler.DEFAULT_QUIET_TIME,
+        ServiceCheckSampler.DEFAULT_REARM_PERIOD,
+        governor,
+        reporter);
+  }
+
+  @VisibleForTesting
+  ServiceCheckSampler(
+      long quietChecks,
+      long quietTime,
+      long rearmPeriod,
+      OverheadGovernor governor,
+      Consumer<String> reporter) {
+    this.quietChecks = quietChecks;
+    this.quietTime = quietTime;
+    this.rearmPeriod = rearmPeriod;
+    this.governor = governor;
+    this.reporter = reporter;
+  }
+
+  /**
+   * Sets whether or not to adaptively sample service event permission checks.
+   *
+   * @param enabled <code>true</code> to disable service event permission checks when they no longer
+   *     detect new failures; <code>false</code> to always monitor them
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Checks if service event permission checks are adaptively sampled.
+   *
+   * @return <code>true</code> if service event permission checks are disabled when they no longer
+   *     detect new failures; <code>false</code> if they are always monitored
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Checks if the requests are currently paused by this sampler.
+   *
+   * @return <code>true</code> if the requests are paused; <code>false</code> otherwise
+   */
+  public boolean isPaused() {
+    return pausedAt >= 0L;
+  }
+
+  /**
+   * Gets the number of times the requests were paused because no new failures were detected.
+   *
+   * @return the number of times the requests were paused
+   */
+  public long pauseCount() {
+    return pauses.sum();
+  }
+
+  /**
+   * Called each time a service event permission check is processed.
+   *
+   * @param failure <code>true</code> if a new failure was detected; <code>false</code> if the check
+   *     did not teach us anything new
+   */
+  public void checked(boolean failure) {
+    final long now = System.nanoTime();
+
+    // the VM can take a long time to get to the first check after we attach (e.g. while booting) so
+    // only start measuring the quiet time from there
+    if (started.compareAndSet(false, true)) {
+      this.lastFailure = now;
+    }
+    if (failure) {
+      checks.set(0L);
+      this.lastFailure = now;
+    } else if (enabled
+        && ((checks.incrementAndGet() >= quietChecks) || (now - lastFailure >= quietTime))) {
+      pause(now);
+    }
+  }
+
+  /**
+   * Resumes the requests if they were paused by this sampler (e.g. when a bundle is started).
+   *
+   * @param why the reason for resuming the requests
+   */
+  public void resume(String why) {
+    resume(System.nanoTime(), why);
+  }
+
+  /**
+   * Checks if the requests were paused long enough in which case they are resumed.
+   *
+   * @param now the current value of the system's high-resolution time source in nanoseconds
+   */
+  public void tick(long now) {
+    final long paused = pausedAt;
+
+    if ((paused >= 0L) && (now - paused >= rearmPeriod)) {
+      resume(now, String.format("after %d minutes", TimeUnit.NANOSECONDS.toMinutes(rearmPeriod)));
+    }
+  }
+
+  private synchronized void pause(long now) {
+    if (pausedAt >= 0L) { // someone else already did
+      return;
+    }
+    this.pausedAt = now;
+    pauses.increment();
+    governor.setPaused(true);
+    reporter.accept(
+        String.format(
+            "No new service event permission failures detected in %d checks over %d seconds; disabling service event permission checks",
+            checks.get(), TimeUnit.NANOSECONDS.toSeconds(now - lastFailure)));
+  }
+
+  private synchronized void resume(long now, String why) {
+    if (pausedAt < 0L) {
+      return;
+    }
+    this.pausedAt = -1L;
+    this.lastFailure = now;
+    checks.set(0L);
+    // the governor will keep them disabled if it is still over budget
+    governor.setPaused(false);
+    reporter.accept("Re-enabling service event permission checks " + why);
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent computations of the same result such that only the first caller for a given
+ * key performs the computation while the others arriving before it completes wait for and share its
+ * result.
+ *
+ * <p>Results are not cached beyond the completion of the computation. Should the computation fail,
+ * the waiting callers fall back to performing it themselves.
+ *
+ * @param <K> the type of keys identifying computations
+ * @param <V> the type of computed results
+ */
+public class SingleFlight<K, V> {
+  private final Map<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Performs or waits for the computation identified by the given key.
+   *
+   * @param key the key identifying the computation
+   * @param task the task to call to perform the computation if none is in progress for the key
+   * @return the computed result
+   * @throws Exception if the computation failed
+   */
+  @SuppressWarnings({
+    "squid:S00112", /* the task can throw anything */
+    "squid:S1166" /* falling back to computing it ourselves if the first caller failed */
+  })
+  public V execute(K key, Callable<V> task) throws Exception {
+    final CompletableFuture<V> future = new CompletableFuture<>();
+    final CompletableFuture<V> existing = inflight.putIfAbsent(key, future);
+
+    if (existing != null) {
+      try {
+        final V result = existing.get();
+
+        coalesced.increment();
+        return result;
+      } catch (ExecutionException e) {
+        return task.call();
+      }
+    }
+    try {
+      final V result = task.call();
+
+      future.complete(result);
+      return result;
+    } catch (Exception | Error e) { // NOSONAR - rethrowing it right away
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inflight.remove(key, future);
+    }
+  }
+
+  /**
+   * Gets the number of callers which shared the result computed by another one.
+   *
+   * @return the number of coalesced calls
+   */
+  public long coalescedCount() {
+    return coalesced.sum();
+  }
+}
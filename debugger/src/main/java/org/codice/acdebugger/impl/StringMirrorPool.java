@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl;
+
+// NOSONAR - squid:S1191 - Using the Java debugger API
+
+import com.sun.jdi.ObjectCollectedException; // NOSONAR
+import com.sun.jdi.StringReference; // NOSONAR
+import com.sun.jdi.VMDisconnectedException; // NOSONAR
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Maintains a bounded pool of string mirrors in the attached VM for which garbage collection is
+ * disabled for the duration of the debug session. Strings repeatedly passed as arguments when
+ * invoking methods in the attached VM (e.g. service property keys or permission actions) can then
+ * be reused as is without having to create and protect a new mirror each time.
+ *
+ * <p>A string is only pinned the second time it is requested such that strings used only once do
+ * not fill up the pool.
+ */
+public class StringMirrorPool {
+  /** Default maximum number of strings kept pinned in the attached VM. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+  private final int maximumSize;
+
+  private final Map<String, StringReference> pinned = new ConcurrentHashMap<>();
+
+  private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+  private final LongAdder hits = new LongAdder();
+
+  /** Creates a new pool bounded to the default maximum size. */
+  public StringMirrorPool() {
+    this(StringMirrorPool.DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new pool.
+   *
+   * @param maximumSize the maximum number of strings to keep pinned in the attached VM
+   */
+  public StringMirrorPool(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Gets a pinned mirror for the given string. A new mirror is pinned if the string was already
+   * requested before and the pool is not full.
+   *
+   * @param value the string for which to get a pinned mirror
+   * @param protector a function used to create a new mirror for the string in the attached VM with
+   *     garbage collection disabled
+   * @return the corresponding pinned mirror or <code>null</code> if the string is not pinned
+   */
+  @Nullable
+  public StringReference get(String value, Function<String, StringReference> protector) {
+    final StringReference ref = pinned.get(value);
+
+    if (ref != null) {
+      hits.increment();
+      return ref;
+    } else if ((pinned.size() >= maximumSize) || seen.add(value)) {
+      if (seen.size() > maximumSize * 4) { // don't let strings used only once accumulate
+        seen.clear();
+      }
+      return null;
+    }
+    final StringReference pref = protector.apply(value);
+    final StringReference previous = pinned.putIfAbsent(value, pref);
+
+    if (previous != null) { // someone else pinned it first so keep theirs
+      pref.enableCollection();
+      return previous;
+    }
+    seen.remove(value);
+    return pref;
+  }
+
+  /**
+   * Gets the number of strings currently pinned in the attached VM.
+   *
+   * @return the number of pinned strings
+   */
+  public int size() {
+    return pinned.size();
+  }
+
+  /**
+   * Gets the number of times a pinned mirror was reused.
+   *
+   * @return the number of times a pinned mirror was reused
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Re-enables garbage collection in the attached VM for all pinned strings and clears the pool.
+   */
+  @SuppressWarnings("squid:S1166" /* nothing left to release in the attached VM */)
+  public void release() {
+    for (final StringReference ref : pinned.values()) {
+      try {
+        ref.enableCollection();
+      } catch (ObjectCollectedException | VMDisconnectedException e) { // ignore
+      }
+    }
+    pinned.clear();
+    seen.clear();
+  }
+}
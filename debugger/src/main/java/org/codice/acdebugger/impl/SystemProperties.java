@@ -19,9 +19,12 @@ import com.sun.jdi.ClassType; // NOSONAR
 import com.sun.jdi.Method; // NOSONAR
 import com.sun.jdi.ObjectReference; // NOSONAR
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.codice.acdebugger.ACDebugger;
 import org.codice.acdebugger.api.Debug;
 import org.codice.acdebugger.api.ReflectionUtil;
@@ -38,7 +41,7 @@ public class SystemProperties {
 
   private boolean initializing = false;
 
-  private PropertiesUtil util;
+  private volatile PropertiesUtil util;
 
   /**
    * Initializes the backdoor.
@@ -51,27 +54,10 @@ public class SystemProperties {
     if (systemReference == null) {
       throw new IllegalStateException("unable to locate system properties");
     }
-    final ReflectionUtil reflection = debug.reflection();
-
     try {
       this.initializing = true;
       this.systemReference = systemReference;
-      final Method getProperty =
-          reflection.findMethod(
-              systemReference.referenceType(),
-              "getProperty",
-              SystemProperties.METHOD_SIGNATURE_STRING_ARG_STRING_RESULT);
-      final Map<String, String> map = new LinkedHashMap<>();
-
-      PropertiesUtil.propertiesNames()
-          .forEach(
-              name -> {
-                final String value = reflection.invoke(systemReference, getProperty, name);
-
-                if (value != null) {
-                  map.put(name, value);
-                }
-              });
+      final Map<String, String> map = getProperties(debug, systemReference);
       final Properties props = new Properties();
 
       props.putAll(map);
@@ -115,13 +101,38 @@ public class SystemProperties {
   /**
    * Compresses the specified strings by replacing occurrences of configured system properties.
    *
+   * <p><i>Note:</i> Once initialized, compressing does not require any locking.
+   *
    * @param debug the current debug information
    * @param s the string to compress
    * @return the corresponding compressed string
    */
-  public synchronized String compress(Debug debug, String s) {
-    findSystemProperties(debug); // make sure the system properties are enabled
-    return util.compress(s);
+  public String compress(Debug debug, String s) {
+    PropertiesUtil u = this.util;
+
+    if (u == null) {
+      findSystemProperties(debug); // make sure the system properties are enabled
+      u = this.util;
+    }
+    return u.compress(s);
+  }
+
+  /**
+   * Expands the specified strings by replacing occurrences of <code>${property.name}</code> for
+   * configured system properties with their values from the attached VM.
+   *
+   * <p><i>Note:</i> This method will not attempt to initialize the system properties as it can be
+   * called from outside the context of a breakpoint.
+   *
+   * @param s the string to expand
+   * @return the corresponding expanded string or <code>null</code> if the system properties have
+   *     not been initialized yet
+   */
+  @Nullable
+  public String expand(String s) {
+    final PropertiesUtil u = this.util;
+
+    return (u != null) ? u.expand(s) : null;
   }
 
   private synchronized void findSystemProperties(Debug debug) {
@@ -133,6 +144,40 @@ public class SystemProperties {
     }
   }
 
+  /**
+   * Retrieves the values for all configured system properties. They are all retrieved at once
+   * through the backdoor when it is available; otherwise they are retrieved one at a time.
+   *
+   * @param debug the current debug information
+   * @param systemReference the system properties reference
+   * @return the values for all defined properties keyed by their names in the configured order
+   */
+  @SuppressWarnings("squid:S1166" /* falling back to retrieving them one at a time */)
+  private Map<String, String> getProperties(Debug debug, ObjectReference systemReference) {
+    final List<String> names = PropertiesUtil.propertiesNames().collect(Collectors.toList());
+
+    try {
+      return debug.backdoor().getSystemProperties(debug, names);
+    } catch (IllegalStateException e) { // backdoor not available yet so continue the long way
+    }
+    final ReflectionUtil reflection = debug.reflection();
+    final Method getProperty =
+        reflection.findMethod(
+            systemReference.referenceType(),
+            "getProperty",
+            SystemProperties.METHOD_SIGNATURE_STRING_ARG_STRING_RESULT);
+    final Map<String, String> map = new LinkedHashMap<>();
+
+    for (final String name : names) {
+      final String value = reflection.invoke(systemReference, getProperty, name);
+
+      if (value != null) {
+        map.put(name, value);
+      }
+    }
+    return map;
+  }
+
   private ObjectReference getSystemProperties(Debug debug, ClassType clazz) {
     try {
       return debug.reflection().invokeStatic(clazz, "getProperties", "()Ljava/util/Properties;");
@@ -16,6 +16,8 @@ package org.codice.acdebugger
 import org.codice.acdebugger.breakpoints.AccessControlContextCheckProcessor
 import org.codice.acdebugger.breakpoints.BackdoorProcessor
 import org.codice.acdebugger.impl.Debugger
+import org.codice.acdebugger.impl.KnowledgeBase
+import org.codice.acdebugger.impl.PolicyFile
 import spock.lang.Unroll
 
 import java.lang.reflect.Modifier
@@ -51,6 +53,8 @@ class ACDebuggerSpec extends spock.lang.Specification {
       loop_count * debugger.setFailing(failing)
       loop_count * debugger.setMonitoringService(service)
       loop_count * debugger.setDoPrivilegedBlocks(!admin)
+      loop_count * debugger.setAdaptiveServiceMonitoring(false)
+      loop_count * debugger.setMaximumOverhead(0.0D)
       loop_count * debugger.add({ it instanceof BackdoorProcessor })
       loop_count * debugger.add({ it instanceof AccessControlContextCheckProcessor })
       loop_count * debugger.loop() >> null >> {
@@ -71,6 +75,132 @@ class ACDebuggerSpec extends spock.lang.Specification {
       'osgi is enabled'          || false | false      | false | false    | false   | false   | false     | true  || 1
   }
 
+  def "test call() with policy files"() {
+    given:
+      def file1 = new File('file1.policy')
+      def file2 = new File('file2.policy')
+      def policy1 = Stub(PolicyFile)
+      def policy2 = Stub(PolicyFile)
+      def debugger = Mock(Debugger)
+      def acd = Spy(ACDebugger)
+
+      acd.init(false, true, false, false, false, false, null, null, null, false, 0L, true, true)
+      setField(acd, 'policies', [file1, file2])
+
+    when:
+      acd.call()
+
+    then:
+      1 * acd.newPolicyFile(file1) >> policy1
+      1 * acd.newPolicyFile(file2) >> policy2
+      2 * acd.attach() >> debugger
+
+    and:
+      2 * debugger.addPolicy(policy1)
+      2 * debugger.addPolicy(policy2)
+      2 * debugger.loop() >> null >> {
+        // stop reconnecting such that the loop will exit
+        acd.init(false, true, false, false, false, false, null, null, null, false, 0L, false, true)
+      }
+  }
+
+  def "test call() when failing to load a policy file"() {
+    given:
+      def exception = new SecurityException()
+      def file = new File('file.policy')
+      def acd = Spy(ACDebugger)
+
+      acd.init(false, false, false, false, false, false, null, null, null, false, 0L, false, true)
+      setField(acd, 'policies', [file])
+
+      System.setSecurityManager(new SecurityManager() {
+        @Override
+        public void checkExit(int status) {
+          assert status == 2
+          throw exception
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {}
+      })
+
+    when:
+      acd.call()
+
+    then:
+      def e = thrown(SecurityException)
+
+      e.is(exception)
+
+    and:
+      1 * acd.newPolicyFile(file) >> { throw new IOException('testing') }
+      0 * acd.attach()
+
+    cleanup:
+      System.setSecurityManager0(null) // must be done through private method
+  }
+
+  def "test call() with a knowledge base"() {
+    given:
+      def file = new File('file.kb')
+      def knowledge = Stub(KnowledgeBase)
+      def debugger = Mock(Debugger)
+      def acd = Spy(ACDebugger)
+
+      acd.init(false, true, false, false, false, false, null, null, null, false, 0L, true, true)
+      setField(acd, 'store', file)
+
+    when:
+      acd.call()
+
+    then:
+      1 * acd.newKnowledgeBase(file) >> knowledge
+      2 * acd.attach() >> debugger
+
+    and:
+      2 * debugger.setKnowledgeBase(knowledge)
+      2 * debugger.loop() >> null >> {
+        // stop reconnecting such that the loop will exit
+        acd.init(false, true, false, false, false, false, null, null, null, false, 0L, false, true)
+      }
+  }
+
+  def "test call() when failing to load the knowledge base"() {
+    given:
+      def exception = new SecurityException()
+      def file = new File('file.kb')
+      def acd = Spy(ACDebugger)
+
+      acd.init(false, false, false, false, false, false, null, null, null, false, 0L, false, true)
+      setField(acd, 'store', file)
+
+      System.setSecurityManager(new SecurityManager() {
+        @Override
+        public void checkExit(int status) {
+          assert status == 2
+          throw exception
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {}
+      })
+
+    when:
+      acd.call()
+
+    then:
+      def e = thrown(SecurityException)
+
+      e.is(exception)
+
+    and:
+      1 * acd.newKnowledgeBase(file) >> { throw new IOException('testing') }
+      0 * acd.attach()
+
+    cleanup:
+      System.setSecurityManager0(null) // must be done through private method
+  }
+
   @Unroll
   def "test call() when reconnect is enabled but not continuous"() {
     given:
@@ -178,4 +308,11 @@ class ACDebuggerSpec extends spock.lang.Specification {
       1 * acd.sleep() >> null
       1 * debugger2.attach() >> debugger2
   }
-}
\ No newline at end of file
+
+  private static def setField(ACDebugger acd, String name, Object value) {
+    def field = ACDebugger.getDeclaredField(name)
+
+    field.accessible = true
+    field.set(acd, value)
+  }
+}
@@ -16,7 +16,9 @@ package org.codice.acdebugger.api
 import com.sun.jdi.Location
 import com.sun.jdi.StackFrame
 import org.codice.acdebugger.ReflectionSpecification
+import org.codice.acdebugger.common.BundleInfo
 import org.codice.acdebugger.impl.Backdoor
+import org.codice.acdebugger.impl.BundleIndex
 import spock.lang.Shared
 import spock.lang.Unroll
 
@@ -114,7 +116,7 @@ class BundleUtilSpec extends ReflectionSpecification {
   def "test get() when not found in cache and with no backdoor and #and_what"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
 
     when:
@@ -161,7 +163,7 @@ class BundleUtilSpec extends ReflectionSpecification {
   def "test get() when found in cache as #as_what"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
 
     when:
       def result = new BundleUtil(debug).get(BUNDLE)
@@ -186,7 +188,7 @@ class BundleUtilSpec extends ReflectionSpecification {
   def "test get() when not found in cache and provided by backdoor as #as_what"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
 
     when:
@@ -211,11 +213,57 @@ class BundleUtilSpec extends ReflectionSpecification {
       'null'          || null
   }
 
+  def "test get() when not found in cache and found in the bundle index"() {
+    given:
+      def debug = Mock(Debug)
+      def cache = Mock(MirrorCache)
+      def index = Mock(BundleIndex)
+
+    when:
+      def result = new BundleUtil(debug).get(BUNDLE)
+
+    then:
+      result == BUNDLE_NAME
+
+    and:
+      1 * debug.reflection() >> REFLECTION
+      1 * debug.computeIfAbsent(*_) >> cache
+      1 * cache.get(BUNDLE) >> null
+      1 * debug.get(BundleIndex.KEY) >> index
+      1 * index.get(debug, BUNDLE) >> new BundleInfo(1L, BUNDLE_NAME, '1.0', 'mvn:bundle', 'file:/bundle')
+      0 * debug.backdoor()
+      1 * cache.put(BUNDLE, BUNDLE_NAME) >> null
+  }
+
+  def "test get() when not found in cache nor in the bundle index and provided by backdoor"() {
+    given:
+      def debug = Mock(Debug)
+      def cache = Mock(MirrorCache)
+      def index = Mock(BundleIndex)
+      def backdoor = Mock(Backdoor)
+
+    when:
+      def result = new BundleUtil(debug).get(BUNDLE)
+
+    then:
+      result == 'some.backdoor.bundle'
+
+    and:
+      1 * debug.reflection() >> REFLECTION
+      1 * debug.computeIfAbsent(*_) >> cache
+      1 * cache.get(BUNDLE) >> null
+      1 * debug.get(BundleIndex.KEY) >> index
+      1 * index.get(debug, BUNDLE) >> null
+      1 * debug.backdoor() >> backdoor
+      1 * backdoor.getBundle(*_) >> 'some.backdoor.bundle'
+      1 * cache.put(BUNDLE, 'some.backdoor.bundle') >> null
+  }
+
   @Unroll
   def "test get() when not found in cache and backdoor failed with #exception.class.simpleName"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
 
     when:
@@ -239,7 +287,7 @@ class BundleUtilSpec extends ReflectionSpecification {
   def "test get() when not found in cache and backdoor failed with OutOfMemoryError"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
       def exception = new OutOfMemoryError()
 
@@ -13,6 +13,10 @@
  */
 package org.codice.acdebugger.api
 
+import com.sun.jdi.ClassObjectReference
+import com.sun.jdi.EnhancedStackFrame
+import com.sun.jdi.FrameValues
+import com.sun.jdi.LocalVariable
 import com.sun.jdi.Location
 import com.sun.jdi.ObjectReference
 import com.sun.jdi.ReferenceType
@@ -57,13 +61,20 @@ class DebugSpec extends Specification {
     thread() >> THREAD
   }
 
+  @Shared
+  def CLASS_OBJ = Mock(ClassObjectReference)
+  @Shared
+  def CLASS_OBJ2 = Mock(ClassObjectReference)
+
   @Shared
   def CLASS = Mock(ReferenceType) {
     name() >> CLASS_NAME
+    classObject() >> CLASS_OBJ
   }
   @Shared
   def CLASS2 = Mock(ReferenceType) {
     name() >> CLASS_NAME2
+    classObject() >> CLASS_OBJ2
   }
 
   @Shared
@@ -225,6 +236,47 @@ class DebugSpec extends Specification {
       1 * vm.eventRequestManager() >> erm
   }
 
+  def "test frameValues() with slots retrieves them from the top frame"() {
+    given:
+      def debug = Spy(Debug, constructorArgs: [CONTEXT, EVENT])
+      def slots = [3] as int[]
+      def signatures = ['I'] as String[]
+      def values = new FrameValues(OBJECT, [], [])
+      def top = Mock(EnhancedStackFrame)
+
+    when:
+      def result = debug.frameValues(slots, signatures)
+
+    then:
+      result.is(values)
+
+    and:
+      debug.thread() >> Mock(ThreadReference) {
+        frame(0) >> top
+      }
+      1 * top.getFrameValues(slots, signatures) >> values
+  }
+
+  def "test frameValues() with variables retrieves them from the top frame"() {
+    given:
+      def debug = Spy(Debug, constructorArgs: [CONTEXT, EVENT])
+      def variable = Mock(LocalVariable)
+      def values = new FrameValues(OBJECT, [], [])
+      def top = Mock(EnhancedStackFrame)
+
+    when:
+      def result = debug.frameValues(variable)
+
+    then:
+      result.is(values)
+
+    and:
+      debug.thread() >> Mock(ThreadReference) {
+        frame(0) >> top
+      }
+      1 * top.getFrameValues(variable) >> values
+  }
+
   def "test threadStack() with no thread defined"() {
     given:
       def debug = Spy(Debug, constructorArgs: [CONTEXT, EVENT])
@@ -249,18 +301,47 @@ class DebugSpec extends Specification {
 
     and:
       debug.thread() >> Mock(ThreadReference) {
-        frameCount() >> frames.size()
-        frame(_) >> { frames[it[0]] }
+        frames() >> stack
       }
       debug.locations() >> Mock(LocationUtil) {
-        get(FRAME) >> BUNDLE
-        get(FRAME2) >> BUNDLE2
+        get(CLASS_OBJ) >> BUNDLE
+        get(CLASS_OBJ2) >> BUNDLE2
       }
 
     where:
-      with_what             || frames          || result
+      with_what             || stack           || result
       'no frames'           || []              || []
       'one frame'           || [FRAME]         || [INFO]
       'more than one frame' || [FRAME2, FRAME] || [INFO2, INFO]
   }
+
+  def "test threadStack() retrieves the class object only once per class"() {
+    given:
+      def debug = Spy(Debug, constructorArgs: [CONTEXT, EVENT])
+      def type = Mock(ReferenceType) {
+        name() >> CLASS_NAME
+      }
+      def top = Mock(StackFrame) {
+        location() >> Mock(Location) {
+          toString() >> LOCATION_STR
+          declaringType() >> type
+        }
+        thisObject() >> OBJECT
+      }
+
+    when:
+      def info = debug.threadStack()
+
+    then:
+      info == [INFO, INFO, INFO]
+
+    and:
+      1 * type.classObject() >> CLASS_OBJ
+      debug.thread() >> Mock(ThreadReference) {
+        frames() >> [top, top, top]
+      }
+      debug.locations() >> Mock(LocationUtil) {
+        get(CLASS_OBJ) >> BUNDLE
+      }
+  }
 }
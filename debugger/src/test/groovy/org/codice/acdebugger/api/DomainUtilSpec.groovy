@@ -18,8 +18,10 @@ import com.sun.jdi.Location
 import com.sun.jdi.ObjectReference
 import com.sun.jdi.StackFrame
 import org.codice.acdebugger.ReflectionSpecification
+import org.codice.acdebugger.common.BundleInfo
 import org.codice.acdebugger.common.DomainInfo
 import org.codice.acdebugger.impl.Backdoor
+import org.codice.acdebugger.impl.BundleIndex
 import org.codice.acdebugger.impl.SystemProperties
 import spock.lang.Shared
 import spock.lang.Unroll
@@ -85,7 +87,7 @@ class DomainUtilSpec extends ReflectionSpecification {
     given:
       def properties = Mock(SystemProperties)
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
 
     when:
@@ -123,7 +125,7 @@ class DomainUtilSpec extends ReflectionSpecification {
   def "test get() with #with_what when found in cache as #as_what"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
 
     when:
       def result = new DomainUtil(debug).get(obj)
@@ -151,7 +153,7 @@ class DomainUtilSpec extends ReflectionSpecification {
   def "test get() when not found in cache and provided by backdoor as #as_what"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
 
     when:
@@ -177,11 +179,42 @@ class DomainUtilSpec extends ReflectionSpecification {
       'null'              || null
   }
 
+  @Unroll
+  def "test get() when not found in cache and the bundle index reports #reports_what"() {
+    given:
+      def debug = Mock(Debug)
+      def cache = Mock(MirrorCache)
+      def index = Mock(BundleIndex)
+      def backdoor = Mock(Backdoor)
+
+    when:
+      def result = new DomainUtil(debug).get(DOMAIN)
+
+    then:
+      result == location
+
+    and:
+      1 * debug.reflection()
+      1 * debug.computeIfAbsent(*_) >> cache
+      1 * cache.get(DOMAIN) >> null
+      1 * debug.get(BundleIndex.KEY) >> index
+      1 * index.get(debug, DOMAIN) >> info
+      backdoor_count * debug.backdoor() >> backdoor
+      backdoor_count * backdoor.getDomain(*_) >> location
+      1 * cache.put(DOMAIN, location) >> null
+
+    where:
+      reports_what         || info                                                                       || location                 | backdoor_count
+      'a domain location'  || new BundleInfo(1L, 'bundle', '1.0', 'mvn:bundle', 'file://index/location') || 'file://index/location'  | 0
+      'no domain location' || new BundleInfo(1L, 'bundle', '1.0', 'mvn:bundle', null)                    || 'file://domain/location' | 1
+      'nothing'            || null                                                                       || 'file://domain/location' | 1
+  }
+
   @Unroll
   def "test get() when not found in cache and backdoor failed with #exception.class.simpleName"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
 
     when:
@@ -206,7 +239,7 @@ class DomainUtilSpec extends ReflectionSpecification {
   def "test get() when not found in cache and backdoor failed with OutOfMemoryError"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
       def exception = new OutOfMemoryError()
 
@@ -237,7 +270,7 @@ class DomainUtilSpec extends ReflectionSpecification {
           compress(_, _) >> { it[1] }
         }
       }
-      def cache = Mock(Map) {
+      def cache = Mock(MirrorCache) {
         get(_) >> null
       }
       def backdoor = Mock(Backdoor)
@@ -285,7 +318,7 @@ class DomainUtilSpec extends ReflectionSpecification {
   def "test get() with an array when provided by a backdoor"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map) {
+      def cache = Mock(MirrorCache) {
         get(_) >> null
       }
       def backdoor = Mock(Backdoor)
@@ -324,7 +357,7 @@ class DomainUtilSpec extends ReflectionSpecification {
           compress(_, _) >> { it[1] }
         }
       }
-      def cache = Mock(Map) {
+      def cache = Mock(MirrorCache) {
         get(_) >> null
       }
       def backdoor = Mock(Backdoor)
@@ -361,7 +394,7 @@ class DomainUtilSpec extends ReflectionSpecification {
   def "test get() with an array and backdoor failed with OutOfMemoryError"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
       def backdoor = Mock(Backdoor)
       def exception = new OutOfMemoryError()
 
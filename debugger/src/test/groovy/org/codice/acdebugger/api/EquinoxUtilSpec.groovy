@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.api
+
+import com.sun.jdi.ArrayReference
+import com.sun.jdi.BooleanValue
+import com.sun.jdi.Field
+import com.sun.jdi.IntegerValue
+import com.sun.jdi.ObjectReference
+import com.sun.jdi.ReferenceType
+import com.sun.jdi.StringReference
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class EquinoxUtilSpec extends Specification {
+  static def NAME = 'bundle.name'
+  static def FRAGMENT_NAME = 'fragment.name'
+  static def UNINSTALLED_NAME = 'uninstalled.name'
+
+  def cache = new MirrorCache('cache')
+  def fields = [:]
+  def debug = Mock(Debug) {
+    computeIfAbsent(*_) >> cache
+  }
+  def reflection = Mock(ReflectionUtil) {
+    isAssignableFrom(_, _) >> { s, t -> (t != null) && (t.signature() == s) }
+    isInstance(_, _) >> { s, v -> (v != null) && (v.referenceType().signature() == s) }
+  }
+
+  def REVISION_CLASS = MockType(EquinoxUtil.MODULE_REVISION_SIGNATURE, symbolicName: 'Ljava/lang/String;')
+  def GENERATION_CLASS = MockType('Lorg/eclipse/osgi/storage/BundleInfo$Generation;', revision: EquinoxUtil.MODULE_REVISION_SIGNATURE)
+  def CLASSLOADER_CLASS = MockType(EquinoxUtil.EQUINOX_CLASSLOADER_SIGNATURE, generation: 'Lorg/eclipse/osgi/storage/BundleInfo$Generation;')
+  def DOMAIN_CLASS = MockType(EquinoxUtil.GENERATION_PROTECTION_DOMAIN_SIGNATURE, permissions: 'Ljava/security/PermissionCollection;', generation: 'Lorg/eclipse/osgi/storage/BundleInfo$Generation;')
+  def PERMISSIONS_CLASS = MockType(EquinoxUtil.BUNDLE_PERMISSIONS_SIGNATURE, bundle: 'Lorg/osgi/framework/Bundle;')
+  def BUNDLE_CLASS = MockType(EquinoxUtil.EQUINOX_BUNDLE_SIGNATURE, module: 'Lorg/eclipse/osgi/container/Module;')
+  def MODULE_CLASS = MockType('Lorg/eclipse/osgi/container/Module;', revisions: 'Lorg/eclipse/osgi/container/ModuleRevisions;')
+  def REVISIONS_CLASS = MockType('Lorg/eclipse/osgi/container/ModuleRevisions;', revisions: 'Ljava/util/List;', uninstalled: 'Z', uninstalledCurrent: EquinoxUtil.MODULE_REVISION_SIGNATURE)
+  def LIST_CLASS = MockType(EquinoxUtil.ARRAY_LIST_SIGNATURE, elementData: '[Ljava/lang/Object;', size: 'I')
+  def WIRING_CLASS = MockType(EquinoxUtil.MODULE_WIRING_SIGNATURE, revision: EquinoxUtil.MODULE_REVISION_SIGNATURE)
+
+  def REVISION = MockObject(REVISION_CLASS, symbolicName: MockString(NAME))
+  def FRAGMENT_REVISION = MockObject(REVISION_CLASS, symbolicName: MockString(FRAGMENT_NAME))
+  def UNINSTALLED_REVISION = MockObject(REVISION_CLASS, symbolicName: MockString(UNINSTALLED_NAME))
+  def GENERATION = MockObject(GENERATION_CLASS, revision: REVISION)
+  def CLASSLOADER = MockObject(CLASSLOADER_CLASS, generation: GENERATION)
+  def WIRING = MockObject(WIRING_CLASS, revision: REVISION)
+  def LIST = MockObject(LIST_CLASS, elementData: Mock(ArrayReference) {
+    getValue(0) >> FRAGMENT_REVISION
+  }, size: MockInt(1))
+  def EMPTY_LIST = MockObject(LIST_CLASS, elementData: Mock(ArrayReference), size: MockInt(0))
+  def REVISIONS = MockObject(REVISIONS_CLASS, revisions: LIST, uninstalled: MockBoolean(false))
+  def UNINSTALLED_REVISIONS = MockObject(REVISIONS_CLASS, revisions: EMPTY_LIST, uninstalled: MockBoolean(true), uninstalledCurrent: UNINSTALLED_REVISION)
+  def MODULE = MockObject(MODULE_CLASS, revisions: REVISIONS)
+  def UNINSTALLED_MODULE = MockObject(MODULE_CLASS, revisions: UNINSTALLED_REVISIONS)
+  def BUNDLE = MockObject(BUNDLE_CLASS, module: MODULE)
+  def UNINSTALLED_BUNDLE = MockObject(BUNDLE_CLASS, module: UNINSTALLED_MODULE)
+  def PERMISSIONS = MockObject(PERMISSIONS_CLASS, bundle: BUNDLE)
+  def DOMAIN_WITH_PERMISSIONS = MockObject(DOMAIN_CLASS, permissions: PERMISSIONS, generation: GENERATION)
+  def DOMAIN = MockObject(DOMAIN_CLASS, generation: GENERATION)
+  def OTHER = MockObject(MockType('Lsome/other/Class;'))
+
+  @Unroll
+  def "test get() with #with_what"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+
+    when:
+      def result = equinox.get(reflection, (obj != null) ? this."$obj" : null)
+
+    then:
+      result == name
+
+    where:
+      with_what                                        || obj                       || name
+      'null'                                           || null                      || null
+      'an equinox classloader'                         || 'CLASSLOADER'             || NAME
+      'a protection domain with bundle permissions'    || 'DOMAIN_WITH_PERMISSIONS' || FRAGMENT_NAME
+      'a protection domain without bundle permissions' || 'DOMAIN'                  || NAME
+      'bundle permissions'                             || 'PERMISSIONS'             || FRAGMENT_NAME
+      'an equinox bundle'                              || 'BUNDLE'                  || FRAGMENT_NAME
+      'an uninstalled equinox bundle'                  || 'UNINSTALLED_BUNDLE'      || UNINSTALLED_NAME
+      'a module wiring'                                || 'WIRING'                  || NAME
+      'a module revision'                              || 'REVISION'                || NAME
+      'a non-equinox object'                           || 'OTHER'                   || null
+  }
+
+  def "test get() retrieves all fields from a given object in a single request and never invokes methods"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+
+    when:
+      def result = equinox.get(reflection, DOMAIN_WITH_PERMISSIONS)
+
+    then:
+      result == FRAGMENT_NAME
+
+    and:
+      1 * DOMAIN_WITH_PERMISSIONS.getValues({ it.size() == 2 }) >> { args ->
+        args[0].collectEntries { [it, (it.name() == 'permissions') ? PERMISSIONS : GENERATION] }
+      }
+      0 * DOMAIN_WITH_PERMISSIONS.getValue(_)
+      0 * reflection.invoke(*_)
+      0 * reflection.invokeAndReturnNullIfNotFound(*_)
+  }
+
+  def "test get() verifies the layout only once per type"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+
+    when:
+      equinox.get(reflection, CLASSLOADER)
+      def result = equinox.get(reflection, CLASSLOADER)
+
+    then:
+      result == NAME
+
+    and:
+      1 * CLASSLOADER_CLASS.fieldByName('generation') >> fields[CLASSLOADER_CLASS]['generation']
+      1 * GENERATION_CLASS.fieldByName('revision') >> fields[GENERATION_CLASS]['revision']
+      1 * REVISION_CLASS.fieldByName('symbolicName') >> fields[REVISION_CLASS]['symbolicName']
+  }
+
+  def "test getLayout() verifies a type separately for each requested layout"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+      def type = MockType('Lsome/Type;', a: 'I', b: 'Z')
+
+    when:
+      def resultA = equinox.getLayout(type, [a: 'I'])
+      def resultB = equinox.getLayout(type, [b: 'Z'])
+      def resultC = equinox.getLayout(type, [c: 'J'])
+      def resultA2 = equinox.getLayout(type, [a: 'I'])
+
+    then:
+      resultA == [a: fields[type]['a']]
+      resultB == [b: fields[type]['b']]
+      resultC.is(EquinoxUtil.UNSUPPORTED_LAYOUT)
+      resultA2.is(resultA)
+
+    and:
+      1 * type.fieldByName('a') >> fields[type]['a']
+      1 * type.fieldByName('b') >> fields[type]['b']
+      1 * type.fieldByName('c') >> null
+  }
+
+  @Unroll
+  def "test get() falls back when the layout #when_what"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+      def type = MockType(EquinoxUtil.EQUINOX_CLASSLOADER_SIGNATURE, generation: signature)
+      def obj = MockObject(type, generation: GENERATION)
+
+    when:
+      def result = equinox.get(reflection, obj)
+      def result2 = equinox.get(reflection, obj)
+
+    then:
+      result == null
+      result2 == null
+      cache.get(type).values()*.is(EquinoxUtil.UNSUPPORTED_LAYOUT) == [true]
+
+    and:
+      1 * type.fieldByName('generation') >> fields[type]['generation']
+      0 * obj.getValues(_)
+
+    where:
+      when_what                  || signature
+      'is missing a field'       || null
+      'has a mismatched field'   || 'Ljava/lang/Object;'
+  }
+
+  def "test get() falls back when the revisions are not stored in an array list"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+      def list = MockObject(MockType('Ljava/util/concurrent/CopyOnWriteArrayList;'))
+      def revisions = MockObject(REVISIONS_CLASS, revisions: list, uninstalled: MockBoolean(false))
+      def bundle = MockObject(BUNDLE_CLASS, module: MockObject(MODULE_CLASS, revisions: revisions))
+
+    when:
+      def result = equinox.get(reflection, bundle)
+
+    then:
+      result == null
+
+    and:
+      0 * list.getValues(_)
+  }
+
+  def "test get() falls back when there are no current revisions"() {
+    given:
+      def equinox = new EquinoxUtil(debug)
+      def revisions = MockObject(REVISIONS_CLASS, revisions: EMPTY_LIST, uninstalled: MockBoolean(false))
+      def bundle = MockObject(BUNDLE_CLASS, module: MockObject(MODULE_CLASS, revisions: revisions))
+
+    expect:
+      equinox.get(reflection, bundle) == null
+  }
+
+  /**
+   * Creates a mock reference type with the given fields.
+   *
+   * @param fields a map of field names to their signatures (a <code>null</code> signature indicates
+   *        a missing field); the corresponding field mocks are recorded in {@link #fields}
+   * @param s the signature for the reference type
+   * @return the corresponding mocked reference type
+   */
+  def MockType(Map fields = [:], String s) {
+    def fieldMocks = fields.findAll { it.value != null }.collectEntries { n, sig ->
+      [n, Mock(Field, name: n) {
+        name() >> n
+        signature() >> sig
+      }]
+    }
+
+    def type = Mock(ReferenceType, name: s) {
+      signature() >> s
+      fieldByName(_) >> { args -> fieldMocks[args[0]] }
+    }
+
+    this.fields[type] = fieldMocks
+    type
+  }
+
+  /**
+   * Creates a mock object reference with the given field values.
+   *
+   * @param values a map of field names to their values
+   * @param type the reference type for the object
+   * @return the corresponding mocked object
+   */
+  def MockObject(Map values = [:], ReferenceType type) {
+    Mock(ObjectReference) {
+      referenceType() >> type
+      getValues(_) >> { args -> args[0].collectEntries { [it, values[it.name()]] } }
+    }
+  }
+
+  def MockString(String v) {
+    Mock(StringReference) {
+      value() >> v
+    }
+  }
+
+  def MockInt(int v) {
+    Mock(IntegerValue) {
+      value() >> v
+    }
+  }
+
+  def MockBoolean(boolean v) {
+    Mock(BooleanValue) {
+      value() >> v
+    }
+  }
+}
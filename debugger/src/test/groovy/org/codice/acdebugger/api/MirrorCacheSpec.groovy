@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.api
+
+import com.sun.jdi.ClassObjectReference
+import com.sun.jdi.ObjectCollectedException
+import com.sun.jdi.ObjectReference
+import com.sun.jdi.ReferenceType
+import spock.lang.Specification
+
+class MirrorCacheSpec extends Specification {
+  static def NAME = 'debug.some.cache'
+  static def SIGNATURE = 'Lsome/Class;'
+  static def SIGNATURE2 = 'Lsome/other/Class;'
+
+  def "test get() and put() record hits and misses"() {
+    given:
+      def cache = new MirrorCache(NAME)
+
+    when:
+      def missed = cache.get('key')
+
+      cache.put('key', 'value')
+      def found = cache.get('key')
+
+    then:
+      missed == null
+      found == 'value'
+      cache.name == NAME
+      cache.size() == 1L
+      cache.hitCount() == 1L
+      cache.missCount() == 1L
+      cache.evictionCount() == 0L
+      cache.invalidationCount() == 0L
+  }
+
+  def "test computeIfAbsent() only computes when not cached"() {
+    given:
+      def cache = new MirrorCache(NAME)
+      def count = 0
+
+    when:
+      def value = cache.computeIfAbsent('key', { count++; 'value' })
+      def value2 = cache.computeIfAbsent('key', { count++; 'value2' })
+
+    then:
+      value == 'value'
+      value2 == 'value'
+      count == 1
+      cache.hitCount() == 1L
+      cache.missCount() == 1L
+  }
+
+  def "test least recently used entries are evicted when reaching the maximum size"() {
+    given:
+      def cache = new MirrorCache(NAME, 2L)
+
+    when:
+      cache.put('key1', 'value1')
+      cache.put('key2', 'value2')
+      cache.get('key1')
+      cache.put('key3', 'value3')
+
+    then:
+      cache.size() == 2L
+      cache.evictionCount() == 1L
+      cache.get('key1') == 'value1'
+      cache.get('key2') == null
+      cache.get('key3') == 'value3'
+  }
+
+  def "test invalidateType() removes entries referencing the unloaded class"() {
+    given:
+      def type = Mock(ReferenceType) {
+        signature() >> SIGNATURE
+      }
+      def type2 = Mock(ReferenceType) {
+        signature() >> SIGNATURE2
+      }
+      def clazz = Mock(ClassObjectReference) {
+        reflectedType() >> type
+      }
+      def clazz2 = Mock(ClassObjectReference) {
+        reflectedType() >> type2
+      }
+      def collected = Mock(ClassObjectReference) {
+        reflectedType() >> { throw new ObjectCollectedException() }
+      }
+      def obj = Mock(ObjectReference)
+      def cache = new MirrorCache(NAME)
+
+      [type, type2, clazz, clazz2, collected, obj].each {
+        cache.put(it, 'value')
+      }
+
+    when:
+      cache.invalidateType(SIGNATURE)
+
+    then:
+      cache.size() == 3L
+      cache.invalidationCount() == 3L
+      cache.get(type2) == 'value'
+      cache.get(clazz2) == 'value'
+      cache.get(obj) == 'value'
+  }
+
+  def "test invalidateType() removes entries with composite keys referencing the unloaded class"() {
+    given:
+      def type = Mock(ReferenceType) {
+        signature() >> SIGNATURE
+      }
+      def type2 = Mock(ReferenceType) {
+        signature() >> SIGNATURE2
+      }
+      def cache = new MirrorCache(NAME)
+
+      cache.put(new MirrorCache.Key(type, 'a'), 'value')
+      cache.put(new MirrorCache.Key(type, 'b'), 'value')
+      cache.put(new MirrorCache.Key(type2, 'a'), 'value')
+
+    when:
+      cache.invalidateType(SIGNATURE)
+
+    then:
+      cache.size() == 1L
+      cache.invalidationCount() == 2L
+      cache.get(new MirrorCache.Key(type2, 'a')) == 'value'
+  }
+
+  def "test invalidateAll()"() {
+    given:
+      def cache = new MirrorCache(NAME)
+
+      cache.put('key1', 'value1')
+      cache.put('key2', 'value2')
+
+    when:
+      cache.invalidateAll()
+
+    then:
+      cache.size() == 0L
+      cache.invalidationCount() == 2L
+      cache.evictionCount() == 0L
+  }
+
+  def "test toString() reports statistics"() {
+    given:
+      def cache = new MirrorCache(NAME)
+
+      cache.put('key1', 'value1')
+      cache.get('key1')
+      cache.get('key2')
+
+    expect:
+      cache.toString() == "$NAME: size=1, hits=1, misses=1, evictions=0, invalidations=0"
+  }
+}
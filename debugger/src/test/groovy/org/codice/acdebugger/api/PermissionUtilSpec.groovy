@@ -14,10 +14,13 @@
 package org.codice.acdebugger.api
 
 import com.sun.jdi.ObjectReference
+import com.sun.jdi.request.EventRequest
 import org.codice.acdebugger.ReflectionSpecification
 import org.codice.acdebugger.common.ServicePermissionInfo
 import org.codice.acdebugger.impl.Backdoor
 import org.codice.acdebugger.impl.DebugContext
+import org.codice.acdebugger.impl.GrantCoalescer
+import org.codice.acdebugger.impl.KnowledgeBase
 import org.codice.acdebugger.impl.SystemProperties
 import spock.lang.Shared
 import spock.lang.Unroll
@@ -316,11 +319,12 @@ class PermissionUtilSpec extends ReflectionSpecification {
       result == granted
 
     and:
+      1 * debug.isGranting() >> true
+      1 * debug.isContinuous() >> true
+      1 * debug.grantCoalescer() >> new GrantCoalescer(context)
       1 * debug.context() >> context
       1 * context.grantPermission(LOCATION, PERMISSION_INFO) >> granted
       if (granted) {
-        1 * debug.isGranting() >> true
-        1 * debug.isContinuous() >> true
         1 * debug.backdoor() >> { throw new IllegalStateException() }
       } else {
         0 * debug.backdoor()
@@ -350,6 +354,7 @@ class PermissionUtilSpec extends ReflectionSpecification {
       1 * context.grantPermission(LOCATION, PERMISSION_INFO) >> true
       debug.isGranting() >> granting
       debug.isContinuous() >> continuous
+      debug.grantCoalescer() >> new GrantCoalescer(context)
       back_count * debug.backdoor() >> backdoor
       back_count * backdoor.grantPermission(debug, LOCATION, PERMISSION_INFO)
 
@@ -361,6 +366,42 @@ class PermissionUtilSpec extends ReflectionSpecification {
       'granting and continuous modes are off'          || false    | false      || 0
   }
 
+  @Unroll
+  def "test grant() when the grant coalescer is enabled and the permission is #when_what"() {
+    given:
+      def context = Mock(DebugContext)
+      def coalescer = new GrantCoalescer(context)
+      def debug = Mock(Debug)
+
+      coalescer.setFlushRequest(Mock(EventRequest))
+      if (pending) {
+        coalescer.add(LOCATION, PERMISSION_INFO)
+      }
+
+    when:
+      def result = new PermissionUtil(debug).grant(LOCATION, PERMISSION_INFO)
+
+    then:
+      result == added
+      coalescer.size() == size
+
+    and:
+      1 * debug.isGranting() >> true
+      1 * debug.isContinuous() >> true
+      1 * debug.grantCoalescer() >> coalescer
+      1 * debug.context() >> context
+      1 * context.hasPermission(LOCATION, PERMISSION_INFO) >> granted
+      0 * context.grantPermission(*_)
+      0 * context.grantPermissions(*_)
+      0 * debug.backdoor()
+
+    where:
+      when_what         || granted | pending || added | size
+      'not granted'     || false   | false   || true  | 1
+      'already pending' || false   | true    || false | 1
+      'already granted' || true    | false   || false | 0
+  }
+
   @Unroll
   def "test grant() when backdoor failed with #exception.class.simpleName"() {
     given:
@@ -379,6 +420,7 @@ class PermissionUtilSpec extends ReflectionSpecification {
       1 * context.grantPermission(LOCATION, PERMISSION_INFO) >> true
       1 * debug.isGranting() >> true
       1 * debug.isContinuous() >> true
+      1 * debug.grantCoalescer() >> new GrantCoalescer(context)
       1 * debug.backdoor() >> backdoor
       1 * backdoor.grantPermission(debug, LOCATION, PERMISSION_INFO) >> { throw exception }
 
@@ -407,10 +449,88 @@ class PermissionUtilSpec extends ReflectionSpecification {
       1 * context.grantPermission(LOCATION, PERMISSION_INFO) >> true
       1 * debug.isGranting() >> true
       1 * debug.isContinuous() >> true
+      1 * debug.grantCoalescer() >> new GrantCoalescer(context)
       1 * debug.backdoor() >> backdoor
       1 * backdoor.grantPermission(debug, LOCATION, PERMISSION_INFO) >> { throw exception }
   }
 
+  def "test grantStoredPermissions() grants permissions reloaded from a store through the backdoor"() {
+    given:
+      def file = File.createTempFile('acdebugger', '.kb')
+      def ctx = new DebugContext()
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        isGranting() >> true
+        isContinuous() >> true
+        context() >> ctx
+        backdoor() >> door
+      }
+
+      file.deleteOnExit()
+      new KnowledgeBase(file).recordPermissions(LOCATION, PERMISSION_INFOS)
+      ctx.setKnowledgeBase(new KnowledgeBase(file))
+
+    when:
+      new PermissionUtil(debug).grantStoredPermissions()
+
+    then:
+      1 * door.grantPermissions(debug, { it == [(LOCATION): PERMISSION_INFOS] })
+      0 * door.grantPermission(*_)
+
+    and:
+      ctx.hasPermissions(LOCATION, PERMISSION_INFOS)
+  }
+
+  def "test grantStoredPermissions() grants permissions one at a time when bulk granting is not supported"() {
+    given:
+      def ctx = Mock(DebugContext) {
+        getStoredPermissions() >> [(LOCATION): [PERMISSION_INFO] as Set]
+      }
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        isGranting() >> true
+        isContinuous() >> true
+        context() >> ctx
+        backdoor() >> door
+        grantCoalescer() >> new GrantCoalescer(ctx)
+      }
+
+    when:
+      new PermissionUtil(debug).grantStoredPermissions()
+
+    then:
+      1 * door.grantPermissions(debug, _) >> { throw new IllegalStateException() }
+      1 * ctx.grantPermission(LOCATION, PERMISSION_INFO) >> true
+      1 * door.grantPermission(debug, LOCATION, PERMISSION_INFO)
+      0 * ctx.preloadPermissions(*_)
+  }
+
+  @Unroll
+  def "test grantStoredPermissions() does nothing when #when_what"() {
+    given:
+      def ctx = Mock(DebugContext) {
+        getStoredPermissions() >> stored
+      }
+      def debug = Mock(Debug) {
+        isGranting() >> granting
+        isContinuous() >> continuous
+        context() >> ctx
+      }
+
+    when:
+      new PermissionUtil(debug).grantStoredPermissions()
+
+    then:
+      0 * debug.backdoor()
+      0 * ctx.preloadPermissions(*_)
+
+    where:
+      when_what                   || granting | continuous | stored
+      'not granting'              || false    | true       | [(LOCATION): [PERMISSION_INFO] as Set]
+      'not in continuous mode'    || true     | false      | [(LOCATION): [PERMISSION_INFO] as Set]
+      'no permissions are stored' || true     | true       | [:]
+  }
+
   @Unroll
   def "test getServicePermissionStrings() with #with_what"() {
     given:
@@ -521,7 +641,7 @@ class PermissionUtilSpec extends ReflectionSpecification {
   def "test getServiceProperty() when #when_what"() {
     given:
       def debug = Mock(Debug)
-      def cache = Mock(Map)
+      def cache = Mock(MirrorCache)
 
     when:
       def result = new PermissionUtil(debug).getServiceProperty(SERVICE_REFERENCE, 'objectClass')
@@ -546,7 +666,7 @@ class PermissionUtilSpec extends ReflectionSpecification {
     given:
       def permission = Mock(ObjectReference)
       def debug = Mock(Debug)
-      def cache = [:]
+      def cache = new MirrorCache('cache')
       def util = Spy(PermissionUtil, constructorArgs: [debug])
 
     when:
@@ -634,6 +754,41 @@ class PermissionUtilSpec extends ReflectionSpecification {
       'we are missing some other permissions' || false      | false    | SERVICE_PERMISSION_GET_INFOS | false   | [SERVICE_PERMISSION_GET_INFO2]                                 || [SERVICE_PERMISSION_GET_INFO1]
   }
 
+  @Unroll
+  def "test findMissingServicePermissionStrings() with service permission info and #and_what"() {
+    given:
+      def context = Mock(DebugContext)
+      def debug = Mock(Debug)
+      def util = Spy(PermissionUtil, constructorArgs: [debug])
+
+    when:
+      def returnedResult = util.findMissingServicePermissionStrings(BUNDLE, new ServicePermissionInfo(permission_infos.clone(), implies, implied as Set<String>))
+
+    then:
+      returnedResult == result as Set<String>
+
+    and:
+      debug.isContinuous() >> true
+      debug.isGranting() >> granting
+      debug.context() >> context
+      0 * debug.backdoor()
+      if (granting) {
+        permission_infos.each {
+          1 * context.grantPermission(BUNDLE, it) >> true
+        }
+      }
+      for (def p : implied) {
+        (1.._) * context.grantPermission(BUNDLE, p) >> true
+      }
+      0 * context.grantPermission(_, _)
+
+    where:
+      and_what                          || granting | permission_infos             | implies | implied                        || result
+      'we have all permissions'         || false    | SERVICE_PERMISSION_GET_INFOS | true    | SERVICE_PERMISSION_GET_INFOS   || []
+      'we have no permissions'          || true     | SERVICE_PERMISSION_GET_INFOS | false   | []                             || SERVICE_PERMISSION_GET_INFOS
+      'we are missing some permissions' || false    | SERVICE_PERMISSION_GET_INFOS | false   | [SERVICE_PERMISSION_GET_INFO1] || [SERVICE_PERMISSION_GET_INFO2]
+  }
+
   @Unroll
   def "test findMissingServicePermissionStrings() when backdoor failed with #exception.class.simpleName"() {
     given:
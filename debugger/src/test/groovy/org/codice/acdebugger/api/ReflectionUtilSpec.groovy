@@ -28,12 +28,15 @@ import com.sun.jdi.IntegerValue
 import com.sun.jdi.InvalidStackFrameException
 import com.sun.jdi.InvalidTypeException
 import com.sun.jdi.InvocationException
+import com.sun.jdi.LocalVariable
+import com.sun.jdi.Location
 import com.sun.jdi.LongValue
 import com.sun.jdi.Method
 import com.sun.jdi.ObjectCollectedException
 import com.sun.jdi.ObjectReference
 import com.sun.jdi.ReferenceType
 import com.sun.jdi.ShortValue
+import com.sun.jdi.StackFrame
 import com.sun.jdi.StringReference
 import com.sun.jdi.ThreadReference
 import com.sun.jdi.VMCannotBeModifiedException
@@ -116,7 +119,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
       def vm = Stub(VirtualMachine)
 
     when:
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
 
     then:
       reflection.virtualMachine() == vm
@@ -129,7 +132,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
       def vm = Stub(VirtualMachine)
 
     when:
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, null)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, null)
 
     then:
       reflection.virtualMachine() == vm
@@ -145,44 +148,69 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   @Unroll
   def "test isAssignableFrom() with #with_what"() {
     given:
-      def signatureCache = Mock(Map)
-      def context = Mock(DebugContext)
-      def reflection = new ReflectionUtil(context, Stub(VirtualMachine), null)
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
+
+    expect:
+      reflection.isAssignableFrom(signature, type) == result
+
+    where:
+      with_what                                                        || signature              | type               || result
+      'a null type'                                                    || ''                     | null               || false
+      'a class type that corresponds to the signature'                 || TREE_MAP_SIGNATURE     | TREE_MAP_CLASS     || true
+      'a class type which implements the signature'                    || SORTED_MAP_SIGNATURE   | TREE_MAP_CLASS     || true
+      'a class type which extends the signature'                       || ABSTRACT_MAP_SIGNATURE | TREE_MAP_CLASS     || true
+      'a class type which inherits the signature from its superclass'  || MAP_SIGNATURE          | TREE_MAP_CLASS     || true
+      'a class type which does not implement nor extend the signature' || SORTED_MAP_SIGNATURE   | ABSTRACT_MAP_CLASS || false
+      'a class type and a signature never encountered'                 || 'Lsome/Unknown;'       | TREE_MAP_CLASS     || false
+      'an interface type that corresponds to the signature'            || SORTED_MAP_SIGNATURE   | SORTED_MAP_CLASS   || true
+      'an interface type which extends the signature'                  || MAP_SIGNATURE          | SORTED_MAP_CLASS   || true
+      'an interface type which does not extend the signature'          || SORTED_MAP_SIGNATURE   | MAP_CLASS          || false
+      'a primitive type that corresponds to the signature'             || 'F'                    | FLOAT_TYPE         || true
+      'a primitive type that does not correspond to the signature'     || 'B'                    | FLOAT_TYPE         || false
+  }
+
+  def "test isAssignableFrom() with an interface type which indirectly extends the signature"() {
+    given:
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
+      def navigable = MockInterfaceType('NAVIGABLE_MAP_CLASS', 'Ljava/util/NavigableMap;', superinterfaces: [SORTED_MAP_CLASS])
+
+    expect:
+      reflection.isAssignableFrom(MAP_SIGNATURE, navigable)
+  }
+
+  def "test isAssignableFrom() only computes the closure of supertypes once per type"() {
+    given:
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
+      def base = Mock(ClassType) {
+        signature() >> ABSTRACT_MAP_SIGNATURE
+      }
+      def type = Mock(ClassType) {
+        signature() >> TREE_MAP_SIGNATURE
+      }
 
     when:
-      def returnedResult = reflection.isAssignableFrom(signature, type)
+      def results = [
+          reflection.isAssignableFrom(MAP_SIGNATURE, type),
+          reflection.isAssignableFrom(SORTED_MAP_SIGNATURE, type),
+          reflection.isAssignableFrom(ABSTRACT_MAP_SIGNATURE, type),
+          reflection.isAssignableFrom(MAP_SIGNATURE, base),
+          reflection.isAssignableFrom(SORTED_MAP_SIGNATURE, base)
+      ]
 
     then:
-      returnedResult == result
-      cache == cached
+      results == [true, true, true, true, false]
 
     and:
-      cache_count * context.computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, _) >> signatureCache
-      cache_count * signatureCache.computeIfAbsent(signature, _) >> cache
-
-    where:
-      with_what                                                                                  || signature              | type             || cache_count | cache                       || cached                      | result
-      'a null type'                                                                              || ''                     | null             || 0           | [:]                         || [:]                         | false
-      'a class type that corresponds to the signature'                                           || TREE_MAP_SIGNATURE     | TREE_MAP_CLASS   || 0           | [:]                         || [:]                         | true
-      'a class type which implements the signature and nothing cached'                           || SORTED_MAP_SIGNATURE   | TREE_MAP_CLASS   || 1           | [:]                         || [(TREE_MAP_CLASS): true]    | true
-      'a class type which extends the signature and nothing cached'                              || ABSTRACT_MAP_SIGNATURE | TREE_MAP_CLASS   || 1           | [:]                         || [(TREE_MAP_CLASS): true]    | true
-      'a class type and signature cached as true'                                                || MAP_SIGNATURE          | TREE_MAP_CLASS   || 1           | [(TREE_MAP_CLASS): true]    || [(TREE_MAP_CLASS): true]    | true
-      'a class type and signature cached as false'                                               || MAP_SIGNATURE          | TREE_MAP_CLASS   || 1           | [(TREE_MAP_CLASS): false]   || [(TREE_MAP_CLASS): false]   | false
-      'an interface type that corresponds to the signature'                                      || SORTED_MAP_SIGNATURE   | SORTED_MAP_CLASS || 0           | [:]                         || [:]                         | true
-      'an interface type which extends the signature and nothing cached'                         || MAP_SIGNATURE          | SORTED_MAP_CLASS || 1           | [:]                         || [(SORTED_MAP_CLASS): true]  | true
-      'an interface type and signature cached as true'                                           || MAP_SIGNATURE          | SORTED_MAP_CLASS || 1           | [(SORTED_MAP_CLASS): true]  || [(SORTED_MAP_CLASS): true]  | true
-      'an interface type and signature cached as false'                                          || MAP_SIGNATURE          | SORTED_MAP_CLASS || 1           | [(SORTED_MAP_CLASS): false] || [(SORTED_MAP_CLASS): false] | false
-      'a primitive type that corresponds to the signature'                                       || 'F'                    | FLOAT_TYPE       || 0           | [:]                         || [:]                         | true
-      'a primitive type that does not correspond to the signature and nothing cached'            || 'B'                    | FLOAT_TYPE       || 1           | [:]                         || [(FLOAT_TYPE): false]       | false
-      'a primitive type that does not correspond to the signature and signature cached as true'  || 'B'                    | FLOAT_TYPE       || 1           | [(FLOAT_TYPE): true]        || [(FLOAT_TYPE): true]        | true // should never happen!!!
-      'a primitive type that does not correspond to the signature and signature cached as false' || 'B'                    | FLOAT_TYPE       || 1           | [(FLOAT_TYPE): false]       || [(FLOAT_TYPE): false]       | false
+      1 * type.allInterfaces() >> [SORTED_MAP_CLASS]
+      1 * type.superclass() >> base
+      1 * base.allInterfaces() >> [MAP_CLASS]
+      1 * base.superclass() >> null
   }
 
   @Unroll
   def "test isInstance() with #with_what"() {
     given:
-      def context = Mock(DebugContext)
-      def reflection = new ReflectionUtil(context, Stub(VirtualMachine), null)
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
 
     when:
       def returnedResult = reflection.isInstance(signature, value)
@@ -190,11 +218,6 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     then:
       returnedResult == result
 
-    and:
-      context.computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, _) >> Mock(Map) {
-        computeIfAbsent(signature, _) >> [:]
-      }
-
     where:
       with_what                                          || signature              | value    || result
       'a null value'                                     || ''                     | null     || false
@@ -209,7 +232,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test classes() when #when_what"() {
     given:
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, null)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, null)
 
     when:
       def returnedResult = reflection.classes(MAP_SIGNATURE)
@@ -228,11 +251,50 @@ class ReflectionUtilSpec extends ReflectionSpecification {
       'vm returning nothing'             || []                                || []
   }
 
+  def "test classes() when indexed"() {
+    given:
+      def vm = Mock(VirtualMachine)
+      def context = new DebugContext()
+      def reflection = new ReflectionUtil(context, vm, null)
+
+      context.classIndex().index([MAP_CLASS, TREE_MAP_CLASS, ABSTRACT_MAP_CLASS, TREE_MAP_CLASS2])
+
+    when:
+      def returnedResult = reflection.classes(TREE_MAP_SIGNATURE)
+
+    then:
+      returnedResult.toArray() == [TREE_MAP_CLASS, TREE_MAP_CLASS2]
+
+    and:
+      0 * vm.classesByName(_)
+  }
+
+  def "test classes() when indexed but stale refreshes the index"() {
+    given:
+      def vm = Mock(VirtualMachine)
+      def context = new DebugContext()
+      def reflection = new ReflectionUtil(context, vm, null)
+
+      context.classIndex().index([TREE_MAP_CLASS, TREE_MAP_CLASS2])
+      context.classUnloaded(TREE_MAP_SIGNATURE)
+
+    when:
+      def returnedResult = reflection.classes(TREE_MAP_SIGNATURE)
+      def returnedResult2 = reflection.classes(TREE_MAP_SIGNATURE)
+
+    then:
+      returnedResult.toArray() == [TREE_MAP_CLASS2]
+      returnedResult2.toArray() == [TREE_MAP_CLASS2]
+
+    and:
+      1 * vm.classesByName('java.util.TreeMap') >> [TREE_MAP_CLASS2]
+  }
+
   @Unroll
   def "test getClass() when #when_what"() {
     given:
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, null)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, null)
 
     when:
       def returnedResult = reflection.getClass(TREE_MAP_SIGNATURE)
@@ -254,7 +316,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test getContainerThis() with #with_what"() {
     given:
       def vm = Mock(VirtualMachine)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), vm, null])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), vm, null])
 
     when:
       def returnedResult = reflection.getContainerThis(obj)
@@ -284,7 +346,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   @Unroll
   def "test findMethod() with a class when #when_what"() {
     given:
-      def reflection = new ReflectionUtil(Stub(DebugContext), Stub(VirtualMachine), null)
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
       def type = Mock(ClassType)
 
     when:
@@ -305,7 +367,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   @Unroll
   def "test findMethod() with a reference type when #when_what"() {
     given:
-      def reflection = new ReflectionUtil(Stub(DebugContext), Stub(VirtualMachine), null)
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
       def type = Mock(ReferenceType)
 
     when:
@@ -326,10 +388,98 @@ class ReflectionUtilSpec extends ReflectionSpecification {
       'the method is not found'           || []                        || null
   }
 
+  @Unroll
+  def "test findMethod() only looks up the attached VM once when the method #when_what"() {
+    given:
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
+      def reflection2 = new ReflectionUtil(reflection.context, Stub(VirtualMachine), null)
+      def type = Mock(ClassType)
+
+    when:
+      def result = reflection.findMethod(type, 'name', 'signature')
+      def result2 = reflection2.findMethod(type, 'name', 'signature')
+
+    then:
+      result == method
+      result2 == method
+      reflection.context.get(ReflectionUtil.MEMBERS_CACHE).hitCount() == 1L
+
+    and:
+      1 * type.concreteMethodByName('name', 'signature') >> method
+
+    where:
+      when_what      || method
+      'is defined'   || METHOD
+      'is not found' || null
+  }
+
+  @Unroll
+  def "test findField() only looks up the attached VM once when the field #when_what"() {
+    given:
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
+      def type = Mock(ReferenceType)
+
+    when:
+      def result = reflection.findField(type, 'name')
+      def result2 = reflection.findField(type, 'name')
+
+    then:
+      result == field
+      result2 == field
+
+    and:
+      1 * type.fieldByName('name') >> field
+
+    where:
+      when_what      || field
+      'is defined'   || FIELD
+      'is not found' || null
+  }
+
+  def "test findVisibleVariable() only looks up the attached VM once per location"() {
+    given:
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
+      def type = Stub(ReferenceType)
+      def method = Stub(Method) {
+        name() >> 'name'
+        signature() >> '()V'
+      }
+      def variable = Stub(LocalVariable)
+      def variable2 = Stub(LocalVariable)
+      def frame = Mock(StackFrame) {
+        location() >> Stub(Location) {
+          declaringType() >> type
+          method() >> method
+          codeIndex() >> 12L
+        }
+      }
+      def frame2 = Mock(StackFrame) {
+        location() >> Stub(Location) {
+          declaringType() >> type
+          method() >> method
+          codeIndex() >> 24L
+        }
+      }
+
+    when:
+      def result = reflection.findVisibleVariable(frame, 'var')
+      def result2 = reflection.findVisibleVariable(frame, 'var')
+      def result3 = reflection.findVisibleVariable(frame2, 'var')
+
+    then:
+      result == variable
+      result2 == variable
+      result3 == variable2
+
+    and:
+      1 * frame.visibleVariableByName('var') >> variable
+      1 * frame2.visibleVariableByName('var') >> variable2
+  }
+
   @Unroll
   def "test findConstructor() when #when_what"() {
     given:
-      def reflection = new ReflectionUtil(Stub(DebugContext), Stub(VirtualMachine), null)
+      def reflection = new ReflectionUtil(new DebugContext(), Stub(VirtualMachine), null)
       def type = Mock(ClassType)
 
     when:
@@ -351,7 +501,9 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test get() with #with_what"() {
     given:
       def context = Mock(DebugContext) {
-        computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, _) >> [:]
+        computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, _) >> new MirrorCache('cache')
+        computeIfAbsent(ReflectionUtil.SIGNATURE_IDS, _) >> [:]
+        computeIfAbsent(ReflectionUtil.MEMBERS_CACHE, _) >> new MirrorCache('members')
       }
       def reflection = Spy(ReflectionUtil, constructorArgs: [context, Stub(VirtualMachine), null])
       def type = MockClassType('type', TREE_MAP_SIGNATURE)
@@ -389,7 +541,9 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test getStatic() with #with_what"() {
     given:
       def context = Mock(DebugContext) {
-        computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, _) >> [:]
+        computeIfAbsent(ReflectionUtil.ASSIGNABLE_FROM_CACHE, _) >> new MirrorCache('cache')
+        computeIfAbsent(ReflectionUtil.SIGNATURE_IDS, _) >> [:]
+        computeIfAbsent(ReflectionUtil.MEMBERS_CACHE, _) >> new MirrorCache('members')
       }
       def reflection = Spy(ReflectionUtil, constructorArgs: [context, Stub(VirtualMachine), null])
       def clazz = null_class ? null : MockClassType('clazz', TREE_MAP_SIGNATURE)
@@ -426,7 +580,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with #with_what and no arguments"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def obj_or_class = null_obj_or_class ? null : "$mock"('obj_or_class', mock_arg)
 
     when:
@@ -461,7 +615,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with no strings when failing with #exception.class.simpleName"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def obj_or_class = "$mock"('obj_or_class', mock_arg)
 
     when:
@@ -510,7 +664,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with no strings amd with #with_what"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def obj_or_class = "$mock"('obj_or_class', mock_arg)
       def invoke_args = mirror_args.clone()
 
@@ -548,7 +702,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with strings"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def obj_or_class = "$mock"('obj_or_class', mock_arg)
       def string2 = Mock(StringReference)
       def string3 = Mock(StringReference)
@@ -591,7 +745,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with strings and failing with #exception.class.simpleName"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def obj_or_class = "$mock"('obj_or_class', mock_arg)
       def string2 = Mock(StringReference)
       def string3 = Mock(StringReference)
@@ -656,7 +810,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with strings when unable to protect the created references"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def obj_or_class = "$mock"('obj_or_class', mock_arg)
       def string2 = Mock(StringReference)
       def string3 = Mock(StringReference)
@@ -701,11 +855,34 @@ class ReflectionUtilSpec extends ReflectionSpecification {
       what_call = what + '()'
   }
 
+  def "test invoke() with a string repeatedly used reuses a pinned mirror"() {
+    given:
+      def thread = Stub(ThreadReference)
+      def vm = Mock(VirtualMachine)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
+      def obj = MockObjectReference('obj', TREE_MAP_CLASS)
+      def string = Mock(StringReference)
+      def string2 = Mock(StringReference)
+
+    when:
+      3.times {
+        reflection.invoke(obj, METHOD, 'abc')
+      }
+
+    then:
+      2 * vm.mirrorOf('abc') >>> [string, string2]
+      3 * obj.invokeMethod(thread, METHOD, { it.size() == 1 }, ObjectReference.INVOKE_SINGLE_THREADED) >> null
+      1 * string.disableCollection()
+      1 * string.enableCollection()
+      1 * string2.disableCollection()
+      0 * string2.enableCollection()
+  }
+
   @Unroll
   def "test #what_call with method name and signature"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -729,7 +906,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test newInstance() with signature"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -747,7 +924,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with method name and signature and null #null_what"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -771,7 +948,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test newInstance() with signature and null class"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -789,7 +966,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test #what_call with method name and signature when method is not found"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -816,7 +993,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test newInstance() with signature when method is not found"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -836,7 +1013,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test invokeAndReturnNullIfNotFound() with method name and signature"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -854,7 +1031,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test invokeAndReturnNullIfNotFound() with #with_what"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -876,7 +1053,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test newInstance() with class name"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -893,7 +1070,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test newInstance() with null class name"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def args = [STRING, 'abc', 123, 'def', false, null]
 
     when:
@@ -910,7 +1087,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test enumValue()"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def enumClassObject = MockClassObjectReference('enumClassObject')
       def enumClass = MockClassType('enumClass', 'Lsome/EnumClass', classObject: enumClassObject)
       def enumObject = MockObjectReference('enumObject', enumClass)
@@ -929,7 +1106,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test enumValue() with a null type"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
 
     when:
       def result = reflection.enumValue(null, 'value')
@@ -944,7 +1121,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test toString()"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
 
     when:
       def result = reflection.toString(TREE_MAP)
@@ -960,7 +1137,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
   def "test toString() with null"() {
     given:
       def thread = Stub(ThreadReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
 
     when:
       def result = reflection.toString(null)
@@ -977,7 +1154,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
 
     when:
       def result = reflection.toMirror(obj)
@@ -1006,7 +1183,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
 
     when:
       def result = reflection.toMirror(obj)
@@ -1027,7 +1204,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
       def mirror = Mock(VoidValue)
 
     when:
@@ -1044,7 +1221,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
 
     when:
       reflection.toMirror([:])
@@ -1061,7 +1238,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
       def mirror = type ? Mock(type) : null
 
     when:
@@ -1095,7 +1272,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
 
     expect:
       reflection.getType('V') == Void.TYPE
@@ -1106,7 +1283,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
       def array = Mock(ArrayReference) {
         referenceType() >> Mock(ArrayType) {
           componentSignature() >> signature
@@ -1153,7 +1330,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
       def array = Mock(ArrayReference) {
         referenceType() >> Mock(ArrayType) {
           componentSignature() >> TREE_MAP_SIGNATURE
@@ -1169,7 +1346,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
       def exception = new ObjectCollectedException()
       def obj = Mock(ObjectReference)
       def count = new AtomicInteger()
@@ -1196,7 +1373,7 @@ class ReflectionUtilSpec extends ReflectionSpecification {
     given:
       def thread = Stub(ThreadReference)
       def vm = Mock(VirtualMachine)
-      def reflection = new ReflectionUtil(Stub(DebugContext), vm, thread)
+      def reflection = new ReflectionUtil(new DebugContext(), vm, thread)
       def exception = new ObjectCollectedException()
       def obj = Mock(ObjectReference)
       def count = new AtomicInteger()
@@ -14,16 +14,21 @@
 package org.codice.acdebugger.breakpoints
 
 import com.sun.jdi.ArrayReference
-import com.sun.jdi.EnhancedStackFrame
+import com.sun.jdi.Field
+import com.sun.jdi.FrameValues
 import com.sun.jdi.IntegerValue
 import com.sun.jdi.Location
 import com.sun.jdi.ObjectReference
+import com.sun.jdi.ReferenceType
+import com.sun.jdi.StackFrame
+import com.sun.jdi.StringReference
 import com.sun.jdi.ThreadReference
 import com.sun.jdi.VirtualMachine
 import com.sun.jdi.VoidValue
 import com.sun.jdi.request.BreakpointRequest
 import com.sun.jdi.request.EventRequestManager
 import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.api.MirrorCache
 import org.codice.acdebugger.api.PermissionUtil
 import org.codice.acdebugger.api.ReflectionUtil
 import org.codice.acdebugger.api.SecuritySolution
@@ -114,7 +119,7 @@ class AccessControlContextCheckBreakpointProcessorSpec extends Specification {
 
     then:
       interaction {
-        stub(thread)
+        stub(debug)
         stub(reflection)
         stub(debug, thread, reflection, permissions, failing, continuous)
       }
@@ -122,6 +127,8 @@ class AccessControlContextCheckBreakpointProcessorSpec extends Specification {
 
     and:
       1 * reflection.get(ACC, 'context', '[Ljava/security/ProtectionDomain;') >> CONTEXT
+      processor.failureKey(debug, CONTEXT, LOCAL_I, PERMISSION) >> ['failure']
+      processor.verdictKey(thread, ['failure']) >> 'key'
       1 * processor.process(debug, CONTEXT, LOCAL_I, PERMISSION) >> security
       1 * security.getFailedDomain() >> null
       0 * permissions.grant(*_)
@@ -155,7 +162,7 @@ class AccessControlContextCheckBreakpointProcessorSpec extends Specification {
 
     then:
       interaction {
-        stub(thread)
+        stub(debug)
         stub(reflection)
         stub(debug, thread, reflection, permissions, false, true)
       }
@@ -163,6 +170,8 @@ class AccessControlContextCheckBreakpointProcessorSpec extends Specification {
 
     and:
       1 * reflection.get(ACC, 'context', '[Ljava/security/ProtectionDomain;') >> CONTEXT
+      processor.failureKey(debug, CONTEXT, LOCAL_I, PERMISSION) >> ['failure']
+      processor.verdictKey(thread, ['failure']) >> 'key'
       1 * processor.process(debug, CONTEXT, LOCAL_I, PERMISSION) >> security
       1 * security.getFailedDomain() >> 'd1'
       1 * security.analyze() >> solutions
@@ -191,8 +200,241 @@ class AccessControlContextCheckBreakpointProcessorSpec extends Specification {
       'an acceptable failure with 1 solution that has privileged blocks and grants to no domains'      || true       | []                                              || []            | []          | 0
   }
 
+  def "test process() applies the verdict shared from an identical failure being analyzed concurrently"() {
+    given:
+      def thread = Mock(ThreadReference)
+      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def permissions = Mock(PermissionUtil)
+      def debug = Mock(Debug)
+      def processor = Spy(AccessControlContextCheckProcessor)
+
+    when:
+      processor.process(Stub(BreakpointInfo), debug)
+
+    then:
+      interaction {
+        stub(reflection)
+        stub(debug, thread, reflection, permissions, false, true)
+      }
+      debug.frameValues(*_) >> new FrameValues(ACC, [PERMISSION], [Mock(IntegerValue) {
+        intValue() >> LOCAL_I
+      }])
+
+    and:
+      1 * reflection.get(ACC, 'context', '[Ljava/security/ProtectionDomain;') >> CONTEXT
+      processor.failureKey(debug, CONTEXT, LOCAL_I, PERMISSION) >> ['failure']
+      processor.verdictKey(thread, ['failure']) >> 'key'
+      1 * debug.coalesceFailure(_, _) >> true
+      0 * processor.process(debug, *_)
+      0 * debug.record(_)
+      1 * thread.forceEarlyReturn(VOID)
+  }
+
+  def "test process() applies the verdict cached for an identical failure without analyzing it"() {
+    given:
+      def thread = Mock(ThreadReference)
+      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def permissions = Mock(PermissionUtil)
+      def debug = Mock(Debug)
+      def security = Mock(SecurityCheckInformation)
+      def verdicts = new MirrorCache(AccessControlContextCheckProcessor.VERDICT_CACHE)
+      def processor = Spy(AccessControlContextCheckProcessor)
+
+    when:
+      processor.process(Stub(BreakpointInfo), debug)
+      processor.process(Stub(BreakpointInfo), debug)
+
+    then:
+      debug.computeIfAbsent(AccessControlContextCheckProcessor.VERDICT_CACHE, _) >> verdicts
+      interaction {
+        stub(debug)
+        stub(reflection)
+        stub(debug, thread, reflection, permissions, false, true)
+      }
+      processor.failureKey(debug, CONTEXT, LOCAL_I, PERMISSION) >> ['failure']
+      processor.verdictKey(thread, ['failure']) >> 'key'
+      security.isAcceptable() >> false
+
+    and:
+      2 * reflection.get(ACC, 'context', '[Ljava/security/ProtectionDomain;') >> CONTEXT
+      1 * processor.process(debug, CONTEXT, LOCAL_I, PERMISSION) >> security
+      1 * security.getFailedDomain() >> 'd1'
+      1 * security.analyze() >> []
+      1 * debug.record(security)
+      2 * thread.forceEarlyReturn(VOID)
+      verdicts.hitCount() == 1L
+  }
+
+  def "test process() does not cache verdicts that let failures through"() {
+    given:
+      def thread = Mock(ThreadReference)
+      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def permissions = Mock(PermissionUtil)
+      def debug = Mock(Debug)
+      def security = Mock(SecurityCheckInformation)
+      def verdicts = new MirrorCache(AccessControlContextCheckProcessor.VERDICT_CACHE)
+      def processor = Spy(AccessControlContextCheckProcessor)
+
+    when:
+      processor.process(Stub(BreakpointInfo), debug)
+
+    then:
+      debug.computeIfAbsent(AccessControlContextCheckProcessor.VERDICT_CACHE, _) >> verdicts
+      interaction {
+        stub(debug)
+        stub(reflection)
+        stub(debug, thread, reflection, permissions, false, true)
+      }
+      processor.failureKey(debug, CONTEXT, LOCAL_I, PERMISSION) >> ['failure']
+      processor.verdictKey(thread, ['failure']) >> 'key'
+      reflection.get(ACC, 'context', '[Ljava/security/ProtectionDomain;') >> CONTEXT
+      processor.process(debug, CONTEXT, LOCAL_I, PERMISSION) >> security
+      security.isAcceptable() >> true
+
+    and:
+      0 * thread.forceEarlyReturn(_)
+      verdicts.size() == 0L
+  }
+
+  def "test process() applies the verdict cached for a permission that already failed for the domain when only analyzing novel failures"() {
+    given:
+      def thread = Mock(ThreadReference)
+      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def permissions = Mock(PermissionUtil)
+      def debug = Mock(Debug)
+      def verdicts = new MirrorCache(AccessControlContextCheckProcessor.VERDICT_CACHE)
+      def processor = Spy(AccessControlContextCheckProcessor)
+
+      verdicts.put(['failure'], true)
+
+    when:
+      processor.process(Stub(BreakpointInfo), debug)
+
+    then:
+      debug.computeIfAbsent(AccessControlContextCheckProcessor.VERDICT_CACHE, _) >> verdicts
+      interaction {
+        stub(debug)
+        stub(reflection)
+        stub(debug, thread, reflection, permissions, false, true)
+      }
+      debug.isAnalyzingNovelFailuresOnly() >> true
+      processor.failureKey(debug, CONTEXT, LOCAL_I, PERMISSION) >> ['failure']
+
+    and:
+      1 * reflection.get(ACC, 'context', '[Ljava/security/ProtectionDomain;') >> CONTEXT
+      0 * processor.verdictKey(*_)
+      0 * debug.coalesceFailure(*_)
+      0 * thread.frames()
+      1 * thread.forceEarlyReturn(VOID)
+  }
+
+  def "test failureKey() of identical failures are equal"() {
+    given:
+      def nameField = Mock(Field) {
+        signature() >> 'Ljava/lang/String;'
+      }
+      def maskField = Mock(Field) {
+        signature() >> 'I'
+      }
+      def constantField = Mock(Field) {
+        isStatic() >> true
+        signature() >> 'I'
+      }
+      def otherField = Mock(Field) {
+        signature() >> 'Ljava/lang/Object;'
+      }
+      def type = Mock(ReferenceType) {
+        name() >> 'java.io.FilePermission'
+        allFields() >> [nameField, maskField, constantField, otherField]
+      }
+      def permission = Mock(ObjectReference) {
+        referenceType() >> type
+        getValues([nameField, maskField]) >> [(nameField): Mock(StringReference) { value() >> 'file' }, (maskField): Mock(IntegerValue) { intValue() >> 4 }]
+      }
+      def permission2 = Mock(ObjectReference) {
+        referenceType() >> type
+        getValues([nameField, maskField]) >> [(nameField): Mock(StringReference) { value() >> 'file' }, (maskField): Mock(IntegerValue) { intValue() >> 2 }]
+      }
+      def context = Mock(ArrayReference) {
+        getValue(LOCAL_I) >> Mock(ObjectReference) { uniqueID() >> 3L }
+        getValue(LOCAL_I + 1) >> Mock(ObjectReference) { uniqueID() >> 4L }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> new ReflectionUtil(Stub(DebugContext), Stub(VirtualMachine), Stub(ThreadReference))
+      }
+      def processor = new AccessControlContextCheckProcessor()
+
+    expect:
+      processor.failureKey(debug, context, LOCAL_I, permission) == ['java.io.FilePermission', ['file', 4], 3L]
+      processor.failureKey(debug, context, LOCAL_I, permission) == processor.failureKey(debug, context, LOCAL_I, permission)
+      processor.failureKey(debug, context, LOCAL_I, permission) != processor.failureKey(debug, context, LOCAL_I, permission2)
+      processor.failureKey(debug, context, LOCAL_I, permission) != processor.failureKey(debug, context, LOCAL_I + 1, permission)
+  }
+
+  def "test verdictKey() of identical failures are equal"() {
+    given:
+      def top = Stub(Location)
+      def next = Stub(Location)
+      def thread = Mock(ThreadReference) {
+        frames() >> [Mock(StackFrame) { location() >> top }, Mock(StackFrame) { location() >> next }]
+      }
+      def thread2 = Mock(ThreadReference) {
+        frames() >> [Mock(StackFrame) { location() >> top }]
+      }
+      def processor = new AccessControlContextCheckProcessor()
+
+    expect:
+      processor.verdictKey(thread, ['failure']) == [['failure'], [top, next]]
+      processor.verdictKey(thread, ['failure']) == processor.verdictKey(thread, ['failure'])
+      processor.verdictKey(thread, ['failure']) != processor.verdictKey(thread, ['failure2'])
+      processor.verdictKey(thread, ['failure']) != processor.verdictKey(thread2, ['failure'])
+  }
+
+  def "test verdictKey() of failures differing only deep in the stack are not equal"() {
+    given:
+      def top = (1..20).collect { Stub(Location) }
+      def bottom = Stub(Location) { compareTo(_) >> -1 }
+      def bottom2 = Stub(Location) { compareTo(_) >> 1 }
+      def stack = (top + bottom).collect { l -> Stub(StackFrame) { location() >> l } }
+      def stack2 = (top + bottom2).collect { l -> Stub(StackFrame) { location() >> l } }
+      def thread = Mock(ThreadReference) {
+        frames() >> stack
+      }
+      def thread2 = Mock(ThreadReference) {
+        frames() >> stack2
+      }
+      def processor = new AccessControlContextCheckProcessor()
+
+    expect:
+      processor.verdictKey(thread, ['failure']) != processor.verdictKey(thread2, ['failure'])
+  }
+
+  def "test fingerprint() of identical failures are equal"() {
+    given:
+      def top = Stub(Location)
+      def next = Stub(Location)
+      def thread = Mock(ThreadReference) {
+        frames() >> [Mock(StackFrame) { location() >> top }, Mock(StackFrame) { location() >> next }]
+      }
+      def thread2 = Mock(ThreadReference) {
+        frames() >> [Mock(StackFrame) { location() >> top }, Mock(StackFrame) { location() >> next }]
+      }
+      def permission = Mock(ObjectReference) {
+        uniqueID() >> 1L
+      }
+      def context = Mock(ArrayReference) {
+        uniqueID() >> 2L
+      }
+
+    expect:
+      AccessControlContextCheckProcessor.fingerprint(thread, context, LOCAL_I, permission) == AccessControlContextCheckProcessor.fingerprint(thread2, context, LOCAL_I, permission)
+      AccessControlContextCheckProcessor.fingerprint(thread, context, LOCAL_I, permission) != AccessControlContextCheckProcessor.fingerprint(thread2, context, LOCAL_I + 1, permission)
+  }
+
   private def stub(def debug, def threadReference, def reflectionUtil, def permissionUtil, def failing, def continuous) {
+    threadReference.frames() >> []
     with(debug) {
+      computeIfAbsent(AccessControlContextCheckProcessor.VERDICT_CACHE, _) >> { it[1].get() }
       thread() >> threadReference
       reflection() >> reflectionUtil
       permissions() >> permissionUtil
@@ -205,17 +447,14 @@ class AccessControlContextCheckBreakpointProcessorSpec extends Specification {
     reflection.getVoid() >> VOID
   }
 
-  private def stub(ThreadReference thread) {
-    with(thread) {
-      frame(0) >> Mock(EnhancedStackFrame) {
-        thisObject() >> ACC
-        getArgumentValues() >> Mock(List) {
-          get(0) >> PERMISSION
-        }
-        getValue(AccessControlContextCheckProcessor.LOCAL_I_SLOT_INDEX, 'I') >> Mock(IntegerValue) {
-          intValue() >> LOCAL_I
-        }
-      }
-    }
+  private def stub(Debug debug) {
+    debug.coalesceFailure(_, _) >> { it[1].call() }
+    debug.frameValues({
+      it == [AccessControlContextCheckProcessor.LOCAL_I_SLOT_INDEX] as int[]
+    }, {
+      it == ['I'] as String[]
+    }) >> new FrameValues(ACC, [PERMISSION], [Mock(IntegerValue) {
+      intValue() >> LOCAL_I
+    }])
   }
 }
@@ -15,20 +15,25 @@ package org.codice.acdebugger.breakpoints
 
 import com.sun.jdi.BooleanValue
 import com.sun.jdi.EnhancedStackFrame
+import com.sun.jdi.FrameValues
 import com.sun.jdi.LocalVariable
 import com.sun.jdi.Location
+import com.sun.jdi.Method
 import com.sun.jdi.ObjectReference
+import com.sun.jdi.ReferenceType
 import com.sun.jdi.ThreadReference
 import com.sun.jdi.VirtualMachine
 import com.sun.jdi.request.BreakpointRequest
 import com.sun.jdi.request.EventRequestManager
 import org.codice.acdebugger.api.BundleUtil
 import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.api.MirrorCache
 import org.codice.acdebugger.api.PermissionUtil
 import org.codice.acdebugger.api.ReflectionUtil
 import org.codice.acdebugger.impl.BreakpointInfo
 import org.codice.acdebugger.impl.BreakpointLocation
 import org.codice.acdebugger.impl.DebugContext
+import org.codice.acdebugger.impl.ServiceCheckSampler
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -85,24 +90,28 @@ class HasListenServicePermissionProcessorSpec extends Specification {
     given:
       def thread = Mock(ThreadReference)
       def context = Stub(ObjectReference)
-      def reflection = Spy(ReflectionUtil, constructorArgs: [Stub(DebugContext), Stub(VirtualMachine), thread])
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
       def bundles = Mock(BundleUtil)
       def permissions = Mock(PermissionUtil)
+      def sampler = Mock(ServiceCheckSampler)
       def debug = Mock(Debug)
+      def processor = Spy(HasListenServicePermissionProcessor)
 
     when:
-      new HasListenServicePermissionProcessor().process(Stub(BreakpointInfo), debug)
+      processor.process(Stub(BreakpointInfo), debug)
 
     then:
       interaction {
-        stub(thread, context)
+        stub(debug, thread, context)
         stub(bundles, context)
         stub(reflection)
-        stub(debug, thread, reflection, bundles, permissions, failing, continuous)
+        stub(debug, thread, reflection, bundles, permissions, sampler, failing, continuous)
       }
+      processor.verdictKey(debug, BUNDLE, SERVICE_EVENT) >> null
 
     and:
       1 * permissions.findMissingServicePermissionStrings(BUNDLE, DOMAIN, SERVICE_EVENT) >> permissionInfos
+      1 * sampler.checked(record_count == 1)
       record_count * debug.record({
         (it.getGrantedDomains() == ([BUNDLE] as Set<String>)) && (it.getPermissions() == permissionInfos)
       })
@@ -121,8 +130,101 @@ class HasListenServicePermissionProcessorSpec extends Specification {
       'missing permissions are detected and the debugger is not letting things fail after one detection'    || PERMISSIONS       || false   | false      || 1            | 0
   }
 
-  private def stub(def debug, def threadReference, def reflectionUtil, def bundleUtil, def permissionUtil, def failing, def continuous) {
+  def "test process() with a bundle already checked for the service"() {
+    given:
+      def thread = Mock(ThreadReference)
+      def context = Stub(ObjectReference)
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
+      def bundles = Mock(BundleUtil)
+      def permissions = Mock(PermissionUtil)
+      def sampler = Mock(ServiceCheckSampler)
+      def verdicts = new MirrorCache(HasListenServicePermissionProcessor.VERDICT_CACHE)
+      def debug = Mock(Debug)
+      def processor = Spy(HasListenServicePermissionProcessor)
+
+      verdicts.put('key', true)
+
+    when:
+      processor.process(Stub(BreakpointInfo), debug)
+
+    then:
+      debug.computeIfAbsent(HasListenServicePermissionProcessor.VERDICT_CACHE, _) >> verdicts
+      interaction {
+        stub(debug, thread, context)
+        stub(bundles, context)
+        stub(reflection)
+        stub(debug, thread, reflection, bundles, permissions, sampler, false, true)
+      }
+      processor.verdictKey(debug, BUNDLE, SERVICE_EVENT) >> 'key'
+
+    and:
+      0 * permissions.findMissingServicePermissionStrings(*_)
+      0 * debug.record(_)
+      1 * sampler.checked(false)
+      1 * thread.forceEarlyReturn(TRUE)
+  }
+
+  def "test process() remembers a bundle was checked for the service"() {
+    given:
+      def thread = Mock(ThreadReference)
+      def context = Stub(ObjectReference)
+      def reflection = Spy(ReflectionUtil, constructorArgs: [new DebugContext(), Stub(VirtualMachine), thread])
+      def bundles = Mock(BundleUtil)
+      def permissions = Mock(PermissionUtil)
+      def sampler = Mock(ServiceCheckSampler)
+      def verdicts = new MirrorCache(HasListenServicePermissionProcessor.VERDICT_CACHE)
+      def debug = Mock(Debug)
+      def processor = Spy(HasListenServicePermissionProcessor)
+
+    when:
+      processor.process(Stub(BreakpointInfo), debug)
+
+    then:
+      debug.computeIfAbsent(HasListenServicePermissionProcessor.VERDICT_CACHE, _) >> verdicts
+      interaction {
+        stub(debug, thread, context)
+        stub(bundles, context)
+        stub(reflection)
+        stub(debug, thread, reflection, bundles, permissions, sampler, false, true)
+      }
+      processor.verdictKey(debug, BUNDLE, SERVICE_EVENT) >> 'key'
+
+    and:
+      1 * permissions.findMissingServicePermissionStrings(BUNDLE, DOMAIN, SERVICE_EVENT) >> PERMISSIONS
+      1 * debug.record(_)
+      1 * sampler.checked(true)
+
+    and:
+      verdicts.get('key')
+  }
+
+  @Unroll
+  def "test verdictKey() with #when_what"() {
+    given:
+      def reference = Stub(ObjectReference)
+      def registration = Stub(ObjectReference)
+      def util = Mock(ReflectionUtil) {
+        get(SERVICE_EVENT, 'reference', null) >> reference
+        get(reference, 'registration', null) >> registration
+        get(registration, 'clazzes', '[Ljava/lang/String;') >> clazzes
+      }
+      def debug = Mock(Debug) {
+        reflection() >> util
+      }
+
+    expect:
+      new HasListenServicePermissionProcessor().verdictKey(debug, BUNDLE, SERVICE_EVENT) == result
+
+    where:
+      when_what                    || clazzes                  || result
+      'object classes'             || ['c1', 'c2'] as String[] || [BUNDLE, ['c1', 'c2']]
+      'no object classes readable' || null                     || null
+  }
+
+  private def stub(def debug, def threadReference, def reflectionUtil, def bundleUtil, def permissionUtil, def sampler, def failing, def continuous) {
+    debug.computeIfAbsent(HasListenServicePermissionProcessor.VERDICT_CACHE, _) >> { it[1].get() }
     with(debug) {
+      serviceCheckSampler() >> sampler
       thread() >> threadReference
       reflection() >> reflectionUtil
       bundles() >> bundleUtil
@@ -140,18 +242,18 @@ class HasListenServicePermissionProcessorSpec extends Specification {
     reflection.toMirror(true) >> TRUE
   }
 
-  private def stub(ThreadReference thread, ObjectReference context) {
+  private def stub(Debug debug, ThreadReference thread, ObjectReference context) {
     def domain = Stub(LocalVariable)
 
     with(thread) {
       frame(0) >> Mock(EnhancedStackFrame) {
-        getArgumentValues() >> Mock(List) {
-          get(1) >> context
-          get(0) >> SERVICE_EVENT
+        location() >> Stub(Location) {
+          declaringType() >> Stub(ReferenceType)
+          method() >> Stub(Method)
         }
         visibleVariableByName('domain') >> domain
-        getValue(domain) >> DOMAIN
       }
     }
+    debug.frameValues(domain) >> new FrameValues(null, [SERVICE_EVENT, context], [DOMAIN])
   }
 }
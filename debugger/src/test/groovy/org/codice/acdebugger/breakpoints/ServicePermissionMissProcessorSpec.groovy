@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.breakpoints
+
+import com.sun.jdi.Location
+import com.sun.jdi.Method
+import com.sun.jdi.request.BreakpointRequest
+import com.sun.jdi.request.EventRequestManager
+import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.api.PermissionUtil
+import org.codice.acdebugger.common.ServicePermissionInfo
+import org.codice.acdebugger.impl.Backdoor
+import org.codice.acdebugger.impl.BreakpointInfo
+import org.codice.acdebugger.impl.BreakpointLocation
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ServicePermissionMissProcessorSpec extends Specification {
+  static def METHOD_NAME = 'servicePermissionMissesRecorded'
+  static def BUNDLE = 'bundle.name'
+  static def BUNDLE2 = 'bundle.name2'
+  static def PERMISSION_INFOS = ['permission.1', 'permission.2'] as Set<String>
+  static def PERMISSION_INFOS2 = ['permission.3'] as Set<String>
+
+  def "test locations() is within the Backdoor class"() {
+    when:
+      def locations = new ServicePermissionMissProcessor().locations().toArray()
+
+    then:
+      locations.length == 1
+      locations[0].className == 'org.codice.acdebugger.backdoor.Backdoor'
+      locations[0].classSignature == Backdoor.CLASS_SIGNATURE
+      locations[0].method == METHOD_NAME
+      locations[0].lineNumber == -1
+  }
+
+  @Unroll
+  def "test createRequest() #creates a breakpoint request at the start of the method when #when_what"() {
+    given:
+      def start = Stub(Location)
+      def breakpointLocation = Mock(BreakpointLocation) {
+        getMethod() >> METHOD_NAME
+        getMethodReferences() >> (found ? [Mock(Method) { location() >> start }] : [])
+      }
+      def breakpointRequest = Stub(BreakpointRequest)
+      def erm = Mock(EventRequestManager)
+      def debug = Mock(Debug) {
+        eventRequestManager() >> erm
+      }
+
+    when:
+      def req = new ServicePermissionMissProcessor().createRequest(debug, breakpointLocation)
+
+    then:
+      req == (found ? breakpointRequest : null)
+
+    and:
+      (found ? 1 : 0) * erm.createBreakpointRequest(start) >> breakpointRequest
+
+    where:
+      creates           | when_what                 || found
+      'creates'         | 'the method is found'     || true
+      'does not create' | 'the method is not found' || false
+  }
+
+  def "test process() records all drained misses that are still missing permissions"() {
+    given:
+      def info = new ServicePermissionInfo(PERMISSION_INFOS, false, [] as Set<String>)
+      def info2 = new ServicePermissionInfo(PERMISSION_INFOS2, false, [] as Set<String>)
+      def info3 = new ServicePermissionInfo(PERMISSION_INFOS2, false, PERMISSION_INFOS2)
+      def door = Mock(Backdoor)
+      def util = Mock(PermissionUtil)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+        permissions() >> util
+      }
+
+    when:
+      new ServicePermissionMissProcessor().process(Stub(BreakpointInfo), debug)
+
+    then:
+      1 * door.drainServicePermissionMisses(debug) >> [(BUNDLE): [info, info2], (BUNDLE2): [info3]]
+      1 * util.findMissingServicePermissionStrings(BUNDLE, info) >> PERMISSION_INFOS
+      1 * util.findMissingServicePermissionStrings(BUNDLE, info2) >> PERMISSION_INFOS2
+      1 * util.findMissingServicePermissionStrings(BUNDLE2, info3) >> ([] as Set<String>)
+      1 * debug.record({ it.bundle == BUNDLE && it.permissions == PERMISSION_INFOS })
+      1 * debug.record({ it.bundle == BUNDLE && it.permissions == PERMISSION_INFOS2 })
+      0 * debug.record(_)
+  }
+
+  def "test process() when no misses were drained"() {
+    given:
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+        permissions() >> Mock(PermissionUtil)
+      }
+
+    when:
+      new ServicePermissionMissProcessor().process(Stub(BreakpointInfo), debug)
+
+    then:
+      1 * door.drainServicePermissionMisses(debug) >> [:]
+      0 * debug.record(_)
+  }
+}
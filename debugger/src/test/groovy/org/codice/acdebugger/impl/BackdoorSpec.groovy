@@ -13,12 +13,23 @@
  */
 package org.codice.acdebugger.impl
 
+import com.sun.jdi.ArrayReference
+import com.sun.jdi.Field
+import com.sun.jdi.IntegerValue
 import com.sun.jdi.Method
+import com.sun.jdi.ObjectReference
+import com.sun.jdi.ReferenceType
+import com.sun.jdi.StringReference
 import org.codice.acdebugger.ReflectionSpecification
 import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.api.PermissionUtil
 import org.codice.acdebugger.api.ReflectionUtil
+import org.codice.acdebugger.breakpoints.GrantFlushProcessor
 import org.codice.acdebugger.breakpoints.HasListenServicePermissionProcessor
+import org.codice.acdebugger.breakpoints.ServicePermissionMissProcessor
+import org.codice.acdebugger.common.BundleInfo
 import org.codice.acdebugger.common.DomainInfo
+import org.codice.acdebugger.common.JsonUtils
 import org.codice.acdebugger.common.ServicePermissionInfo
 import org.codice.spock.Supplemental
 import spock.lang.Shared
@@ -28,7 +39,11 @@ import java.util.stream.Stream
 
 @Supplemental
 class BackdoorSpec extends ReflectionSpecification {
-  static def METHOD_NAMES = ['getBundle', 'getBundleVersion', 'getDomain', 'getDomainInfo', 'getPermissionStrings', 'grantPermission', 'hasPermission', 'getServicePermissionInfoAndGrant']
+  static def METHOD_NAMES = ['getBundle', 'getBundleVersion', 'getDomain', 'getDomainInfo', 'getPermissionStrings', 'grantPermission', 'hasPermission', 'getServicePermissionInfoAndGrant', 'enableServicePermissionRecorder', 'drainServicePermissionMisses', 'grantPermissions', 'enableHelper', 'getBundleRegistry', 'getBundleRegistryChanges', 'getSystemProperties']
+  // methods whose arguments are converted to Json before invoking the backdoor
+  static def JSON_METHOD_NAMES = ['grantPermissions', 'getSystemProperties']
+  // methods whose results are snapshots of mirrors and Json
+  static def SNAPSHOT_METHOD_NAMES = ['getBundleRegistry', 'getBundleRegistryChanges']
   static def METHOD_SIGNATURES = [
       getBundle: Backdoor.METHOD_SIGNATURE_OBJ_ARG_STRING_RESULT,
       getBundleVersion: Backdoor.METHOD_SIGNATURE_OBJ_ARG_STRING_RESULT,
@@ -37,7 +52,14 @@ class BackdoorSpec extends ReflectionSpecification {
       getPermissionStrings: Backdoor.METHOD_SIGNATURE_OBJ_ARG_STRING_RESULT,
       grantPermission: '(Ljava/lang/String;Ljava/lang/String;)V',
       hasPermission: '(Ljava/lang/Object;Ljava/lang/Object;)Z',
-      getServicePermissionInfoAndGrant: '(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;Z)Ljava/lang/String;'
+      getServicePermissionInfoAndGrant: '(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;Z)Ljava/lang/String;',
+      enableServicePermissionRecorder: '(Z)V',
+      drainServicePermissionMisses: '()Ljava/lang/String;',
+      grantPermissions: '(Ljava/lang/String;)V',
+      enableHelper: '()V',
+      getBundleRegistry: '()[Ljava/lang/Object;',
+      getBundleRegistryChanges: '()[Ljava/lang/Object;',
+      getSystemProperties: '(Ljava/lang/String;)Ljava/lang/String;'
   ]
 
   @Shared
@@ -52,10 +74,38 @@ class BackdoorSpec extends ReflectionSpecification {
       getDomainInfo: [invoke: '[{"locationString":"file:/location","implies":true}, {"implies":false}]', method: [new DomainInfo('file:/location', true), new DomainInfo(null, false)]],
       getPermissionStrings: [invoke: '["a", "b", "a"]', method: ['a', 'b'] as Set<String>],
       grantPermission: [invoke: null, method: null],
+      grantPermissions: [invoke: null, method: null],
       hasPermission: [invoke: true, method: true],
-      getServicePermissionInfoAndGrant: [invoke: '{"permissionStrings":["permission.1"],"implies":true,"implied":["permission.1","permission.2"]}', method: new ServicePermissionInfo(['permission.1'] as Set<String>, true, ['permission.1', 'permission.2'] as Set<String>)]
+      getServicePermissionInfoAndGrant: [invoke: '{"permissionStrings":["permission.1"],"implies":true,"implied":["permission.1","permission.2"]}', method: new ServicePermissionInfo(['permission.1'] as Set<String>, true, ['permission.1', 'permission.2'] as Set<String>)],
+      drainServicePermissionMisses: [invoke: '{"bundle.a":[{"permissionStrings":["permission.1"],"implies":false,"implied":[]}]}', method: ['bundle.a': [new ServicePermissionInfo(['permission.1'] as Set<String>, false, [] as Set<String>)]]]
   ]
 
+  @Shared
+  def BUNDLE_INFO_A = new BundleInfo(1L, 'bundle.a', '1.0.0', 'mvn:a/a/1.0.0', 'file:/a')
+  @Shared
+  def BUNDLE_INFO_B = new BundleInfo(2L, 'bundle.b', '2.0.0', 'mvn:b/b/2.0.0', null)
+  @Shared
+  def BUNDLE_INFO_C = new BundleInfo(3L, null, null, null, null) // uninstalled
+  @Shared
+  def BUNDLE_A = Stub(ObjectReference)
+  @Shared
+  def DOMAIN_A = Stub(ObjectReference)
+  @Shared
+  def BUNDLE_B = Stub(ObjectReference)
+  @Shared
+  def LOADER_B = Stub(ObjectReference)
+  @Shared
+  def SNAPSHOT = Stub(ArrayReference) {
+    getValues() >> [
+        Stub(StringReference) {
+          value() >> JsonUtils.toJson([BUNDLE_INFO_A, BUNDLE_INFO_B, BUNDLE_INFO_C])
+        },
+        BUNDLE_A, DOMAIN_A, null,
+        BUNDLE_B, null, LOADER_B,
+        null, null, null
+    ]
+  }
+
   @Shared
   def BACKDOOR_CLASS = MockClassType('BACKDOOR_CLASS', Backdoor.CLASS_SIGNATURE)
   @Shared
@@ -63,6 +113,15 @@ class BackdoorSpec extends ReflectionSpecification {
   @Shared
   def BACKDOOR_OBJ = MockObjectReference('BACKDOOR_OBJ', BACKDOOR_CLASS)
 
+  def REGISTRY_CLASS = Mock(ReferenceType)
+  def REGISTRY_OBJ = Mock(ObjectReference) {
+    referenceType() >> REGISTRY_CLASS
+  }
+  @Shared
+  def REGISTRY_FIELDS = ['changeCount', 'invalidationCount', 'startCount'].collectEntries {
+    [(it): Stub(Field, name: it + 'FieldStub')]
+  }
+
   @Unroll
   def "test init() with a backdoor reference and #and_what"() {
     given:
@@ -70,6 +129,7 @@ class BackdoorSpec extends ReflectionSpecification {
       def debug = Mock(Debug) {
         reflection() >> reflectionUtil
         isMonitoringService() >> monitoring
+        isContinuous() >> true
       }
       def backdoor = new Backdoor()
 
@@ -81,6 +141,7 @@ class BackdoorSpec extends ReflectionSpecification {
         1 * reflectionUtil.findMethod(BACKDOOR_CLASS, it, METHOD_SIGNATURES[it]) >> METHODS[it]
       }
       add_count * debug.add({ it instanceof HasListenServicePermissionProcessor })
+      0 * reflectionUtil.invoke(BACKDOOR_OBJ, { it.is(METHODS['enableServicePermissionRecorder']) }, *_)
 
     where:
       and_what                             || monitoring || add_count
@@ -88,6 +149,306 @@ class BackdoorSpec extends ReflectionSpecification {
       'not monitoring service permissions' || false      || 0
   }
 
+  @Unroll
+  def "test init() with a backdoor reference when monitoring service permissions and #and_what"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil)
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> true
+        isContinuous() >> continuous
+        isGranting() >> granting
+        isFailing() >> failing
+        permissions() >> Mock(PermissionUtil)
+      }
+      def backdoor = new Backdoor()
+
+    when:
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    then:
+      METHOD_NAMES.each {
+        1 * reflectionUtil.findMethod(BACKDOOR_CLASS, it, METHOD_SIGNATURES[it]) >> ((it in supported) ? METHODS[it] : null)
+      }
+      enable_count * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['enableServicePermissionRecorder'], granting)
+      enable_count * debug.add({ it instanceof ServicePermissionMissProcessor })
+      (1 - enable_count) * debug.add({ it instanceof HasListenServicePermissionProcessor })
+
+    where:
+      and_what                           || continuous | granting | failing | supported                                        || enable_count
+      'granting in continuous mode'      || true       | true     | false   | METHOD_NAMES                                     || 1
+      'failing in continuous mode'       || true       | false    | true    | METHOD_NAMES                                     || 1
+      'not in continuous mode'           || false      | false    | false   | METHOD_NAMES                                     || 1
+      'neither granting nor failing'     || true       | false    | false   | METHOD_NAMES                                     || 0
+      'the recorder is not supported'    || true       | true     | false   | METHOD_NAMES - 'enableServicePermissionRecorder' || 0
+      'draining misses is not supported' || true       | true     | false   | METHOD_NAMES - 'drainServicePermissionMisses'    || 0
+  }
+
+  @Unroll
+  def "test init() with a backdoor reference when #when_what"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil)
+      def permissionUtil = Mock(PermissionUtil)
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        permissions() >> permissionUtil
+        isMonitoringService() >> false
+        isContinuous() >> continuous
+        isGranting() >> granting
+      }
+      def backdoor = new Backdoor()
+
+    when:
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    then:
+      METHOD_NAMES.each {
+        1 * reflectionUtil.findMethod(BACKDOOR_CLASS, it, METHOD_SIGNATURES[it]) >> ((it in supported) ? METHODS[it] : null)
+      }
+      helper_count * reflectionUtil.invoke(BACKDOOR_OBJ, { it.is(METHODS['enableHelper']) })
+      helper_count * debug.add({ it instanceof GrantFlushProcessor })
+      stored_count * permissionUtil.grantStoredPermissions()
+
+    where:
+      when_what                                           || continuous | granting | supported                         || helper_count | stored_count
+      'granting in continuous mode'                       || true       | true     | METHOD_NAMES                      || 1            | 1
+      'granting but not in continuous mode'               || false      | true     | METHOD_NAMES                      || 0            | 0
+      'not granting in continuous mode'                   || true       | false    | METHOD_NAMES                      || 0            | 0
+      'granting in continuous mode without helper'        || true       | true     | METHOD_NAMES - 'enableHelper'     || 0            | 1
+      'granting in continuous mode without bulk granting' || true       | true     | METHOD_NAMES - 'grantPermissions' || 0            | 1
+  }
+
+  def "test grantPermissions() sends the permissions as Json"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    when:
+      backdoor.grantPermissions(debug, ['bundle.a': ['permission.1', 'permission.2'] as Set<String>, 'bundle.b': ['permission.3']])
+
+    then:
+      1 * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['grantPermissions'], '{"bundle.a":["permission.1","permission.2"],"bundle.b":["permission.3"]}')
+  }
+
+  def "test getSystemProperties() sends the names and receives the values as Json"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    when:
+      def result = backdoor.getSystemProperties(debug, ['ddf.home', 'java.home', 'solr.home'])
+
+    then:
+      result == ['ddf.home': '/projects/ddf', 'solr.home': '/projects/solr']
+      result.keySet() as List == ['ddf.home', 'solr.home']
+
+    and:
+      1 * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['getSystemProperties'], '["ddf.home","java.home","solr.home"]') >> '{"ddf.home":"/projects/ddf","solr.home":"/projects/solr"}'
+  }
+
+  @Unroll
+  def "test init() with a backdoor reference #preloads_what"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil)
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+    when:
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    then:
+      METHOD_NAMES.each {
+        1 * reflectionUtil.findMethod(BACKDOOR_CLASS, it, METHOD_SIGNATURES[it]) >> ((it in supported) ? METHODS[it] : null)
+      }
+      preload_count * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['getBundleRegistry']) >> SNAPSHOT
+      preload_count * debug.put(BundleIndex.KEY, { it.size() == 4 })
+
+    where:
+      preloads_what                                          || supported                          || preload_count
+      'preloads the bundle index'                            || METHOD_NAMES                       || 1
+      'does not preload the bundle index when not supported' || METHOD_NAMES - 'getBundleRegistry' || 0
+  }
+
+  def "test getBundleRegistry() groups all mirrors by their bundle information"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    when:
+      def result = backdoor.getBundleRegistry(debug)
+
+    then:
+      1 * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['getBundleRegistry']) >> SNAPSHOT
+
+    and:
+      result.keySet() as List == [BUNDLE_INFO_A, BUNDLE_INFO_B, BUNDLE_INFO_C]
+      result[BUNDLE_INFO_A] == [BUNDLE_A, DOMAIN_A]
+      result[BUNDLE_INFO_B] == [BUNDLE_B, LOADER_B]
+      result[BUNDLE_INFO_C].isEmpty()
+  }
+
+  def "test getBundleRegistryChanges() only invokes the backdoor when bundle changes were tracked"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+        findField(REGISTRY_CLASS, _) >> { type, name -> REGISTRY_FIELDS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    when:
+      def unchanged = backdoor.getBundleRegistryChanges(debug)
+      def changed = backdoor.getBundleRegistryChanges(debug)
+      def unchangedAgain = backdoor.getBundleRegistryChanges(debug)
+
+    then:
+      1 * reflectionUtil.get(BACKDOOR_OBJ, 'bundleRegistry', _) >> REGISTRY_OBJ
+      3 * REGISTRY_OBJ.getValues(_) >>> [counts(0, 0, 0), counts(2, 0, 0), counts(2, 0, 0)]
+      1 * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['getBundleRegistryChanges']) >> SNAPSHOT
+
+    and:
+      unchanged.isEmpty()
+      changed.size() == 3
+      unchangedAgain.isEmpty()
+  }
+
+  def "test getBundleRegistryChanges() always invokes the backdoor when forced"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+        findField(REGISTRY_CLASS, _) >> { type, name -> REGISTRY_FIELDS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    when:
+      def result = backdoor.getBundleRegistryChanges(debug, true)
+
+    then:
+      1 * reflectionUtil.get(BACKDOOR_OBJ, 'bundleRegistry', _) >> REGISTRY_OBJ
+      1 * REGISTRY_OBJ.getValues(_) >> counts(0, 0, 0)
+      1 * reflectionUtil.invoke(BACKDOOR_OBJ, METHODS['getBundleRegistryChanges']) >> SNAPSHOT
+
+    and:
+      result.size() == 3
+  }
+
+  def "test checkBundleChanges() invalidates caches and resumes service checks as bundles change"() {
+    given:
+      def sampler = Mock(ServiceCheckSampler)
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+        findField(REGISTRY_CLASS, _) >> { type, name -> REGISTRY_FIELDS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+        serviceCheckSampler() >> sampler
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+      reflectionUtil.get(BACKDOOR_OBJ, 'bundleRegistry', _) >> REGISTRY_OBJ
+
+    when:
+      backdoor.checkBundleChanges(debug)
+
+    then:
+      1 * REGISTRY_OBJ.getValues(_) >> counts(3, 0, 0)
+      0 * debug.invalidateMirrorCaches()
+      0 * sampler.resume(_)
+
+    when:
+      backdoor.checkBundleChanges(debug)
+
+    then:
+      1 * REGISTRY_OBJ.getValues(_) >> counts(4, 1, 0)
+      1 * debug.invalidateMirrorCaches()
+      0 * sampler.resume(_)
+
+    when:
+      backdoor.checkBundleChanges(debug)
+
+    then:
+      1 * REGISTRY_OBJ.getValues(_) >> counts(5, 1, 1)
+      0 * debug.invalidateMirrorCaches()
+      1 * sampler.resume(_)
+  }
+
+  def "test checkBundleChanges() does nothing when the backdoor is not discovered yet"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil)
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+      }
+      def backdoor = new Backdoor()
+
+    when:
+      backdoor.checkBundleChanges(debug)
+
+    then:
+      0 * reflectionUtil._
+      0 * debug.invalidateMirrorCaches()
+  }
+
+  def "test checkBundleChanges() does nothing when the backdoor is not tracking bundles"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil) {
+        findMethod(BACKDOOR_CLASS, _, _) >> { type, name, signature -> METHODS[name] }
+      }
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        isMonitoringService() >> false
+      }
+      def backdoor = new Backdoor()
+
+      backdoor.init(debug, BACKDOOR_OBJ)
+
+    when:
+      backdoor.checkBundleChanges(debug)
+
+    then:
+      1 * reflectionUtil.get(BACKDOOR_OBJ, 'bundleRegistry', _) >> null
+      0 * debug.invalidateMirrorCaches()
+  }
+
   @Unroll
   def "test init() with no backdoor reference and a backdoor discovered and #and_what"() {
     given:
@@ -95,6 +456,7 @@ class BackdoorSpec extends ReflectionSpecification {
       def debug = Mock(Debug) {
         reflection() >> reflectionUtil
         isMonitoringService() >> monitoring
+        isContinuous() >> true
       }
       def backdoor = new Backdoor()
 
@@ -198,7 +560,7 @@ class BackdoorSpec extends ReflectionSpecification {
 
     where:
       method << Backdoor.methods.findAll {
-        it.name in METHOD_NAMES
+        (it.name in METHOD_NAMES) && !(it.name in JSON_METHOD_NAMES) && !(it.name in SNAPSHOT_METHOD_NAMES)
       }
   }
 
@@ -234,7 +596,7 @@ class BackdoorSpec extends ReflectionSpecification {
 
     where:
       method << Backdoor.methods.findAll {
-        it.name in METHOD_NAMES
+        (it.name in METHOD_NAMES) && !(it.name in JSON_METHOD_NAMES) && !(it.name in SNAPSHOT_METHOD_NAMES)
       }
   }
 
@@ -339,4 +701,12 @@ class BackdoorSpec extends ReflectionSpecification {
         it.name in METHOD_NAMES
       }
   }
+
+  def counts(int changes, int invalidations, int starts) {
+    [changes, invalidations, starts].withIndex().collectEntries { count, i ->
+      [(REGISTRY_FIELDS.values()[i]): Stub(IntegerValue) {
+        value() >> count
+      }]
+    }
+  }
 }
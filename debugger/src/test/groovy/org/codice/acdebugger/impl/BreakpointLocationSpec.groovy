@@ -15,6 +15,7 @@ package org.codice.acdebugger.impl
 
 import com.sun.jdi.ClassType
 import com.sun.jdi.Location
+import com.sun.jdi.Method
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -75,6 +76,35 @@ class BreakpointLocationSpec extends Specification {
       info.classReference == clazz
   }
 
+  @Unroll
+  def "test getMethodReferences() with #with_what"() {
+    given:
+      def clazz = Mock(ClassType)
+      def info = new BreakpointLocation(SIGNATURE, method, LINE_NUM)
+
+    when:
+      info.classReference = clazz
+
+    then:
+      info.methodReferences == methods
+
+    and:
+      methods_count * clazz.methodsByName(METHOD) >> methods
+
+    where:
+      with_what   || method || methods_count || methods
+      'a method'  || METHOD || 1             || [Stub(Method), Stub(Method)]
+      'no method' || null   || 0             || null
+  }
+
+  def "test getMethodReferences() if class reference not set yet"() {
+    given:
+      def info = new BreakpointLocation(SIGNATURE, METHOD, LINE_NUM)
+
+    expect:
+      info.methodReferences == null
+  }
+
   @Unroll
   def "test getLocation() with #with_what"() {
     given:
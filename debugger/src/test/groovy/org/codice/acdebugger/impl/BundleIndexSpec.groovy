@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import com.sun.jdi.ClassObjectReference
+import com.sun.jdi.ClassLoaderReference
+import com.sun.jdi.ObjectReference
+import com.sun.jdi.ReferenceType
+import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.common.BundleInfo
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BundleIndexSpec extends Specification {
+  @Shared
+  def INFO = new BundleInfo(1L, 'bundle.a', '1.0.0', 'mvn:a/a/1.0.0', 'file:/a')
+  @Shared
+  def INFO2 = new BundleInfo(2L, 'bundle.b', '2.0.0', 'mvn:b/b/2.0.0', 'file:/b')
+
+  def "test get() when indexed"() {
+    given:
+      def bundle = Mock(ObjectReference)
+      def debug = Mock(Debug)
+      def index = new BundleIndex()
+
+      index.index([(INFO): [bundle]])
+
+    when:
+      def result = index.get(debug, bundle)
+
+    then:
+      result.is(INFO)
+      index.size() == 1
+      index.hitCount() == 1L
+      index.refreshCount() == 0L
+
+    and:
+      0 * debug.backdoor()
+  }
+
+  def "test peek() never refreshes the index"() {
+    given:
+      def bundle = Mock(ObjectReference)
+      def bundle2 = Mock(ObjectReference)
+      def index = new BundleIndex()
+
+      index.index([(INFO): [bundle]])
+
+    expect:
+      index.peek(bundle).is(INFO)
+      index.peek(bundle2) == null
+      index.hitCount() == 0L
+      index.refreshCount() == 0L
+  }
+
+  def "test get() with a class uses its classloader"() {
+    given:
+      def loader = Mock(ClassLoaderReference)
+      def clazz = Mock(ClassObjectReference) {
+        reflectedType() >> Mock(ReferenceType) {
+          classLoader() >> loader
+        }
+      }
+      def debug = Mock(Debug)
+      def index = new BundleIndex()
+
+      index.index([(INFO): [loader]])
+
+    when:
+      def result = index.get(debug, clazz)
+
+    then:
+      result.is(INFO)
+      index.hitCount() == 1L
+  }
+
+  def "test index() replaces mirrors of changed bundles and removes uninstalled ones"() {
+    given:
+      def bundle = Mock(ObjectReference)
+      def domain = Mock(ObjectReference)
+      def loader = Mock(ClassLoaderReference)
+      def domain2 = Mock(ObjectReference)
+      def loader2 = Mock(ClassLoaderReference)
+      def bundle2 = Mock(ObjectReference)
+      def index = new BundleIndex()
+
+      index.index([(INFO): [bundle, domain, loader], (INFO2): [bundle2]])
+
+    when:
+      index.index([(INFO): [bundle, domain2, loader2], (new BundleInfo(2L, null, null, null, null)): []])
+
+    then:
+      index.size() == 3
+      index.peek(bundle).is(INFO)
+      index.peek(domain2).is(INFO)
+      index.peek(loader2).is(INFO)
+      index.peek(domain) == null
+      index.peek(loader) == null
+      index.peek(bundle2) == null
+  }
+
+  def "test get() with a class whose classloader was created after the index was refreshed"() {
+    given:
+      def loader = Mock(ClassLoaderReference)
+      def clazz = Mock(ClassObjectReference) {
+        reflectedType() >> Mock(ReferenceType) {
+          classLoader() >> loader
+        }
+      }
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def index = new BundleIndex()
+
+    when:
+      def result = index.get(debug, clazz)
+
+    then:
+      1 * door.getBundleRegistryChanges(debug, true) >> [(INFO): [loader]]
+
+    and:
+      result.is(INFO)
+      index.hitCount() == 1L
+      index.refreshCount() == 1L
+      !index.isForeign(loader)
+  }
+
+  def "test get() with a class loaded by a classloader not belonging to any bundles only refreshes once"() {
+    given:
+      def loader = Mock(ClassLoaderReference)
+      def clazz = Mock(ClassObjectReference) {
+        reflectedType() >> Mock(ReferenceType) {
+          classLoader() >> loader
+        }
+      }
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def index = new BundleIndex()
+
+    when:
+      def result = index.get(debug, clazz)
+      def result2 = index.get(debug, clazz)
+
+    then:
+      1 * door.getBundleRegistryChanges(debug, true) >> [:]
+
+    and:
+      result == null
+      result2 == null
+      index.isForeign(loader)
+      index.refreshCount() == 0L
+  }
+
+  def "test index() forgets classloaders not belonging to any bundles once indexed"() {
+    given:
+      def loader = Mock(ClassLoaderReference)
+      def door = Mock(Backdoor) {
+        getBundleRegistryChanges(_, true) >> [:]
+      }
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def index = new BundleIndex()
+
+      index.get(debug, loader)
+
+    when:
+      index.index([(INFO): [loader]])
+
+    then:
+      !index.isForeign(loader)
+      index.get(debug, loader).is(INFO)
+  }
+
+  def "test get() with a class loaded by the boot classloader"() {
+    given:
+      def clazz = Mock(ClassObjectReference) {
+        reflectedType() >> Mock(ReferenceType) {
+          classLoader() >> null
+        }
+      }
+      def debug = Mock(Debug)
+      def index = new BundleIndex()
+
+    when:
+      def result = index.get(debug, clazz)
+
+    then:
+      result == null
+      index.hitCount() == 0L
+
+    and:
+      0 * debug.backdoor()
+  }
+
+  @Unroll
+  def "test get() when not indexed and the backdoor reports #reports_what"() {
+    given:
+      def bundle = Mock(ObjectReference)
+      def bundle2 = Mock(ObjectReference)
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def index = new BundleIndex()
+
+    when:
+      def result = index.get(debug, bundle)
+
+    then:
+      result == (found ? INFO : null)
+      index.hitCount() == (found ? 1L : 0L)
+      index.refreshCount() == refresh_count
+
+    and:
+      1 * door.getBundleRegistryChanges(debug, false) >> {
+        [
+            'no changes'            : [:],
+            'changes for the object': [(INFO): [bundle], (INFO2): [bundle2]],
+            'changes for others'    : [(INFO2): [bundle2]]
+        ][reports_what]
+      }
+
+    where:
+      reports_what             || found | refresh_count
+      'no changes'             || false | 0L
+      'changes for the object' || true  | 1L
+      'changes for others'     || false | 1L
+  }
+
+  @Unroll
+  def "test get() when not indexed and the backdoor fails with #exception.class.simpleName"() {
+    given:
+      def bundle = Mock(ObjectReference)
+      def door = Mock(Backdoor) {
+        getBundleRegistryChanges(*_) >> { throw exception }
+      }
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def index = new BundleIndex()
+
+    when:
+      def result = index.get(debug, bundle)
+
+    then:
+      result == null
+      index.refreshCount() == 0L
+
+    where:
+      exception << [new IllegalStateException(), new Error()]
+  }
+
+  def "test get() when not indexed and the backdoor fails with OutOfMemoryError"() {
+    given:
+      def bundle = Mock(ObjectReference)
+      def door = Mock(Backdoor) {
+        getBundleRegistryChanges(*_) >> { throw new OutOfMemoryError() }
+      }
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def index = new BundleIndex()
+
+    when:
+      index.get(debug, bundle)
+
+    then:
+      thrown(OutOfMemoryError)
+  }
+}
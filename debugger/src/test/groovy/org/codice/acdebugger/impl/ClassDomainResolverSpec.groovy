@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import com.sun.jdi.ClassLoaderReference
+import com.sun.jdi.ClassObjectReference
+import com.sun.jdi.ObjectCollectedException
+import com.sun.jdi.ReferenceType
+import com.sun.jdi.VMDisconnectedException
+import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.common.BundleInfo
+import spock.lang.Specification
+
+class ClassDomainResolverSpec extends Specification {
+  static def INFO = new BundleInfo(1L, 'bundle.a', '1.0.0', 'mvn:a/a/1.0.0', 'file:/a')
+
+  def loader = Mock(ClassLoaderReference)
+  def clazz = Mock(ClassObjectReference)
+  def type = Mock(ReferenceType) {
+    classLoader() >> loader
+    classObject() >> clazz
+  }
+  def index = new BundleIndex()
+  def debug = Mock(Debug)
+
+  def "test classPrepared() when disabled"() {
+    given:
+      def resolver = new ClassDomainResolver()
+
+    when:
+      resolver.classPrepared(type)
+
+    then:
+      resolver.prepared.isEmpty()
+  }
+
+  def "test setEnabled() to false clears queued up classes"() {
+    given:
+      def resolver = new ClassDomainResolver()
+
+      resolver.enabled = true
+      resolver.classPrepared(type)
+
+    when:
+      resolver.enabled = false
+
+    then:
+      !resolver.enabled
+      resolver.prepared.isEmpty()
+  }
+
+  def "test resolve() retrieves the class mirrors without caching anything per class when the classloader is indexed"() {
+    given:
+      def resolver = new ClassDomainResolver()
+
+      index.index([(INFO): [loader]])
+
+    when:
+      def resolved = resolver.resolve(debug, type)
+
+    then:
+      resolved
+      resolver.resolvedCount() == 1L
+
+    and:
+      1 * debug.get(BundleIndex.KEY) >> index
+      1 * clazz.reflectedType() >> type
+      0 * debug.bundles()
+      0 * debug.domains()
+      0 * debug.computeIfAbsent(*_)
+      0 * debug.backdoor()
+  }
+
+  def "test resolve() when the classloader is not indexed"() {
+    given:
+      def resolver = new ClassDomainResolver()
+
+    when:
+      def resolved = resolver.resolve(debug, type)
+
+    then:
+      !resolved
+      resolver.resolvedCount() == 0L
+
+    and:
+      1 * debug.get(BundleIndex.KEY) >> index
+      1 * clazz.reflectedType() >> type
+      0 * debug.bundles()
+      0 * debug.domains()
+      0 * debug.backdoor()
+  }
+
+  def "test classes resolved before their classloader is indexed are answered from the index once it is"() {
+    given:
+      def door = Mock(Backdoor)
+      def clazz2 = Mock(ClassObjectReference) {
+        reflectedType() >> Mock(ReferenceType) {
+          classLoader() >> loader
+        }
+      }
+      def type2 = Mock(ReferenceType) {
+        classLoader() >> loader
+        classObject() >> clazz2
+      }
+      def resolver = new ClassDomainResolver()
+
+      debug.get(BundleIndex.KEY) >> index
+      debug.backdoor() >> door
+      resolver.resolve(debug, type2)
+
+    when: "the first on-demand lookup for one of its classes indexes the classloader created after the snapshot"
+      def info = index.get(debug, loader)
+
+    then:
+      info.is(INFO)
+
+    and:
+      1 * door.getBundleRegistryChanges(debug, true) >> [(INFO): [loader]]
+
+    when: "looking up a class resolved before"
+      def info2 = index.get(debug, clazz2)
+
+    then: "it is answered locally"
+      info2.is(INFO)
+
+    and:
+      0 * door._
+  }
+
+  def "test resolve() with a class loaded by the boot classloader"() {
+    given:
+      def bootType = Mock(ReferenceType) {
+        classLoader() >> null
+      }
+      def resolver = new ClassDomainResolver()
+
+    when:
+      def resolved = resolver.resolve(debug, bootType)
+
+    then:
+      !resolved
+
+    and:
+      1 * debug.get(BundleIndex.KEY) >> index
+      0 * bootType.classObject()
+  }
+
+  def "test resolve() when the index was not preloaded"() {
+    given:
+      def resolver = new ClassDomainResolver()
+
+    when:
+      def resolved = resolver.resolve(debug, type)
+
+    then:
+      !resolved
+
+    and:
+      1 * debug.get(BundleIndex.KEY) >> null
+      0 * type.classLoader()
+  }
+
+  def "test resolve() when the class was unloaded"() {
+    given:
+      def unloaded = Mock(ReferenceType) {
+        classLoader() >> loader
+        classObject() >> { throw new ObjectCollectedException() }
+      }
+      def resolver = new ClassDomainResolver()
+
+      index.index([(INFO): [loader]])
+
+    when:
+      def resolved = resolver.resolve(debug, unloaded)
+
+    then:
+      !resolved
+      resolver.resolvedCount() == 0L
+
+    and:
+      1 * debug.get(BundleIndex.KEY) >> index
+  }
+
+  def "test run() resolves queued up classes until no longer running"() {
+    given:
+      def resolver = new ClassDomainResolver()
+
+      clazz.reflectedType() >> type
+      index.index([(INFO): [loader]])
+      debug.get(BundleIndex.KEY) >> index
+      resolver.enabled = true
+      resolver.classPrepared(type)
+      resolver.classPrepared(type)
+      def checks = 3
+
+    when:
+      resolver.run(debug, { checks-- > 0 })
+
+    then:
+      resolver.resolvedCount() == 2L
+      resolver.prepared.isEmpty()
+  }
+
+  def "test run() stops when the VM disconnects"() {
+    given:
+      def disconnected = Mock(ReferenceType) {
+        classLoader() >> { throw new VMDisconnectedException() }
+      }
+      def resolver = new ClassDomainResolver()
+
+      debug.get(BundleIndex.KEY) >> index
+      resolver.enabled = true
+      resolver.classPrepared(disconnected)
+      resolver.classPrepared(type)
+
+    when:
+      resolver.run(debug, { true })
+
+    then:
+      resolver.resolvedCount() == 0L
+      resolver.prepared.isEmpty()
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import com.sun.jdi.ClassType
+import com.sun.jdi.InterfaceType
+import spock.lang.Shared
+import spock.lang.Specification
+
+class ClassIndexSpec extends Specification {
+  static def SIGNATURE = 'Lsome/Class;'
+  static def SIGNATURE2 = 'Lsome/other/Class;'
+  static def INTERFACE_SIGNATURE = 'Lsome/Interface;'
+
+  @Shared
+  def CLASS = Mock(ClassType) {
+    signature() >> SIGNATURE
+  }
+  @Shared
+  def CLASS2 = Mock(ClassType) {
+    signature() >> SIGNATURE
+  }
+  @Shared
+  def OTHER_CLASS = Mock(ClassType) {
+    signature() >> SIGNATURE2
+  }
+  @Shared
+  def INTERFACE = Mock(InterfaceType) {
+    signature() >> INTERFACE_SIGNATURE
+  }
+
+  def "test get() when not indexed"() {
+    given:
+      def index = new ClassIndex()
+
+    when:
+      index.classPrepared(CLASS)
+
+    then:
+      !index.indexed
+      index.get(SIGNATURE) == null
+  }
+
+  def "test index() only indexes classes"() {
+    given:
+      def index = new ClassIndex()
+
+    when:
+      index.index([CLASS, INTERFACE, OTHER_CLASS, CLASS2, CLASS])
+
+    then:
+      index.indexed
+      index.size() == 2
+      index.get(SIGNATURE) == [CLASS, CLASS2]
+      index.get(SIGNATURE2) == [OTHER_CLASS]
+      index.get(INTERFACE_SIGNATURE) == []
+      index.get('Lsome/unknown/Class;') == []
+  }
+
+  def "test classPrepared() adds new classes"() {
+    given:
+      def index = new ClassIndex()
+
+      index.index([CLASS])
+
+    when:
+      index.classPrepared(CLASS2)
+      index.classPrepared(OTHER_CLASS)
+      index.classPrepared(CLASS)
+
+    then:
+      index.get(SIGNATURE) == [CLASS, CLASS2]
+      index.get(SIGNATURE2) == [OTHER_CLASS]
+  }
+
+  def "test classUnloaded() marks the signature stale until refreshed"() {
+    given:
+      def index = new ClassIndex()
+
+      index.index([CLASS, CLASS2, OTHER_CLASS])
+
+    when:
+      index.classUnloaded(SIGNATURE)
+
+    then:
+      index.get(SIGNATURE) == null
+      index.get(SIGNATURE2) == [OTHER_CLASS]
+
+    when:
+      index.refresh(SIGNATURE, [CLASS2])
+
+    then:
+      index.get(SIGNATURE) == [CLASS2]
+
+    when:
+      index.classUnloaded(SIGNATURE)
+      index.refresh(SIGNATURE, [])
+
+    then:
+      index.get(SIGNATURE) == []
+      index.size() == 1
+  }
+
+  def "test refresh() preserves classes prepared since the signature was marked stale"() {
+    given:
+      def index = new ClassIndex()
+
+      index.index([CLASS, OTHER_CLASS])
+      index.classUnloaded(SIGNATURE)
+
+    when:
+      index.classPrepared(CLASS2)
+      index.refresh(SIGNATURE, [])
+
+    then:
+      index.get(SIGNATURE) == [CLASS2]
+  }
+
+  def "test classUnloaded() ignores signatures not indexed"() {
+    given:
+      def index = new ClassIndex()
+
+      index.index([CLASS])
+
+    when:
+      index.classUnloaded(INTERFACE_SIGNATURE)
+
+    then:
+      index.get(INTERFACE_SIGNATURE) == []
+  }
+
+  def "test refresh() is ignored when not indexed"() {
+    given:
+      def index = new ClassIndex()
+
+    when:
+      index.refresh(SIGNATURE, [CLASS])
+
+    then:
+      index.size() == 0
+      index.get(SIGNATURE) == null
+  }
+}
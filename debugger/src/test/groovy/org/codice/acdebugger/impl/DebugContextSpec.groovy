@@ -13,8 +13,11 @@
  */
 package org.codice.acdebugger.impl
 
+import com.sun.jdi.ClassType
+import org.codice.acdebugger.api.MirrorCache
 import org.codice.acdebugger.api.SecurityFailure
 import org.codice.acdebugger.api.SecuritySolution
+import org.codice.acdebugger.api.StackFrameInformation
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -134,6 +137,37 @@ class DebugContextSpec extends Specification {
       CONTEXT.hasPermissions(DOMAIN, PERMISSIONS)
   }
 
+  @Unroll
+  def "test hasPermission() when #when_what"() {
+    given:
+      CONTEXT.grantPermission(DOMAIN, granted)
+
+    expect:
+      CONTEXT.hasPermission(DOMAIN, permission) == result
+
+    where:
+      when_what                                                 || granted                                                      | permission                                                             || result
+      'a file permission for a parent directory was granted'    || 'java.io.FilePermission "/projects/-", "read,write"'         | 'java.io.FilePermission "/projects/etc/file.cfg", "read"'              || true
+      'a file permission for a different action was granted'    || 'java.io.FilePermission "/projects/-", "read"'               | 'java.io.FilePermission "/projects/etc/file.cfg", "write"'             || false
+      'a file permission for a sibling directory was granted'   || 'java.io.FilePermission "/projects/etc/-", "read"'           | 'java.io.FilePermission "/projects/bin/file.sh", "read"'               || false
+      'a wildcard property permission was granted'              || 'java.util.PropertyPermission "ddf.*", "read"'               | 'java.util.PropertyPermission "ddf.home", "read"'                      || true
+      'a wildcard runtime permission was granted'               || 'java.lang.RuntimePermission "accessClassInPackage.*"'       | 'java.lang.RuntimePermission "accessClassInPackage.sun.misc"'          || true
+      'a wildcard service permission was granted'               || 'org.osgi.framework.ServicePermission "org.codice.*", "get"' | 'org.osgi.framework.ServicePermission "org.codice.SomeService", "get"' || true
+      'a wildcard package permission was granted'               || 'org.osgi.framework.PackagePermission "*", "import"'         | 'org.osgi.framework.PackagePermission "org.codice", "import"'          || true
+      'all permission was granted'                              || 'java.security.AllPermission'                                | 'java.io.FilePermission "/projects/etc/file.cfg", "read"'              || true
+      'an unknown permission is checked'                        || 'java.security.AllPermission'                                | 'some.unknown.Permission "name", "do"'                                 || false
+      'an unresolved property is referenced in a granted one'   || 'java.io.FilePermission "${ddf.home}${/}-", "read"'          | 'java.io.FilePermission "/projects/etc/file.cfg", "read"'              || false
+      'an unresolved property is referenced in the checked one' || 'java.io.FilePermission "/projects/-", "read"'               | 'java.io.FilePermission "${ddf.home}${/}file.cfg", "read"'             || false
+  }
+
+  def "test hasPermissions() if all are implied by a granted permission"() {
+    given:
+      CONTEXT.grantPermission(DOMAIN, 'java.io.FilePermission "/projects/-", "read"')
+
+    expect:
+      CONTEXT.hasPermissions(DOMAIN, ['java.io.FilePermission "/projects/a", "read"', 'java.io.FilePermission "/projects/b", "read"'] as Set)
+  }
+
   def "test hasPermissions() with the boot domain"() {
     expect:
       CONTEXT.hasPermissions(null, PERMISSIONS)
@@ -254,6 +288,85 @@ class DebugContextSpec extends Specification {
       CONTEXT.get(KEY) == VALUE
   }
 
+  def "test getFailureCount()"() {
+    given:
+      CONTEXT.record(Mock(SecurityFailure) {
+        isAcceptable() >> false
+        analyze() >> []
+      })
+
+    expect:
+      CONTEXT.failureCount == 1
+  }
+
+  def "test getMirrorCaches() only returns mirror caches sorted by name"() {
+    given:
+      def cache = new MirrorCache('b.cache')
+      def cache2 = new MirrorCache('a.cache')
+
+      CONTEXT.put('b', cache)
+      CONTEXT.put('a', cache2)
+      CONTEXT.put(KEY, VALUE)
+
+    expect:
+      CONTEXT.mirrorCaches == [cache2, cache]
+  }
+
+  def "test classUnloaded() invalidates the class in all mirror caches"() {
+    given:
+      def cache = Mock(MirrorCache) {
+        getName() >> 'b.cache'
+      }
+      def cache2 = Mock(MirrorCache) {
+        getName() >> 'a.cache'
+      }
+
+      CONTEXT.put('b', cache)
+      CONTEXT.put('a', cache2)
+
+    when:
+      CONTEXT.classUnloaded('Lsome/Class;')
+
+    then:
+      1 * cache.invalidateType('Lsome/Class;')
+      1 * cache2.invalidateType('Lsome/Class;')
+  }
+
+  def "test classUnloaded() marks the class as stale in the class index"() {
+    given:
+      def type = Mock(ClassType) {
+        signature() >> 'Lsome/Class;'
+      }
+
+      CONTEXT.classIndex().index([type])
+
+    when:
+      CONTEXT.classUnloaded('Lsome/Class;')
+
+    then:
+      CONTEXT.classIndex().get('Lsome/Class;') == null
+  }
+
+  def "test invalidateMirrorCaches() invalidates all mirror caches"() {
+    given:
+      def cache = Mock(MirrorCache) {
+        getName() >> 'b.cache'
+      }
+      def cache2 = Mock(MirrorCache) {
+        getName() >> 'a.cache'
+      }
+
+      CONTEXT.put('b', cache)
+      CONTEXT.put('a', cache2)
+
+    when:
+      CONTEXT.invalidateMirrorCaches()
+
+    then:
+      1 * cache.invalidateAll()
+      1 * cache2.invalidateAll()
+  }
+
   def "test isOSGi() if not set"() {
     expect:
       CONTEXT.isOSGi()
@@ -529,4 +642,171 @@ class DebugContextSpec extends Specification {
       'already recorded with one solution'     | 'a VM in continuous mode'              | 'normal mode' || true     | 1               | false | false | true       || 0          | 0           | false   | false
       'already recorded with one solution'     | 'a VM for one error'                   | 'normal mode' || true     | 1               | false | false | false      || 0          | 0           | false   | false
   }
+
+  def "test preloadPermissions() if not already known"() {
+    expect:
+      CONTEXT.preloadPermissions(DOMAIN, PERMISSIONS)
+      CONTEXT.hasPermissions(DOMAIN, PERMISSIONS)
+  }
+
+  def "test preloadPermissions() if one was already known"() {
+    given:
+      CONTEXT.preloadPermissions(DOMAIN, PERMISSIONS2)
+
+    expect:
+      !CONTEXT.preloadPermissions(DOMAIN, PERMISSIONS)
+      CONTEXT.hasPermissions(DOMAIN, PERMISSIONS)
+  }
+
+  def "test preloadPermissions() with boot domain"() {
+    expect:
+      !CONTEXT.preloadPermissions(null, PERMISSIONS)
+  }
+
+  def "test setKnowledgeBase() does not preload stored permissions"() {
+    given:
+      def knowledge = Mock(KnowledgeBase) {
+        getPermissions() >> [(DOMAIN): PERMISSIONS, (DOMAIN2): PERMISSIONS2]
+      }
+
+    when:
+      CONTEXT.setKnowledgeBase(knowledge)
+
+    then:
+      !CONTEXT.hasPermission(DOMAIN, PERMISSION)
+      !CONTEXT.hasPermission(DOMAIN2, PERMISSION2)
+      CONTEXT.getStoredPermissions() == [(DOMAIN): PERMISSIONS, (DOMAIN2): PERMISSIONS2]
+
+    and:
+      0 * knowledge.recordPermissions(*_)
+  }
+
+  def "test getStoredPermissions() without a knowledge base"() {
+    expect:
+      CONTEXT.getStoredPermissions().isEmpty()
+  }
+
+  def "test grantPermission() records newly granted permissions in the knowledge base"() {
+    given:
+      def knowledge = Mock(KnowledgeBase) {
+        getPermissions() >> [:]
+      }
+
+      CONTEXT.setKnowledgeBase(knowledge)
+      CONTEXT.grantPermission(DOMAIN, PERMISSION)
+
+    when:
+      CONTEXT.grantPermission(DOMAIN, PERMISSION)
+
+    then:
+      0 * knowledge.recordPermissions(*_)
+
+    when:
+      CONTEXT.grantPermission(DOMAIN, PERMISSION2)
+
+    then:
+      1 * knowledge.recordPermissions(DOMAIN, { it == [PERMISSION2] as Set })
+  }
+
+  def "test grantPermissions() records granted permissions in the knowledge base"() {
+    given:
+      def knowledge = Mock(KnowledgeBase) {
+        getPermissions() >> [:]
+      }
+
+      CONTEXT.setKnowledgeBase(knowledge)
+
+    when:
+      CONTEXT.grantPermissions(DOMAIN, PERMISSIONS)
+
+    then:
+      1 * knowledge.recordPermissions(DOMAIN, PERMISSIONS)
+  }
+
+  def "test preloadPermissions() does not record permissions in the knowledge base"() {
+    given:
+      def knowledge = Mock(KnowledgeBase) {
+        getPermissions() >> [:]
+      }
+
+      CONTEXT.setKnowledgeBase(knowledge)
+
+    when:
+      CONTEXT.preloadPermissions(DOMAIN, PERMISSIONS)
+
+    then:
+      0 * knowledge.recordPermissions(*_)
+  }
+
+  @Unroll
+  def "test record() with #failure_type failure #reported_how in a previous session"() {
+    given:
+      def solution = Spy(SecuritySolution, constructorArgs: [PERMISSIONS2, DOMAINS])
+      def failure = Mock(SecurityFailure) {
+        isAcceptable() >> acceptable
+        getAcceptablePermissions() >> (acceptable ? PERMISSIONS : null)
+        getStack() >> [frame('domain', 'location')]
+        analyze() >> (acceptable ? [] : [solution])
+      }
+      def knowledge = Mock(KnowledgeBase) {
+        getPermissions() >> [:]
+      }
+
+      CONTEXT.setContinuous(true)
+      CONTEXT.setKnowledgeBase(knowledge)
+
+    when:
+      CONTEXT.record(failure)
+
+    then:
+      CONTEXT.failures == [failure]
+      CONTEXT.hasPermissions(DOMAIN, PERMISSIONS2) == !acceptable
+
+    and:
+      1 * knowledge.recordFailure(DebugContext.fingerprint(failure)) >> !reported
+      print_count * failure.toString() >> '<FAILURE>'
+
+    where:
+      failure_type     | reported_how       || acceptable | reported || print_count
+      'an acceptable'  | 'already reported' || true       | true     || 0
+      'an acceptable'  | 'not reported'     || true       | false    || 1
+      'an unacceptable'| 'already reported' || false      | true     || 0
+      'an unacceptable'| 'not reported'     || false      | false    || 1
+  }
+
+  @Unroll
+  def "test fingerprint() with #failure_type failures that are #are_what"() {
+    given:
+      def failure = Mock(SecurityFailure) {
+        isAcceptable() >> acceptable
+        getAcceptablePermissions() >> (acceptable ? PERMISSIONS : null)
+        getStack() >> [frame('domain', 'location')]
+        analyze() >> (acceptable ? [] : [Spy(SecuritySolution, constructorArgs: [PERMISSIONS2, DOMAINS])])
+      }
+      def failure2 = Mock(SecurityFailure) {
+        isAcceptable() >> acceptable
+        getAcceptablePermissions() >> (acceptable ? permissions2 : null)
+        getStack() >> [frame('domain', location2)]
+        analyze() >> (acceptable ? [] : [Spy(SecuritySolution, constructorArgs: [permissions2, DOMAINS])])
+      }
+
+    expect:
+      (DebugContext.fingerprint(failure) == DebugContext.fingerprint(failure2)) == same
+
+    where:
+      failure_type     | are_what                           || acceptable | permissions2 | location2   || same
+      'acceptable'     | 'identical'                        || true       | PERMISSIONS  | 'location'  || true
+      'acceptable'     | 'for different permissions'        || true       | PERMISSIONS2 | 'location'  || false
+      'acceptable'     | 'at different locations'           || true       | PERMISSIONS  | 'location2' || false
+      'unacceptable'   | 'with identical solutions'         || false      | PERMISSIONS2 | 'location'  || true
+      'unacceptable'   | 'with identical solutions elsewhere' || false    | PERMISSIONS2 | 'location2' || true
+      'unacceptable'   | 'with different solutions'         || false      | PERMISSIONS  | 'location'  || false
+  }
+
+  private def frame(String domain, String location) {
+    Stub(StackFrameInformation) {
+      getDomain() >> domain
+      getLocation() >> location
+    }
+  }
 }
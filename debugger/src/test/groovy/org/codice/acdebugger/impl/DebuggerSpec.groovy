@@ -16,7 +16,6 @@ package org.codice.acdebugger.impl
 import com.sun.jdi.ClassType
 import com.sun.jdi.Location
 import com.sun.jdi.Method
-import com.sun.jdi.StackFrame
 import com.sun.jdi.ThreadReference
 import com.sun.jdi.VirtualMachine
 import com.sun.jdi.VirtualMachineManager
@@ -24,6 +23,8 @@ import com.sun.jdi.connect.AttachingConnector
 import com.sun.jdi.connect.Connector.Argument
 import com.sun.jdi.connect.Transport
 import com.sun.jdi.event.BreakpointEvent
+import com.sun.jdi.event.ClassPrepareEvent
+import com.sun.jdi.event.ClassUnloadEvent
 import com.sun.jdi.event.Event
 import com.sun.jdi.event.EventIterator
 import com.sun.jdi.event.EventQueue
@@ -33,17 +34,22 @@ import com.sun.jdi.event.MethodExitEvent
 import com.sun.jdi.event.VMDisconnectEvent
 import com.sun.jdi.request.BreakpointRequest
 import com.sun.jdi.request.ClassPrepareRequest
+import com.sun.jdi.request.ClassUnloadRequest
 import com.sun.jdi.request.EventRequest
 import com.sun.jdi.request.EventRequestManager
 import com.sun.jdi.request.MethodExitRequest
 import org.codice.acdebugger.api.BreakpointProcessor
 import org.codice.acdebugger.api.Debug
+import org.codice.acdebugger.api.MirrorCache
 import org.codice.acdebugger.api.ReflectionUtil
+import org.codice.acdebugger.breakpoints.GrantFlushProcessor
+import org.codice.acdebugger.breakpoints.HasListenServicePermissionProcessor
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.TimeUnit
 import java.util.stream.Stream
 
 class DebuggerSpec extends Specification {
@@ -61,6 +67,10 @@ class DebuggerSpec extends Specification {
   @Shared
   def PENDING_LOCATION = Stub(BreakpointLocation)
   @Shared
+  def PENDING_PROCESSOR2 = Stub(BreakpointProcessor)
+  @Shared
+  def PENDING_LOCATION2 = Stub(BreakpointLocation)
+  @Shared
   def THREAD = Stub(ThreadReference)
   @Shared
   def THREAD2 = Stub(ThreadReference)
@@ -79,13 +89,9 @@ class DebuggerSpec extends Specification {
         }
       }
     }
-    thread() >> Mock(ThreadReference) {
-      frame(0) >> Mock(StackFrame) {
-        location() >> Mock(Location) {
-          method() >> Mock(Method) {
-            name() >> METHOD_NAME
-          }
-        }
+    location() >> Mock(Location) {
+      method() >> Mock(Method) {
+        name() >> METHOD_NAME
       }
     }
   }
@@ -98,13 +104,9 @@ class DebuggerSpec extends Specification {
         }
       }
     }
-    thread() >> Mock(ThreadReference) {
-      frame(0) >> Mock(StackFrame) {
-        location() >> Mock(Location) {
-          method() >> Mock(Method) {
-            name() >> 'other.method'
-          }
-        }
+    location() >> Mock(Location) {
+      method() >> Mock(Method) {
+        name() >> 'other.method'
       }
     }
   }
@@ -117,13 +119,43 @@ class DebuggerSpec extends Specification {
         }
       }
     }
-    thread() >> Mock(ThreadReference) {
-      frame(0) >> Mock(StackFrame) {
-        location() >> Mock(Location) {
-          method() >> null
+    location() >> Mock(Location) {
+      method() >> null
+    }
+  }
+  @Shared
+  def RESOLVED_METHOD = Mock(Method) {
+    name() >> METHOD_NAME
+  }
+  @Shared
+  def EXPECTED_RESOLVED_METHOD_EXIT_EVENT = Mock(MethodExitEvent) {
+    request() >> Mock(MethodExitRequest) {
+      getProperty(Debugger.INFO_KEY) >> Mock(BreakpointInfo) {
+        getLocation() >> Mock(BreakpointLocation) {
+          getMethod() >> METHOD_NAME
+          getMethodReferences() >> [RESOLVED_METHOD]
+        }
+      }
+    }
+    location() >> Mock(Location) {
+      method() >> RESOLVED_METHOD
+    }
+  }
+  @Shared
+  def UNEXPECTED_RESOLVED_METHOD_EXIT_EVENT = Mock(MethodExitEvent) {
+    request() >> Mock(MethodExitRequest) {
+      getProperty(Debugger.INFO_KEY) >> Mock(BreakpointInfo) {
+        getLocation() >> Mock(BreakpointLocation) {
+          getMethod() >> METHOD_NAME
+          getMethodReferences() >> [RESOLVED_METHOD]
         }
       }
     }
+    location() >> Mock(Location) {
+      method() >> Mock(Method) { // overloaded method with the same name
+        name() >> METHOD_NAME
+      }
+    }
   }
   @Shared
   def BREAKPOINT_EVENT = Mock(BreakpointEvent) {
@@ -134,12 +166,8 @@ class DebuggerSpec extends Specification {
         }
       }
     }
-    thread() >> Mock(ThreadReference) {
-      frame(0) >> Mock(StackFrame) {
-        location() >> Mock(Location) {
-          method() >> METHOD_NAME
-        }
-      }
+    location() >> Mock(Location) {
+      method() >> METHOD_NAME
     }
   }
   @Shared
@@ -147,12 +175,8 @@ class DebuggerSpec extends Specification {
     request() >> Mock(BreakpointRequest) {
       getProperty(Debugger.INFO_KEY) >> null
     }
-    thread() >> Mock(ThreadReference) {
-      frame(0) >> Mock(StackFrame) {
-        location() >> Mock(Location) {
-          method() >> METHOD_NAME
-        }
-      }
+    location() >> Mock(Location) {
+      method() >> METHOD_NAME
     }
   }
 
@@ -277,6 +301,76 @@ class DebuggerSpec extends Specification {
       value << [true, false]
   }
 
+  @Unroll
+  def "test setAdaptiveServiceMonitoring() if set to #value"() {
+    given:
+      DEBUGGER.setAdaptiveServiceMonitoring(value)
+
+    expect:
+      DEBUGGER.context.serviceCheckSampler().enabled == value
+
+    where:
+      value << [true, false]
+  }
+
+  @Unroll
+  def "test setPreResolvingDomains() if set to #value"() {
+    given:
+      DEBUGGER.setPreResolvingDomains(value)
+
+    expect:
+      DEBUGGER.context.classDomainResolver().enabled == value
+
+    where:
+      value << [true, false]
+  }
+
+  def "test setMaximumOverhead()"() {
+    when:
+      DEBUGGER.setMaximumOverhead(12.5D)
+
+    then:
+      DEBUGGER.context.governor().budget == 12.5D
+      DEBUGGER.context.governor().enabled
+  }
+
+  @Unroll
+  def "test addPolicy() when osgi is #osgi"() {
+    given:
+      def policy = Mock(PolicyFile)
+
+      DEBUGGER.setOSGi(osgi)
+
+    when:
+      DEBUGGER.addPolicy(policy)
+
+    then:
+      1 * policy.getPermissions(osgi) >> [domain1: ['perm1', 'perm2'] as Set, domain2: ['perm3'] as Set]
+
+    and:
+      DEBUGGER.context.hasPermissions('domain1', ['perm1', 'perm2'] as Set)
+      DEBUGGER.context.hasPermission('domain2', 'perm3')
+      !DEBUGGER.context.hasPermission('domain2', 'perm1')
+      !DEBUGGER.context.hasPermission('domain3', 'perm3')
+
+    where:
+      osgi << [true, false]
+  }
+
+  def "test setKnowledgeBase()"() {
+    given:
+      def knowledge = Mock(KnowledgeBase)
+
+    when:
+      DEBUGGER.setKnowledgeBase(knowledge)
+
+    then:
+      0 * knowledge.getPermissions()
+
+    and:
+      !DEBUGGER.context.hasPermission('domain', 'perm')
+  }
+
   def "test attach()"() {
     given:
       def portArg = Mock(Argument)
@@ -296,7 +390,17 @@ class DebuggerSpec extends Specification {
       def vmm = Mock(VirtualMachineManager) {
         attachingConnectors() >> [connector2, connector]
       }
-      def vm = Mock(VirtualMachine)
+      def type = Mock(ClassType) {
+        signature() >> SIGNATURE
+      }
+      def prepareRequest = Mock(ClassPrepareRequest)
+      def unloadRequest = Mock(ClassUnloadRequest)
+      def vm = Mock(VirtualMachine) {
+        eventRequestManager() >> Mock(EventRequestManager) {
+          createClassPrepareRequest() >> prepareRequest
+          createClassUnloadRequest() >> unloadRequest
+        }
+      }
       def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT])
 
     when:
@@ -304,6 +408,7 @@ class DebuggerSpec extends Specification {
 
     then:
       d.is(debugger)
+      d.context.classIndex().get(SIGNATURE) == [type]
       with(d.debug) {
         virtualMachine() == vm
       }
@@ -326,6 +431,11 @@ class DebuggerSpec extends Specification {
       1 * connector.attach(args) >> vm
       1 * vm.setDebugTraceMode(_)
       1 * vm.description() >> "description\n2nd line"
+      1 * vm.allClasses() >> [type]
+      1 * prepareRequest.setSuspendPolicy(EventRequest.SUSPEND_NONE)
+      1 * prepareRequest.enable()
+      1 * unloadRequest.setSuspendPolicy(EventRequest.SUSPEND_NONE)
+      1 * unloadRequest.enable()
 
     when:
       d.debug.thread()
@@ -396,6 +506,59 @@ class DebuggerSpec extends Specification {
       'no created request from the processor' || false
   }
 
+  def "test add() registers service event permission check requests as sheddable with the governor"() {
+    given:
+      def location = Mock(BreakpointLocation) {
+        getClassSignature() >> SIGNATURE
+      }
+      def processor = Mock(HasListenServicePermissionProcessor)
+      def request = Mock(BreakpointRequest)
+      def debug = Mock(Debug) {
+        reflection() >> Mock(ReflectionUtil) {
+          getClass(SIGNATURE) >> CLASS
+        }
+      }
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, null])
+
+    when:
+      debugger.add(processor, location)
+
+    then:
+      1 * processor.createRequest(debug, location) >> request
+      1 * request.enable()
+
+    and:
+      debugger.context.governor().sheddable == [request]
+  }
+
+  def "test add() registers grant flush requests with the grant coalescer"() {
+    given:
+      def location = Mock(BreakpointLocation) {
+        getClassSignature() >> SIGNATURE
+      }
+      def processor = Mock(GrantFlushProcessor)
+      def request = Mock(BreakpointRequest)
+      def debug = Mock(Debug) {
+        reflection() >> Mock(ReflectionUtil) {
+          getClass(SIGNATURE) >> CLASS
+        }
+      }
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, null])
+
+    when:
+      debugger.add(processor, location)
+
+    then:
+      1 * processor.createRequest(debug, location) >> request
+      1 * request.enable()
+
+    then: "it is disabled until permissions are pending"
+      1 * request.setEnabled(false)
+
+    and:
+      debugger.context.grantCoalescer().enabled
+  }
+
   def "test add() with a location that with a referenced class not loaded yet"() {
     given:
       def location = Mock(BreakpointLocation) {
@@ -421,10 +584,53 @@ class DebuggerSpec extends Specification {
     then:
       1 * erm.createClassPrepareRequest() >> request
       1 * request.putProperty(Debugger.INFO_KEY, {
-        (it instanceof PendingBreakpointInfo) && (it.request == request) && (it.processor == processor) && (it.location == location)
+        (it instanceof PendingBreakpointInfo) && (it.request == request) && (it.className == CLASS_NAME) && (it.breakpoints*.key == [processor]) && (it.breakpoints*.value == [location])
       })
       1 * request.addClassFilter(CLASS_NAME)
+      1 * request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD)
+      1 * request.enable()
+  }
+
+  def "test add() with multiple locations waiting for the same class share a single request"() {
+    given:
+      def location = Mock(BreakpointLocation) {
+        getClassSignature() >> SIGNATURE
+        getClassName() >> CLASS_NAME
+      }
+      def location2 = Mock(BreakpointLocation) {
+        getClassSignature() >> SIGNATURE
+        getClassName() >> CLASS_NAME
+      }
+      def processor = Mock(BreakpointProcessor) {
+        locations() >> Stream.of(location)
+      }
+      def processor2 = Mock(BreakpointProcessor) {
+        locations() >> Stream.of(location2)
+      }
+      def request = Mock(ClassPrepareRequest)
+      def erm = Mock(EventRequestManager)
+      def debug = Mock(Debug) {
+        reflection() >> Mock(ReflectionUtil) {
+          getClass(SIGNATURE) >> null
+        }
+        eventRequestManager() >> erm
+      }
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, null])
+      def info = null
+
+    when:
+      debugger.add(processor)
+      debugger.add(processor2)
+
+    then:
+      1 * erm.createClassPrepareRequest() >> request
+      1 * request.putProperty(Debugger.INFO_KEY, _) >> { info = it[1] }
+      1 * request.addClassFilter(CLASS_NAME)
       1 * request.enable()
+
+    and:
+      info.breakpoints*.key == [processor, processor2]
+      info.breakpoints*.value == [location, location2]
   }
 
   @Unroll
@@ -440,7 +646,7 @@ class DebuggerSpec extends Specification {
       def debug = Mock(Debug) {
         virtualMachine() >> Mock(VirtualMachine) {
           eventQueue() >> Mock(EventQueue) {
-            remove() >> set
+            remove(_) >> set
           }
         }
         eventRequestManager() >> erm
@@ -473,12 +679,50 @@ class DebuggerSpec extends Specification {
       true          | true          | false                | false
   }
 
+  def "test loop() reports permissions left without being granted"() {
+    given:
+      def set = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, false]
+          next() >>> [VM_DISCONNECTED_EVENT]
+        }
+      }
+      def debug = Mock(Debug) {
+        virtualMachine() >> Mock(VirtualMachine) {
+          eventQueue() >> Mock(EventQueue) {
+            remove(_) >> set
+          }
+        }
+        eventRequestManager() >> Mock(EventRequestManager)
+      }
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, Mock(ExecutorService)])
+      def out = System.out
+      def bytes = new ByteArrayOutputStream()
+
+      debugger.context.grantCoalescer().add('some.domain', 'java.lang.RuntimePermission "a"')
+      System.out = new PrintStream(bytes, true)
+
+    when:
+      try {
+        debugger.loop()
+      } finally {
+        System.out = out
+      }
+
+    then:
+      bytes.toString().contains('Permissions left without being granted in the attached VM:')
+      bytes.toString().contains('some.domain: java.lang.RuntimePermission "a"')
+  }
+
   def "test loop() with a pending breakpoint event"() {
     given:
       def pendingRequest = Mock(EventRequest) {
         getProperty(Debugger.INFO_KEY) >> Mock(PendingBreakpointInfo) {
-          getProcessor() >> PENDING_PROCESSOR
-          getLocation() >> PENDING_LOCATION
+          getClassName() >> CLASS_NAME
+          getBreakpoints() >> [
+              new AbstractMap.SimpleImmutableEntry(PENDING_PROCESSOR, PENDING_LOCATION),
+              new AbstractMap.SimpleImmutableEntry(PENDING_PROCESSOR2, PENDING_LOCATION2)
+          ]
         }
       }
       def pendingEvent = Mock(Event) {
@@ -494,7 +738,7 @@ class DebuggerSpec extends Specification {
       def debug = Mock(Debug) {
         virtualMachine() >> Mock(VirtualMachine) {
           eventQueue() >> Mock(EventQueue) {
-            remove() >> set
+            remove(_) >> set
           }
         }
         eventRequestManager() >> erm
@@ -516,6 +760,7 @@ class DebuggerSpec extends Specification {
       1 * pendingRequest.disable()
       1 * erm.deleteEventRequest(pendingRequest)
       1 * debugger.add(PENDING_PROCESSOR, PENDING_LOCATION) >> null
+      1 * debugger.add(PENDING_PROCESSOR2, PENDING_LOCATION2) >> null
       1 * set.resume()
       1 * executor.shutdown()
       1 * executor.awaitTermination(*_)
@@ -542,7 +787,7 @@ class DebuggerSpec extends Specification {
       def debug = Mock(Debug) {
         virtualMachine() >> Mock(VirtualMachine) {
           eventQueue() >> Mock(EventQueue) {
-            remove() >>> [set, set2]
+            remove(_) >>> [set, set2]
           }
         }
         eventRequestManager() >> erm
@@ -567,20 +812,219 @@ class DebuggerSpec extends Specification {
       1 * executor.awaitTermination(*_)
   }
 
+  def "test loop() polls the queue until events are available and drains them in one batch"() {
+    given:
+      def event = Mock(Event) {
+        request() >> null
+      }
+      def set = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, false]
+          next() >>> [event]
+        }
+      }
+      def set2 = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, false]
+          next() >>> [VM_DISCONNECTED_EVENT]
+        }
+      }
+      def queue = Mock(EventQueue)
+      def debug = Mock(Debug) {
+        virtualMachine() >> Mock(VirtualMachine) {
+          eventQueue() >> queue
+        }
+      }
+      def executor = Mock(ExecutorService)
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, executor])
+
+    when:
+      debugger.loop()
+
+    then:
+      !debugger.context.running
+
+    and:
+      2 * queue.remove(Debugger.POLL_TIMEOUT) >>> [null, set]
+      1 * queue.remove(1L) >> set2
+      1 * set.resume()
+      1 * set2.resume()
+  }
+
+  def "test loop() checks for bundle changes while service event permission checks are paused"() {
+    given:
+      def set = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, false]
+          next() >>> [VM_DISCONNECTED_EVENT]
+        }
+      }
+      def queue = Mock(EventQueue)
+      def backdoorUtil = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        virtualMachine() >> Mock(VirtualMachine) {
+          eventQueue() >> queue
+        }
+        backdoor() >> backdoorUtil
+      }
+      def executor = Mock(ExecutorService)
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, executor])
+      def sampler = debugger.context.serviceCheckSampler()
+
+      sampler.enabled = true
+      ServiceCheckSampler.DEFAULT_QUIET_CHECKS.times { sampler.checked(false) }
+
+    when:
+      debugger.loop()
+
+    then:
+      !debugger.context.running
+
+    and:
+      2 * queue.remove(Debugger.POLL_TIMEOUT) >> {
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(Debugger.BUNDLE_CHECK_PERIOD))
+        null
+      } >> set
+      1 * executor.execute(_) >> { it[0].run() }
+      1 * backdoorUtil.checkBundleChanges(debug)
+  }
+
+  def "test loop() with a class unload event"() {
+    given:
+      def event = Mock(ClassUnloadEvent) {
+        classSignature() >> SIGNATURE
+      }
+      def set = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, true, false]
+          next() >>> [event, VM_DISCONNECTED_EVENT]
+        }
+      }
+      def debug = Mock(Debug) {
+        virtualMachine() >> Mock(VirtualMachine) {
+          eventQueue() >> Mock(EventQueue) {
+            remove(_) >> set
+          }
+        }
+        isMonitoringService() >> true
+        isContinuous() >> true
+        canDoPrivilegedBlocks() >> true
+        isGranting() >> true
+      }
+      def cache = Mock(MirrorCache)
+      def executor = Mock(ExecutorService)
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, executor])
+
+      debugger.context.put('cache', cache)
+
+    when:
+      debugger.loop()
+
+    then:
+      !debugger.context.running
+
+    and:
+      1 * executor.execute(_) >> { it[0].run() }
+      1 * cache.invalidateType(SIGNATURE)
+      1 * set.resume()
+  }
+
+  def "test loop() with a class prepare event"() {
+    given:
+      def type = Mock(ClassType) {
+        signature() >> SIGNATURE
+      }
+      def event = Mock(ClassPrepareEvent) {
+        referenceType() >> type
+      }
+      def set = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, true, false]
+          next() >>> [event, VM_DISCONNECTED_EVENT]
+        }
+      }
+      def debug = Mock(Debug) {
+        virtualMachine() >> Mock(VirtualMachine) {
+          eventQueue() >> Mock(EventQueue) {
+            remove(_) >> set
+          }
+        }
+      }
+      def executor = Mock(ExecutorService)
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, executor])
+
+      debugger.context.classIndex().index([])
+
+    when:
+      debugger.loop()
+
+    then:
+      !debugger.context.running
+      debugger.context.classIndex().get(SIGNATURE) == [type]
+
+    and:
+      1 * set.resume()
+      0 * executor.execute(_)
+  }
+
+  def "test loop() with a class prepare event when pre-resolving domains"() {
+    given:
+      def type = Mock(ClassType) {
+        signature() >> SIGNATURE
+      }
+      def event = Mock(ClassPrepareEvent) {
+        referenceType() >> type
+      }
+      def set = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, true, false]
+          next() >>> [event, VM_DISCONNECTED_EVENT]
+        }
+      }
+      def debug = Mock(Debug) {
+        virtualMachine() >> Mock(VirtualMachine) {
+          eventQueue() >> Mock(EventQueue) {
+            remove(_) >> set
+          }
+        }
+      }
+      def executor = Mock(ExecutorService)
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, debug, executor])
+
+      debugger.setPreResolvingDomains(true)
+
+    when:
+      debugger.loop()
+
+    then:
+      !debugger.context.running
+      debugger.context.classDomainResolver().prepared as List == [type]
+
+    and:
+      1 * executor.execute(_) // starting the resolver
+      1 * set.resume()
+  }
+
   @Unroll
   def "test loop() with #with_what"() {
     given:
       def iterator = Mock(EventIterator) {
-        hasNext() >>> [true, true, false]
-        next() >>> [event, VM_DISCONNECTED_EVENT]
+        hasNext() >>> [true, false]
+        next() >>> [event]
       }
       def set = Mock(EventSet) {
         eventIterator() >> iterator
       }
+      def set2 = Mock(EventSet) {
+        eventIterator() >> Mock(EventIterator) {
+          hasNext() >>> [true, false]
+          next() >>> [VM_DISCONNECTED_EVENT]
+        }
+      }
       def debug = Mock(Debug) {
         virtualMachine() >> Mock(VirtualMachine) {
           eventQueue() >> Mock(EventQueue) {
-            remove() >> set
+            remove(_) >>> [set, set2]
           }
         }
         isMonitoringService() >> true
@@ -612,6 +1056,8 @@ class DebuggerSpec extends Specification {
       'a method exit event for an expected method'     || EXPECTED_METHOD_EXIT_EVENT                 || 0            | 1
       'a method exit event for an unexpected method'   || UNEXPECTED_METHOD_EXIT_EVENT               || 1            | 0
       'a method exit event missing a method'           || EXPECTING_METHOD_EXIT_EVENT_WITH_NO_METHOD || 1            | 0
+      'a method exit event for a resolved method'      || EXPECTED_RESOLVED_METHOD_EXIT_EVENT        || 0            | 1
+      'a method exit event for an unresolved method'   || UNEXPECTED_RESOLVED_METHOD_EXIT_EVENT      || 1            | 0
       'a breakpoint event'                             || BREAKPOINT_EVENT                           || 0            | 1
       'a breakpoint event that has no breakpoint info' || BREAKPOINT_EVENT_WITH_NO_INFO              || 1            | 0
   }
@@ -628,7 +1074,7 @@ class DebuggerSpec extends Specification {
       def debug = Mock(Debug) {
         virtualMachine() >> Mock(VirtualMachine) {
           eventQueue() >> Mock(EventQueue) {
-            remove() >> set
+            remove(_) >> set
           }
         }
         isMonitoringService() >> true
@@ -670,7 +1116,7 @@ class DebuggerSpec extends Specification {
       def debug = Mock(Debug) {
         virtualMachine() >> Mock(VirtualMachine) {
           eventQueue() >> Mock(EventQueue) {
-            remove() >> set
+            remove(_) >> set
           }
         }
         isMonitoringService() >> true
@@ -725,7 +1171,7 @@ class DebuggerSpec extends Specification {
       def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, null, executor])
 
     when:
-      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent).run()
+      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent, 0L).run()
 
     then:
       1 * initialBreakpointInfo.process({
@@ -737,6 +1183,38 @@ class DebuggerSpec extends Specification {
       1 * eventSet.resume()
   }
 
+  def "test EventSetThread.run() reports how long the thread was suspended to the governor"() {
+    given:
+      def initialEvent = Mock(LocatableEvent) {
+        request() >> Mock(EventRequest) {
+          getProperty(Debugger.INFO_KEY) >> Mock(BreakpointInfo)
+        }
+        virtualMachine() >> VM
+        thread() >> Mock(ThreadReference) {
+          uniqueID() >> 1L
+        }
+      }
+      def eventSet = Mock(EventSet) {
+        suspendPolicy() >> EventRequest.SUSPEND_EVENT_THREAD
+        iterator() >> { [initialEvent].iterator() }
+      }
+      def eventIterator = Mock(EventIterator) {
+        hasNext() >> false
+      }
+      def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, null, Mock(ExecutorService)])
+      def arrival = System.nanoTime()
+
+    when:
+      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent, arrival).run()
+
+    then:
+      1 * eventSet.resume()
+
+    and:
+      debugger.context.governor().totalNanos() > 0L
+      debugger.context.governor().totalNanos() <= System.nanoTime() - arrival
+  }
+
   def "test EventSetThread.run() when no longer running from the start"() {
     given:
       def initialBreakpointInfo = Mock(BreakpointInfo)
@@ -757,7 +1235,7 @@ class DebuggerSpec extends Specification {
       debugger.context.stop()
 
     when:
-      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent).run()
+      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent, 0L).run()
 
     then:
       0 * initialBreakpointInfo.process(_)
@@ -791,7 +1269,7 @@ class DebuggerSpec extends Specification {
       def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, null, executor])
 
     when:
-      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent).run()
+      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent, 0L).run()
 
     then:
       1 * initialBreakpointInfo.process({
@@ -831,7 +1309,7 @@ class DebuggerSpec extends Specification {
       def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, null, executor])
 
     when:
-      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent).run()
+      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent, 0L).run()
 
     then:
       1 * initialBreakpointInfo.process({
@@ -874,7 +1352,7 @@ class DebuggerSpec extends Specification {
       def debugger = Spy(Debugger, constructorArgs: [TRANSPORT, HOST, PORT, null, executor])
 
     when:
-      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent).run()
+      new Debugger.EventSetThread(debugger, eventSet, eventIterator, initialEvent, 0L).run()
 
     then:
       def e = thrown(VirtualMachineError)
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import org.codice.acdebugger.common.PermissionUtil
+import spock.lang.Specification
+
+import java.util.function.Function
+
+class DomainPermissionsSpec extends Specification {
+  static def PERMISSION = 'java.io.FilePermission "/projects/-", "read"'
+  static def IMPLIED = 'java.io.FilePermission "/projects/file.cfg", "read"'
+  static def NOT_IMPLIED = 'java.io.FilePermission "/projects/file.cfg", "write"'
+  static def UNKNOWN = 'some.permission "do"'
+  static def SOCKET = 'java.net.SocketPermission "*.example.com:80", "connect"'
+  static def SOCKET_IMPLIED = 'java.net.SocketPermission "www.example.com:80", "connect"'
+
+  def resolver = Mock(Function) {
+    apply(_) >> { args -> PermissionUtil.getPermission(args[0]) }
+  }
+  def permissions = new DomainPermissions(resolver)
+
+  def "test implies() if granted"() {
+    given:
+      permissions.grant(UNKNOWN)
+
+    when:
+      def result = permissions.implies(UNKNOWN)
+
+    then:
+      result
+
+    and: "no need to resolve anything if it was granted as is"
+      0 * resolver.apply(_)
+  }
+
+  def "test implies() if implied by a granted permission"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    expect:
+      permissions.implies(IMPLIED)
+      !permissions.implies(NOT_IMPLIED)
+  }
+
+  def "test implies() resolves granted permissions only once"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    when:
+      permissions.implies(IMPLIED)
+      permissions.implies(NOT_IMPLIED)
+
+    then:
+      1 * resolver.apply(PERMISSION) >> PermissionUtil.getPermission(PERMISSION)
+  }
+
+  def "test implies() if not granted and cannot be resolved"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    expect:
+      !permissions.implies(UNKNOWN)
+  }
+
+  def "test implies() never checks socket permissions for implication locally"() {
+    given:
+      permissions.grant(SOCKET)
+
+    expect:
+      permissions.implies(SOCKET)
+      !permissions.implies(SOCKET_IMPLIED)
+
+    and: "not even added to the local permission collection"
+      !permissions.permissions.elements().hasMoreElements()
+  }
+
+  def "test implies() when the checked permission cannot be resolved yet"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    when:
+      def result = permissions.implies(IMPLIED)
+
+    then:
+      !result
+
+    and:
+      1 * resolver.apply(IMPLIED) >> { throw new IllegalStateException() }
+  }
+
+  def "test implies() when a granted permission cannot be resolved yet"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    when:
+      def result = permissions.implies(IMPLIED)
+
+    then:
+      !result
+
+    and:
+      1 * resolver.apply(PERMISSION) >> { throw new IllegalStateException() }
+
+    when: "the granted permission can later be resolved"
+      result = permissions.implies(IMPLIED)
+
+    then:
+      result
+  }
+
+  def "test implies() with a set of permissions"() {
+    given:
+      permissions.grant(PERMISSION)
+      permissions.grant(UNKNOWN)
+
+    expect:
+      permissions.implies([PERMISSION, UNKNOWN] as Set)
+      permissions.implies([IMPLIED, UNKNOWN] as Set)
+      !permissions.implies([IMPLIED, NOT_IMPLIED] as Set)
+  }
+
+  def "test grant() if not already granted"() {
+    expect:
+      permissions.grant(PERMISSION)
+  }
+
+  def "test grant() if already granted"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    expect:
+      !permissions.grant(PERMISSION)
+  }
+
+  def "test grant() if already implied"() {
+    given:
+      permissions.grant(PERMISSION)
+
+    expect:
+      permissions.grant(IMPLIED)
+  }
+}
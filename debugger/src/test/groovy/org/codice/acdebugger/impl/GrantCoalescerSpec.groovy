@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import com.sun.jdi.request.EventRequest
+import org.codice.acdebugger.api.Debug
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class GrantCoalescerSpec extends Specification {
+  static def DOMAIN = 'some.domain'
+  static def DOMAIN2 = 'some.other.domain'
+  static def PERMISSION = 'java.lang.RuntimePermission "a"'
+  static def PERMISSION2 = 'java.lang.RuntimePermission "b"'
+
+  def context = Mock(DebugContext)
+
+  def "test coalescer is disabled until a flush request is registered"() {
+    given:
+      def request = Mock(EventRequest)
+      def coalescer = new GrantCoalescer(context)
+
+    expect:
+      !coalescer.enabled
+
+    when:
+      coalescer.flushRequest = request
+
+    then:
+      1 * request.setEnabled(false)
+
+    and:
+      coalescer.enabled
+  }
+
+  def "test registering a flush request while permissions are pending enables it"() {
+    given:
+      def request = Mock(EventRequest)
+      def coalescer = new GrantCoalescer(context)
+
+      coalescer.add(DOMAIN, PERMISSION)
+
+    when:
+      coalescer.flushRequest = request
+
+    then:
+      1 * request.setEnabled(true)
+  }
+
+  def "test add() coalesces permissions per domain and only enables the flush request once"() {
+    given:
+      def request = Mock(EventRequest)
+      def coalescer = new GrantCoalescer(context)
+
+      coalescer.flushRequest = request
+
+    when:
+      coalescer.add(DOMAIN, PERMISSION)
+      coalescer.add(DOMAIN, PERMISSION2)
+      coalescer.add(DOMAIN, PERMISSION)
+      coalescer.add(DOMAIN2, PERMISSION)
+
+    then:
+      1 * request.enable()
+      0 * request.disable()
+
+    and:
+      coalescer.size() == 3
+  }
+
+  def "test flush() grants all pending permissions at once and disables the flush request"() {
+    given:
+      def request = Mock(EventRequest)
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def coalescer = new GrantCoalescer(context)
+
+      coalescer.flushRequest = request
+      coalescer.add(DOMAIN, PERMISSION)
+      coalescer.add(DOMAIN, PERMISSION2)
+      coalescer.add(DOMAIN2, PERMISSION)
+
+    when:
+      coalescer.flush(debug)
+
+    then:
+      1 * request.disable()
+      1 * door.grantPermissions(debug, [(DOMAIN): [PERMISSION, PERMISSION2] as Set, (DOMAIN2): [PERMISSION] as Set])
+
+    then: "they are only recorded as granted once granted in the VM"
+      1 * context.grantPermissions(DOMAIN, { it == [PERMISSION, PERMISSION2] as Set })
+      1 * context.grantPermissions(DOMAIN2, { it == [PERMISSION] as Set })
+
+    and:
+      coalescer.size() == 0
+      coalescer.grantedCount() == 3L
+      coalescer.flushCount() == 1L
+  }
+
+  def "test flush() does nothing when no permissions are pending"() {
+    given:
+      def request = Mock(EventRequest)
+      def debug = Mock(Debug)
+      def coalescer = new GrantCoalescer(context)
+
+      coalescer.flushRequest = request
+
+    when:
+      coalescer.flush(debug)
+
+    then:
+      0 * request.disable()
+      0 * debug.backdoor()
+
+    and:
+      coalescer.flushCount() == 0L
+  }
+
+  @Unroll
+  def "test flush() when the backdoor fails with #exception.class.simpleName"() {
+    given:
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def request = Mock(EventRequest)
+      def coalescer = new GrantCoalescer(context)
+
+      coalescer.flushRequest = request
+      coalescer.add(DOMAIN, PERMISSION)
+
+    when:
+      coalescer.flush(debug)
+
+    then:
+      1 * door.grantPermissions(debug, _) >> {
+        coalescer.add(DOMAIN2, PERMISSION2) // added while flushing
+        throw exception
+      }
+
+    then:
+      1 * request.enable()
+      0 * context.grantPermissions(*_)
+
+    and:
+      noExceptionThrown()
+      coalescer.pending == [(DOMAIN): [PERMISSION] as Set, (DOMAIN2): [PERMISSION2] as Set]
+      coalescer.grantedCount() == 0L
+      coalescer.flushCount() == 0L
+
+    where:
+      exception << [new IllegalStateException(), new NullPointerException(), new Error()]
+  }
+
+  def "test flush() when the backdoor fails with OutOfMemoryError"() {
+    given:
+      def door = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        backdoor() >> door
+      }
+      def exception = new OutOfMemoryError()
+      def coalescer = new GrantCoalescer(context)
+
+      coalescer.add(DOMAIN, PERMISSION)
+
+    when:
+      coalescer.flush(debug)
+
+    then:
+      def e = thrown(OutOfMemoryError)
+
+      e.is(exception)
+
+    and:
+      1 * door.grantPermissions(debug, _) >> { throw exception }
+      0 * context.grantPermissions(*_)
+
+    and:
+      coalescer.size() == 1
+  }
+}
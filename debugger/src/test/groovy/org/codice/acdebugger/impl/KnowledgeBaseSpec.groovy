@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import spock.lang.Specification
+
+class KnowledgeBaseSpec extends Specification {
+  static def DOMAIN = 'domain'
+  static def DOMAIN2 = 'file:${ddf.home}${/}lib${/}some.jar'
+  static def PERMISSION = 'java.io.FilePermission "${ddf.home}${/}etc${/}-", "read"'
+  static def PERMISSION2 = 'java.lang.RuntimePermission "getClassLoader"'
+  static def FINGERPRINT = 'fingerprint'
+  static def FINGERPRINT2 = 'fingerprint2'
+
+  def FILE = file()
+
+  def "test constructor with a file that doesn't exist"() {
+    given:
+      FILE.delete()
+
+    when:
+      def knowledge = new KnowledgeBase(FILE)
+
+    then:
+      knowledge.file == FILE
+      knowledge.permissions.isEmpty()
+      !knowledge.failures.contains(FINGERPRINT)
+      !FILE.exists()
+  }
+
+  def "test constructor loads all entries and ignores corrupted ones"() {
+    given:
+      FILE.text = """{"domain":"$DOMAIN","permissions":["${escape(PERMISSION)}"],"failure":null}
+
+{"domain":null,"permissions":null,"failure":"$FINGERPRINT"}
+{"domain":"$DOMAIN","permissions":["${escape(PERMISSION2)}"],"failure":null}
+{"domain":"${escape(DOMAIN2)}","permissions":["${escape(PERMISSION)}"],"failure":null}
+null
+{"domain":"$DOMAIN2","permissions":["""
+
+    when:
+      def knowledge = new KnowledgeBase(FILE)
+
+    then:
+      knowledge.permissions == [(DOMAIN): [PERMISSION, PERMISSION2] as Set, (DOMAIN2): [PERMISSION] as Set]
+      knowledge.failures.contains(FINGERPRINT)
+      !knowledge.failures.contains(FINGERPRINT2)
+  }
+
+  def "test recordPermissions() appends new permissions to the file"() {
+    given:
+      def knowledge = new KnowledgeBase(FILE)
+
+    when:
+      def recorded = knowledge.recordPermissions(DOMAIN, [PERMISSION] as Set)
+
+    then:
+      recorded
+      FILE.readLines().size() == 1
+
+    when:
+      recorded = knowledge.recordPermissions(DOMAIN, [PERMISSION, PERMISSION2] as Set)
+
+    then:
+      recorded
+      FILE.readLines().size() == 2
+
+    when:
+      recorded = knowledge.recordPermissions(DOMAIN, [PERMISSION2] as Set)
+
+    then:
+      !recorded
+      FILE.readLines().size() == 2
+      new KnowledgeBase(FILE).permissions == [(DOMAIN): [PERMISSION, PERMISSION2] as Set]
+  }
+
+  def "test recordFailure() appends new failures to the file"() {
+    given:
+      def knowledge = new KnowledgeBase(FILE)
+
+    when:
+      def recorded = knowledge.recordFailure(FINGERPRINT)
+
+    then:
+      recorded
+      knowledge.failures.contains(FINGERPRINT)
+      FILE.readLines().size() == 1
+
+    when:
+      recorded = knowledge.recordFailure(FINGERPRINT)
+
+    then:
+      !recorded
+      FILE.readLines().size() == 1
+      new KnowledgeBase(FILE).failures.contains(FINGERPRINT)
+  }
+
+  def "test knowledge survives reloading"() {
+    given:
+      def knowledge = new KnowledgeBase(FILE)
+
+      knowledge.recordPermissions(DOMAIN2, [PERMISSION, PERMISSION2] as Set)
+      knowledge.recordFailure(FINGERPRINT2)
+
+    when:
+      def reloaded = new KnowledgeBase(FILE)
+
+    then:
+      reloaded.permissions == knowledge.permissions
+      reloaded.failures.contains(FINGERPRINT2)
+  }
+
+  def "test recording still works in memory when unable to write to the file"() {
+    given:
+      def dir = File.createTempDir()
+      def knowledge = new KnowledgeBase(new File(new File(dir, 'missing'), 'file.kb'))
+
+    when:
+      def recorded = knowledge.recordPermissions(DOMAIN, [PERMISSION] as Set)
+
+    then:
+      recorded
+      knowledge.permissions == [(DOMAIN): [PERMISSION] as Set]
+
+    cleanup:
+      dir.delete()
+  }
+
+  private static def escape(String s) {
+    s.replace('"', '\\"')
+  }
+
+  private static def file() {
+    def f = File.createTempFile('acdebugger', '.kb')
+
+    f.deleteOnExit()
+    f
+  }
+}
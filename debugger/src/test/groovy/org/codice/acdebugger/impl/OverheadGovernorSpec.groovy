@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import com.sun.jdi.request.EventRequest
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class OverheadGovernorSpec extends Specification {
+  static def WINDOW = TimeUnit.SECONDS.toNanos(1L)
+  static def BUDGET = 10.0D
+
+  def "test governor is disabled by default"() {
+    given:
+      def reporter = Mock(Closure)
+      def governor = new OverheadGovernor(WINDOW, reporter)
+      def start = System.nanoTime()
+
+    when:
+      governor.suspended(1L, WINDOW)
+      governor.tick(start + WINDOW)
+
+    then:
+      0 * reporter.call(*_)
+
+    and:
+      !governor.enabled
+      governor.level == OverheadGovernor.NORMAL
+      !governor.analyzingNovelFailuresOnly
+      governor.totalNanos() == WINDOW
+      governor.degradationCount() == 0L
+  }
+
+  def "test governor degrades one level at a time when exceeding the budget and restores progressively"() {
+    given:
+      def messages = []
+      def request = Mock(EventRequest)
+      def governor = new OverheadGovernor(WINDOW, { messages << it })
+      def start = System.nanoTime()
+
+      governor.budget = BUDGET
+      governor.addSheddable(request)
+
+    when: "exceeding the budget"
+      governor.suspended(1L, WINDOW / 2L as long)
+      governor.tick(start + WINDOW)
+
+    then: "sheddable breakpoints are disabled first"
+      1 * request.setEnabled(false)
+      governor.level == OverheadGovernor.SHEDDING
+      !governor.analyzingNovelFailuresOnly
+      messages.size() == 1
+      messages[0].contains('exceeds the 10.0% budget; disabling service event permission checks')
+
+    when: "still exceeding the budget"
+      governor.suspended(1L, WINDOW / 2L as long)
+      governor.tick(start + 2L * WINDOW)
+
+    then: "only novel failures are analyzed"
+      0 * request.setEnabled(_)
+      governor.level == OverheadGovernor.NOVEL_ONLY
+      governor.analyzingNovelFailuresOnly
+      messages.size() == 2
+      messages[1].contains('50.0% of a thread\'s time')
+      messages[1].contains('only analyzing security failures not already seen')
+
+    when: "back within budget"
+      governor.tick(start + 3L * WINDOW)
+
+    then: "all failures are analyzed again"
+      0 * request.setEnabled(_)
+      governor.level == OverheadGovernor.SHEDDING
+      messages.size() == 3
+      messages[2].contains('within the 10.0% budget; analyzing all security failures again')
+
+    when: "still within budget"
+      governor.tick(start + 4L * WINDOW)
+
+    then: "sheddable breakpoints are re-enabled"
+      1 * request.setEnabled(true)
+      governor.level == OverheadGovernor.NORMAL
+      messages.size() == 4
+      messages[3].contains('re-enabling service event permission checks')
+
+    and:
+      governor.degradationCount() == 2L
+      governor.worstOverhead() == 50.0D
+      governor.totalNanos() == WINDOW
+  }
+
+  def "test governor goes straight to only analyzing novel failures when nothing can be shed"() {
+    given:
+      def messages = []
+      def governor = new OverheadGovernor(WINDOW, { messages << it })
+      def start = System.nanoTime()
+
+      governor.budget = BUDGET
+
+    when:
+      governor.suspended(1L, WINDOW / 2L as long)
+      governor.tick(start + WINDOW)
+
+    then:
+      governor.level == OverheadGovernor.NOVEL_ONLY
+      messages.size() == 1
+      messages[0].contains('only analyzing security failures not already seen')
+
+    when:
+      governor.tick(start + 2L * WINDOW)
+
+    then:
+      governor.level == OverheadGovernor.NORMAL
+      messages.size() == 2
+      messages[1].contains('analyzing all security failures again')
+  }
+
+  def "test budget applies to the thread that was suspended the most"() {
+    given:
+      def reporter = Mock(Closure)
+      def governor = new OverheadGovernor(WINDOW, reporter)
+      def start = System.nanoTime()
+
+      governor.budget = BUDGET
+
+    when:
+      (1L..4L).each {
+        governor.suspended(it, WINDOW / 20L as long)
+      }
+      governor.tick(start + WINDOW)
+
+    then:
+      0 * reporter.call(*_)
+      governor.level == OverheadGovernor.NORMAL
+      Math.round(governor.worstOverhead()) == 5L
+  }
+
+  def "test overhead of a thread suspended since before the window started is capped at the whole window"() {
+    given:
+      def messages = []
+      def governor = new OverheadGovernor(WINDOW, { messages << it })
+      def start = System.nanoTime()
+
+      governor.budget = BUDGET
+
+    when:
+      governor.suspended(1L, 3L * WINDOW)
+      governor.tick(start + WINDOW)
+
+    then:
+      governor.worstOverhead() == 100.0D
+      messages.size() == 1
+      messages[0].contains('reached 100.0% of a thread\'s time')
+  }
+
+  def "test overhead is not evaluated before the end of the window"() {
+    given:
+      def reporter = Mock(Closure)
+      def governor = new OverheadGovernor(WINDOW, reporter)
+
+      governor.budget = BUDGET
+
+    when:
+      governor.suspended(1L, WINDOW / 2L as long)
+
+    then:
+      0 * reporter.call(*_)
+      governor.level == OverheadGovernor.NORMAL
+  }
+
+  def "test addSheddable() disables the request right away when already shedding"() {
+    given:
+      def request = Mock(EventRequest)
+      def request2 = Mock(EventRequest)
+      def governor = new OverheadGovernor(WINDOW, {})
+      def start = System.nanoTime()
+
+      governor.budget = BUDGET
+      governor.addSheddable(request)
+      governor.suspended(1L, WINDOW / 2L as long)
+      governor.tick(start + WINDOW)
+
+    when:
+      governor.addSheddable(request2)
+
+    then:
+      1 * request2.disable()
+      governor.sheddable == [request, request2]
+  }
+
+  def "test setPaused() keeps sheddable requests disabled until resumed and back within budget"() {
+    given:
+      def request = Mock(EventRequest)
+      def governor = new OverheadGovernor(WINDOW, {})
+      def start = System.nanoTime()
+
+      governor.budget = BUDGET
+      governor.addSheddable(request)
+
+    when: "pausing"
+      governor.setPaused(true)
+
+    then:
+      1 * request.setEnabled(false)
+
+    when: "exceeding the budget while paused"
+      governor.suspended(1L, WINDOW / 2L as long)
+      governor.tick(start + WINDOW)
+
+    then:
+      1 * request.setEnabled(false)
+      governor.level == OverheadGovernor.SHEDDING
+
+    when: "resuming while over budget"
+      governor.setPaused(false)
+
+    then: "requests remain disabled"
+      1 * request.setEnabled(false)
+
+    when: "back within budget"
+      governor.tick(start + 2L * WINDOW)
+
+    then: "requests are re-enabled"
+      1 * request.setEnabled(true)
+      governor.level == OverheadGovernor.NORMAL
+  }
+}
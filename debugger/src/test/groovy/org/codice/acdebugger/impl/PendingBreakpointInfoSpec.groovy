@@ -18,18 +18,35 @@ import org.codice.acdebugger.api.BreakpointProcessor
 import spock.lang.Specification
 
 class PendingBreakpointInfoSpec extends Specification {
+  static def CLASS_NAME = 'some.ClassName'
+
   def "test constructor"() {
     given:
       def request = Stub(ClassPrepareRequest)
+
+    when:
+      def info = new PendingBreakpointInfo(request, CLASS_NAME)
+
+    then:
+      info.request == request
+      info.className == CLASS_NAME
+      info.breakpoints.empty
+  }
+
+  def "test add() keeps breakpoints in order"() {
+    given:
       def processor = Stub(BreakpointProcessor)
+      def processor2 = Stub(BreakpointProcessor)
       def location = Stub(BreakpointLocation)
+      def location2 = Stub(BreakpointLocation)
+      def info = new PendingBreakpointInfo(Stub(ClassPrepareRequest), CLASS_NAME)
 
     when:
-      def info = new PendingBreakpointInfo(request, processor, location)
+      info.add(processor, location)
+      info.add(processor2, location2)
 
     then:
-      info.request == request
-      info.processor == processor
-      info.location == location
+      info.breakpoints*.key == [processor, processor2]
+      info.breakpoints*.value == [location, location2]
   }
 }
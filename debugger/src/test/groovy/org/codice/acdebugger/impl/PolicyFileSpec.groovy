@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PolicyFileSpec extends Specification {
+  static def POLICY = '''
+    grant codeBase "file:/bundle1/bundle2" {
+      permission java.io.FilePermission "${ddf.home}${/}etc${/}-", "read";
+      permission java.util.PropertyPermission "ddf.home", "read";
+    };
+    grant codeBase "file:/bundle2" {
+      permission java.lang.RuntimePermission "getClassLoader";
+      permission java.security.AllPermission;
+    };
+    grant codeBase "file:${solr.solr.home}${/}server${/}start.jar" {
+      permission java.io.FilePermission "${solr.solr.home}${/}server${/}modules", "read";
+    };
+  '''
+
+  static def CONDITIONAL_POLICY = '''
+    grant {
+      permission java.lang.RuntimePermission "everyone";
+    };
+    grant signedBy "someone" codeBase "file:/bundle1" {
+      permission java.lang.RuntimePermission "signed";
+    };
+    grant principal javax.security.auth.x500.X500Principal "cn=someone" codeBase "file:/bundle1" {
+      permission java.lang.RuntimePermission "principal";
+    };
+    grant codeBase "file:/bundle1" {
+      permission java.lang.RuntimePermission "unsigned";
+      permission java.lang.RuntimePermission "signed", signedBy "someone";
+    };
+  '''
+
+  static def DENY_POLICY = '''
+    priority "grant";
+    grant codeBase "file:/bundle1" {
+      permission java.lang.RuntimePermission "getClassLoader";
+    };
+    grant codeBase "file:/bundle2" {
+      permission java.lang.RuntimePermission "getClassLoader";
+    };
+    deny codeBase "file:/bundle1" {
+      permission java.lang.RuntimePermission "exitVM";
+    };
+  '''
+
+  @Unroll
+  def "test getPermissions() when osgi is #osgi"() {
+    given:
+      def policy = new PolicyFile(file(POLICY))
+
+    expect:
+      policy.getPermissions(osgi) == permissions
+
+    where:
+      osgi  || permissions
+      true  || [
+          bundle1                                           : [
+              'java.io.FilePermission "${ddf.home}${/}etc${/}-", "read"',
+              'java.util.PropertyPermission "ddf.home", "read"'
+          ] as Set,
+          bundle2                                           : [
+              'java.io.FilePermission "${ddf.home}${/}etc${/}-", "read"',
+              'java.util.PropertyPermission "ddf.home", "read"',
+              'java.lang.RuntimePermission "getClassLoader"',
+              'java.security.AllPermission'
+          ] as Set,
+          'file:${solr.solr.home}${/}server${/}start.jar'   : [
+              'java.io.FilePermission "${solr.solr.home}${/}server${/}modules", "read"'
+          ] as Set
+      ]
+      false || [
+          'file:/bundle1/bundle2'                           : [
+              'java.io.FilePermission "${ddf.home}${/}etc${/}-", "read"',
+              'java.util.PropertyPermission "ddf.home", "read"'
+          ] as Set,
+          'file:/bundle2'                                   : [
+              'java.lang.RuntimePermission "getClassLoader"',
+              'java.security.AllPermission'
+          ] as Set,
+          'file:${solr.solr.home}${/}server${/}start.jar'   : [
+              'java.io.FilePermission "${solr.solr.home}${/}server${/}modules", "read"'
+          ] as Set
+      ]
+  }
+
+  def "test getPermissions() ignores conditional grants"() {
+    given:
+      def policy = new PolicyFile(file(CONDITIONAL_POLICY))
+
+    expect:
+      policy.getPermissions(true) == [bundle1: ['java.lang.RuntimePermission "unsigned"'] as Set]
+  }
+
+  def "test getPermissions() ignores code bases with deny entries"() {
+    given:
+      def policy = new PolicyFile(file(DENY_POLICY))
+
+    expect:
+      policy.getPermissions(true) == [bundle2: ['java.lang.RuntimePermission "getClassLoader"'] as Set]
+  }
+
+  def "test getPermissions() ignores everything when a deny entry applies to all code bases"() {
+    given:
+      def policy = new PolicyFile(file(DENY_POLICY + 'deny { permission java.lang.RuntimePermission "exitVM"; };'))
+
+    expect:
+      policy.getPermissions(true).isEmpty()
+  }
+
+  def "test getFile()"() {
+    given:
+      def f = file(POLICY)
+
+    expect:
+      new PolicyFile(f).file == f
+  }
+
+  def "test constructor with an invalid policy file"() {
+    given:
+      def f = file('grant codeBase "file:/bundle1" { permission')
+
+    when:
+      new PolicyFile(f)
+
+    then:
+      def e = thrown(IOException)
+
+      e.message.contains(f.toString())
+  }
+
+  def "test constructor with a missing policy file"() {
+    given:
+      def f = file('')
+
+      f.delete()
+
+    when:
+      new PolicyFile(f)
+
+    then:
+      thrown(IOException)
+  }
+
+  private static def file(String content) {
+    def f = File.createTempFile('acdebugger', '.policy')
+
+    f.deleteOnExit()
+    f.text = content
+    f
+  }
+}
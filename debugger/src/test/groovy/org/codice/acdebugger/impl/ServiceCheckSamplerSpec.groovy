@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class ServiceCheckSamplerSpec extends Specification {
+  static def QUIET_TIME = TimeUnit.HOURS.toNanos(1L)
+  static def REARM_PERIOD = TimeUnit.MINUTES.toNanos(5L)
+
+  def "test sampler is disabled by default"() {
+    given:
+      def governor = Mock(OverheadGovernor)
+      def reporter = Mock(Closure)
+      def sampler = new ServiceCheckSampler(2L, QUIET_TIME, REARM_PERIOD, governor, reporter)
+
+    when:
+      5.times {
+        sampler.checked(false)
+      }
+
+    then:
+      0 * governor.setPaused(_)
+      0 * reporter.call(*_)
+
+    and:
+      !sampler.enabled
+      !sampler.paused
+      sampler.pauseCount() == 0L
+  }
+
+  def "test sampler pauses checks after a number of checks without new failures"() {
+    given:
+      def governor = Mock(OverheadGovernor)
+      def messages = []
+      def sampler = new ServiceCheckSampler(3L, QUIET_TIME, REARM_PERIOD, governor, { messages << it })
+
+      sampler.enabled = true
+
+    when:
+      sampler.checked(false)
+      sampler.checked(false)
+      sampler.checked(true)
+      sampler.checked(false)
+      sampler.checked(false)
+
+    then:
+      0 * governor.setPaused(_)
+      !sampler.paused
+
+    when:
+      sampler.checked(false)
+      sampler.checked(false)
+
+    then:
+      1 * governor.setPaused(true)
+      sampler.paused
+      sampler.pauseCount() == 1L
+      messages.size() == 1
+      messages[0].startsWith('No new service event permission failures detected in 3 checks')
+  }
+
+  def "test sampler pauses checks after some time without new failures"() {
+    given:
+      def governor = Mock(OverheadGovernor)
+      def sampler = new ServiceCheckSampler(Long.MAX_VALUE, 0L, REARM_PERIOD, governor, {})
+
+      sampler.enabled = true
+
+    when:
+      sampler.checked(false)
+
+    then:
+      1 * governor.setPaused(true)
+      sampler.paused
+  }
+
+  def "test sampler only measures the quiet time from the first check"() {
+    given:
+      def quietTime = TimeUnit.MILLISECONDS.toNanos(200L)
+      def governor = Mock(OverheadGovernor)
+      def sampler = new ServiceCheckSampler(Long.MAX_VALUE, quietTime, REARM_PERIOD, governor, {})
+
+      sampler.enabled = true
+      Thread.sleep(TimeUnit.NANOSECONDS.toMillis(quietTime * 2)) // first check arrives late
+
+    when:
+      sampler.checked(false)
+
+    then:
+      0 * governor.setPaused(_)
+      !sampler.paused
+
+    when:
+      Thread.sleep(TimeUnit.NANOSECONDS.toMillis(quietTime * 2))
+      sampler.checked(false)
+
+    then:
+      1 * governor.setPaused(true)
+      sampler.paused
+  }
+
+  def "test resume() resumes paused checks"() {
+    given:
+      def governor = Mock(OverheadGovernor)
+      def messages = []
+      def sampler = new ServiceCheckSampler(1L, QUIET_TIME, REARM_PERIOD, governor, { messages << it })
+
+      sampler.enabled = true
+      sampler.checked(false)
+
+    when:
+      sampler.resume('since a bundle was started')
+
+    then:
+      1 * governor.setPaused(false)
+      !sampler.paused
+      messages[1] == 'Re-enabling service event permission checks since a bundle was started'
+
+    when: "resuming again"
+      sampler.resume('since a bundle was started')
+
+    then: "nothing happens"
+      0 * governor.setPaused(_)
+      messages.size() == 2
+  }
+
+  def "test tick() resumes checks that were paused long enough"() {
+    given:
+      def governor = Mock(OverheadGovernor)
+      def messages = []
+      def sampler = new ServiceCheckSampler(1L, QUIET_TIME, REARM_PERIOD, governor, { messages << it })
+      def start = System.nanoTime()
+
+      sampler.enabled = true
+      sampler.checked(false)
+
+    when:
+      sampler.tick(start)
+
+    then:
+      0 * governor.setPaused(_)
+      sampler.paused
+
+    when:
+      sampler.tick(System.nanoTime() + REARM_PERIOD)
+
+    then:
+      1 * governor.setPaused(false)
+      !sampler.paused
+      messages[1] == 'Re-enabling service event permission checks after 5 minutes'
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class SingleFlightSpec extends Specification {
+  def "test execute() computes the result when nothing is in flight"() {
+    given:
+      def flight = new SingleFlight()
+      def count = 0
+
+    when:
+      def result = flight.execute('key', { count++; 'value' })
+      def result2 = flight.execute('key', { count++; 'value2' })
+
+    then:
+      result == 'value'
+      result2 == 'value2'
+      count == 2
+      flight.coalescedCount() == 0L
+  }
+
+  def "test execute() shares the result with concurrent callers for the same key"() {
+    given:
+      def flight = new SingleFlight()
+      def started = new CountDownLatch(1)
+      def release = new CountDownLatch(1)
+      def executor = Executors.newFixedThreadPool(2)
+      def count = 0
+
+    when:
+      def first = executor.submit({
+        flight.execute('key', { count++; started.countDown(); release.await(); 'value' })
+      } as java.util.concurrent.Callable)
+
+      started.await()
+      def second = executor.submit({
+        flight.execute('key', { count++; 'value2' })
+      } as java.util.concurrent.Callable)
+
+      Thread.sleep(200L) // give the second caller time to start waiting
+      release.countDown()
+
+    then:
+      first.get(5L, TimeUnit.SECONDS) == 'value'
+      second.get(5L, TimeUnit.SECONDS) == 'value'
+      count == 1
+      flight.coalescedCount() == 1L
+
+    cleanup:
+      executor.shutdownNow()
+  }
+
+  def "test execute() lets waiting callers compute the result themselves if the first one fails"() {
+    given:
+      def flight = new SingleFlight()
+      def started = new CountDownLatch(1)
+      def release = new CountDownLatch(1)
+      def executor = Executors.newFixedThreadPool(2)
+
+    when:
+      def first = executor.submit({
+        flight.execute('key', { started.countDown(); release.await(); throw new IllegalStateException('testing') })
+      } as java.util.concurrent.Callable)
+
+      started.await()
+      def second = executor.submit({
+        flight.execute('key', { 'value2' })
+      } as java.util.concurrent.Callable)
+
+      Thread.sleep(200L) // give the second caller time to start waiting
+      release.countDown()
+      first.get(5L, TimeUnit.SECONDS)
+
+    then:
+      def e = thrown(java.util.concurrent.ExecutionException)
+
+      e.cause instanceof IllegalStateException
+      second.get(5L, TimeUnit.SECONDS) == 'value2'
+      flight.coalescedCount() == 0L
+
+    cleanup:
+      executor.shutdownNow()
+  }
+
+  def "test execute() propagates failures"() {
+    given:
+      def flight = new SingleFlight()
+
+    when:
+      flight.execute('key', { throw new IOException('testing') })
+
+    then:
+      thrown(IOException)
+
+    and:
+      flight.execute('key', { 'value' }) == 'value'
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.acdebugger.impl
+
+import com.sun.jdi.StringReference
+import com.sun.jdi.VMDisconnectedException
+import spock.lang.Specification
+
+import java.util.function.Function
+
+class StringMirrorPoolSpec extends Specification {
+  static def STRING = 'abc'
+  static def STRING2 = 'def'
+
+  def "test get() only pins a string the second time it is requested"() {
+    given:
+      def pool = new StringMirrorPool()
+      def ref = Mock(StringReference)
+      def protector = Mock(Function)
+
+    when:
+      def first = pool.get(STRING, protector)
+      def second = pool.get(STRING, protector)
+      def third = pool.get(STRING, protector)
+
+    then:
+      first == null
+      second.is(ref)
+      third.is(ref)
+      pool.size() == 1
+      pool.hitCount() == 1L
+
+    and:
+      1 * protector.apply(STRING) >> ref
+      0 * ref.enableCollection()
+  }
+
+  def "test get() does not pin more strings than the maximum size"() {
+    given:
+      def pool = new StringMirrorPool(1)
+      def ref = Mock(StringReference)
+      def protector = Mock(Function)
+
+      pool.get(STRING, protector)
+      pool.get(STRING2, protector)
+
+    when:
+      def pinned = pool.get(STRING, protector)
+      def notPinned = pool.get(STRING2, protector)
+
+    then:
+      pinned.is(ref)
+      notPinned == null
+      pool.size() == 1
+
+    and:
+      1 * protector.apply(STRING) >> ref
+      0 * protector.apply(STRING2)
+  }
+
+  def "test release() re-enables garbage collection on all pinned strings"() {
+    given:
+      def pool = new StringMirrorPool()
+      def ref = Mock(StringReference)
+      def ref2 = Mock(StringReference)
+
+      2.times {
+        pool.get(STRING, { ref })
+        pool.get(STRING2, { ref2 })
+      }
+
+    when:
+      pool.release()
+
+    then:
+      pool.size() == 0
+
+    and:
+      1 * ref.enableCollection() >> { throw new VMDisconnectedException() }
+      1 * ref2.enableCollection()
+
+    when:
+      def result = pool.get(STRING, { ref })
+
+    then:
+      result == null
+  }
+}
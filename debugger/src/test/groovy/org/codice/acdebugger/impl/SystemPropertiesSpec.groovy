@@ -35,6 +35,10 @@ class SystemPropertiesSpec extends ReflectionSpecification {
   @Shared
   def GET_PROPERTY = Mock(Method)
 
+  def NO_BACKDOOR = Mock(Backdoor) {
+    getSystemProperties(*_) >> { throw new IllegalStateException('testing') }
+  }
+
   def "test init() with a system reference"() {
     given:
       def reflectionUtil = Mock(ReflectionUtil)
@@ -43,6 +47,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
     when:
       system.init(Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       }, SYSTEM_OBJ)
 
     then:
@@ -52,6 +57,28 @@ class SystemPropertiesSpec extends ReflectionSpecification {
       }
   }
 
+  def "test init() with a system reference and a backdoor"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil)
+      def backdoorUtil = Mock(Backdoor)
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        backdoor() >> backdoorUtil
+      }
+      def system = new SystemProperties()
+
+    when:
+      system.init(debug, SYSTEM_OBJ)
+
+    then:
+      1 * backdoorUtil.getSystemProperties(debug, PROPERTIES) >> ['java.home': '/projects/jdk']
+      0 * reflectionUtil.findMethod(*_)
+      0 * reflectionUtil.invoke(*_)
+
+    and:
+      system.expand('${java.home}/lib') == '/projects/jdk/lib'
+  }
+
   def "test init() with no system reference and a system discovered"() {
     given:
       def reflectionUtil = Mock(ReflectionUtil)
@@ -60,6 +87,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
     when:
       def initialized = system.init(Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       })
 
     then:
@@ -83,6 +111,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
     when:
       def initialized = system.init(Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       })
 
     then:
@@ -104,6 +133,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
     when:
       def initialized = system.init(Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       })
 
     then:
@@ -123,6 +153,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
       def reflectionUtil = Mock(ReflectionUtil)
       def debug = Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       }
       def system = new SystemProperties()
 
@@ -147,6 +178,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
       def reflectionUtil = Mock(ReflectionUtil)
       def debug = Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       }
       def system = new SystemProperties()
 
@@ -171,6 +203,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
       def reflectionUtil = Mock(ReflectionUtil)
       def debug = Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       }
       def system = new SystemProperties()
 
@@ -194,6 +227,7 @@ class SystemPropertiesSpec extends ReflectionSpecification {
       def reflectionUtil = Mock(ReflectionUtil)
       def debug = Mock(Debug) {
         reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
       }
       def system = new SystemProperties()
 
@@ -213,4 +247,37 @@ class SystemPropertiesSpec extends ReflectionSpecification {
       0 * reflectionUtil.findMethod(SYSTEM_CLASS, *_)
       0 * reflectionUtil.invoke(_, GET_PROPERTY, _)
   }
+
+  def "test expand() when already initialized"() {
+    given:
+      def reflectionUtil = Mock(ReflectionUtil)
+      def debug = Mock(Debug) {
+        reflection() >> reflectionUtil
+        backdoor() >> NO_BACKDOOR
+      }
+      def system = new SystemProperties()
+
+    when:
+      system.init(debug, SYSTEM_OBJ)
+
+    then:
+      1 * reflectionUtil.findMethod(SYSTEM_CLASS, 'getProperty', SystemProperties.METHOD_SIGNATURE_STRING_ARG_STRING_RESULT) >> GET_PROPERTY
+      PROPERTIES.each {
+        1 * reflectionUtil.invoke(SYSTEM_OBJ, GET_PROPERTY, it) >> 'value-' + it
+      }
+
+    when:
+      def returnedResult = system.expand('${/} ${java.home} ${/}')
+
+    then:
+      returnedResult == 'value-/ value-java.home value-/'
+  }
+
+  def "test expand() when not initialized"() {
+    given:
+      def system = new SystemProperties()
+
+    expect:
+      system.expand('${/} ${java.home} ${/}') == null
+  }
 }
@@ -14,6 +14,7 @@
 package org.codice.acdebugger.plugin;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.maven.plugin.AbstractMojo;
@@ -65,6 +66,17 @@ public class ACDebuggerPlugin extends AbstractMojo {
   @Parameter(defaultValue = "true")
   private boolean osgi;
 
+  @Parameter private List<File> policies;
+
+  @Parameter private File store;
+
+  @Parameter private boolean adaptiveService;
+
+  @Parameter private boolean preResolve;
+
+  @Parameter(defaultValue = "0")
+  private double maxOverhead;
+
   @VisibleForTesting
   ACDebuggerPlugin(Boolean skip, Boolean remoteDebugging) {
     this.skip = skip;
@@ -105,6 +117,17 @@ public class ACDebuggerPlugin extends AbstractMojo {
     addParameter(arguments, "--fail", fail);
     addParameter(arguments, "--grant", grant);
     arguments.add("--osgi=" + osgi);
+    if (policies != null) {
+      policies.forEach(p -> addParameter(arguments, "--policy", p.getPath()));
+    }
+    if (store != null) {
+      addParameter(arguments, "--store", store.getPath());
+    }
+    addParameter(arguments, "--adaptive-service", adaptiveService);
+    addParameter(arguments, "--preresolve", preResolve);
+    if (maxOverhead > 0.0D) {
+      addParameter(arguments, "--max-overhead", Double.toString(maxOverhead));
+    }
 
     return arguments;
   }
@@ -65,6 +65,62 @@ class ACDebuggerPluginSpec extends Specification {
           "all options are disabled"    || "localhost" | "1234" | false | "0"     | false     | false      | false | false | false   | false | false | false
     }
 
+    def "test buildArguments() when policy files are specified"() {
+        given:
+          def plugin = loadPlugin()
+
+          plugin.policies = [new File('etc/default.policy'), new File('security/configurations.policy')]
+
+        when:
+          def arguments = plugin.buildArguments()
+
+        then:
+          arguments.join(' ').contains(
+                  "--policy ${new File('etc/default.policy').path} --policy ${new File('security/configurations.policy').path}")
+    }
+
+    def "test buildArguments() when a knowledge base file is specified"() {
+        given:
+          def plugin = loadPlugin()
+
+          plugin.store = new File('target/acdebugger.kb')
+
+        when:
+          def arguments = plugin.buildArguments()
+
+        then:
+          arguments.join(' ').contains("--store ${new File('target/acdebugger.kb').path}")
+    }
+
+    def "test buildArguments() when overhead and resolution options are specified"() {
+        given:
+          def plugin = loadPlugin()
+
+          plugin.adaptiveService = true
+          plugin.preResolve = true
+          plugin.maxOverhead = 2.5D
+
+        when:
+          def arguments = plugin.buildArguments()
+
+        then:
+          arguments.containsAll(['--adaptive-service', '--preresolve'])
+          arguments.join(' ').contains('--max-overhead 2.5')
+    }
+
+    def "test buildArguments() when overhead and resolution options are not specified"() {
+        given:
+          def plugin = loadPlugin()
+
+        when:
+          def arguments = plugin.buildArguments()
+
+        then:
+          !arguments.contains('--adaptive-service')
+          !arguments.contains('--preresolve')
+          !arguments.contains('--max-overhead')
+    }
+
     ACDebuggerPlugin loadPlugin(Map args = [:]) {
         def baseDir = new File("target/test-classes/project-to-test/")
         def project = rule.readMavenProject(baseDir)